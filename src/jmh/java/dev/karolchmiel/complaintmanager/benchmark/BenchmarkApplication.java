@@ -0,0 +1,64 @@
+package dev.karolchmiel.complaintmanager.benchmark;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.ComplaintManagerApplication;
+import dev.karolchmiel.complaintmanager.stub.IpApiStubServer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * The application started without a web server against its own in-memory H2 database, with IP geolocation
+ * served by a local {@link IpApiStubServer}, so benchmarks never leave the machine.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    private final IpApiStubServer ipApiStub;
+    private final ConfigurableApplicationContext context;
+
+    BenchmarkApplication(String databaseName) throws IOException {
+        this.ipApiStub = new IpApiStubServer(ip -> CountryCode.PL);
+        this.context = new SpringApplicationBuilder(ComplaintManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                        "--ipapi.url=" + ipApiStub.baseUrl() + "/json",
+                        "--ipapi.batch.url=" + ipApiStub.baseUrl() + "/batch",
+                        "--logging.level.root=WARN");
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Inserts complaints with distinct products and complainants straight into the table, in JDBC batches, so
+     * seeding large tables takes seconds. The complaints are not indexed for search.
+     *
+     * @param rows the number of complaints to insert
+     */
+    void insertComplaints(int rows) {
+        final var jdbcTemplate = context.getBean(JdbcTemplate.class);
+        final var creationDate = Timestamp.valueOf(LocalDateTime.now());
+        for (int from = 0; from < rows; from += INSERT_BATCH_SIZE) {
+            final var arguments = new ArrayList<Object[]>(INSERT_BATCH_SIZE);
+            for (int i = from; i < Math.min(from + INSERT_BATCH_SIZE, rows); i++) {
+                arguments.add(new Object[]{(long) i, "Complaint content " + i, creationDate, "benchmark-" + i});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO COMPLAINT (PRODUCT_ID, CONTENT, CREATION_DATE, COMPLAINANT, COUNT) "
+                    + "VALUES (?, ?, ?, ?, 1)", arguments);
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        ipApiStub.close();
+    }
+}
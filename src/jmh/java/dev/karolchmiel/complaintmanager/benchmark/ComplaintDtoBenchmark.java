@@ -0,0 +1,54 @@
+package dev.karolchmiel.complaintmanager.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import dev.karolchmiel.complaintmanager.model.Complaint;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-complaint costs on the response path: mapping the entity to its DTO and serializing the DTO to JSON
+ * with an object mapper configured like the one Spring Boot creates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplaintDtoBenchmark {
+    private final ComplaintMapper complaintMapper = Mappers.getMapper(ComplaintMapper.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private Complaint complaint;
+    private ComplaintRetrievalDto dto;
+
+    @Setup
+    public void createComplaint() {
+        complaint = new Complaint();
+        complaint.setId(1035L);
+        complaint.setProductId(123L);
+        complaint.setContent("The product stopped working after two days of normal use");
+        complaint.setCreationDate(LocalDateTime.of(2025, 5, 1, 12, 30));
+        complaint.setComplainant("user-123");
+        complaint.setComplainantCountry(CountryCode.PL);
+        complaint.setCount(3);
+        dto = complaintMapper.entityToRetrievalDto(complaint);
+    }
+
+    @Benchmark
+    public ComplaintRetrievalDto entityToRetrievalDto() {
+        return complaintMapper.entityToRetrievalDto(complaint);
+    }
+
+    @Benchmark
+    public byte[] serializeRetrievalDto() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(dto);
+    }
+}
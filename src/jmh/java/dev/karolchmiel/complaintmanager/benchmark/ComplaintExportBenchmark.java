@@ -0,0 +1,56 @@
+package dev.karolchmiel.complaintmanager.benchmark;
+
+import dev.karolchmiel.complaintmanager.dto.FileFormat;
+import dev.karolchmiel.complaintmanager.service.ComplaintExportService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ComplaintExportService#export} of tables of growing size into a discarding stream, in each format. Next to
+ * the time of a whole export the {@code rows} counter reports the export throughput in rows per second, which should
+ * not drop as the table grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class ComplaintExportBenchmark {
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    @Param({"NDJSON", "CSV"})
+    private FileFormat format;
+
+    private BenchmarkApplication application;
+    private ComplaintExportService complaintExportService;
+
+    @Setup(Level.Trial)
+    public void startApplicationWithComplaints() throws IOException {
+        application = new BenchmarkApplication("export-benchmark-" + rows + "-" + format);
+        complaintExportService = application.getBean(ComplaintExportService.class);
+        application.insertComplaints(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        application.close();
+    }
+
+    @Benchmark
+    public long export(ExportedRows exportedRows) throws IOException {
+        final var exported = complaintExportService.export(format, OutputStream.nullOutputStream());
+        exportedRows.rows += exported;
+        return exported;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ExportedRows {
+        public long rows;
+    }
+}
@@ -0,0 +1,68 @@
+package dev.karolchmiel.complaintmanager.benchmark;
+
+import dev.karolchmiel.complaintmanager.dto.ComplaintField;
+import dev.karolchmiel.complaintmanager.dto.ComplaintFilter;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaintPage;
+import dev.karolchmiel.complaintmanager.service.ComplaintReadService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ComplaintReadService#getComplaints} on tables of growing size, for the first page and for a page
+ * in the middle of the table. With keyset pagination both should cost the same regardless of table size.
+ * <p>
+ * Run with {@code -Djmh.args="ComplaintReadBenchmark -prof gc"} to compare allocation: {@code gc.alloc.rate.norm}
+ * divided by the page size of 100 is the allocation per listed row, for complete complaints and for a page with only
+ * the {@code id} and {@code count} fields selected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComplaintReadBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final Set<ComplaintField> SELECTED_FIELDS = EnumSet.of(ComplaintField.COUNT);
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private BenchmarkApplication application;
+    private ComplaintReadService complaintReadService;
+    private long middleCursor;
+
+    @Setup(Level.Trial)
+    public void startApplicationWithComplaints() throws IOException {
+        application = new BenchmarkApplication("read-benchmark-" + rows);
+        complaintReadService = application.getBean(ComplaintReadService.class);
+        application.insertComplaints(rows);
+        middleCursor = application.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT ID FROM COMPLAINT ORDER BY ID OFFSET ? ROWS FETCH FIRST 1 ROW ONLY", Long.class, rows / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        application.close();
+    }
+
+    @Benchmark
+    public VersionedComplaintPage firstPage() {
+        return complaintReadService.getComplaints(ComplaintFilter.NONE, ComplaintField.ALL, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public VersionedComplaintPage firstPageWithSelectedFields() {
+        return complaintReadService.getComplaints(ComplaintFilter.NONE, SELECTED_FIELDS, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public VersionedComplaintPage middlePage() {
+        return complaintReadService.getComplaints(ComplaintFilter.NONE, ComplaintField.ALL, middleCursor, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,54 @@
+package dev.karolchmiel.complaintmanager.benchmark;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.service.ComplaintWriteService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ComplaintWriteService#addNewOrIncrementCount} against embedded H2, for a key seen for the first time
+ * (insert) and for a key submitted over and over (increment).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComplaintWriteBenchmark {
+    private static final String COMPLAINANT_IP = "83.1.1.1";
+
+    private final AtomicLong nextProductId = new AtomicLong();
+    private final ComplaintCreationDto repeatedComplaint =
+            new ComplaintCreationDto(0L, "Repeated complaint", "benchmark-repeat");
+
+    private BenchmarkApplication application;
+    private ComplaintWriteService complaintWriteService;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws IOException {
+        application = new BenchmarkApplication("write-benchmark");
+        complaintWriteService = application.getBean(ComplaintWriteService.class);
+        complaintWriteService.addNewOrIncrementCount(repeatedComplaint, COMPLAINANT_IP);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        application.close();
+    }
+
+    @Benchmark
+    public ComplaintRetrievalDto newKey() {
+        final var dto = new ComplaintCreationDto(nextProductId.incrementAndGet(), "New complaint", "benchmark-new");
+        return complaintWriteService.addNewOrIncrementCount(dto, COMPLAINANT_IP);
+    }
+
+    @Benchmark
+    public ComplaintRetrievalDto repeatedKey() {
+        return complaintWriteService.addNewOrIncrementCount(repeatedComplaint, COMPLAINANT_IP);
+    }
+}
@@ -0,0 +1,43 @@
+package dev.karolchmiel.complaintmanager.benchmark;
+
+import dev.karolchmiel.complaintmanager.util.HttpUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.X_FORWARDED_FOR;
+
+/**
+ * {@link HttpUtils#getClientIpAddress} for a direct request and for a request that passed through a chain
+ * of proxies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpUtilsBenchmark {
+    private MockHttpServletRequest directRequest;
+    private MockHttpServletRequest proxiedRequest;
+
+    @Setup
+    public void createRequests() {
+        directRequest = new MockHttpServletRequest();
+        directRequest.setRemoteAddr("83.1.1.1");
+        proxiedRequest = new MockHttpServletRequest();
+        proxiedRequest.setRemoteAddr("10.0.0.1");
+        proxiedRequest.addHeader(X_FORWARDED_FOR, "83.1.1.1, 172.16.0.10, 10.0.0.2");
+    }
+
+    @Benchmark
+    public String directRequest() {
+        return HttpUtils.getClientIpAddress(directRequest);
+    }
+
+    @Benchmark
+    public String proxiedRequest() {
+        return HttpUtils.getClientIpAddress(proxiedRequest);
+    }
+}
@@ -0,0 +1,54 @@
+package dev.karolchmiel.complaintmanager;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto.Status;
+import dev.karolchmiel.complaintmanager.dto.FileFormat;
+import dev.karolchmiel.complaintmanager.service.ComplaintImportService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports the file given as {@code --complaints.import.file=<path>} at startup, for loading historical complaints
+ * without going through HTTP. The format is taken from the file extension ({@code .ndjson} or {@code .csv},
+ * optionally followed by {@code .gz}). Startup fails if the import does not complete.
+ */
+@Component
+@ConditionalOnProperty("complaints.import.file")
+class ComplaintImportRunner implements ApplicationRunner {
+    private static final String GZIP_EXTENSION = ".gz";
+
+    private final ComplaintImportService complaintImportService;
+    private final Path file;
+
+    ComplaintImportRunner(ComplaintImportService complaintImportService,
+                          @Value("${complaints.import.file}") Path file) {
+        this.complaintImportService = complaintImportService;
+        this.file = file;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        var fileName = file.getFileName().toString();
+        final var gzip = fileName.endsWith(GZIP_EXTENSION);
+        if (gzip) {
+            fileName = fileName.substring(0, fileName.length() - GZIP_EXTENSION.length());
+        }
+        final var format = FileFormat.fromName(fileName.substring(fileName.lastIndexOf('.') + 1))
+                .orElseThrow(() -> new IllegalArgumentException("Unknown import file format: " + file));
+
+        try (InputStream input = gzip ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file)) {
+            final var result = complaintImportService.importComplaints(format, input, file.toString());
+            if (result.status() != Status.COMPLETED) {
+                throw new IllegalStateException("Import of " + file + " " + result.status() + ": " + result.error());
+            }
+        }
+    }
+}
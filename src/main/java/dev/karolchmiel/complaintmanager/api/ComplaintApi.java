@@ -1,50 +1,163 @@
 package dev.karolchmiel.complaintmanager.api;
 
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchResultDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintPageDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchPageDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintUpdateDto;
+import dev.karolchmiel.complaintmanager.api.dto.CountryStatsDto;
+import dev.karolchmiel.complaintmanager.api.dto.ProductStatsDto;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.IDEMPOTENCY_KEY;
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.LAST_EVENT_ID;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 @Tag(name = "Complaints", description = "Complaint management API")
 @RequestMapping("/complaints")
 public interface ComplaintApi {
+    String TEXT_CSV_VALUE = "text/csv";
+    String DEFAULT_PAGE_SIZE = "100";
+    int MAX_PAGE_SIZE = 1000;
+    int MAX_BATCH_SIZE = 100_000;
+    String DEFAULT_SEARCH_PAGE_SIZE = "20";
+    int MAX_SEARCH_PAGE_SIZE = 100;
+    int MAX_SEARCH_QUERY_LENGTH = 200;
+    int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
 
-    @Operation(summary = "Get a complaint by ID", description = "Returns a complaint based on the ID")
+    @Operation(summary = "Get a complaint by ID",
+            description = "Returns a complaint based on the ID, with a strong ETag of its version")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Complaint found",
                     content = @Content(mediaType = APPLICATION_JSON_VALUE,
                             schema = @Schema(implementation = ComplaintRetrievalDto.class))),
+            @ApiResponse(responseCode = "304", description = "Complaint unchanged since the If-None-Match ETag",
+                    content = @Content),
             @ApiResponse(responseCode = "404", description = "Complaint not found",
                     content = @Content)
     })
     @GetMapping("/{id}")
     ResponseEntity<ComplaintRetrievalDto> getComplaint(
-            @Parameter(description = "ID of the complaint to be retrieved") @PathVariable int id);
+            @Parameter(description = "ID of the complaint to be retrieved") @PathVariable long id,
+            WebRequest request);
 
-    @Operation(summary = "Get all complaints", description = "Returns a list of all complaints")
-    @ApiResponse(responseCode = "200", description = "List of complaints retrieved successfully",
-            content = @Content(mediaType = APPLICATION_JSON_VALUE,
-                    schema = @Schema(implementation = ComplaintRetrievalDto.class)))
+    @Operation(summary = "Get complaints",
+            description = "Returns a page of complaints matching all given filters ordered by ID, starting after " +
+                    "the given cursor, with an ETag of the versions of the complaints on it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of complaints retrieved successfully",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ComplaintPageDto.class))),
+            @ApiResponse(responseCode = "304", description = "Page unchanged since the If-None-Match ETag",
+                    content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid page size, filter or field",
+                    content = @Content)
+    })
     @GetMapping
-    List<ComplaintRetrievalDto> getComplaints();
+    ResponseEntity<ComplaintPageDto> getComplaints(
+            @Parameter(description = "ID of the last complaint from the previous page, omit for the first page")
+            @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Maximum number of complaints on the page")
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) @Min(1) @Max(MAX_PAGE_SIZE) int size,
+            @Parameter(description = "Only complaints about this product")
+            @RequestParam(required = false) Long productId,
+            @Parameter(description = "Only complaints from this country", example = "US")
+            @RequestParam(required = false) CountryCode complainantCountry,
+            @Parameter(description = "Only complaints created at or after this date", example = "2023-05-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime createdFrom,
+            @Parameter(description = "Only complaints created before this date", example = "2023-06-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime createdTo,
+            @Parameter(description = "Comma-separated fields to return, all by default. Only their columns are " +
+                    "read; the id is always returned and the other fields are null", example = "id,content,count")
+            @RequestParam(required = false) String fields,
+            WebRequest request);
+
+    @Operation(summary = "Search complaints",
+            description = "Returns a page of complaints whose content contains any of the words of the query, " +
+                    "most relevant first. Words are matched case-insensitively and as a whole.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of matching complaints retrieved successfully",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ComplaintSearchPageDto.class))),
+            @ApiResponse(responseCode = "400", description = "Missing query or invalid page", content = @Content)
+    })
+    @GetMapping("/search")
+    ComplaintSearchPageDto searchComplaints(
+            @Parameter(description = "Words to search for", example = "battery refund")
+            @RequestParam @NotBlank @Size(max = MAX_SEARCH_QUERY_LENGTH) String q,
+            @Parameter(description = "Zero-based number of the page")
+            @RequestParam(defaultValue = "0") @Min(0) int page,
+            @Parameter(description = "Maximum number of complaints on the page")
+            @RequestParam(defaultValue = DEFAULT_SEARCH_PAGE_SIZE) @Min(1) @Max(MAX_SEARCH_PAGE_SIZE) int size);
+
+    @Operation(summary = "Export all complaints",
+            description = "Streams every complaint ordered by ID as NDJSON or CSV, gzip-compressed when the client " +
+                    "accepts gzip. Memory use does not depend on the number of complaints.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Complaints exported",
+                    content = {@Content(mediaType = APPLICATION_NDJSON_VALUE), @Content(mediaType = TEXT_CSV_VALUE)}),
+            @ApiResponse(responseCode = "400", description = "Unknown format", content = @Content)
+    })
+    @GetMapping("/export")
+    void exportComplaints(
+            @Parameter(description = "Format of the export", schema = @Schema(allowableValues = {"ndjson", "csv"}))
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException;
+
+    @Operation(summary = "Stream complaint changes",
+            description = "Streams server-sent events of committed changes: 'created', 'incremented' and " +
+                    "'content-updated', each with the complaint as JSON data; a content update carries only the " +
+                    "ID and the new content. Every event has a sequence number as its ID. A client reconnecting " +
+                    "with Last-Event-ID resumes after that event if it is still buffered, and otherwise first " +
+                    "receives a 'reset' event, after which it should reload the complaints it keeps. Clients that " +
+                    "fall too far behind are disconnected.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened",
+                    content = @Content(mediaType = TEXT_EVENT_STREAM_VALUE)),
+            @ApiResponse(responseCode = "503", description = "Too many subscribers", content = @Content)
+    })
+    @GetMapping(path = "/events", produces = TEXT_EVENT_STREAM_VALUE)
+    void streamEvents(
+            @Parameter(description = "ID of the last event received, to resume the stream after it")
+            @RequestHeader(name = LAST_EVENT_ID, required = false) String lastEventId,
+            HttpServletResponse response) throws IOException;
 
     @Operation(summary = "Create a new complaint",
-            description = "Creates a new complaint or increments the count if a similar complaint exists")
+            description = "Creates a new complaint or increments the count if a similar complaint exists. " +
+                    "Retries sent with the same Idempotency-Key are answered with the first response, marked " +
+                    "with Idempotent-Replayed: true, and are not counted again.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Complaint created successfully",
                     content = @Content(mediaType = APPLICATION_JSON_VALUE,
@@ -54,14 +167,83 @@ public interface ComplaintApi {
                             schema = @Schema(implementation = ComplaintRetrievalDto.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input data",
                     content = @Content(mediaType = APPLICATION_JSON_VALUE,
-                            schema = @Schema(implementation = Map.class)))
+                            schema = @Schema(implementation = Map.class))),
+            @ApiResponse(responseCode = "409", description = "The first request with the Idempotency-Key is " +
+                    "still in progress", content = @Content),
+            @ApiResponse(responseCode = "422", description = "The Idempotency-Key was used for a different " +
+                    "complaint", content = @Content)
     })
     @PostMapping
     ResponseEntity<ComplaintRetrievalDto> createComplaint(
             @Parameter(description = "Complaint information for creation", required = true)
             @Valid @RequestBody ComplaintCreationDto dto,
+            @Parameter(description = "Unique key of the submission, identical for its retries")
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            HttpServletRequest request);
+
+    @Operation(summary = "Create complaints in bulk",
+            description = "Creates complaints or increments their counts like repeated single submissions would. " +
+                    "Items are validated one by one; invalid items are skipped and reported in the results.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the per-item results",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ComplaintBatchResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Malformed request body", content = @Content),
+            @ApiResponse(responseCode = "413", description = "More than " + MAX_BATCH_SIZE + " complaints",
+                    content = @Content)
+    })
+    @PostMapping(path = "/batch", consumes = APPLICATION_JSON_VALUE)
+    ComplaintBatchResultDto createComplaints(
+            @Parameter(description = "JSON array of complaints to create", required = true)
+            @RequestBody List<ComplaintCreationDto> dtos,
             HttpServletRequest request);
 
+    @Operation(summary = "Create complaints in bulk from NDJSON",
+            description = "Same as the JSON array variant, with one complaint per line")
+    @PostMapping(path = "/batch", consumes = APPLICATION_NDJSON_VALUE)
+    ComplaintBatchResultDto createComplaintsFromNdjson(HttpServletRequest request) throws IOException;
+
+    @Operation(summary = "Import complaints from a file",
+            description = "Streams an NDJSON or CSV file of any size, gzip-compressed if sent with " +
+                    "Content-Encoding: gzip, into complaints like repeated single submissions would. Rows are " +
+                    "validated one by one and invalid rows are skipped. Rows may carry a complainantCountry code, " +
+                    "which is stored as is; imported complaints are not geolocated. Progress can be followed at " +
+                    "/complaints/imports while the import runs.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Every row of the file was processed",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ComplaintImportDto.class))),
+            @ApiResponse(responseCode = "400", description = "A row could not be parsed; the rows before it " +
+                    "were imported",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ComplaintImportDto.class))),
+            @ApiResponse(responseCode = "500", description = "The import failed; the rows written before were " +
+                    "imported",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ComplaintImportDto.class)))
+    })
+    @PostMapping(path = "/import", consumes = {APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    ResponseEntity<ComplaintImportDto> importComplaints(HttpServletRequest request) throws IOException;
+
+    @Operation(summary = "List imports", description = "Returns the running and the most recent finished imports, " +
+            "newest first, with the rows processed so far and the rows per second")
+    @ApiResponse(responseCode = "200", description = "Imports found",
+            content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                    array = @ArraySchema(schema = @Schema(implementation = ComplaintImportDto.class))))
+    @GetMapping("/imports")
+    List<ComplaintImportDto> getImports();
+
+    @Operation(summary = "Get an import", description = "Returns the progress or outcome of an import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import found",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ComplaintImportDto.class))),
+            @ApiResponse(responseCode = "404", description = "Import unknown or no longer tracked",
+                    content = @Content)
+    })
+    @GetMapping("/imports/{id}")
+    ResponseEntity<ComplaintImportDto> getImport(@Parameter(description = "ID of the import") @PathVariable UUID id);
+
     @Operation(summary = "Update a complaint", description = "Updates the content of an existing complaint")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Complaint updated successfully"),
@@ -74,4 +256,25 @@ public interface ComplaintApi {
     ResponseEntity<Void> updateComplaint(
             @Parameter(description = "ID of the complaint to update") @PathVariable long id,
             @Parameter(description = "Updated complaint information", required = true) @Valid @RequestBody ComplaintUpdateDto dto);
+
+    @Operation(summary = "Get product statistics",
+            description = "Returns the number of complaints about a product and of different complainants")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics found",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ProductStatsDto.class))),
+            @ApiResponse(responseCode = "404", description = "No complaints about the product",
+                    content = @Content)
+    })
+    @GetMapping("/stats/products/{productId}")
+    ResponseEntity<ProductStatsDto> getProductStats(
+            @Parameter(description = "ID of the product") @PathVariable long productId);
+
+    @Operation(summary = "Get country statistics",
+            description = "Returns the number of complaints from each complainant country, most complaints first")
+    @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully",
+            content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                    array = @ArraySchema(schema = @Schema(implementation = CountryStatsDto.class))))
+    @GetMapping("/stats/countries")
+    List<CountryStatsDto> getCountryStats();
 }
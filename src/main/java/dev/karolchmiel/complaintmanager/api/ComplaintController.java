@@ -1,52 +1,256 @@
 package dev.karolchmiel.complaintmanager.api;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchResultDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintPageDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchPageDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintUpdateDto;
+import dev.karolchmiel.complaintmanager.api.dto.CountryStatsDto;
+import dev.karolchmiel.complaintmanager.api.dto.ProductStatsDto;
+import dev.karolchmiel.complaintmanager.dto.ComplaintField;
+import dev.karolchmiel.complaintmanager.dto.ComplaintFilter;
+import dev.karolchmiel.complaintmanager.dto.FileFormat;
+import dev.karolchmiel.complaintmanager.service.ComplaintBatchService;
+import dev.karolchmiel.complaintmanager.service.ComplaintEventFeed;
+import dev.karolchmiel.complaintmanager.service.ComplaintExportService;
+import dev.karolchmiel.complaintmanager.service.ComplaintImportService;
 import dev.karolchmiel.complaintmanager.service.ComplaintReadService;
+import dev.karolchmiel.complaintmanager.service.ComplaintSearchService;
+import dev.karolchmiel.complaintmanager.service.ComplaintStatsService;
 import dev.karolchmiel.complaintmanager.service.ComplaintWriteService;
+import dev.karolchmiel.complaintmanager.service.IdempotencyStore;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
 import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.IDEMPOTENT_REPLAYED;
 import static dev.karolchmiel.complaintmanager.util.HttpUtils.getClientIpAddress;
 
 
 @RestController
 public class ComplaintController implements ComplaintApi {
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     private final ComplaintReadService complaintReadService;
     private final ComplaintWriteService complaintWriteService;
+    private final ComplaintBatchService complaintBatchService;
+    private final ComplaintStatsService complaintStatsService;
+    private final ComplaintSearchService complaintSearchService;
+    private final ComplaintExportService complaintExportService;
+    private final ComplaintImportService complaintImportService;
+    private final ComplaintEventFeed complaintEventFeed;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectReader creationDtoReader;
 
-    public ComplaintController(ComplaintReadService complaintReadService, ComplaintWriteService complaintWriteService) {
+    public ComplaintController(ComplaintReadService complaintReadService,
+                               ComplaintWriteService complaintWriteService,
+                               ComplaintBatchService complaintBatchService,
+                               ComplaintStatsService complaintStatsService,
+                               ComplaintSearchService complaintSearchService,
+                               ComplaintExportService complaintExportService,
+                               ComplaintImportService complaintImportService,
+                               ComplaintEventFeed complaintEventFeed,
+                               IdempotencyStore idempotencyStore,
+                               ObjectMapper objectMapper) {
         this.complaintReadService = complaintReadService;
         this.complaintWriteService = complaintWriteService;
+        this.complaintBatchService = complaintBatchService;
+        this.complaintStatsService = complaintStatsService;
+        this.complaintSearchService = complaintSearchService;
+        this.complaintExportService = complaintExportService;
+        this.complaintImportService = complaintImportService;
+        this.complaintEventFeed = complaintEventFeed;
+        this.idempotencyStore = idempotencyStore;
+        this.creationDtoReader = objectMapper.readerFor(ComplaintCreationDto.class);
     }
 
+    /**
+     * A conditional request is answered from the complaint's version alone, so a 304 neither loads the
+     * complaint nor serializes it.
+     */
     @Override
-    public ResponseEntity<ComplaintRetrievalDto> getComplaint(int id) {
+    public ResponseEntity<ComplaintRetrievalDto> getComplaint(long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            final var version = complaintReadService.getComplaintVersion(id);
+            if (version.isPresent() && request.checkNotModified(String.valueOf(version.get()))) {
+                return null;
+            }
+        }
         return complaintReadService.getComplaintById(id)
-                .map(ResponseEntity::ok)
+                .map(complaint -> ResponseEntity.ok()
+                        .eTag(String.valueOf(complaint.version()))
+                        .body(complaint.complaint()))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * A conditional request is answered from the versions of the page's rows alone; any other request loads the
+     * page straight away, in a single query. A page that is loaded is sent with the ETag of the rows it was read
+     * from, in the same transaction, so it is never cached under the tag of newer rows read from another replica.
+     */
+    @Override
+    public ResponseEntity<ComplaintPageDto> getComplaints(Long cursor, int size, Long productId,
+                                                          CountryCode complainantCountry, LocalDateTime createdFrom,
+                                                          LocalDateTime createdTo, String fields, WebRequest request) {
+        final var filter = new ComplaintFilter(productId, complainantCountry, createdFrom, createdTo);
+        final var selectedFields = parseFields(fields);
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            final var versionTag = complaintReadService.getComplaintsVersionTag(filter, selectedFields, cursor, size);
+            if (matchesIfNoneMatch(request, versionTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(versionTag).build();
+            }
+        }
+        final var page = complaintReadService.getComplaints(filter, selectedFields, cursor, size);
+        return ResponseEntity.ok()
+                .eTag(page.versionTag())
+                .body(page.page());
+    }
+
+    @Override
+    public ComplaintSearchPageDto searchComplaints(String q, int page, int size) {
+        return complaintSearchService.search(q, page, size);
+    }
+
+    /**
+     * The export is written to the response as it is read, so the response is committed long before the export
+     * completes; an error halfway through aborts the response instead of turning it into an error status.
+     * <p>
+     * Gzip is applied as a content coding, which clients remove before saving, so the file name stays that of the
+     * uncompressed export.
+     */
     @Override
-    public List<ComplaintRetrievalDto> getComplaints() {
-        return complaintReadService.getAllComplaints();
+    public void exportComplaints(String format, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        final var exportFormat = FileFormat.fromName(format).orElseThrow(() -> new ResponseStatusException(
+                HttpStatus.BAD_REQUEST, "Unknown export format: " + format));
+        final var gzip = acceptsGzip(request);
+        response.setContentType(exportFormat.mediaType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("complaints." + exportFormat.fileExtension())
+                .build().toString());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            try (final var output = new GZIPOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE)) {
+                complaintExportService.export(exportFormat, output);
+            }
+        } else {
+            complaintExportService.export(exportFormat, response.getOutputStream());
+        }
     }
 
+    /**
+     * The stream is written on the request thread until the subscriber disconnects, is dropped or the application
+     * shuts down, so it is kept out of the bulkhead of the complaint endpoints.
+     */
     @Override
-    public ResponseEntity<ComplaintRetrievalDto> createComplaint(ComplaintCreationDto dto,
-                                                 HttpServletRequest request) {
-        final var savedComplaint = complaintWriteService.addNewOrIncrementCount(dto, getClientIpAddress(request));
-        if (savedComplaint.count() == 1) {
-            final var location = buildComplaintUri(savedComplaint);
-            return ResponseEntity.created(location).body(savedComplaint);
+    public void streamEvents(String lastEventId, HttpServletResponse response) throws IOException {
+        try (final var subscription = complaintEventFeed.subscribe(lastEventId).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many event stream subscribers"))) {
+            response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE + ";charset=UTF-8");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            subscription.streamTo(response.getOutputStream());
         }
-        return ResponseEntity.ok(savedComplaint);
+    }
+
+    @Override
+    public ResponseEntity<ComplaintRetrievalDto> createComplaint(ComplaintCreationDto dto, String idempotencyKey,
+                                                                 HttpServletRequest request) {
+        final var clientIp = getClientIpAddress(request);
+        if (idempotencyKey == null) {
+            final var savedComplaint = complaintWriteService.addNewOrIncrementCount(dto, clientIp);
+            return createdOrOk(savedComplaint).body(savedComplaint);
+        }
+        checkIdempotencyKey(idempotencyKey);
+        final var response = idempotencyStore.submit(idempotencyKey, dto,
+                () -> complaintWriteService.addNewOrIncrementCount(dto, clientIp));
+        final var builder = createdOrOk(response.complaint());
+        if (response.replayed()) {
+            builder.header(IDEMPOTENT_REPLAYED, "true");
+        }
+        return builder.body(response.complaint());
+    }
+
+    private ResponseEntity.BodyBuilder createdOrOk(ComplaintRetrievalDto savedComplaint) {
+        return savedComplaint.count() == 1
+                ? ResponseEntity.created(buildComplaintUri(savedComplaint))
+                : ResponseEntity.ok();
+    }
+
+    @Override
+    public ComplaintBatchResultDto createComplaints(List<ComplaintCreationDto> dtos, HttpServletRequest request) {
+        checkBatchSize(dtos.size());
+        return complaintBatchService.addBatch(dtos, getClientIpAddress(request));
+    }
+
+    @Override
+    public ComplaintBatchResultDto createComplaintsFromNdjson(HttpServletRequest request) throws IOException {
+        final var dtos = new ArrayList<ComplaintCreationDto>();
+        try (MappingIterator<ComplaintCreationDto> lines = creationDtoReader.readValues(request.getInputStream())) {
+            while (lines.hasNextValue()) {
+                checkBatchSize(dtos.size() + 1);
+                dtos.add(lines.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Malformed complaint at line " + e.getLocation().getLineNr(), e);
+        }
+        return complaintBatchService.addBatch(dtos, getClientIpAddress(request));
+    }
+
+    @Override
+    public ResponseEntity<ComplaintImportDto> importComplaints(HttpServletRequest request) throws IOException {
+        final var format = FileFormat.fromMediaType(MediaType.parseMediaType(request.getContentType()))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE));
+        final var gzip = "gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING));
+        final var input = gzip ? new GZIPInputStream(request.getInputStream()) : request.getInputStream();
+        final var result = complaintImportService.importComplaints(format, input,
+                "upload from " + getClientIpAddress(request));
+        final var status = switch (result.status()) {
+            case COMPLETED, RUNNING -> HttpStatus.OK;
+            case REJECTED -> HttpStatus.BAD_REQUEST;
+            case FAILED -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+        return ResponseEntity.status(status).body(result);
+    }
+
+    @Override
+    public List<ComplaintImportDto> getImports() {
+        return complaintImportService.getImports();
+    }
+
+    @Override
+    public ResponseEntity<ComplaintImportDto> getImport(UUID id) {
+        return ResponseEntity.of(complaintImportService.getImport(id));
     }
 
     @Override
@@ -59,6 +263,62 @@ public class ComplaintController implements ComplaintApi {
         }
     }
 
+    @Override
+    public ResponseEntity<ProductStatsDto> getProductStats(long productId) {
+        return ResponseEntity.of(complaintStatsService.getProductStats(productId));
+    }
+
+    @Override
+    public List<CountryStatsDto> getCountryStats() {
+        return complaintStatsService.getCountryStats();
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        final var acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && Arrays.stream(acceptEncoding.split(","))
+                .map(coding -> coding.trim().toLowerCase(Locale.ROOT))
+                .anyMatch(coding -> coding.equals("gzip") || coding.startsWith("gzip;") && !coding.endsWith("q=0"));
+    }
+
+    /**
+     * Compares the ETag with the If-None-Match header without touching the response, unlike
+     * {@link WebRequest#checkNotModified(String)}, which would already set the ETag of a page that is then loaded.
+     */
+    private static boolean matchesIfNoneMatch(WebRequest request, String etag) {
+        return Arrays.stream(request.getHeaderValues(HttpHeaders.IF_NONE_MATCH))
+                .flatMap(header -> ETag.parse(header).stream())
+                .anyMatch(tag -> tag.isWildcard() || tag.compare(ETag.create(etag), false));
+    }
+
+    private static Set<ComplaintField> parseFields(String fields) {
+        if (fields == null) {
+            return ComplaintField.ALL;
+        }
+        final var selected = EnumSet.noneOf(ComplaintField.class);
+        for (final var field : fields.split(",")) {
+            final var property = field.trim();
+            if (!property.equals("id")) {
+                selected.add(ComplaintField.fromProperty(property).orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Unknown complaint field: " + property)));
+            }
+        }
+        return selected;
+    }
+
+    private static void checkBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "A batch can contain at most " + MAX_BATCH_SIZE + " complaints");
+        }
+    }
+
+    private static void checkIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "An idempotency key must have 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+    }
+
     private static URI buildComplaintUri(ComplaintRetrievalDto savedComplaint) {
         return ServletUriComponentsBuilder
                 .fromCurrentRequest()
@@ -0,0 +1,97 @@
+package dev.karolchmiel.complaintmanager.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulkhead for the complaint endpoints when requests are handled on virtual threads. Tomcat then no longer
+ * bounds the number of requests in flight, so without a limit every request beyond the size of the connection
+ * pool would park waiting for a database connection and time out there. At most
+ * {@code complaints.bulkhead.max-concurrent-requests} requests, by default the Hikari pool size, are processed at
+ * once; the others wait up to {@code complaints.bulkhead.max-wait} for a permit and are then rejected with
+ * 503 Service Unavailable.
+ * <p>
+ * The event stream is not limited: it is held open for as long as the client listens, waiting for events rather
+ * than for a database connection, and its subscribers are bounded by {@code complaints.events.max-subscribers}.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+    private static final String COMPLAINTS_PATH = "/complaints";
+    static final String EVENTS_PATH = COMPLAINTS_PATH + "/events";
+
+    private final int maxConcurrentRequests;
+    private final Semaphore permits;
+    private final Duration maxWait;
+    private final Counter rejectedCounter;
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${complaints.bulkhead.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}")
+                                  int maxConcurrentRequests,
+                                  @Value("${complaints.bulkhead.max-wait:1s}") Duration maxWait) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxWait = maxWait;
+        Gauge.builder("complaint.bulkhead.active", this, ConcurrencyLimitFilter::activeRequests)
+                .description("Complaint requests being processed")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("complaint.bulkhead.rejected")
+                .description("Complaint requests rejected because no permit became available in time")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        final var path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals(COMPLAINTS_PATH) && !path.startsWith(COMPLAINTS_PATH + "/") || path.equals(EVENTS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            LOG.warn("Rejecting {} {}, all {} permits busy for {}", request.getMethod(), request.getRequestURI(),
+                    maxConcurrentRequests, maxWait);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, maxWait.toSeconds())));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private double activeRequests() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+}
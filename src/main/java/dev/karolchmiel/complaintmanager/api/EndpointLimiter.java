@@ -0,0 +1,132 @@
+package dev.karolchmiel.complaintmanager.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.karolchmiel.complaintmanager.config.RateLimitProperties;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits of one endpoint: a token bucket per client and a count of requests in flight, both lock-free.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the time at which the client's bucket would be full again
+ * (the generic cell rate algorithm): a request is allowed if that time is at most {@code burst - 1} request
+ * intervals ahead of now, and pushes it one interval further. Buckets are kept in a table bounded to
+ * {@code maxClients} entries that forgets idle clients; a forgotten client starts again with a full bucket.
+ */
+final class EndpointLimiter {
+    private static final PathPatternParser PATH_PATTERN_PARSER = new PathPatternParser();
+
+    private final String name;
+    private final String method;
+    private final PathPattern path;
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+    private final int maxConcurrentRequests;
+    private final Cache<String, AtomicLong> buckets;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    EndpointLimiter(String name, RateLimitProperties.Endpoint endpoint, int maxClients, Duration clientIdleTimeout) {
+        if (endpoint.path() == null) {
+            throw new IllegalArgumentException("Rate-limited endpoint " + name + " has no path");
+        }
+        this.name = name;
+        this.method = endpoint.method();
+        this.path = PATH_PATTERN_PARSER.parse(endpoint.path());
+        this.intervalNanos = endpoint.requestsPerSecond() > 0
+                ? Math.round(TimeUnit.SECONDS.toNanos(1) / endpoint.requestsPerSecond()) : 0;
+        this.burstToleranceNanos = intervalNanos * (Math.max(1, endpoint.burst()) - 1);
+        this.maxConcurrentRequests = endpoint.maxConcurrentRequests();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(clientIdleTimeout)
+                .build();
+    }
+
+    String name() {
+        return name;
+    }
+
+    boolean matches(String requestMethod, String requestPath) {
+        return (method == null || method.equalsIgnoreCase(requestMethod))
+                && path.matches(PathContainer.parsePath(requestPath));
+    }
+
+    /**
+     * Takes a token from the client's bucket.
+     *
+     * @param client the key of the client
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return 0 if the request is allowed, otherwise the nanoseconds until the client may send the next request
+     */
+    long tryAcquireToken(String client, long nowNanos) {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        final var bucket = buckets.get(client, key -> new AtomicLong(nowNanos));
+        while (true) {
+            final var fullAt = bucket.get();
+            final var start = fullAt - nowNanos > 0 ? fullAt : nowNanos;
+            final var wait = start - nowNanos - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquireToken} for a request that was then rejected elsewhere.
+     *
+     * @param client the key of the client
+     */
+    void refundToken(String client) {
+        if (intervalNanos == 0) {
+            return;
+        }
+        final var bucket = buckets.getIfPresent(client);
+        if (bucket != null) {
+            bucket.addAndGet(-intervalNanos);
+        }
+    }
+
+    /**
+     * @return whether the request may be processed now; if so, {@link #release()} must be called when it is done
+     */
+    boolean tryAcquireSlot() {
+        if (maxConcurrentRequests == 0) {
+            return true;
+        }
+        while (true) {
+            final var current = inFlight.get();
+            if (current >= maxConcurrentRequests) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        if (maxConcurrentRequests != 0) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    long trackedClients() {
+        return buckets.estimatedSize();
+    }
+}
@@ -1,5 +1,6 @@
 package dev.karolchmiel.complaintmanager.api;
 
+import dev.karolchmiel.complaintmanager.service.IdempotencyConflictException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -40,4 +41,22 @@ public class GlobalExceptionHandler {
         LOG.info("Returning BAD_REQUEST with {} validation errors", errors.size());
         return ResponseEntity.badRequest().body(errors);
     }
+
+    /**
+     * Handles idempotency keys that cannot be answered with a stored response.
+     * Returns 422 Unprocessable Entity if the key was used for a different request, or 409 Conflict if the first
+     * request with the key is still in progress.
+     *
+     * @param ex the exception thrown by the idempotency store
+     * @return the error message
+     */
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyConflict(IdempotencyConflictException ex) {
+        LOG.warn("Idempotency conflict: {}", ex.getMessage());
+        final var status = switch (ex.getReason()) {
+            case KEY_REUSED -> HttpStatus.UNPROCESSABLE_ENTITY;
+            case IN_PROGRESS -> HttpStatus.CONFLICT;
+        };
+        return ResponseEntity.status(status).body(Map.of("error", ex.getMessage()));
+    }
 }
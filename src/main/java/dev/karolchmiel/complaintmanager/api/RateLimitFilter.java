@@ -0,0 +1,139 @@
+package dev.karolchmiel.complaintmanager.api;
+
+import dev.karolchmiel.complaintmanager.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.getClientIpAddress;
+
+/**
+ * Sheds load on the endpoints configured under {@code complaints.rate-limit.endpoints} before it reaches the
+ * database or the IP geolocation API. Each client, identified by {@link
+ * dev.karolchmiel.complaintmanager.util.HttpUtils#getClientIpAddress}, gets a token bucket per endpoint and is
+ * rejected with 429 Too Many Requests once it is empty. Requests beyond an endpoint's concurrency limit are
+ * rejected at once with 503 Service Unavailable instead of queueing. Both carry a Retry-After header.
+ * <p>
+ * The event stream is subject to the token buckets, which bound how often a client reconnects, but not to the
+ * concurrency limits, as a subscriber holds its request open for as long as it listens.
+ * <p>
+ * A request matching several endpoints must be admitted by all of them. A rejected request gives back the tokens it
+ * took from the buckets that admitted it, so it costs the client nothing on the other endpoints.
+ * <p>
+ * Runs before the {@link ConcurrencyLimitFilter}, so rejected requests never take a bulkhead permit. Rejections
+ * are counted in {@code complaint.requests.rejected}, tagged with the {@code endpoint} and the {@code reason}.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimitFilter.class);
+    private static final String RATE_LIMITED = "rate_limited";
+    private static final String OVERLOADED = "overloaded";
+
+    private final List<EndpointLimiter> limiters = new ArrayList<>();
+    private final Map<String, Counter> rejectedCounters = new HashMap<>();
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        properties.endpoints().forEach((name, endpoint) -> {
+            final var limiter = new EndpointLimiter(name, endpoint, properties.maxClients(),
+                    properties.clientIdleTimeout());
+            limiters.add(limiter);
+            for (final var reason : List.of(RATE_LIMITED, OVERLOADED)) {
+                rejectedCounters.put(name + "/" + reason, Counter.builder("complaint.requests.rejected")
+                        .description("Requests rejected by the rate limiter or the concurrency limit")
+                        .tag("endpoint", name)
+                        .tag("reason", reason)
+                        .register(meterRegistry));
+            }
+            Gauge.builder("complaint.ratelimit.clients", limiter, EndpointLimiter::trackedClients)
+                    .description("Clients whose request rate is tracked")
+                    .tag("endpoint", name)
+                    .register(meterRegistry);
+            Gauge.builder("complaint.ratelimit.active", limiter, EndpointLimiter::inFlight)
+                    .description("Requests being processed under the concurrency limit")
+                    .tag("endpoint", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return limiters.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final var path = request.getRequestURI().substring(request.getContextPath().length());
+        final var matching = limiters.stream()
+                .filter(limiter -> limiter.matches(request.getMethod(), path))
+                .toList();
+        if (matching.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        final var client = getClientIpAddress(request);
+        final var now = System.nanoTime();
+        final var charged = new ArrayList<EndpointLimiter>(matching.size());
+        for (final var limiter : matching) {
+            final var wait = limiter.tryAcquireToken(client, now);
+            if (wait > 0) {
+                LOG.debug("Rate limiting {} on {} for {} ms", client, limiter.name(),
+                        TimeUnit.NANOSECONDS.toMillis(wait));
+                charged.forEach(admitting -> admitting.refundToken(client));
+                reject(response, limiter, RATE_LIMITED, HttpStatus.TOO_MANY_REQUESTS,
+                        (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+                return;
+            }
+            charged.add(limiter);
+        }
+
+        if (path.equals(ConcurrencyLimitFilter.EVENTS_PATH)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        final var acquired = new ArrayList<EndpointLimiter>(matching.size());
+        try {
+            for (final var limiter : matching) {
+                if (!limiter.tryAcquireSlot()) {
+                    LOG.warn("Shedding {} {}, too many concurrent requests on {}", request.getMethod(), path,
+                            limiter.name());
+                    charged.forEach(admitting -> admitting.refundToken(client));
+                    reject(response, limiter, OVERLOADED, HttpStatus.SERVICE_UNAVAILABLE, 1);
+                    return;
+                }
+                acquired.add(limiter);
+            }
+            filterChain.doFilter(request, response);
+        } finally {
+            acquired.forEach(EndpointLimiter::release);
+        }
+    }
+
+    private void reject(HttpServletResponse response, EndpointLimiter limiter, String reason, HttpStatus status,
+                        long retryAfterSeconds) throws IOException {
+        rejectedCounters.get(limiter.name() + "/" + reason).increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.sendError(status.value());
+    }
+}
@@ -0,0 +1,74 @@
+package dev.karolchmiel.complaintmanager.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.karolchmiel.complaintmanager.config.ReplicaProperties;
+import dev.karolchmiel.complaintmanager.config.ReplicaRouter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.getClientIpAddress;
+
+/**
+ * Lets a client read its own writes when reads are served by replicas that lag behind the primary. Every request
+ * that is not a GET, HEAD or OPTIONS marks its client, identified by {@link
+ * dev.karolchmiel.complaintmanager.util.HttpUtils#getClientIpAddress}, as a writer for
+ * {@code complaints.datasource.max-replication-lag}; the reads of a marked client are served by the primary, see
+ * {@link ReplicaRouter#setPrimaryRequired(boolean)}.
+ * <p>
+ * The client is marked before the write is handled, so its next request is routed to the primary even if it is
+ * sent the moment the response arrives, and marked again once the write is done.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 2)
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private final Duration staleReadWindow;
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(ReplicaProperties properties) {
+        this.staleReadWindow = properties.staleReadWindow();
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(properties.maxTrackedClients())
+                .expireAfterWrite(properties.maxReplicationLag())
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return staleReadWindow.isZero();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final var client = getClientIpAddress(request);
+        final var write = !isRead(request.getMethod());
+        if (write) {
+            recentWriters.put(client, Boolean.TRUE);
+        }
+
+        ReplicaRouter.setPrimaryRequired(write || recentWriters.getIfPresent(client) != null);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRouter.setPrimaryRequired(false);
+            if (write) {
+                recentWriters.put(client, Boolean.TRUE);
+            }
+        }
+    }
+
+    private static boolean isRead(String method) {
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+}
@@ -0,0 +1,29 @@
+package dev.karolchmiel.complaintmanager.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Map;
+
+@Schema(description = "Outcome of a single complaint submitted in a batch")
+public record ComplaintBatchItemResultDto(
+        @Schema(description = "Position of the complaint in the submitted batch, starting at 0", example = "0")
+        int index,
+
+        @Schema(description = "What happened to the complaint")
+        Status status,
+
+        @Schema(description = "The persisted complaint with its count after the batch, null if the item was invalid")
+        ComplaintRetrievalDto complaint,
+
+        @Schema(description = "Field names mapped to validation errors, null if the item was valid")
+        Map<String, String> errors
+) {
+    public enum Status {
+        /** The complaint did not exist and was created by this item. */
+        CREATED,
+        /** The complaint already existed, or was created by an earlier item of the batch, and was counted. */
+        INCREMENTED,
+        /** The item failed validation and was skipped. */
+        INVALID
+    }
+}
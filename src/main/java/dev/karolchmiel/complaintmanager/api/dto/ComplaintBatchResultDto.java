@@ -0,0 +1,20 @@
+package dev.karolchmiel.complaintmanager.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Outcome of a batch of complaints")
+public record ComplaintBatchResultDto(
+        @Schema(description = "Number of items that created a new complaint", example = "120")
+        int created,
+
+        @Schema(description = "Number of items that incremented the count of a complaint", example = "30")
+        int incremented,
+
+        @Schema(description = "Number of items skipped because they failed validation", example = "2")
+        int invalid,
+
+        @Schema(description = "Outcome of each item, in submission order")
+        List<ComplaintBatchItemResultDto> results
+) {}
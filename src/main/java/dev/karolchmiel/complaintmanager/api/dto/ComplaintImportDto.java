@@ -0,0 +1,56 @@
+package dev.karolchmiel.complaintmanager.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Schema(description = "Progress or outcome of an import of complaints from a file")
+public record ComplaintImportDto(
+        @Schema(description = "ID of the import", example = "3f2b8c1e-4a5d-4e6f-9a7b-1c2d3e4f5a6b")
+        UUID id,
+
+        @Schema(description = "Where the imported file came from", example = "upload from 192.168.1.1")
+        String source,
+
+        @Schema(description = "Format of the imported file", example = "ndjson")
+        String format,
+
+        @Schema(description = "State of the import")
+        Status status,
+
+        @Schema(description = "When the import started")
+        LocalDateTime startedAt,
+
+        @Schema(description = "When the import finished, null while it is running")
+        LocalDateTime finishedAt,
+
+        @Schema(description = "Number of rows written so far", example = "250000")
+        long rowsProcessed,
+
+        @Schema(description = "Number of rows that created a new complaint", example = "240000")
+        long created,
+
+        @Schema(description = "Number of rows that incremented the count of a complaint", example = "9000")
+        long incremented,
+
+        @Schema(description = "Number of rows skipped because they failed validation", example = "1000")
+        long invalid,
+
+        @Schema(description = "Average number of rows written per second since the import started", example = "41250.5")
+        double rowsPerSecond,
+
+        @Schema(description = "Why the import stopped, null unless it was rejected or failed")
+        String error
+) {
+    public enum Status {
+        /** The import is still reading and writing rows. */
+        RUNNING,
+        /** Every row of the file was processed. */
+        COMPLETED,
+        /** A row of the file could not be parsed; the rows before it were imported. */
+        REJECTED,
+        /** Reading the file or writing the complaints failed; the rows written before were imported. */
+        FAILED
+    }
+}
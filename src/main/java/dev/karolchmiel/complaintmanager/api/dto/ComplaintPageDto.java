@@ -0,0 +1,15 @@
+package dev.karolchmiel.complaintmanager.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Single page of complaints ordered by ID")
+public record ComplaintPageDto(
+        @Schema(description = "Complaints on this page")
+        List<ComplaintRetrievalDto> complaints,
+
+        @Schema(description = "Cursor to pass as 'cursor' to fetch the next page, null if this is the last page",
+                example = "1042")
+        Long nextCursor
+) {}
@@ -0,0 +1,12 @@
+package dev.karolchmiel.complaintmanager.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Complaint matching a search")
+public record ComplaintSearchHitDto(
+        @Schema(description = "The matching complaint")
+        ComplaintRetrievalDto complaint,
+
+        @Schema(description = "Relevance of the complaint to the search, higher is more relevant", example = "2.47")
+        Double score
+) {}
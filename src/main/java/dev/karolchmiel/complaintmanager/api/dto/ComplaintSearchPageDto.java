@@ -0,0 +1,15 @@
+package dev.karolchmiel.complaintmanager.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Single page of complaints matching a search, most relevant first")
+public record ComplaintSearchPageDto(
+        @Schema(description = "Matching complaints on this page")
+        List<ComplaintSearchHitDto> results,
+
+        @Schema(description = "Page to pass as 'page' to fetch the next page, null if this is the last page",
+                example = "1")
+        Integer nextPage
+) {}
@@ -0,0 +1,13 @@
+package dev.karolchmiel.complaintmanager.api.dto;
+
+import com.neovisionaries.i18n.CountryCode;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Complaint statistics of a single complainant country")
+public record CountryStatsDto(
+        @Schema(description = "Country code of the complainants' location", example = "US")
+        CountryCode country,
+
+        @Schema(description = "Number of complaints made from the country", example = "340")
+        Long totalComplaints
+) {}
@@ -0,0 +1,15 @@
+package dev.karolchmiel.complaintmanager.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Complaint statistics of a single product")
+public record ProductStatsDto(
+        @Schema(description = "ID of the product", example = "1001")
+        Long productId,
+
+        @Schema(description = "Number of times the product has been complained about", example = "57")
+        Long totalComplaints,
+
+        @Schema(description = "Number of different complainants who complained about the product", example = "12")
+        Long distinctComplainants
+) {}
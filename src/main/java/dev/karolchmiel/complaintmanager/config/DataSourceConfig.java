@@ -0,0 +1,83 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+
+/**
+ * The primary database, configured with the {@code spring.datasource.*} properties as by Spring Boot, and the read
+ * replicas under {@code complaints.datasource.replicas}.
+ * <p>
+ * The data source used by JPA and JDBC takes a connection only once the first statement runs, which is when the
+ * read-only flag of a transaction is known: connections of read-only transactions are taken from the replicas by
+ * the {@link ReplicaRouter}, all others from the primary.
+ * <p>
+ * With {@code complaints.sharding.enabled=true} the shards take the place of this database, see
+ * {@link ShardingConfig}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "complaints.sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        final var dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (StringUtils.hasText(properties.getName())) {
+            dataSource.setPoolName(properties.getName());
+        }
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRouter replicaRouter(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                       ReplicaProperties properties,
+                                       MeterRegistry meterRegistry) {
+        final var replicas = new LinkedHashMap<String, DataSource>();
+        properties.replicas().forEach((name, replica) -> replicas.put(name, replicaDataSource(name, replica,
+                meterRegistry)));
+        return new ReplicaRouter(primaryDataSource, replicas, meterRegistry);
+    }
+
+    /**
+     * A replica that is down at startup does not fail it, the pool connects once the replica is up.
+     */
+    private static HikariDataSource replicaDataSource(String name, ReplicaProperties.Replica replica,
+                                                      MeterRegistry meterRegistry) {
+        final var config = new HikariConfig();
+        config.setPoolName("replica-" + name);
+        config.setJdbcUrl(replica.url());
+        config.setUsername(replica.username());
+        config.setPassword(replica.password());
+        config.setMaximumPoolSize(replica.maximumPoolSize());
+        config.setConnectionTimeout(replica.connectionTimeout().toMillis());
+        config.setReadOnly(true);
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return new HikariDataSource(config);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 ReplicaRouter replicaRouter) {
+        final var dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        if (replicaRouter.hasReplicas()) {
+            dataSource.setReadOnlyDataSource(replicaRouter.readOnlyDataSource());
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,37 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Limits of the complaint endpoints, see {@link dev.karolchmiel.complaintmanager.api.RateLimitFilter}.
+ *
+ * @param maxClients the maximum number of clients whose request rate is tracked per endpoint
+ * @param clientIdleTimeout how long the request rate of a client that sends no requests is tracked
+ * @param endpoints the limited endpoints by name, the name tagging their rejection metrics
+ */
+@ConfigurationProperties("complaints.rate-limit")
+public record RateLimitProperties(@DefaultValue("100000") int maxClients,
+                                  @DefaultValue("10m") Duration clientIdleTimeout,
+                                  @DefaultValue Map<String, Endpoint> endpoints) {
+
+    /**
+     * Limits of the requests matching an HTTP method and a path pattern. A request is subject to the limits of
+     * every endpoint it matches, so a pattern like {@code /complaints/**} sets limits across endpoints.
+     *
+     * @param method the HTTP method, or null for any method
+     * @param path the path pattern, e.g. {@code /complaints/{id}}
+     * @param requestsPerSecond the sustained requests per second allowed per client, 0 for no limit
+     * @param burst the number of requests a client may send at once on top of the sustained rate
+     * @param maxConcurrentRequests the number of requests processed at once across all clients, 0 for no limit
+     */
+    public record Endpoint(String method,
+                           String path,
+                           @DefaultValue("0") double requestsPerSecond,
+                           @DefaultValue("1") int burst,
+                           @DefaultValue("0") int maxConcurrentRequests) {
+    }
+}
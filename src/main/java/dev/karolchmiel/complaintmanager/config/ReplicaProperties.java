@@ -0,0 +1,45 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Read replicas of the database, see {@link ReplicaRouter}. Without replicas every connection is taken from the
+ * primary.
+ *
+ * @param replicas the replicas by name, the name tagging their metrics
+ * @param maxReplicationLag how far the replicas may lag behind the primary; for this long after a write, reads by
+ * the writing client are served by the primary and the written complaints are evicted from the cache once more
+ * @param maxTrackedClients the maximum number of clients whose last write is tracked
+ */
+@ConfigurationProperties("complaints.datasource")
+public record ReplicaProperties(@DefaultValue Map<String, Replica> replicas,
+                                @DefaultValue("5s") Duration maxReplicationLag,
+                                @DefaultValue("100000") int maxTrackedClients) {
+
+    /**
+     * @return how long data read from a replica may be older than the primary, zero without replicas
+     */
+    public Duration staleReadWindow() {
+        return replicas.isEmpty() ? Duration.ZERO : maxReplicationLag;
+    }
+
+    /**
+     * Connection settings of a replica.
+     *
+     * @param url the JDBC URL
+     * @param username the login username
+     * @param password the login password
+     * @param maximumPoolSize the maximum number of connections to the replica
+     * @param connectionTimeout how long to wait for a connection before the replica is considered down
+     */
+    public record Replica(String url,
+                          String username,
+                          String password,
+                          @DefaultValue("10") int maximumPoolSize,
+                          @DefaultValue("1s") Duration connectionTimeout) {
+    }
+}
@@ -0,0 +1,168 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes the connections of read-only transactions to the read replicas, round-robin over the replicas that are
+ * healthy. A replica that fails to hand out a connection is marked unhealthy and skipped until
+ * {@link #checkHealth()} finds it valid again, every {@code complaints.datasource.health-check-interval}
+ * milliseconds. The primary serves the connection when no replica is healthy, and for the requests that must
+ * read their own writes, see {@link #setPrimaryRequired(boolean)}.
+ * <p>
+ * Routed connections are counted in {@code complaint.datasource.connections}, tagged with the {@code target}
+ * replica or {@code primary}; {@code complaint.datasource.replica.healthy} is 1 for each healthy replica.
+ */
+public class ReplicaRouter implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaRouter.class);
+    private static final String PRIMARY = "primary";
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 1;
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Counter primaryCounter;
+    private final DataSource readOnlyDataSource = new AbstractDataSource() {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("Replica connections are only taken with their own login");
+        }
+    };
+
+    /**
+     * @param primary the data source of the primary database
+     * @param replicaDataSources the data sources of the replicas by name
+     * @param meterRegistry the registry of the routing metrics
+     */
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicaDataSources, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.primaryCounter = connectionCounter(meterRegistry, PRIMARY);
+        replicaDataSources.forEach((name, dataSource) -> {
+            final var replica = new Replica(name, dataSource, connectionCounter(meterRegistry, name));
+            replicas.add(replica);
+            Gauge.builder("complaint.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .description("Whether the replica serves read-only connections")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    private static Counter connectionCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("complaint.datasource.connections")
+                .description("Connections of read-only transactions by the database serving them")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Requires the connections taken by the current thread to come from the primary, for a client that must see
+     * its own writes before they have reached the replicas. Must be reset once the request is handled.
+     *
+     * @param required whether the connections must come from the primary
+     */
+    public static void setPrimaryRequired(boolean required) {
+        if (required) {
+            PRIMARY_REQUIRED.set(Boolean.TRUE);
+        } else {
+            PRIMARY_REQUIRED.remove();
+        }
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * @return the data source handing out the connections of read-only transactions
+     */
+    public DataSource readOnlyDataSource() {
+        return readOnlyDataSource;
+    }
+
+    private Connection route() throws SQLException {
+        if (PRIMARY_REQUIRED.get() == null) {
+            for (int attempt = 0; attempt < replicas.size(); attempt++) {
+                final var replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    final var connection = replica.dataSource.getConnection();
+                    replica.connectionCounter.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    LOG.warn("Replica {} failed to hand out a connection, routing around it until it recovers",
+                            replica.name, e);
+                    replica.healthy = false;
+                }
+            }
+        }
+        primaryCounter.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Validates a connection of every replica, returning the valid ones to the rotation and taking the others out.
+     */
+    @Scheduled(fixedDelayString = "${complaints.datasource.health-check-interval:5000}")
+    public void checkHealth() {
+        for (final var replica : replicas) {
+            final var healthy = isValid(replica);
+            if (healthy != replica.healthy) {
+                LOG.info("Replica {} is {}", replica.name, healthy ? "healthy again" : "unhealthy");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    private boolean isValid(Replica replica) {
+        try (final var connection = replica.dataSource.getConnection()) {
+            return connection.isValid(HEALTH_CHECK_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            LOG.debug("Health check of replica {} failed", replica.name, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (final var replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final Counter connectionCounter;
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource, Counter connectionCounter) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.connectionCounter = connectionCounter;
+        }
+    }
+}
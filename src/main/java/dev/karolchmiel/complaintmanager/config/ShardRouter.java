@@ -0,0 +1,181 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Places complaints on shards and runs work on them. A complaint lives on the shard chosen by a hash of its
+ * product ID, so all complaints of a product, their uniqueness constraint and the product's statistics are local
+ * to one shard. The shard is encoded in the top bits of the complaint ID, see {@link #shardOfComplaint(long)}, so
+ * a complaint is found by its ID without asking every shard.
+ * <p>
+ * Work is bound to a shard with {@link #onShard(int, Supplier)}: the connections it takes, and the transactions
+ * started in it, are routed to that shard. Without sharding there is a single shard 0 holding every complaint
+ * and the router adds nothing to the work.
+ */
+public class ShardRouter implements AutoCloseable {
+    /**
+     * Complaint IDs are the shard number shifted by this many bits plus a sequence number local to the shard.
+     */
+    public static final int SHARD_ID_SHIFT = 48;
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final int shardCount;
+    private final ExecutorService scatterExecutor;
+
+    /**
+     * @param shardCount the number of shards, 1 without sharding
+     */
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1 || shardCount > 1 << (Long.SIZE - 1 - SHARD_ID_SHIFT)) {
+            throw new IllegalArgumentException("Unsupported number of shards: " + shardCount);
+        }
+        this.shardCount = shardCount;
+        this.scatterExecutor = shardCount > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @param productId the ID of the product of a complaint
+     * @return the shard holding the complaints of the product
+     */
+    public int shardOfProduct(long productId) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        return (int) Math.floorMod(mix(productId), (long) shardCount);
+    }
+
+    /**
+     * @param complaintId the ID of a complaint
+     * @return the shard the ID was generated on, which is not an existing shard for IDs that were never generated
+     */
+    public static int shardOfComplaint(long complaintId) {
+        return (int) (complaintId >>> SHARD_ID_SHIFT);
+    }
+
+    /**
+     * @param shard the shard number
+     * @return the first complaint ID of the shard
+     */
+    public static long firstComplaintId(int shard) {
+        return (long) shard << SHARD_ID_SHIFT;
+    }
+
+    /**
+     * Splits values keyed by complaint ID by the shard of the complaints.
+     *
+     * @param valuesByComplaintId the values keyed by complaint ID
+     * @return the values of each shard with at least one complaint, by shard number
+     */
+    public <V> Map<Integer, Map<Long, V>> byComplaintShard(Map<Long, V> valuesByComplaintId) {
+        if (shardCount == 1) {
+            return Map.of(0, valuesByComplaintId);
+        }
+        final var byShard = new TreeMap<Integer, Map<Long, V>>();
+        valuesByComplaintId.forEach((complaintId, value) -> byShard
+                .computeIfAbsent(shardOfComplaint(complaintId), shard -> new HashMap<>())
+                .put(complaintId, value));
+        return byShard;
+    }
+
+    public boolean hasShard(int shard) {
+        return shard >= 0 && shard < shardCount;
+    }
+
+    /**
+     * @return the shard the current thread is bound to, 0 when it is not bound to any
+     */
+    public static int currentShard() {
+        final var shard = CURRENT_SHARD.get();
+        return shard == null ? 0 : shard;
+    }
+
+    /**
+     * Runs the work bound to a shard. It must not already be in a transaction, which would stay on its shard.
+     *
+     * @param shard the shard number
+     * @param work the work to run
+     * @return the result of the work
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (!hasShard(shard)) {
+            throw new IllegalArgumentException("No such shard: " + shard);
+        }
+        final var previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Runs the work on every shard in parallel, each on its own thread bound to the shard, and waits for all of
+     * them. Without sharding the work runs on the calling thread.
+     *
+     * @param work the work to run
+     * @return the results of the work by shard number
+     */
+    public <T> List<T> onEveryShard(Supplier<T> work) {
+        if (shardCount == 1) {
+            return Collections.singletonList(onShard(0, work));
+        }
+        final var futures = new ArrayList<Future<T>>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            final var target = shard;
+            futures.add(scatterExecutor.submit(() -> onShard(target, work)));
+        }
+        final var results = new ArrayList<T>(shardCount);
+        try {
+            for (final var future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to run on every shard", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Spreads sequential product IDs evenly over the shards.
+     */
+    private static long mix(long productId) {
+        var hash = productId * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    @Override
+    public void close() {
+        if (scatterExecutor != null) {
+            scatterExecutor.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Hands out connections of the shard the calling thread is bound to by {@link ShardRouter#onShard}. Connections
+ * taken outside of any shard, such as Hibernate's metadata lookups at startup, come from shard 0.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    private final List<DataSource> shards;
+
+    /**
+     * @param shards the data sources of the shards by shard number
+     */
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        final var targets = new HashMap<Object, Object>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouter.currentShard();
+    }
+
+    /**
+     * @return the data sources of the shards by shard number
+     */
+    public List<DataSource> shards() {
+        return shards;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (final var shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
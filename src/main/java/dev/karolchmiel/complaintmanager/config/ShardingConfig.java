@@ -0,0 +1,117 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * The {@link ShardRouter}, and with {@code complaints.sharding.enabled=true} the shards under
+ * {@code complaints.sharding.shards} in place of the {@code spring.datasource.*} database. Like the unsharded data
+ * source, the data source used by JPA and JDBC takes a connection only once the first statement runs, from the
+ * shard the thread is bound to at that point.
+ */
+@Configuration
+public class ShardingConfig {
+    /**
+     * Changelog parameter holding the first complaint ID of the shard being migrated.
+     */
+    public static final String FIRST_COMPLAINT_ID_PARAMETER = "complaint-first-id";
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties) {
+        return new ShardRouter(properties.enabled() ? properties.shards().size() : 1);
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "complaints.sharding.enabled", havingValue = "true")
+    static class ShardedDataSourceConfig {
+
+        @Bean
+        public ShardRoutingDataSource shardRoutingDataSource(ShardingProperties properties,
+                                                             ReplicaProperties replicaProperties,
+                                                             MeterRegistry meterRegistry) {
+            if (!replicaProperties.replicas().isEmpty()) {
+                throw new IllegalStateException("Read replicas are not supported together with sharding, "
+                        + "remove complaints.datasource.replicas or disable complaints.sharding");
+            }
+            final var shards = new ArrayList<DataSource>();
+            for (final var shard : properties.shards()) {
+                shards.add(shardDataSource(shards.size(), shard, meterRegistry));
+            }
+            return new ShardRoutingDataSource(shards);
+        }
+
+        private static HikariDataSource shardDataSource(int number, ShardingProperties.Shard shard,
+                                                        MeterRegistry meterRegistry) {
+            final var config = new HikariConfig();
+            config.setPoolName("shard-" + number);
+            config.setJdbcUrl(shard.url());
+            config.setUsername(shard.username());
+            config.setPassword(shard.password());
+            config.setMaximumPoolSize(shard.maximumPoolSize());
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            return new HikariDataSource(config);
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+            return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+        }
+
+        @Bean
+        public SpringLiquibase liquibase(ShardRoutingDataSource shardRoutingDataSource,
+                                         DataSource dataSource,
+                                         @Value("${spring.liquibase.change-log:classpath:/db/changelog/db.changelog-master.yaml}")
+                                         String changeLog) {
+            final var liquibase = new ShardedLiquibase(shardRoutingDataSource, dataSource);
+            liquibase.setChangeLog(changeLog);
+            return liquibase;
+        }
+    }
+
+    /**
+     * Migrates every shard with the same changelog, passing each the first complaint ID of the shard in the
+     * {@value #FIRST_COMPLAINT_ID_PARAMETER} parameter. Once done it reports the data source used by JPA as its
+     * own, so that Spring Boot knows the schema is managed and does not let Hibernate create it.
+     */
+    static class ShardedLiquibase extends SpringLiquibase {
+        private static final Logger LOG = LoggerFactory.getLogger(ShardedLiquibase.class);
+
+        private final ShardRoutingDataSource shardRoutingDataSource;
+        private final DataSource dataSource;
+
+        ShardedLiquibase(ShardRoutingDataSource shardRoutingDataSource, DataSource dataSource) {
+            this.shardRoutingDataSource = shardRoutingDataSource;
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public void afterPropertiesSet() throws LiquibaseException {
+            final var shards = shardRoutingDataSource.shards();
+            for (int shard = 0; shard < shards.size(); shard++) {
+                LOG.info("Migrating shard {}", shard);
+                setDataSource(shards.get(shard));
+                setChangeLogParameters(Map.of(FIRST_COMPLAINT_ID_PARAMETER,
+                        String.valueOf(ShardRouter.firstComplaintId(shard))));
+                super.afterPropertiesSet();
+            }
+            setDataSource(dataSource);
+        }
+    }
+}
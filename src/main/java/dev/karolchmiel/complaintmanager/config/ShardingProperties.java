@@ -0,0 +1,33 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Sharded storage of complaints, see {@link ShardRouter}. Without sharding the {@code spring.datasource.*} database
+ * holds every complaint.
+ *
+ * @param enabled whether complaints are stored on the shards instead of the {@code spring.datasource.*} database
+ * @param shards the shards, numbered by their position; the number of shards must not change once complaints are
+ * stored
+ */
+@ConfigurationProperties("complaints.sharding")
+public record ShardingProperties(@DefaultValue("false") boolean enabled,
+                                 @DefaultValue List<Shard> shards) {
+
+    /**
+     * Connection settings of a shard.
+     *
+     * @param url the JDBC URL
+     * @param username the login username
+     * @param password the login password
+     * @param maximumPoolSize the maximum number of connections to the shard
+     */
+    public record Shard(String url,
+                        String username,
+                        String password,
+                        @DefaultValue("10") int maximumPoolSize) {
+    }
+}
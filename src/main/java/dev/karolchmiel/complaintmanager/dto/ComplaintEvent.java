@@ -0,0 +1,36 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+/**
+ * A committed change of a complaint, as streamed to the subscribers of the complaint event feed.
+ * <p>
+ * Events are sequenced when they are published, after their transactions commit, so two changes of the same
+ * complaint committed by concurrent writers can be published in the opposite order. The version of the row after
+ * the change orders them: a consumer keeps, per complaint ID, the event with the highest version and ignores
+ * events with a lower one.
+ *
+ * @param sequence the position of the event in the feed, increasing by one per event
+ * @param type the kind of change
+ * @param complaint the complaint after the change with the version of its row; a content update carries only the
+ * ID and the new content
+ */
+public record ComplaintEvent(long sequence, Type type, VersionedComplaint complaint) {
+
+    public enum Type {
+        CREATED("created"),
+        INCREMENTED("incremented"),
+        CONTENT_UPDATED("content-updated");
+
+        private final String eventName;
+
+        Type(String eventName) {
+            this.eventName = eventName;
+        }
+
+        /**
+         * @return the name of the event in the event stream
+         */
+        public String eventName() {
+            return eventName;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Fields of a listed complaint that can be selected with {@code ?fields=}, with the column each is read from. The
+ * ID is always read, as it is the cursor of the next page.
+ */
+public enum ComplaintField {
+    PRODUCT_ID("productId", "PRODUCT_ID", Long.class),
+    CONTENT("content", "CONTENT", String.class),
+    CREATION_DATE("creationDate", "CREATION_DATE", LocalDateTime.class),
+    COMPLAINANT("complainant", "COMPLAINANT", String.class),
+    COMPLAINANT_COUNTRY("complainantCountry", "COMPLAINANT_COUNTRY", String.class),
+    COUNT("count", "COUNT", Integer.class);
+
+    public static final Set<ComplaintField> ALL = Collections.unmodifiableSet(EnumSet.allOf(ComplaintField.class));
+
+    private final String property;
+    private final String column;
+    private final Class<?> columnType;
+
+    ComplaintField(String property, String column, Class<?> columnType) {
+        this.property = property;
+        this.column = column;
+        this.columnType = columnType;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    public String column() {
+        return column;
+    }
+
+    public Class<?> columnType() {
+        return columnType;
+    }
+
+    /**
+     * @param property the name of the field in {@link dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto}
+     * @return the field with the given name, empty if there is none
+     */
+    public static Optional<ComplaintField> fromProperty(String property) {
+        return Arrays.stream(values())
+                .filter(field -> field.property.equals(property))
+                .findFirst();
+    }
+}
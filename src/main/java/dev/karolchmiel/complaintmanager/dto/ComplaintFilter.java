@@ -0,0 +1,24 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+import com.neovisionaries.i18n.CountryCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional conditions a listed complaint must match. Null conditions match every complaint.
+ *
+ * @param productId the ID of the product complained about
+ * @param complainantCountry the country of the complainant
+ * @param createdFrom the earliest creation date, inclusive
+ * @param createdTo the latest creation date, exclusive
+ */
+public record ComplaintFilter(Long productId,
+                              CountryCode complainantCountry,
+                              LocalDateTime createdFrom,
+                              LocalDateTime createdTo) {
+    public static final ComplaintFilter NONE = new ComplaintFilter(null, null, null, null);
+
+    public boolean isEmpty() {
+        return productId == null && complainantCountry == null && createdFrom == null && createdTo == null;
+    }
+}
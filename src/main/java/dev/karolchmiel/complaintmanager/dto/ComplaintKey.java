@@ -0,0 +1,7 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+/**
+ * The natural key of a complaint: a complainant has at most one complaint per product.
+ */
+public record ComplaintKey(long productId, String complainant) {
+}
@@ -0,0 +1,7 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+/**
+ * Projection of a complaint row to its ID and version, read without loading the complaint itself.
+ */
+public record ComplaintVersion(Long id, Long version) {
+}
@@ -0,0 +1,51 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * File formats complaints are exported in and imported from.
+ */
+public enum FileFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String fileExtension;
+
+    FileFormat(String mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String fileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * @param name the name of the format, case-insensitive
+     * @return the format with the given name, empty if there is none
+     */
+    public static Optional<FileFormat> fromName(String name) {
+        return Arrays.stream(values())
+                .filter(format -> format.name().equals(name.toUpperCase(Locale.ROOT)))
+                .findFirst();
+    }
+
+    /**
+     * @param mediaType the media type of a request body, possibly with parameters
+     * @return the format of the given media type, empty if there is none
+     */
+    public static Optional<FileFormat> fromMediaType(MediaType mediaType) {
+        return Arrays.stream(values())
+                .filter(format -> MediaType.parseMediaType(format.mediaType).equalsTypeAndSubtype(mediaType))
+                .findFirst();
+    }
+}
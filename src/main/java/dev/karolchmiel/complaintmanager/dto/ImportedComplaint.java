@@ -0,0 +1,18 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+
+/**
+ * A complaint read from an import file, not validated yet.
+ *
+ * @param productId the ID of the product complained about
+ * @param content the content of the complaint
+ * @param complainant the name of the complainant
+ * @param complainantCountry the ISO 3166-1 alpha-2 code of the complainant country, or null if unknown
+ */
+public record ImportedComplaint(Long productId, String content, String complainant, String complainantCountry) {
+
+    public ComplaintCreationDto toCreationDto() {
+        return new ComplaintCreationDto(productId, content, complainant);
+    }
+}
@@ -0,0 +1,11 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+/**
+ * Numbers of submitted complaints by outcome.
+ *
+ * @param created the number of complaints that created a new complaint
+ * @param incremented the number of complaints that incremented the count of a complaint
+ * @param invalid the number of complaints skipped because they failed validation
+ */
+public record SubmissionCounts(int created, int incremented, int invalid) {
+}
@@ -0,0 +1,20 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A complaint together with the version of its row, from which its ETag is derived.
+ */
+public record VersionedComplaint(ComplaintRetrievalDto complaint, long version) {
+    /**
+     * Builds the complaint from the columns of its row, for constructor expressions in queries.
+     */
+    public VersionedComplaint(Long id, Long productId, String content, LocalDateTime creationDate, String complainant,
+                              CountryCode complainantCountry, Integer count, Long version) {
+        this(new ComplaintRetrievalDto(id, productId, content, creationDate, complainant, complainantCountry, count),
+                version);
+    }
+}
@@ -0,0 +1,9 @@
+package dev.karolchmiel.complaintmanager.dto;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintPageDto;
+
+/**
+ * A page of complaints together with the version tag of the rows it was read from, from which its ETag is derived.
+ */
+public record VersionedComplaintPage(ComplaintPageDto page, String versionTag) {
+}
@@ -2,7 +2,11 @@ package dev.karolchmiel.complaintmanager.mapper;
 
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.api.dto.CountryStatsDto;
+import dev.karolchmiel.complaintmanager.api.dto.ProductStatsDto;
 import dev.karolchmiel.complaintmanager.model.Complaint;
+import dev.karolchmiel.complaintmanager.model.CountryStats;
+import dev.karolchmiel.complaintmanager.model.ProductStats;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
@@ -12,7 +16,12 @@ public interface ComplaintMapper {
     @Mapping(target = "creationDate", ignore = true)
     @Mapping(target = "complainantCountry", ignore = true)
     @Mapping(target = "count", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Complaint creationDtoToEntity(ComplaintCreationDto dto);
 
     ComplaintRetrievalDto entityToRetrievalDto(Complaint entity);
+
+    ProductStatsDto productStatsToDto(ProductStats stats);
+
+    CountryStatsDto countryStatsToDto(CountryStats stats);
 }
\ No newline at end of file
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 })
 public class Complaint {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @ShardedSequence(sequenceName = "COMPLAINT_SEQ", allocationSize = 50)
     @Column(name = "ID", nullable = false)
     private Long id;
 
@@ -34,6 +34,12 @@ public class Complaint {
     @Column(name = "COUNT", nullable = false)
     private Integer count;
 
+    /**
+     * Stamped by the database from {@code COMPLAINT_VERSION_SEQ} on every insert and change, never by Hibernate.
+     */
+    @Column(name = "VERSION", insertable = false, updatable = false)
+    private Long version;
+
     public void setId(Long id) {
         this.id = id;
     }
@@ -90,6 +96,14 @@ public class Complaint {
         this.count = count;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Complaint incrementCount() {
         this.count++;
         return this;
@@ -0,0 +1,10 @@
+package dev.karolchmiel.complaintmanager.model;
+
+/**
+ * A complaint matching a search, with its relevance score.
+ *
+ * @param complaintId the ID of the complaint
+ * @param score the relevance of the complaint, higher is more relevant
+ */
+public record ComplaintSearchHit(long complaintId, double score) {
+}
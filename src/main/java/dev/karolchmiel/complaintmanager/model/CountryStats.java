@@ -0,0 +1,12 @@
+package dev.karolchmiel.complaintmanager.model;
+
+import com.neovisionaries.i18n.CountryCode;
+
+/**
+ * Row of the {@code COUNTRY_STATS} summary table.
+ *
+ * @param country the complainant country
+ * @param totalComplaints the sum of the counts of the complaints from the country
+ */
+public record CountryStats(CountryCode country, long totalComplaints) {
+}
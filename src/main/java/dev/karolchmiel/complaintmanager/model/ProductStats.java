@@ -0,0 +1,11 @@
+package dev.karolchmiel.complaintmanager.model;
+
+/**
+ * Row of the {@code PRODUCT_STATS} summary table.
+ *
+ * @param productId the ID of the product
+ * @param totalComplaints the sum of the counts of the product's complaints
+ * @param distinctComplainants the number of complainants who complained about the product
+ */
+public record ProductStats(long productId, long totalComplaints, long distinctComplainants) {
+}
@@ -0,0 +1,28 @@
+package dev.karolchmiel.complaintmanager.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates IDs from a database sequence in blocks, like {@link jakarta.persistence.SequenceGenerator}, keeping a
+ * block per shard: each shard has its own sequence, and an ID allocated from one shard's sequence is only ever
+ * used on that shard.
+ */
+@IdGeneratorType(ShardedSequenceGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface ShardedSequence {
+    /**
+     * @return the name of the sequence on every shard
+     */
+    String sequenceName();
+
+    /**
+     * @return the number of IDs allocated per sequence value, which must match the increment of the sequence
+     */
+    int allocationSize() default 50;
+}
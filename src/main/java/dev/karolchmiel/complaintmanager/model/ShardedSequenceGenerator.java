@@ -0,0 +1,46 @@
+package dev.karolchmiel.complaintmanager.model;
+
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.lang.reflect.Member;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pooled sequence generator with a block of IDs per shard, see {@link ShardedSequence}. The sequence value is
+ * read on the connection of the current session, which belongs to the shard the session's transaction runs on.
+ */
+public class ShardedSequenceGenerator extends SequenceStyleGenerator {
+    private final ShardedSequence config;
+    private final Map<Integer, Optimizer> optimizers = new ConcurrentHashMap<>();
+
+    public ShardedSequenceGenerator(ShardedSequence config, Member member, CustomIdGeneratorCreationContext context) {
+        this.config = config;
+    }
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+        parameters.setProperty(SEQUENCE_PARAM, config.sequenceName());
+        parameters.setProperty(INCREMENT_PARAM, String.valueOf(config.allocationSize()));
+        parameters.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED.getExternalName());
+        super.configure(type, parameters, serviceRegistry);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        final var optimizer = optimizers.computeIfAbsent(ShardRouter.currentShard(), shard -> shard == 0
+                ? getOptimizer()
+                : OptimizerFactory.buildOptimizer(StandardOptimizerDescriptor.POOLED,
+                        getIdentifierType().getReturnedClass(), config.allocationSize(), -1));
+        return optimizer.generate(getDatabaseStructure().buildCallback(session));
+    }
+}
@@ -0,0 +1,43 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.dto.ComplaintKey;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Bulk write operations on complaints executed as JDBC batches, for paths that update many rows at once
+ * and would otherwise pay one round trip per row.
+ */
+public interface ComplaintBatchOperations {
+
+    /**
+     * Locks the complaints with exactly the given keys for update and returns their IDs. The keys are joined to
+     * the unique (product ID, complainant) index, so no other row is read or locked, and rows are locked in ID
+     * order, so that concurrent callers locking overlapping keys cannot deadlock.
+     *
+     * @param keys the keys of the complaints to lock
+     * @return the IDs of the existing complaints by key, in ID order
+     */
+    Map<ComplaintKey, Long> lockIdsByKey(Collection<ComplaintKey> keys);
+
+    /**
+     * Sets the complainant country of each given complaint in a single JDBC batch. Complaints that already
+     * have a country are left untouched. The counts of the updated complaints are added to the
+     * {@link ComplaintStatsRepository country statistics} in the same transaction.
+     *
+     * @param countriesByComplaintId the resolved country of each complaint, keyed by complaint ID
+     * @return the number of complaints whose country was set
+     */
+    int updateComplainantCountries(Map<Long, CountryCode> countriesByComplaintId);
+
+    /**
+     * Adds the given deltas to the counts of the given complaints in a single JDBC batch, and to the
+     * {@link ComplaintStatsRepository statistics} of their products and countries in the same transaction.
+     *
+     * @param deltasByComplaintId the amount to add to the count of each complaint, keyed by complaint ID
+     * @return the number of complaints whose count was updated
+     */
+    int incrementCounts(Map<Long, Integer> deltasByComplaintId);
+}
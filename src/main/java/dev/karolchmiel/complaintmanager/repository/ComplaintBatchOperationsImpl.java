@@ -0,0 +1,99 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.dto.ComplaintKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class ComplaintBatchOperationsImpl implements ComplaintBatchOperations {
+    private static final String LOCK_BY_KEY_SQL = """
+            SELECT c.ID, k.PRODUCT_ID, k.COMPLAINANT
+            FROM (VALUES %s) k (PRODUCT_ID, COMPLAINANT)
+            JOIN COMPLAINT c ON c.PRODUCT_ID = k.PRODUCT_ID AND c.COMPLAINANT = k.COMPLAINANT
+            ORDER BY c.ID FOR UPDATE""";
+    private static final String FIRST_KEY_ROW = "(CAST(? AS BIGINT), CAST(? AS VARCHAR(50)))";
+    private static final String UPDATE_COUNTRY_SQL = """
+            UPDATE COMPLAINT SET COMPLAINANT_COUNTRY = ?, VERSION = NEXT VALUE FOR COMPLAINT_VERSION_SEQ
+            WHERE ID = ? AND COMPLAINANT_COUNTRY IS NULL""";
+    private static final String INCREMENT_COUNT_SQL = """
+            UPDATE COMPLAINT SET COUNT = COUNT + ?, VERSION = NEXT VALUE FOR COMPLAINT_VERSION_SEQ
+            WHERE ID = ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ComplaintStatsRepository statsRepository;
+
+    ComplaintBatchOperationsImpl(JdbcTemplate jdbcTemplate, ComplaintStatsRepository statsRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.statsRepository = statsRepository;
+    }
+
+    @Override
+    @Transactional
+    public Map<ComplaintKey, Long> lockIdsByKey(Collection<ComplaintKey> keys) {
+        final var idsByKey = new LinkedHashMap<ComplaintKey, Long>();
+        if (keys.isEmpty()) {
+            return idsByKey;
+        }
+        final var arguments = new ArrayList<>(keys.size() * 2);
+        for (final var key : keys) {
+            arguments.add(key.productId());
+            arguments.add(key.complainant());
+        }
+        jdbcTemplate.query(lockByKeySql(keys.size()), resultSet -> {
+            idsByKey.put(new ComplaintKey(resultSet.getLong(2), resultSet.getString(3)), resultSet.getLong(1));
+        }, arguments.toArray());
+        return idsByKey;
+    }
+
+    @Override
+    @Transactional
+    public int updateComplainantCountries(Map<Long, CountryCode> countriesByComplaintId) {
+        if (countriesByComplaintId.isEmpty()) {
+            return 0;
+        }
+        final var complaintIds = new ArrayList<Long>(countriesByComplaintId.size());
+        final var arguments = new ArrayList<Object[]>(countriesByComplaintId.size());
+        countriesByComplaintId.forEach((complaintId, country) -> {
+            complaintIds.add(complaintId);
+            arguments.add(new Object[]{country.name(), complaintId});
+        });
+        final var updateCounts = jdbcTemplate.batchUpdate(UPDATE_COUNTRY_SQL, arguments);
+
+        final var updatedIds = new ArrayList<Long>(updateCounts.length);
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] > 0) {
+                updatedIds.add(complaintIds.get(i));
+            }
+        }
+        statsRepository.recordCountries(updatedIds);
+        return updatedIds.size();
+    }
+
+    @Override
+    @Transactional
+    public int incrementCounts(Map<Long, Integer> deltasByComplaintId) {
+        if (deltasByComplaintId.isEmpty()) {
+            return 0;
+        }
+        final var arguments = deltasByComplaintId.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        final int updated = sumUpdated(jdbcTemplate.batchUpdate(INCREMENT_COUNT_SQL, arguments));
+        statsRepository.recordIncrements(deltasByComplaintId);
+        return updated;
+    }
+
+    static String lockByKeySql(int keyCount) {
+        return LOCK_BY_KEY_SQL.formatted(FIRST_KEY_ROW + ", (?, ?)".repeat(keyCount - 1));
+    }
+
+    private static int sumUpdated(int[] updateCounts) {
+        return Arrays.stream(updateCounts).map(count -> Math.max(count, 0)).sum();
+    }
+}
@@ -0,0 +1,47 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+
+/**
+ * Reads all complaints through a forward-only, read-only cursor fetching {@code complaints.export.fetch-size} rows
+ * per round trip, handing each row to the caller as it arrives instead of collecting them.
+ */
+@Repository
+public class ComplaintExportRepository {
+    /**
+     * Columns of the rows passed to {@link #forEachComplaint}, in order.
+     */
+    public static final String COLUMNS =
+            "ID, PRODUCT_ID, CONTENT, CREATION_DATE, COMPLAINANT, COMPLAINANT_COUNTRY, COUNT";
+
+    private static final String SELECT_ALL_SQL = "SELECT " + COLUMNS + " FROM COMPLAINT ORDER BY ID";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ComplaintExportRepository(DataSource dataSource,
+                                     @Value("${complaints.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Streams every complaint, ordered by ID, to the handler. Must run in a transaction, so that drivers which only
+     * honour the fetch size without auto-commit stream the rows too.
+     *
+     * @param handler processes the current row of the result set
+     */
+    @Transactional(propagation = Propagation.MANDATORY, readOnly = true)
+    public void forEachComplaint(RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> connection.prepareStatement(
+                        SELECT_ALL_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY),
+                handler);
+    }
+}
@@ -0,0 +1,44 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import dev.karolchmiel.complaintmanager.dto.ComplaintField;
+import dev.karolchmiel.complaintmanager.dto.ComplaintFilter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintVersion;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keyset page queries over complaints matching a {@link ComplaintFilter}. Only the conditions that are set are
+ * added to the statement, so each filter is answered from an index that returns its rows in page order:
+ * <ul>
+ *     <li>{@code productId} - {@code IDX_COMPLAINT_PRODUCT_ID}</li>
+ *     <li>{@code complainantCountry} - {@code IDX_COMPLAINT_COUNTRY}</li>
+ *     <li>{@code createdFrom} and {@code createdTo} alone - {@code IDX_COMPLAINT_CREATION_DATE} for the lowest and
+ *     highest ID of the range, and the primary key between them</li>
+ * </ul>
+ */
+public interface ComplaintFilterQueries {
+
+    /**
+     * Reads only the ID, the version and the columns of the given fields, straight into DTOs without loading
+     * entities.
+     *
+     * @param filter the conditions the complaints must match
+     * @param fields the fields to read; the others are null in the returned DTOs
+     * @param id the ID to seek past
+     * @param limit the maximum number of complaints
+     * @return the matching complaints with their versions with an ID greater than the given one, ordered by ID
+     */
+    List<VersionedComplaint> findFilteredVersionedByIdGreaterThanOrderByIdAsc(ComplaintFilter filter,
+                                                                              Set<ComplaintField> fields, long id,
+                                                                              Limit limit);
+
+    /**
+     * The IDs and versions of the complaints {@link #findFilteredVersionedByIdGreaterThanOrderByIdAsc} would return,
+     * read without loading the complaints.
+     */
+    List<ComplaintVersion> findFilteredVersionsByIdGreaterThanOrderByIdAsc(ComplaintFilter filter, long id,
+                                                                           Limit limit);
+}
@@ -0,0 +1,150 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.dto.ComplaintField;
+import dev.karolchmiel.complaintmanager.dto.ComplaintFilter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintVersion;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class ComplaintFilterQueriesImpl implements ComplaintFilterQueries {
+    private final EntityManager entityManager;
+
+    ComplaintFilterQueriesImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<VersionedComplaint> findFilteredVersionedByIdGreaterThanOrderByIdAsc(ComplaintFilter filter,
+                                                                                     Set<ComplaintField> fields,
+                                                                                     long id, Limit limit) {
+        final var selected = Arrays.stream(ComplaintField.values()).filter(fields::contains).toList();
+        final var columns = new StringBuilder("ID, VERSION");
+        selected.forEach(field -> columns.append(", ").append(field.column()));
+        final NativeQuery<?> query = entityManager.createNativeQuery(filteredPageSql(filter, columns.toString()))
+                .unwrap(NativeQuery.class);
+        query.addScalar("ID", Long.class);
+        query.addScalar("VERSION", Long.class);
+        selected.forEach(field -> query.addScalar(field.column(), field.columnType()));
+
+        final List<Object[]> rows = bind(query, filter, id, limit).getResultList();
+        return rows.stream()
+                .map(row -> new VersionedComplaint(toDto(selected, row), (Long) row[1]))
+                .toList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ComplaintVersion> findFilteredVersionsByIdGreaterThanOrderByIdAsc(ComplaintFilter filter, long id,
+                                                                                  Limit limit) {
+        final var query = entityManager.createNativeQuery(filteredPageSql(filter, "ID, VERSION"));
+        final List<Object[]> rows = bind(query, filter, id, limit).getResultList();
+        return rows.stream()
+                .map(row -> new ComplaintVersion(((Number) row[0]).longValue(), ((Number) row[1]).longValue()))
+                .toList();
+    }
+
+    private static ComplaintRetrievalDto toDto(List<ComplaintField> selected, Object[] row) {
+        final var values = new Object[ComplaintField.values().length];
+        for (int i = 0; i < selected.size(); i++) {
+            values[selected.get(i).ordinal()] = row[i + 2];
+        }
+        final var country = (String) values[ComplaintField.COMPLAINANT_COUNTRY.ordinal()];
+        return new ComplaintRetrievalDto(
+                (Long) row[0],
+                (Long) values[ComplaintField.PRODUCT_ID.ordinal()],
+                (String) values[ComplaintField.CONTENT.ordinal()],
+                (LocalDateTime) values[ComplaintField.CREATION_DATE.ordinal()],
+                (String) values[ComplaintField.COMPLAINANT.ordinal()],
+                country == null ? null : CountryCode.valueOf(country),
+                (Integer) values[ComplaintField.COUNT.ordinal()]);
+    }
+
+    private static Query bind(Query query, ComplaintFilter filter, long id, Limit limit) {
+        parameters(filter, id).forEach(query::setParameter);
+        if (limit.isLimited()) {
+            query.setMaxResults(limit.max());
+        }
+        return query;
+    }
+
+    /**
+     * Builds the page statement with a named parameter for every condition of the filter that is set, see
+     * {@link #parameters}. Every page must be read in index order, so that it seeks to the cursor and stops after
+     * the page instead of sorting everything after the cursor:
+     * <ul>
+     *     <li>with an equality filter it is ordered by the columns of the filter's index, the filter column and
+     *     ID, which is the ID order as the filter column is constant; H2 only skips the sort for an
+     *     {@code ORDER BY} over the leading columns of the index,</li>
+     *     <li>a creation date range alone is read in primary key order between the lowest and the highest ID of
+     *     the range, both looked up in {@code IDX_COMPLAINT_CREATION_DATE}, so the walk starts at the range instead
+     *     of at the start of the table and ends with it instead of at the end.</li>
+     * </ul>
+     */
+    static String filteredPageSql(ComplaintFilter filter, String columns) {
+        final var sql = new StringBuilder("SELECT ").append(columns).append(" FROM COMPLAINT WHERE ID > :id");
+        if (filter.productId() != null) {
+            sql.append(" AND PRODUCT_ID = :productId");
+        }
+        if (filter.complainantCountry() != null) {
+            sql.append(" AND COMPLAINANT_COUNTRY = :complainantCountry");
+        }
+        final var dateRange = dateRangeCondition(filter);
+        if (!dateRange.isEmpty()) {
+            if (filter.productId() == null && filter.complainantCountry() == null) {
+                sql.append(" AND ID >= (SELECT MIN(ID) FROM COMPLAINT WHERE ").append(dateRange).append(')')
+                        .append(" AND ID <= (SELECT MAX(ID) FROM COMPLAINT WHERE ").append(dateRange).append(')');
+            }
+            sql.append(" AND ").append(dateRange);
+        }
+        if (filter.productId() != null) {
+            sql.append(" ORDER BY PRODUCT_ID, ID");
+        } else if (filter.complainantCountry() != null) {
+            sql.append(" ORDER BY COMPLAINANT_COUNTRY, ID");
+        } else {
+            sql.append(" ORDER BY ID");
+        }
+        return sql.toString();
+    }
+
+    private static String dateRangeCondition(ComplaintFilter filter) {
+        if (filter.createdFrom() != null && filter.createdTo() != null) {
+            return "CREATION_DATE >= :createdFrom AND CREATION_DATE < :createdTo";
+        } else if (filter.createdFrom() != null) {
+            return "CREATION_DATE >= :createdFrom";
+        } else if (filter.createdTo() != null) {
+            return "CREATION_DATE < :createdTo";
+        }
+        return "";
+    }
+
+    static Map<String, Object> parameters(ComplaintFilter filter, long id) {
+        final var parameters = new LinkedHashMap<String, Object>();
+        parameters.put("id", id);
+        if (filter.productId() != null) {
+            parameters.put("productId", filter.productId());
+        }
+        if (filter.complainantCountry() != null) {
+            parameters.put("complainantCountry", filter.complainantCountry().name());
+        }
+        if (filter.createdFrom() != null) {
+            parameters.put("createdFrom", filter.createdFrom());
+        }
+        if (filter.createdTo() != null) {
+            parameters.put("createdTo", filter.createdTo());
+        }
+        return parameters;
+    }
+}
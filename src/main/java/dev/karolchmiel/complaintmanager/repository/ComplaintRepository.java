@@ -1,6 +1,9 @@
 package dev.karolchmiel.complaintmanager.repository;
 
+import dev.karolchmiel.complaintmanager.dto.ComplaintVersion;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
 import dev.karolchmiel.complaintmanager.model.Complaint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,14 +11,89 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ComplaintRepository extends JpaRepository<Complaint, Long> {
+public interface ComplaintRepository extends JpaRepository<Complaint, Long>, ComplaintBatchOperations,
+        ComplaintFilterQueries {
     Optional<Complaint> findByProductIdAndComplainant(long productId, String complainant);
 
+    /**
+     * Keyset page query: seeks past the given ID on the primary key index instead of
+     * skipping rows with an offset, so the cost of a page does not depend on its position.
+     * Rows are read straight into DTOs with their versions, without entities for the persistence context to hydrate
+     * and track.
+     */
+    @Query("""
+            SELECT new dev.karolchmiel.complaintmanager.dto.VersionedComplaint(c.id, c.productId, c.content,
+                c.creationDate, c.complainant, c.complainantCountry, c.count, c.version)
+            FROM Complaint c WHERE c.id > :id ORDER BY c.id
+            """)
+    List<VersionedComplaint> findVersionedPageByIdGreaterThanOrderByIdAsc(@Param("id") long id, Limit limit);
+
+    /**
+     * A complaint with its version, read straight into a DTO without loading the entity.
+     */
+    @Query("""
+            SELECT new dev.karolchmiel.complaintmanager.dto.VersionedComplaint(c.id, c.productId, c.content,
+                c.creationDate, c.complainant, c.complainantCountry, c.count, c.version)
+            FROM Complaint c WHERE c.id = :complaintId
+            """)
+    Optional<VersionedComplaint> findVersionedById(@Param("complaintId") long complaintId);
+
+    /**
+     * The complaints with the given IDs with their versions, read straight into DTOs without loading the entities.
+     */
+    @Query("""
+            SELECT new dev.karolchmiel.complaintmanager.dto.VersionedComplaint(c.id, c.productId, c.content,
+                c.creationDate, c.complainant, c.complainantCountry, c.count, c.version)
+            FROM Complaint c WHERE c.id IN :complaintIds
+            """)
+    List<VersionedComplaint> findVersionedByIdIn(@Param("complaintIds") Collection<Long> complaintIds);
+
+    /**
+     * The IDs and versions of the complaints on a keyset page, read without loading the complaints.
+     */
+    List<ComplaintVersion> findVersionsByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+    @Query("SELECT c.version FROM Complaint c WHERE c.id = :complaintId")
+    Optional<Long> findVersionById(@Param("complaintId") long complaintId);
+
+    /**
+     * Inserts a new complaint with a count of one, or increments the count of the complaint with the same
+     * product ID and complainant, in a single statement, and returns the resulting row. Increments are
+     * applied under the row lock, so concurrent duplicates are never lost. When two first submissions
+     * of the same key race, the loser fails on {@code UNIQUENESS_CONSTRAINT} and can simply be retried,
+     * at which point it takes the increment branch.
+     * <p>
+     * The returned entity is read from the statement result; it must not be called in a transaction that
+     * has already loaded the same complaint into the persistence context.
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            SELECT * FROM FINAL TABLE (
+                MERGE INTO COMPLAINT c
+                USING (VALUES (CAST(:productId AS BIGINT), CAST(:complainant AS VARCHAR(50)))) s (PRODUCT_ID, COMPLAINANT)
+                ON c.PRODUCT_ID = s.PRODUCT_ID AND c.COMPLAINANT = s.COMPLAINANT
+                WHEN MATCHED THEN UPDATE SET COUNT = c.COUNT + 1, VERSION = NEXT VALUE FOR COMPLAINT_VERSION_SEQ
+                WHEN NOT MATCHED THEN INSERT (PRODUCT_ID, CONTENT, CREATION_DATE, COMPLAINANT, COUNT)
+                    VALUES (s.PRODUCT_ID, :content, :creationDate, s.COMPLAINANT, 1)
+            )
+            """)
+    Complaint upsertIncrementingCount(@Param("productId") long productId,
+                                      @Param("content") String content,
+                                      @Param("complainant") String complainant,
+                                      @Param("creationDate") LocalDateTime creationDate);
+
     @Transactional
     @Modifying
-    @Query("UPDATE Complaint c SET c.content = :content WHERE c.id = :complaintId")
+    @Query(nativeQuery = true, value = """
+            UPDATE COMPLAINT SET CONTENT = :content, VERSION = NEXT VALUE FOR COMPLAINT_VERSION_SEQ,
+                CONTENT_VERSION = NEXT VALUE FOR COMPLAINT_VERSION_SEQ
+            WHERE ID = :complaintId
+            """)
     int updateComplaintContent(@Param("complaintId") long complaintId, @Param("content") String content);
 }
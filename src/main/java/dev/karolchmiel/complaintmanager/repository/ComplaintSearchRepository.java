@@ -0,0 +1,155 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import dev.karolchmiel.complaintmanager.model.ComplaintSearchHit;
+import dev.karolchmiel.complaintmanager.util.ContentTokenizer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Inverted index of complaint content in the {@code COMPLAINT_TERM} table, holding the number of occurrences of
+ * every {@link ContentTokenizer term} in every complaint. Every write of complaint content must be
+ * {@linkplain #index(Map) indexed} in the transaction that makes it, so the index commits or rolls back together
+ * with the content.
+ */
+@Repository
+public class ComplaintSearchRepository {
+    private static final String DELETE_TERMS_SQL = "DELETE FROM COMPLAINT_TERM WHERE COMPLAINT_ID = ANY(?)";
+    private static final String INSERT_TERM_SQL =
+            "INSERT INTO COMPLAINT_TERM (TERM, COMPLAINT_ID, OCCURRENCES) VALUES (?, ?, ?)";
+    private static final String SELECT_DOCUMENT_FREQUENCIES_SQL =
+            "SELECT TERM, COUNT(*) FROM COMPLAINT_TERM WHERE TERM = ANY(?) GROUP BY TERM";
+    private static final String SELECT_CONTENT_FOR_REINDEX_SQL = """
+            SELECT ID, CONTENT FROM COMPLAINT WHERE ID > ? AND CONTENT_VERSION > ?
+            ORDER BY ID FETCH FIRST ? ROWS ONLY FOR UPDATE""";
+    private static final String SAVE_INDEXED_VERSION_SQL = """
+            MERGE INTO COMPLAINT_SEARCH_STATE s USING (VALUES (1, CAST(? AS BIGINT))) v (ID, INDEXED_VERSION)
+            ON s.ID = v.ID
+            WHEN MATCHED THEN UPDATE SET INDEXED_VERSION = v.INDEXED_VERSION
+            WHEN NOT MATCHED THEN INSERT (ID, INDEXED_VERSION) VALUES (v.ID, v.INDEXED_VERSION)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ComplaintSearchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Replaces the indexed terms of the given complaints with the terms of their new content.
+     *
+     * @param contentByComplaintId the content of every written complaint, keyed by complaint ID
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void index(Map<Long, String> contentByComplaintId) {
+        if (contentByComplaintId.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(DELETE_TERMS_SQL, (Object) contentByComplaintId.keySet().toArray(Long[]::new));
+        final var arguments = new ArrayList<Object[]>();
+        contentByComplaintId.forEach((complaintId, content) -> ContentTokenizer.termFrequencies(content)
+                .forEach((term, occurrences) -> arguments.add(new Object[]{term, complaintId, occurrences})));
+        jdbcTemplate.batchUpdate(INSERT_TERM_SQL, arguments);
+    }
+
+    /**
+     * Ranks the complaints containing any of the given terms by the sum of the occurrences of each term in the
+     * complaint times the weight of the term.
+     *
+     * @param weightsByTerm the weight of every searched term
+     * @param offset the number of best matches to skip
+     * @param limit the maximum number of matches to return
+     * @return the matching complaints, best match first and by ID among equal scores
+     */
+    public List<ComplaintSearchHit> search(Map<String, Double> weightsByTerm, long offset, int limit) {
+        if (weightsByTerm.isEmpty()) {
+            return List.of();
+        }
+        final var weights = String.join(", ",
+                weightsByTerm.keySet().stream().map(term -> "(CAST(? AS VARCHAR(40)), CAST(? AS DOUBLE PRECISION))")
+                        .toList());
+        final var arguments = new ArrayList<>();
+        weightsByTerm.forEach((term, weight) -> {
+            arguments.add(term);
+            arguments.add(weight);
+        });
+        arguments.add(offset);
+        arguments.add(limit);
+        return jdbcTemplate.query("""
+                        SELECT t.COMPLAINT_ID, SUM(t.OCCURRENCES * w.WEIGHT) AS SCORE
+                        FROM COMPLAINT_TERM t JOIN (VALUES %s) w (TERM, WEIGHT) ON t.TERM = w.TERM
+                        GROUP BY t.COMPLAINT_ID
+                        ORDER BY SCORE DESC, t.COMPLAINT_ID
+                        OFFSET ? ROWS FETCH NEXT ? ROWS ONLY""".formatted(weights),
+                (rs, row) -> new ComplaintSearchHit(rs.getLong(1), rs.getDouble(2)),
+                arguments.toArray());
+    }
+
+    /**
+     * @param terms the terms to count
+     * @return the number of complaints containing each term, terms without complaints are left out
+     */
+    public Map<String, Long> findDocumentFrequencies(Collection<String> terms) {
+        final var frequencies = new HashMap<String, Long>();
+        if (!terms.isEmpty()) {
+            jdbcTemplate.query(SELECT_DOCUMENT_FREQUENCIES_SQL,
+                    rs -> {
+                        frequencies.put(rs.getString(1), rs.getLong(2));
+                    },
+                    (Object) terms.toArray(String[]::new));
+        }
+        return frequencies;
+    }
+
+    public long countComplaints() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM COMPLAINT", Long.class);
+    }
+
+    /**
+     * @return the highest content version of any complaint; count and country changes do not raise it
+     */
+    public long findMaxContentVersion() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(CONTENT_VERSION), 0) FROM COMPLAINT", Long.class);
+    }
+
+    /**
+     * @return the content version up to which every complaint is known to be indexed, empty if the index has
+     * never been built
+     */
+    public Optional<Long> findIndexedVersion() {
+        return jdbcTemplate.queryForList("SELECT INDEXED_VERSION FROM COMPLAINT_SEARCH_STATE WHERE ID = 1", Long.class)
+                .stream().findFirst();
+    }
+
+    public void saveIndexedVersion(long version) {
+        jdbcTemplate.update(SAVE_INDEXED_VERSION_SQL, version);
+    }
+
+    /**
+     * Locks and reindexes the next complaints, by ID, whose content was written after the given content version.
+     *
+     * @param id the ID to continue after
+     * @param version the content version above which complaints are reindexed
+     * @param limit the maximum number of complaints to reindex
+     * @return the IDs of the reindexed complaints, empty when there are none left
+     */
+    @Transactional
+    public List<Long> reindexAfter(long id, long version, int limit) {
+        final var contentByComplaintId = new LinkedHashMap<Long, String>();
+        jdbcTemplate.query(SELECT_CONTENT_FOR_REINDEX_SQL,
+                rs -> {
+                    contentByComplaintId.put(rs.getLong(1), rs.getString(2));
+                },
+                id, version, limit);
+        index(contentByComplaintId);
+        return List.copyOf(contentByComplaintId.keySet());
+    }
+}
@@ -0,0 +1,170 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.model.Complaint;
+import dev.karolchmiel.complaintmanager.model.CountryStats;
+import dev.karolchmiel.complaintmanager.model.ProductStats;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Per-product and per-country complaint statistics, kept in the {@code PRODUCT_STATS} and {@code COUNTRY_STATS}
+ * summary tables. Every change of complaint counts or countries must be recorded here in the transaction that
+ * makes it, after the complaint rows were written, so the statistics commit or roll back together with the
+ * complaints. Summary rows are always updated in key order, so concurrent transactions cannot deadlock on them.
+ */
+@Repository
+public class ComplaintStatsRepository {
+    private static final String ADD_PRODUCT_STATS_SQL = """
+            MERGE INTO PRODUCT_STATS s
+            USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT))) d (PRODUCT_ID, COMPLAINTS, COMPLAINANTS)
+            ON s.PRODUCT_ID = d.PRODUCT_ID
+            WHEN MATCHED THEN UPDATE SET TOTAL_COMPLAINTS = s.TOTAL_COMPLAINTS + d.COMPLAINTS,
+                DISTINCT_COMPLAINANTS = s.DISTINCT_COMPLAINANTS + d.COMPLAINANTS
+            WHEN NOT MATCHED THEN INSERT (PRODUCT_ID, TOTAL_COMPLAINTS, DISTINCT_COMPLAINANTS)
+                VALUES (d.PRODUCT_ID, d.COMPLAINTS, d.COMPLAINANTS)""";
+    private static final String ADD_COUNTRY_STATS_SQL = """
+            MERGE INTO COUNTRY_STATS s
+            USING (VALUES (CAST(? AS CHAR(2)), CAST(? AS BIGINT))) d (COUNTRY, COMPLAINTS)
+            ON s.COUNTRY = d.COUNTRY
+            WHEN MATCHED THEN UPDATE SET TOTAL_COMPLAINTS = s.TOTAL_COMPLAINTS + d.COMPLAINTS
+            WHEN NOT MATCHED THEN INSERT (COUNTRY, TOTAL_COMPLAINTS) VALUES (d.COUNTRY, d.COMPLAINTS)""";
+    private static final String SELECT_PRODUCT_AND_COUNTRY_SQL =
+            "SELECT ID, PRODUCT_ID, COMPLAINANT_COUNTRY FROM COMPLAINT WHERE ID = ANY(?)";
+    private static final String SELECT_COUNTRY_TOTALS_SQL = """
+            SELECT COMPLAINANT_COUNTRY, SUM(COUNT) FROM COMPLAINT
+            WHERE ID = ANY(?) AND COMPLAINANT_COUNTRY IS NOT NULL
+            GROUP BY COMPLAINANT_COUNTRY""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ComplaintStatsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<ProductStats> findProductStats(long productId) {
+        return jdbcTemplate.query(
+                "SELECT PRODUCT_ID, TOTAL_COMPLAINTS, DISTINCT_COMPLAINANTS FROM PRODUCT_STATS WHERE PRODUCT_ID = ?",
+                (rs, row) -> new ProductStats(rs.getLong(1), rs.getLong(2), rs.getLong(3)),
+                productId).stream().findFirst();
+    }
+
+    /**
+     * @return the statistics of every complainant country, most complaints first
+     */
+    public List<CountryStats> findCountryStats() {
+        return jdbcTemplate.query(
+                "SELECT COUNTRY, TOTAL_COMPLAINTS FROM COUNTRY_STATS ORDER BY TOTAL_COMPLAINTS DESC, COUNTRY",
+                (rs, row) -> new CountryStats(CountryCode.valueOf(rs.getString(1)), rs.getLong(2)));
+    }
+
+    /**
+     * Records newly inserted complaints: each adds its count and one complainant to its product, and its count to
+     * its country if it already has one.
+     *
+     * @param complaints the inserted complaints
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordNewComplaints(Collection<Complaint> complaints) {
+        final var products = new TreeMap<Long, ProductDelta>();
+        final var countries = new TreeMap<CountryCode, Long>();
+        for (final var complaint : complaints) {
+            products.merge(complaint.getProductId(), new ProductDelta(complaint.getCount(), 1), ProductDelta::plus);
+            if (complaint.getComplainantCountry() != null) {
+                countries.merge(complaint.getComplainantCountry(), (long) complaint.getCount(), Long::sum);
+            }
+        }
+        addToProductStats(products);
+        addToCountryStats(countries);
+    }
+
+    /**
+     * Records a single submission of an existing complaint, whose count has been incremented by one.
+     *
+     * @param complaint the complaint as written
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordIncrement(Complaint complaint) {
+        addToProductStats(Map.of(complaint.getProductId(), new ProductDelta(1, 0)));
+        if (complaint.getComplainantCountry() != null) {
+            addToCountryStats(Map.of(complaint.getComplainantCountry(), 1L));
+        }
+    }
+
+    /**
+     * Records increments of the counts of existing complaints. The complaints' products and countries are read
+     * from the rows the increments locked.
+     *
+     * @param deltasByComplaintId the amount added to the count of each complaint, keyed by complaint ID
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordIncrements(Map<Long, Integer> deltasByComplaintId) {
+        if (deltasByComplaintId.isEmpty()) {
+            return;
+        }
+        final var products = new TreeMap<Long, ProductDelta>();
+        final var countries = new TreeMap<CountryCode, Long>();
+        jdbcTemplate.query(SELECT_PRODUCT_AND_COUNTRY_SQL, rs -> {
+            final long delta = deltasByComplaintId.get(rs.getLong(1));
+            products.merge(rs.getLong(2), new ProductDelta(delta, 0), ProductDelta::plus);
+            final var country = rs.getString(3);
+            if (country != null) {
+                countries.merge(CountryCode.valueOf(country), delta, Long::sum);
+            }
+        }, (Object) deltasByComplaintId.keySet().toArray(Long[]::new));
+        addToProductStats(products);
+        addToCountryStats(countries);
+    }
+
+    /**
+     * Records complaints whose country has just been set: their counts are added to their countries.
+     *
+     * @param complaintIds the IDs of the complaints that had no country before
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCountries(Collection<Long> complaintIds) {
+        if (complaintIds.isEmpty()) {
+            return;
+        }
+        final var countries = new TreeMap<CountryCode, Long>();
+        jdbcTemplate.query(SELECT_COUNTRY_TOTALS_SQL,
+                rs -> {
+                    countries.put(CountryCode.valueOf(rs.getString(1)), rs.getLong(2));
+                },
+                (Object) complaintIds.toArray(Long[]::new));
+        addToCountryStats(countries);
+    }
+
+    private void addToProductStats(Map<Long, ProductDelta> deltasByProductId) {
+        if (deltasByProductId.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(ADD_PRODUCT_STATS_SQL, deltasByProductId.entrySet().stream()
+                .map(entry -> new Object[]{entry.getKey(), entry.getValue().complaints(),
+                        entry.getValue().complainants()})
+                .toList());
+    }
+
+    private void addToCountryStats(Map<CountryCode, Long> complaintsByCountry) {
+        if (complaintsByCountry.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(ADD_COUNTRY_STATS_SQL, complaintsByCountry.entrySet().stream()
+                .map(entry -> new Object[]{entry.getKey().name(), entry.getValue()})
+                .toList());
+    }
+
+    private record ProductDelta(long complaints, long complainants) {
+        ProductDelta plus(ProductDelta other) {
+            return new ProductDelta(complaints + other.complaints, complainants + other.complainants);
+        }
+    }
+}
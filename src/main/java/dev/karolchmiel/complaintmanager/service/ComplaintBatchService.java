@@ -0,0 +1,321 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchItemResultDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchItemResultDto.Status;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchResultDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintEvent;
+import dev.karolchmiel.complaintmanager.dto.ComplaintKey;
+import dev.karolchmiel.complaintmanager.dto.ImportedComplaint;
+import dev.karolchmiel.complaintmanager.dto.SubmissionCounts;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import dev.karolchmiel.complaintmanager.model.Complaint;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintSearchRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintStatsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+@Service
+public class ComplaintBatchService {
+    private static final Logger LOG = LoggerFactory.getLogger(ComplaintBatchService.class);
+
+    private final ComplaintRepository complaintRepository;
+    private final ComplaintStatsRepository statsRepository;
+    private final ComplaintSearchRepository searchRepository;
+    private final ComplaintMapper complaintMapper;
+    private final CountryEnrichmentService countryEnrichmentService;
+    private final Optional<ComplaintCountAggregator> countAggregator;
+    private final ComplaintCache complaintCache;
+    private final ShardRouter shardRouter;
+    private final ComplaintEventFeed eventFeed;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Timer batchTimer;
+    private final Map<Status, Counter> submissionCounters = new EnumMap<>(Status.class);
+
+    public ComplaintBatchService(ComplaintRepository complaintRepository,
+                                 ComplaintStatsRepository statsRepository,
+                                 ComplaintSearchRepository searchRepository,
+                                 ComplaintMapper complaintMapper,
+                                 CountryEnrichmentService countryEnrichmentService,
+                                 Optional<ComplaintCountAggregator> countAggregator,
+                                 ComplaintCache complaintCache,
+                                 ShardRouter shardRouter,
+                                 ComplaintEventFeed eventFeed,
+                                 Validator validator,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${complaints.batch.chunk-size:1000}") int chunkSize) {
+        this.complaintRepository = complaintRepository;
+        this.statsRepository = statsRepository;
+        this.searchRepository = searchRepository;
+        this.complaintMapper = complaintMapper;
+        this.countryEnrichmentService = countryEnrichmentService;
+        this.countAggregator = countAggregator;
+        this.complaintCache = complaintCache;
+        this.shardRouter = shardRouter;
+        this.eventFeed = eventFeed;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.batchTimer = ComplaintMetrics.operationTimer(meterRegistry, "batch");
+        for (final var status : Status.values()) {
+            submissionCounters.put(status,
+                    ComplaintMetrics.submissionCounter(meterRegistry, status.name().toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Adds a batch of complaints with the same semantics as submitting them one by one, in far fewer statements.
+     * <p>
+     * Each item is validated on its own and invalid items are skipped. Valid items with the same product ID and
+     * complainant are merged, so each distinct complaint is written once. Distinct complaints are processed in
+     * chunks of {@code complaints.batch.chunk-size}, each in its own transaction per shard. A chunk locks the complaints
+     * that already exist, increments them with one batched update and creates the rest with batched inserts,
+     * updating the product and country statistics and the search index in the same transaction.
+     * A new complaint takes the content of its first item, and is queued for background country enrichment.
+     * Once a chunk is committed on a shard, each of its distinct complaints on that shard is published to the
+     * {@link ComplaintEventFeed} as created or incremented.
+     *
+     * @param dtos the complaints to add, possibly containing {@code null} items
+     * @param remoteAddr the IP address of the submitter, used to determine the complainant country of new complaints
+     * @return the outcome of every item, in submission order
+     */
+    public ComplaintBatchResultDto addBatch(List<ComplaintCreationDto> dtos, String remoteAddr) {
+        LOG.info("Processing batch of {} complaints", dtos.size());
+        return batchTimer.record(() -> processBatch(dtos, remoteAddr));
+    }
+
+    private ComplaintBatchResultDto processBatch(List<ComplaintCreationDto> dtos, String remoteAddr) {
+        final var results = new ComplaintBatchItemResultDto[dtos.size()];
+        final var groups = new LinkedHashMap<ComplaintKey, BatchGroup>();
+        for (int i = 0; i < dtos.size(); i++) {
+            final var dto = dtos.get(i);
+            final var errors = validate(dto);
+            if (errors.isEmpty()) {
+                groups.computeIfAbsent(new ComplaintKey(dto.productId(), dto.complainant()),
+                                key -> new BatchGroup(dto, null))
+                        .indexes.add(i);
+            } else {
+                results[i] = new ComplaintBatchItemResultDto(i, Status.INVALID, null, errors);
+            }
+        }
+
+        final var distinct = new ArrayList<>(groups.values());
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            final var chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+            persistChunk(chunk, remoteAddr);
+            chunk.forEach(group -> group.fillResults(results));
+        }
+
+        final var counts = new EnumMap<Status, Integer>(Status.class);
+        for (final var result : results) {
+            counts.merge(result.status(), 1, Integer::sum);
+        }
+        counts.forEach((status, count) -> submissionCounters.get(status).increment(count));
+        final int created = counts.getOrDefault(Status.CREATED, 0);
+        final int incremented = counts.getOrDefault(Status.INCREMENTED, 0);
+        final int invalid = counts.getOrDefault(Status.INVALID, 0);
+        LOG.info("Processed batch of {} complaints: {} created, {} incremented, {} invalid",
+                dtos.size(), created, incremented, invalid);
+        return new ComplaintBatchResultDto(created, incremented, invalid, List.of(results));
+    }
+
+    /**
+     * Adds complaints read from an import file, with the same validation, merging and chunked writes as
+     * {@link #addBatch(List, String)}, but without reporting the outcome of each item. Imported complaints are not
+     * geolocated: a new complaint takes the complainant country of its first item, and an item with an unknown
+     * country code is invalid.
+     *
+     * @param complaints the imported complaints
+     * @return the numbers of imported complaints by outcome
+     */
+    public SubmissionCounts importComplaints(List<ImportedComplaint> complaints) {
+        final var groups = new LinkedHashMap<ComplaintKey, BatchGroup>();
+        int invalid = 0;
+        for (int i = 0; i < complaints.size(); i++) {
+            final var imported = complaints.get(i);
+            final var dto = imported.toCreationDto();
+            final var countryCode = imported.complainantCountry();
+            final var country = countryCode == null
+                    ? null : CountryCode.getByAlpha2Code(countryCode.trim().toUpperCase(Locale.ROOT));
+            if (validate(dto).isEmpty() && (countryCode == null || country != null)) {
+                groups.computeIfAbsent(new ComplaintKey(dto.productId(), dto.complainant()),
+                        key -> new BatchGroup(dto, country)).indexes.add(i);
+            } else {
+                invalid++;
+            }
+        }
+
+        final var distinct = new ArrayList<>(groups.values());
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            persistChunk(distinct.subList(from, Math.min(from + chunkSize, distinct.size())), null);
+        }
+
+        final int created = (int) distinct.stream().filter(group -> group.created).count();
+        final int incremented = complaints.size() - invalid - created;
+        submissionCounters.get(Status.CREATED).increment(created);
+        submissionCounters.get(Status.INCREMENTED).increment(incremented);
+        submissionCounters.get(Status.INVALID).increment(invalid);
+        return new SubmissionCounts(created, incremented, invalid);
+    }
+
+    private Map<String, String> validate(ComplaintCreationDto dto) {
+        if (dto == null) {
+            return Map.of("complaint", "Complaint is required");
+        }
+        final var errors = new TreeMap<String, String>();
+        for (final ConstraintViolation<ComplaintCreationDto> violation : validator.validate(dto)) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return errors;
+    }
+
+    /**
+     * Writes the chunk shard by shard. The side effects of a shard's writes follow as soon as its transaction
+     * commits, so a later shard that fails does not withhold them for complaints that are already committed.
+     *
+     * @param remoteAddr the IP address new complaints are geolocated by, or null to leave them as written
+     */
+    private void persistChunk(List<BatchGroup> chunk, String remoteAddr) {
+        final var byShard = new TreeMap<Integer, List<BatchGroup>>();
+        for (final var group : chunk) {
+            byShard.computeIfAbsent(shardRouter.shardOfProduct(group.dto.productId()), shard -> new ArrayList<>())
+                    .add(group);
+        }
+        byShard.forEach((shard, groups) -> {
+            shardRouter.onShard(shard, () -> {
+                writeShardChunk(groups);
+                return null;
+            });
+            afterCommit(groups, remoteAddr);
+        });
+    }
+
+    private void afterCommit(List<BatchGroup> committed, String remoteAddr) {
+        for (final var group : committed) {
+            eventFeed.publish(group.created ? ComplaintEvent.Type.CREATED : ComplaintEvent.Type.INCREMENTED,
+                    group.written);
+            if (group.created) {
+                if (remoteAddr != null) {
+                    countryEnrichmentService.submit(group.id(), remoteAddr);
+                }
+            } else {
+                complaintCache.evict(group.id());
+                countAggregator.ifPresent(aggregator ->
+                        aggregator.incrementedInDatabase(group.id(), group.indexes.size()));
+            }
+        }
+    }
+
+    private void writeShardChunk(List<BatchGroup> groups) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeChunk(groups));
+        } catch (DataIntegrityViolationException e) {
+            LOG.info("Concurrent submission created one of {} complaints of the batch first, retrying chunk",
+                    groups.size());
+            transactionTemplate.executeWithoutResult(status -> writeChunk(groups));
+        }
+    }
+
+    /**
+     * Locks the existing complaints of the chunk by their exact keys, creates the missing ones and increments the
+     * existing ones. All written rows are then read back, with the counts and versions they are committed with.
+     */
+    private void writeChunk(List<BatchGroup> chunk) {
+        final var existingIds = complaintRepository.lockIdsByKey(
+                chunk.stream().map(group -> new ComplaintKey(group.dto.productId(), group.dto.complainant())).toList());
+
+        final var deltas = new HashMap<Long, Integer>();
+        final var groupsById = new HashMap<Long, BatchGroup>();
+        final var newGroups = new ArrayList<BatchGroup>();
+        final var newComplaints = new ArrayList<Complaint>();
+        final var creationDate = LocalDateTime.now();
+        for (final var group : chunk) {
+            final var existingId = existingIds.get(new ComplaintKey(group.dto.productId(), group.dto.complainant()));
+            if (existingId != null) {
+                deltas.put(existingId, group.indexes.size());
+                groupsById.put(existingId, group);
+            } else {
+                final var complaint = complaintMapper.creationDtoToEntity(group.dto);
+                complaint.setCreationDate(creationDate);
+                complaint.setCount(group.indexes.size());
+                complaint.setComplainantCountry(group.country);
+                newGroups.add(group);
+                newComplaints.add(complaint);
+            }
+        }
+
+        final var saved = complaintRepository.saveAllAndFlush(newComplaints);
+        statsRepository.recordNewComplaints(saved);
+        searchRepository.index(saved.stream().collect(Collectors.toMap(Complaint::getId, Complaint::getContent)));
+        complaintRepository.incrementCounts(deltas);
+        for (int i = 0; i < saved.size(); i++) {
+            groupsById.put(saved.get(i).getId(), newGroups.get(i));
+        }
+        for (final var written : complaintRepository.findVersionedByIdIn(groupsById.keySet())) {
+            final var id = written.complaint().id();
+            groupsById.get(id).completed(written, !deltas.containsKey(id));
+        }
+    }
+
+    /**
+     * Items of a batch that refer to the same complaint, and the complaint they were written to.
+     */
+    private static final class BatchGroup {
+        private final ComplaintCreationDto dto;
+        private final CountryCode country;
+        private final List<Integer> indexes = new ArrayList<>();
+        private VersionedComplaint written;
+        private boolean created;
+
+        BatchGroup(ComplaintCreationDto dto, CountryCode country) {
+            this.dto = dto;
+            this.country = country;
+        }
+
+        void completed(VersionedComplaint written, boolean created) {
+            this.written = written;
+            this.created = created;
+        }
+
+        long id() {
+            return written.complaint().id();
+        }
+
+        void fillResults(ComplaintBatchItemResultDto[] results) {
+            for (int i = 0; i < indexes.size(); i++) {
+                final var status = created && i == 0 ? Status.CREATED : Status.INCREMENTED;
+                results[indexes.get(i)] = new ComplaintBatchItemResultDto(indexes.get(i), status,
+                        written.complaint(), null);
+            }
+        }
+    }
+}
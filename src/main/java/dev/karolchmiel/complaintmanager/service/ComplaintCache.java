@@ -0,0 +1,123 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.karolchmiel.complaintmanager.config.ReplicaProperties;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded read-through cache of complaints by ID, holding at most {@code complaints.cache.maximum-size} complaints
+ * for at most {@code complaints.cache.ttl}.
+ * <p>
+ * Every write to a complaint must {@linkplain #evict(long) evict} it once the write is committed. A complaint is
+ * loaded while holding the cache entry, and an eviction of that entry waits for the load to finish, so a load
+ * that read the row before the write committed is always evicted afterwards and never outlives the write. When
+ * complaints are read from replicas, a write is evicted once more after the replicas' maximum replication lag, as
+ * a replica may serve the previous state of the row until then.
+ * <p>
+ * Metrics are published as the {@code cache.*} meters tagged {@code cache=complaints}, plus the
+ * {@code complaint.cache.hit.ratio} gauge.
+ */
+@Component
+public class ComplaintCache {
+    private static final String CACHE_NAME = "complaints";
+
+    private final Cache<Long, VersionedComplaint> cache;
+    private final Executor replicatedEviction;
+
+    public ComplaintCache(MeterRegistry meterRegistry,
+                          @Value("${complaints.cache.maximum-size:10000}") long maximumSize,
+                          @Value("${complaints.cache.ttl:10m}") Duration ttl,
+                          ReplicaProperties replicaProperties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("complaint.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Share of complaint lookups by ID served from the cache")
+                .register(meterRegistry);
+        final var staleReadWindow = replicaProperties.staleReadWindow();
+        this.replicatedEviction = staleReadWindow.isZero()
+                ? null
+                : CompletableFuture.delayedExecutor(staleReadWindow.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the cached complaint, loading it with the given loader on a miss. Complaints that are not found
+     * are not cached.
+     *
+     * @param complaintId the ID of the complaint
+     * @param loader loads the complaint from the database
+     * @return the complaint if found, empty Optional otherwise
+     */
+    public Optional<VersionedComplaint> get(long complaintId, LongFunction<Optional<VersionedComplaint>> loader) {
+        return Optional.ofNullable(cache.get(complaintId, id -> loader.apply(id).orElse(null)));
+    }
+
+    /**
+     * @param complaintId the ID of the complaint
+     * @return the cached complaint, without loading it on a miss
+     */
+    public Optional<VersionedComplaint> getIfPresent(long complaintId) {
+        return Optional.ofNullable(cache.getIfPresent(complaintId));
+    }
+
+    /**
+     * Evicts a complaint that has been written. When called in a transaction the complaint is evicted again
+     * after the commit, so that a load of the uncommitted row's previous state cannot be cached in between, and
+     * with replicas once more when the write has reached them.
+     *
+     * @param complaintId the ID of the written complaint
+     */
+    public void evict(long complaintId) {
+        evictAll(List.of(complaintId));
+    }
+
+    /**
+     * Evicts complaints that have been written, see {@link #evict(long)}.
+     *
+     * @param complaintIds the IDs of the written complaints
+     */
+    public void evictAll(Collection<Long> complaintIds) {
+        if (complaintIds.isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(complaintIds);
+        final var ids = List.copyOf(complaintIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidateAll(ids);
+                    evictAfterReplication(ids);
+                }
+            });
+        } else {
+            evictAfterReplication(ids);
+        }
+    }
+
+    private void evictAfterReplication(List<Long> ids) {
+        if (replicatedEviction != null) {
+            replicatedEviction.execute(() -> cache.invalidateAll(ids));
+        }
+    }
+}
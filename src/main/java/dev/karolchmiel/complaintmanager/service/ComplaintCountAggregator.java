@@ -0,0 +1,386 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintEvent;
+import dev.karolchmiel.complaintmanager.dto.ComplaintKey;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind buffer for repeat complaints. Enabled with {@code complaints.write-behind.enabled=true}.
+ * <p>
+ * The first submission of a (product ID, complainant) key goes to the database and starts tracking the key.
+ * Further submissions of a tracked key only increment an in-memory counter and report the running total,
+ * without a transaction. Counters live in a {@link ConcurrentHashMap}, so keys are spread over independently
+ * locked bins, and each counter is incremented with a lock-free compare-and-set. The first submission of a key is
+ * persisted outside the map: it registers a pending future for the key, which concurrent first submissions wait
+ * on, so no bin stays locked while the database is written.
+ * <p>
+ * Buffered increments are written back with a single batched {@code UPDATE ... SET COUNT = COUNT + ?}:
+ * <ul>
+ *     <li>every {@code complaints.write-behind.max-age}, bounding how old an un-flushed increment can get,</li>
+ *     <li>as soon as {@code complaints.write-behind.max-pending-increments} increments are waiting,</li>
+ *     <li>and on shutdown.</li>
+ * </ul>
+ * Increments still buffered when the process dies are lost, so the bounds define the durability trade-off.
+ * Reads from the database see counts that lag the reported totals by at most these bounds. At most
+ * {@code complaints.write-behind.max-tracked-complaints} keys are tracked; beyond that, submissions of
+ * untracked keys go straight to the database.
+ */
+@Service
+@ConditionalOnProperty(name = "complaints.write-behind.enabled", havingValue = "true")
+public class ComplaintCountAggregator {
+    private static final Logger LOG = LoggerFactory.getLogger(ComplaintCountAggregator.class);
+
+    private final ComplaintRepository complaintRepository;
+    private final ComplaintCache complaintCache;
+    private final ShardRouter shardRouter;
+    private final ComplaintEventFeed eventFeed;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxPendingIncrements;
+    private final int maxTrackedComplaints;
+    private final Duration idleTimeout;
+    private final ConcurrentHashMap<ComplaintKey, CompletableFuture<TrackedComplaint>> trackedByKey =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, TrackedComplaint> trackedById = new ConcurrentHashMap<>();
+    private final AtomicLong pendingIncrements = new AtomicLong();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private final Counter bufferedCounter;
+    private final Timer flushTimer;
+
+    public ComplaintCountAggregator(ComplaintRepository complaintRepository,
+                                    ComplaintCache complaintCache,
+                                    ShardRouter shardRouter,
+                                    ComplaintEventFeed eventFeed,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${complaints.write-behind.max-age:1s}") Duration maxAge,
+                                    @Value("${complaints.write-behind.max-pending-increments:10000}") long maxPendingIncrements,
+                                    @Value("${complaints.write-behind.max-tracked-complaints:100000}") int maxTrackedComplaints,
+                                    @Value("${complaints.write-behind.idle-timeout:1m}") Duration idleTimeout) {
+        this.complaintRepository = complaintRepository;
+        this.complaintCache = complaintCache;
+        this.shardRouter = shardRouter;
+        this.eventFeed = eventFeed;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxPendingIncrements = maxPendingIncrements;
+        this.maxTrackedComplaints = maxTrackedComplaints;
+        this.idleTimeout = idleTimeout;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("complaint-count-flusher").daemon().factory());
+        flusher.scheduleWithFixedDelay(this::flush, maxAge.toNanos(), maxAge.toNanos(), TimeUnit.NANOSECONDS);
+
+        Gauge.builder("complaint.write-behind.pending", pendingIncrements, AtomicLong::get)
+                .description("Increments buffered in memory and not yet written to the database")
+                .register(meterRegistry);
+        Gauge.builder("complaint.write-behind.tracked", trackedByKey, ConcurrentHashMap::size)
+                .description("Complaints whose increments are currently buffered in memory")
+                .register(meterRegistry);
+        this.bufferedCounter = Counter.builder("complaint.write-behind.buffered")
+                .description("Repeat complaints counted in memory instead of in a database transaction")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("complaint.write-behind.flush")
+                .description("Time taken to write buffered increments to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts a submission of the given complaint key. Untracked keys are passed to {@code persist}, which must
+     * insert the complaint or increment its count in the database; concurrent first submissions of the same
+     * key wait for it, so the key's baseline count is always the persisted one.
+     *
+     * @param productId the product ID of the complaint
+     * @param complainant the complainant of the complaint
+     * @param persist the database path used for keys that are not tracked yet
+     * @return the complaint with its running total count
+     */
+    public ComplaintRetrievalDto increment(long productId, String complainant, Supplier<ComplaintRetrievalDto> persist) {
+        final var key = new ComplaintKey(productId, complainant);
+        while (true) {
+            var tracking = trackedByKey.get(key);
+            if (tracking == null) {
+                if (trackedByKey.size() >= maxTrackedComplaints) {
+                    return persist.get();
+                }
+                final var started = new CompletableFuture<TrackedComplaint>();
+                tracking = trackedByKey.putIfAbsent(key, started);
+                if (tracking == null) {
+                    return startTracking(key, started, persist);
+                }
+            }
+
+            final TrackedComplaint tracked;
+            try {
+                tracked = tracking.join();
+            } catch (CompletionException e) {
+                // The first submission failed and stopped tracking the key, so this one persists it instead
+                continue;
+            }
+            final var total = tracked.tryIncrement();
+            if (total != TrackedComplaint.RETIRED) {
+                bufferedCounter.increment();
+                if (pendingIncrements.incrementAndGet() >= maxPendingIncrements) {
+                    requestFlush();
+                }
+                return tracked.withCount(total);
+            }
+        }
+    }
+
+    private ComplaintRetrievalDto startTracking(ComplaintKey key, CompletableFuture<TrackedComplaint> started,
+                                                Supplier<ComplaintRetrievalDto> persist) {
+        final ComplaintRetrievalDto persisted;
+        try {
+            persisted = persist.get();
+        } catch (RuntimeException | Error e) {
+            trackedByKey.remove(key, started);
+            started.completeExceptionally(e);
+            throw e;
+        }
+        final var tracked = new TrackedComplaint(persisted);
+        trackedById.put(persisted.id(), tracked);
+        started.complete(tracked);
+        return persisted;
+    }
+
+    /**
+     * Updates the content reported for a tracked complaint after its content was changed in the database.
+     *
+     * @param complaintId the ID of the updated complaint
+     * @param content the new content
+     */
+    public void contentUpdated(long complaintId, String content) {
+        final var tracked = trackedById.get(complaintId);
+        if (tracked != null) {
+            tracked.updateContent(content);
+        }
+    }
+
+    /**
+     * Updates the complainant country reported for a tracked complaint after country enrichment stored it in the
+     * database, as the complaint was tracked before its country was known. Like the database, a country that is
+     * already set is kept.
+     *
+     * @param complaintId the ID of the enriched complaint
+     * @param country the stored complainant country
+     */
+    public void countryRecorded(long complaintId, CountryCode country) {
+        final var tracked = trackedById.get(complaintId);
+        if (tracked != null) {
+            tracked.updateCountry(country);
+        }
+    }
+
+    /**
+     * Accounts for increments of a tracked complaint that were written to the database directly, such as by a
+     * bulk creation, so that the running total reported for it stays in step with the database.
+     *
+     * @param complaintId the ID of the incremented complaint
+     * @param delta the number of increments written
+     */
+    public void incrementedInDatabase(long complaintId, int delta) {
+        final var tracked = trackedById.get(complaintId);
+        if (tracked == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (tracked.total() != TrackedComplaint.RETIRED) {
+                tracked.total.addAndGet(delta);
+                tracked.persistedTotal += delta;
+            }
+        }
+    }
+
+    /**
+     * Writes all buffered increments to the database in a single batch per shard and stops tracking complaints
+     * that have not been incremented for {@code complaints.write-behind.idle-timeout}. If the write to a shard
+     * fails its increments stay buffered and are retried on the next flush. Every flushed complaint is read back in
+     * the transaction of its increment and published to the {@link ComplaintEventFeed} once, with the count and
+     * version the increment gave its row.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            final var deltas = new HashMap<Long, Integer>();
+            final var totals = new HashMap<Long, FlushedTotal>();
+            for (final var tracking : trackedByKey.values()) {
+                final var tracked = trackedOrNull(tracking);
+                if (tracked == null) {
+                    continue;
+                }
+                final var total = tracked.total();
+                if (total != TrackedComplaint.RETIRED && total > tracked.persistedTotal) {
+                    deltas.put(tracked.id(), (int) (total - tracked.persistedTotal));
+                    totals.put(tracked.id(), new FlushedTotal(tracked, total));
+                }
+            }
+            if (deltas.isEmpty()) {
+                retireIdle();
+                return;
+            }
+
+            var failed = false;
+            var flushedIncrements = 0L;
+            var flushedComplaints = 0;
+            for (final var shard : shardRouter.byComplaintShard(deltas).entrySet()) {
+                final var shardDeltas = shard.getValue();
+                final List<VersionedComplaint> written;
+                try {
+                    written = flushTimer.record(() -> shardRouter.onShard(shard.getKey(),
+                            () -> transactionTemplate.execute(status -> {
+                                complaintRepository.incrementCounts(shardDeltas);
+                                return complaintRepository.findVersionedByIdIn(shardDeltas.keySet());
+                            })));
+                } catch (Exception e) {
+                    LOG.error("Failed to flush buffered increments of {} complaints, will retry", shardDeltas.size(),
+                            e);
+                    failed = true;
+                    continue;
+                }
+                complaintCache.evictAll(shardDeltas.keySet());
+                for (final var complaintId : shardDeltas.keySet()) {
+                    final var flushed = totals.get(complaintId);
+                    flushedIncrements += flushed.total() - flushed.complaint().persistedTotal;
+                    flushed.complaint().persistedTotal = flushed.total();
+                }
+                for (final var complaint : written) {
+                    eventFeed.publish(ComplaintEvent.Type.INCREMENTED, complaint);
+                }
+                flushedComplaints += shardDeltas.size();
+            }
+            if (flushedComplaints > 0) {
+                pendingIncrements.addAndGet(-flushedIncrements);
+                LOG.info("Flushed {} buffered increments of {} complaints", flushedIncrements, flushedComplaints);
+            }
+            if (!failed) {
+                retireIdle();
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    private void retireIdle() {
+        final var idleSince = System.nanoTime() - idleTimeout.toNanos();
+        trackedByKey.forEach((key, tracking) -> {
+            final var tracked = trackedOrNull(tracking);
+            if (tracked != null && tracked.lastIncrementedAt - idleSince < 0 && tracked.tryRetire()) {
+                trackedByKey.remove(key, tracking);
+                trackedById.remove(tracked.id(), tracked);
+            }
+        });
+    }
+
+    /**
+     * @return the tracked complaint, null while its first submission is still being persisted
+     */
+    private static TrackedComplaint trackedOrNull(CompletableFuture<TrackedComplaint> tracking) {
+        return tracking.state() == Future.State.SUCCESS ? tracking.resultNow() : null;
+    }
+
+    private record FlushedTotal(TrackedComplaint complaint, long total) {
+    }
+
+    private static final class TrackedComplaint {
+        static final long RETIRED = -1;
+
+        private final AtomicLong total;
+        private volatile ComplaintRetrievalDto snapshot;
+        private volatile long lastIncrementedAt;
+        /** Count known to be in the database; only read and written under the flush lock. */
+        private long persistedTotal;
+
+        TrackedComplaint(ComplaintRetrievalDto persisted) {
+            this.snapshot = persisted;
+            this.total = new AtomicLong(persisted.count());
+            this.persistedTotal = persisted.count();
+            this.lastIncrementedAt = System.nanoTime();
+        }
+
+        long id() {
+            return snapshot.id();
+        }
+
+        long total() {
+            return total.get();
+        }
+
+        long tryIncrement() {
+            while (true) {
+                final var current = total.get();
+                if (current == RETIRED) {
+                    return RETIRED;
+                }
+                if (total.compareAndSet(current, current + 1)) {
+                    lastIncrementedAt = System.nanoTime();
+                    return current + 1;
+                }
+            }
+        }
+
+        boolean tryRetire() {
+            return total.compareAndSet(persistedTotal, RETIRED);
+        }
+
+        synchronized void updateContent(String content) {
+            final var current = snapshot;
+            snapshot = new ComplaintRetrievalDto(current.id(), current.productId(), content, current.creationDate(),
+                    current.complainant(), current.complainantCountry(), current.count());
+        }
+
+        synchronized void updateCountry(CountryCode country) {
+            final var current = snapshot;
+            if (current.complainantCountry() != null) {
+                return;
+            }
+            snapshot = new ComplaintRetrievalDto(current.id(), current.productId(), current.content(),
+                    current.creationDate(), current.complainant(), country, current.count());
+        }
+
+        ComplaintRetrievalDto withCount(long count) {
+            final var current = snapshot;
+            return new ComplaintRetrievalDto(current.id(), current.productId(), current.content(),
+                    current.creationDate(), current.complainant(), current.complainantCountry(), (int) count);
+        }
+    }
+}
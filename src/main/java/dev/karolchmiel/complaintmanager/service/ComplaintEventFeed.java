@@ -0,0 +1,281 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.karolchmiel.complaintmanager.dto.ComplaintEvent;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streams committed changes of complaints to subscribers as server-sent events.
+ * <p>
+ * Writers append events to a ring buffer holding the last {@code complaints.events.buffer-size} events and never
+ * wait for subscribers: a subscriber only keeps the sequence number of the last event it was sent and reads the
+ * events after it from the buffer at its own pace. A subscriber that falls so far behind that its next event has
+ * been overwritten is dropped, and can reconnect with the ID of the last event it received to resume from there.
+ * <p>
+ * Sequence numbers start at the startup time in microseconds, so the event ID of an earlier run of the application
+ * is older than any event of this run and is answered with a {@code reset} event. The feed holds the changes made
+ * through this instance only.
+ * <p>
+ * The sequence is the order of publishing, not of committing; every event carries the version of the complaint's
+ * row, by which consumers order the changes of one complaint.
+ * <p>
+ * A subscriber holds a request thread for as long as it is subscribed. Without virtual threads those come from the
+ * container's pool of {@code server.tomcat.threads.max} threads, so {@code complaints.events.max-subscribers} is
+ * capped at half of the pool, leaving the other half to the other requests.
+ */
+@Service
+public class ComplaintEventFeed {
+    private static final Logger LOG = LoggerFactory.getLogger(ComplaintEventFeed.class);
+    private static final int MAX_EVENTS_PER_READ = 256;
+    private static final String RESET_EVENT = "reset";
+
+    private final ObjectMapper objectMapper;
+    private final ComplaintEvent[] buffer;
+    private final int maxSubscribers;
+    private final Duration heartbeatInterval;
+    private final long firstSequence;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    /** Sequence number of the next event; only read and written under the lock. */
+    private long nextSequence;
+    /** Only read and written under the lock. */
+    private boolean closed;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Map<ComplaintEvent.Type, Counter> publishedCounters = new EnumMap<>(ComplaintEvent.Type.class);
+    private final Counter droppedCounter;
+
+    public ComplaintEventFeed(ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${complaints.events.buffer-size:10000}") int bufferSize,
+                              @Value("${complaints.events.max-subscribers:1000}") int maxSubscribers,
+                              @Value("${complaints.events.heartbeat-interval:15s}") Duration heartbeatInterval,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                              @Value("${server.tomcat.threads.max:200}") int requestThreads) {
+        this.objectMapper = objectMapper;
+        this.buffer = new ComplaintEvent[bufferSize];
+        this.maxSubscribers = virtualThreads ? maxSubscribers : Math.min(maxSubscribers, requestThreads / 2);
+        if (this.maxSubscribers < maxSubscribers) {
+            LOG.warn("Limiting complaint event subscribers to {} of {} request threads without virtual threads",
+                    this.maxSubscribers, requestThreads);
+        }
+        this.heartbeatInterval = heartbeatInterval;
+        this.firstSequence = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.nextSequence = firstSequence;
+        Gauge.builder("complaint.events.subscribers", subscribers, AtomicInteger::get)
+                .description("Clients currently subscribed to the complaint event stream")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("complaint.events.dropped")
+                .description("Subscribers dropped for falling further behind than the event buffer holds")
+                .register(meterRegistry);
+        for (final var type : ComplaintEvent.Type.values()) {
+            publishedCounters.put(type, Counter.builder("complaint.events.published")
+                    .description("Complaint events published to the event stream")
+                    .tag("type", type.eventName())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Appends an event to the feed and wakes up the waiting subscribers. Must only be called once the change has
+     * been committed.
+     *
+     * @param type the kind of change
+     * @param complaint the complaint after the change, with the version the change gave its row
+     */
+    public void publish(ComplaintEvent.Type type, VersionedComplaint complaint) {
+        lock.lock();
+        try {
+            final var sequence = nextSequence++;
+            buffer[index(sequence)] = new ComplaintEvent(sequence, type, complaint);
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        publishedCounters.get(type).increment();
+    }
+
+    /**
+     * Subscribes to the events after the given event, or to the events published from now on. If the given event
+     * is no longer buffered the subscriber is sent a {@code reset} event first and receives the events published
+     * from now on.
+     *
+     * @param lastEventId the ID of the last event the subscriber received, or null for a new subscriber
+     * @return the subscription, empty if {@code complaints.events.max-subscribers} are already subscribed
+     */
+    public Optional<Subscription> subscribe(String lastEventId) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return Optional.empty();
+        }
+        final var lastEvent = parseEventId(lastEventId);
+        lock.lock();
+        try {
+            final var resumable = lastEvent != null && lastEvent >= oldestSequence() - 1 && lastEvent < nextSequence;
+            return Optional.of(new Subscription(resumable ? lastEvent : nextSequence - 1,
+                    lastEventId != null && !resumable));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends every subscription, so that open streams complete instead of holding up the shutdown.
+     */
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Long parseEventId(String eventId) {
+        if (eventId == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(eventId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private long oldestSequence() {
+        return Math.max(firstSequence, nextSequence - buffer.length);
+    }
+
+    private int index(long sequence) {
+        return (int) Math.floorMod(sequence, (long) buffer.length);
+    }
+
+    /**
+     * A subscriber of the feed. It counts towards {@code complaints.events.max-subscribers} until closed.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final boolean reset;
+        private long lastSent;
+        private boolean dropped;
+        private boolean released;
+
+        private Subscription(long lastSent, boolean reset) {
+            this.lastSent = lastSent;
+            this.reset = reset;
+        }
+
+        /**
+         * Writes the events to the output as a {@code text/event-stream} until the client disconnects, the
+         * subscriber is dropped for falling behind or the feed is closed. Each event has its sequence number as ID,
+         * the {@link ComplaintEvent.Type#eventName() name of its type} and the complaint with its version as JSON
+         * data. While there are no events a comment is written every {@code complaints.events.heartbeat-interval},
+         * which also detects clients that went away.
+         *
+         * @param output the stream to write the events to
+         */
+        public void streamTo(OutputStream output) {
+            final var writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            try {
+                if (reset) {
+                    writeEvent(writer, lastSent, RESET_EVENT, "{}");
+                } else {
+                    writer.write(": subscribed\n\n");
+                }
+                writer.flush();
+
+                List<ComplaintEvent> events;
+                while ((events = next()) != null) {
+                    if (events.isEmpty()) {
+                        writer.write(": heartbeat\n\n");
+                    }
+                    for (final var event : events) {
+                        writeEvent(writer, event.sequence(), event.type().eventName(),
+                                objectMapper.writeValueAsString(event.complaint()));
+                    }
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                LOG.debug("Complaint event subscriber disconnected: {}", e.getMessage());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (dropped) {
+                LOG.warn("Dropped complaint event subscriber that fell more than {} events behind", buffer.length);
+                droppedCounter.increment();
+            }
+        }
+
+        /**
+         * Waits up to the heartbeat interval for events after the last one sent.
+         *
+         * @return the next events, empty if none were published in time, null if the subscriber was dropped or the
+         * feed is closed
+         */
+        private List<ComplaintEvent> next() throws InterruptedException {
+            lock.lock();
+            try {
+                var remaining = heartbeatInterval.toNanos();
+                while (!closed && lastSent == nextSequence - 1 && remaining > 0) {
+                    remaining = published.awaitNanos(remaining);
+                }
+                if (closed) {
+                    return null;
+                }
+                if (lastSent < oldestSequence() - 1) {
+                    dropped = true;
+                    return null;
+                }
+                final var end = Math.min(nextSequence, lastSent + 1 + MAX_EVENTS_PER_READ);
+                final var events = new ArrayList<ComplaintEvent>((int) (end - lastSent - 1));
+                for (var sequence = lastSent + 1; sequence < end; sequence++) {
+                    events.add(buffer[index(sequence)]);
+                }
+                lastSent = end - 1;
+                return events;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static void writeEvent(Writer writer, long id, String name, String data) throws IOException {
+            writer.write("id: " + id + "\nevent: " + name + "\ndata: " + data + "\n\n");
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                subscribers.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.FileFormat;
+import dev.karolchmiel.complaintmanager.repository.ComplaintExportRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Service
+public class ComplaintExportService {
+    private static final Logger LOG = LoggerFactory.getLogger(ComplaintExportService.class);
+
+    private final ComplaintExportRepository exportRepository;
+    private final ObjectMapper objectMapper;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer exportTimer;
+    private final Map<FileFormat, Counter> rowCounters = new EnumMap<>(FileFormat.class);
+
+    public ComplaintExportService(ComplaintExportRepository exportRepository,
+                                  ObjectMapper objectMapper,
+                                  ShardRouter shardRouter,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry) {
+        this.exportRepository = exportRepository;
+        this.objectMapper = objectMapper;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.exportTimer = ComplaintMetrics.operationTimer(meterRegistry, "export");
+        for (final var format : FileFormat.values()) {
+            rowCounters.put(format, Counter.builder("complaint.export.rows")
+                    .description("Complaints written by exports")
+                    .tag("format", format.fileExtension())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Writes every complaint, ordered by ID, to the output in the given format. Rows are written as they are read
+     * from the database cursor, without loading entities or collecting the rows, so memory use does not depend on
+     * the number of complaints. The output is flushed but not closed. With sharding the shards are exported one
+     * after another, in the order of their complaint IDs.
+     *
+     * @param format the format of the export
+     * @param output the stream to write the export to
+     * @return the number of exported complaints
+     * @throws IOException if writing to the output fails
+     */
+    public long export(FileFormat format, OutputStream output) throws IOException {
+        LOG.info("Exporting all complaints as {}", format);
+        final var sample = Timer.start();
+        try (final var writer = createWriter(format, output)) {
+            long rows = 0;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                rows += shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+                    final long[] written = {0};
+                    exportRepository.forEachComplaint(row -> {
+                        try {
+                            writer.writeRow(row);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        written[0]++;
+                    });
+                    return written[0];
+                }));
+            }
+            rowCounters.get(format).increment(rows);
+            LOG.info("Exported {} complaints as {}", rows, format);
+            return rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            sample.stop(exportTimer);
+        }
+    }
+
+    private ComplaintExportWriter createWriter(FileFormat format, OutputStream output) throws IOException {
+        return switch (format) {
+            case NDJSON -> new NdjsonExportWriter(objectMapper.getFactory(), output);
+            case CSV -> new CsvExportWriter(output);
+        };
+    }
+}
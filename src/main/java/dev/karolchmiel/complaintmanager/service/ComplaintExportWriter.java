@@ -0,0 +1,17 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.repository.ComplaintExportRepository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes complaint rows of {@link ComplaintExportRepository#COLUMNS} straight from the result set to the export
+ * output. Closing the writer flushes it without closing the output.
+ */
+interface ComplaintExportWriter extends Closeable {
+
+    void writeRow(ResultSet row) throws IOException, SQLException;
+}
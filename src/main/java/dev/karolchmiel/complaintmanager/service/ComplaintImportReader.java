@@ -0,0 +1,19 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.dto.ImportedComplaint;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads complaints one by one from an import file, holding only the current row in memory.
+ */
+interface ComplaintImportReader extends Closeable {
+
+    /**
+     * @return the next complaint, or null at the end of the input
+     * @throws MalformedImportException if the next row cannot be parsed
+     * @throws IOException if reading the input fails
+     */
+    ImportedComplaint next() throws IOException;
+}
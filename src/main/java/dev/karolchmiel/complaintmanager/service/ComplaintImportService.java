@@ -0,0 +1,147 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto.Status;
+import dev.karolchmiel.complaintmanager.dto.FileFormat;
+import dev.karolchmiel.complaintmanager.dto.ImportedComplaint;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class ComplaintImportService {
+    private static final Logger LOG = LoggerFactory.getLogger(ComplaintImportService.class);
+    private static final int MAX_TRACKED_IMPORTS = 100;
+
+    private final ComplaintBatchService complaintBatchService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final long progressIntervalNanos;
+    private final Timer importTimer;
+    private final Map<UUID, ImportJob> imports = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, ImportJob> eldest) {
+            return size() > MAX_TRACKED_IMPORTS && eldest.getValue().status() != Status.RUNNING;
+        }
+    };
+
+    public ComplaintImportService(ComplaintBatchService complaintBatchService,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${complaints.import.chunk-size:10000}") int chunkSize,
+                                  @Value("${complaints.import.progress-interval:10s}") Duration progressInterval) {
+        this.complaintBatchService = complaintBatchService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.progressIntervalNanos = progressInterval.toNanos();
+        this.importTimer = ComplaintMetrics.operationTimer(meterRegistry, "import");
+    }
+
+    /**
+     * Imports every complaint of a file, with the semantics of submitting them one by one: rows are validated like
+     * {@link dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto}, invalid rows are skipped, and rows with
+     * the same product ID and complainant as each other or as an existing complaint increment its count.
+     * <p>
+     * The file is read in chunks of {@code complaints.import.chunk-size} rows, and each chunk is written with
+     * {@link ComplaintBatchService#importComplaints(List)} before the next one is read. Only one chunk is held in
+     * memory at a time, and the input is consumed only as fast as the database takes the rows, so a slow database
+     * slows the sender down instead of growing the heap. Committed chunks stay imported if the import stops early.
+     * <p>
+     * Progress is logged every {@code complaints.import.progress-interval} and can be followed with
+     * {@link #getImports()} while the import runs.
+     *
+     * @param format the format of the file
+     * @param input the content of the file
+     * @param source where the file came from, for the logs and the import's progress
+     * @return the outcome of the import
+     */
+    public ComplaintImportDto importComplaints(FileFormat format, InputStream input, String source) {
+        final var job = new ImportJob(source, format);
+        synchronized (imports) {
+            imports.put(job.id(), job);
+        }
+        LOG.info("Starting import {} of {} complaints from {}", job.id(), format, source);
+
+        final var sample = Timer.start();
+        try (final var reader = createReader(format, input)) {
+            var nextProgressLog = System.nanoTime() + progressIntervalNanos;
+            final var chunk = new ArrayList<ImportedComplaint>(chunkSize);
+            ImportedComplaint complaint;
+            while ((complaint = reader.next()) != null) {
+                chunk.add(complaint);
+                if (chunk.size() == chunkSize) {
+                    job.chunkWritten(complaintBatchService.importComplaints(chunk));
+                    chunk.clear();
+                    if (System.nanoTime() - nextProgressLog >= 0) {
+                        logProgress(job.toDto());
+                        nextProgressLog = System.nanoTime() + progressIntervalNanos;
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                job.chunkWritten(complaintBatchService.importComplaints(chunk));
+            }
+            job.finished(Status.COMPLETED, null);
+        } catch (MalformedImportException e) {
+            LOG.warn("Import {} rejected: {}", job.id(), e.getMessage());
+            job.finished(Status.REJECTED, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Import {} failed", job.id(), e);
+            job.finished(Status.FAILED, e.getMessage());
+        } finally {
+            sample.stop(importTimer);
+        }
+
+        final var result = job.toDto();
+        LOG.info("Import {} {}: {} created, {} incremented, {} invalid, {} rows/s", result.id(), result.status(),
+                result.created(), result.incremented(), result.invalid(), Math.round(result.rowsPerSecond()));
+        return result;
+    }
+
+    /**
+     * @return the running and the most recent finished imports, newest first
+     */
+    public List<ComplaintImportDto> getImports() {
+        final List<ImportJob> jobs;
+        synchronized (imports) {
+            jobs = new ArrayList<>(imports.values());
+        }
+        return jobs.reversed().stream().map(ImportJob::toDto).toList();
+    }
+
+    /**
+     * @param importId the ID of the import
+     * @return the progress or outcome of the import, empty if it is unknown or no longer tracked
+     */
+    public Optional<ComplaintImportDto> getImport(UUID importId) {
+        synchronized (imports) {
+            return Optional.ofNullable(imports.get(importId)).map(ImportJob::toDto);
+        }
+    }
+
+    private void logProgress(ComplaintImportDto progress) {
+        LOG.info("Import {} in progress: {} rows processed, {} rows/s", progress.id(), progress.rowsProcessed(),
+                Math.round(progress.rowsPerSecond()));
+    }
+
+    private ComplaintImportReader createReader(FileFormat format, InputStream input) throws IOException {
+        return switch (format) {
+            case NDJSON -> new NdjsonImportReader(objectMapper, input);
+            case CSV -> new CsvImportReader(input);
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters shared by the complaint services. Percentile histograms of the timers are enabled with
+ * {@code management.metrics.distribution.percentiles-histogram.complaint.service}.
+ */
+final class ComplaintMetrics {
+    private ComplaintMetrics() {
+    }
+
+    static Timer operationTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("complaint.service")
+                .description("Time spent in complaint service operations, including database calls")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    static Counter submissionCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("complaint.submissions")
+                .description("Submitted complaints by whether they created a complaint, incremented its count or were invalid")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    static Counter updateCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("complaint.updates")
+                .description("Complaint content updates by whether the complaint was found")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -1,60 +1,204 @@
 package dev.karolchmiel.complaintmanager.service;
 
-import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
-import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintPageDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintField;
+import dev.karolchmiel.complaintmanager.dto.ComplaintFilter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintVersion;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaintPage;
 import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
+/**
+ * Reads complaints straight into DTOs, in read-only transactions: no entity is hydrated, snapshotted for dirty
+ * checking or flushed on a read.
+ * <p>
+ * With sharding, a complaint is read from the shard encoded in its ID and a page filtered by product from the shard
+ * of the product. Other pages are read from every shard in parallel and merged: complaint IDs are unique across
+ * the shards, so the merged page continues after the same cursor as a page of a single database.
+ */
 @Service
 public class ComplaintReadService {
     private static final Logger LOG = LoggerFactory.getLogger(ComplaintReadService.class);
 
     private final ComplaintRepository complaintRepository;
-    private final ComplaintMapper complaintMapper;
+    private final ComplaintCache complaintCache;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer listTimer;
+    private final Timer getTimer;
 
     public ComplaintReadService(ComplaintRepository complaintRepository,
-                                ComplaintMapper complaintMapper) {
+                                ComplaintCache complaintCache,
+                                ShardRouter shardRouter,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
         this.complaintRepository = complaintRepository;
-        this.complaintMapper = complaintMapper;
+        this.complaintCache = complaintCache;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.listTimer = ComplaintMetrics.operationTimer(meterRegistry, "list");
+        this.getTimer = ComplaintMetrics.operationTimer(meterRegistry, "get");
     }
 
     /**
-     * Retrieves all complaints from the system.
+     * Retrieves a single page of complaints matching the filter ordered by ID, starting after the given cursor.
+     * Only {@code size + 1} rows are loaded per call, so memory use does not grow with the table. Each filter
+     * condition is served by its own index.
      *
-     * @return list of all complaints converted to DTOs
+     * @param filter the conditions the complaints must match
+     * @param fields the fields to read, {@link ComplaintField#ALL} for complete complaints; only their columns are
+     * fetched and the other fields are null
+     * @param cursor the ID of the last complaint seen by the client, or null to start from the beginning
+     * @param size the maximum number of complaints on the page
+     * @return the page of complaints converted to DTOs together with the cursor of the next page, and the version
+     * tag of the rows it was read from, the same tag {@link #getComplaintsVersionTag} computes for them
      */
-    public List<ComplaintRetrievalDto> getAllComplaints() {
-        LOG.info("Retrieving all complaints");
-        final var complaints = complaintRepository.findAll();
-        LOG.debug("Found {} complaints in the database", complaints.size());
+    public VersionedComplaintPage getComplaints(ComplaintFilter filter, Set<ComplaintField> fields, Long cursor, int size) {
+        LOG.info("Retrieving complaints matching {} with fields {} after cursor: {} with page size: {}", filter, fields,
+                cursor, size);
+        return listTimer.record(() -> loadPage(filter, fields, cursor, size));
+    }
+
+    private VersionedComplaintPage loadPage(ComplaintFilter filter, Set<ComplaintField> fields, Long cursor,
+                                            int size) {
+        final var rows = readPage(filter, size + 1, () -> transactionTemplate.execute(status ->
+                findPage(filter, fields, cursor == null ? 0L : cursor, Limit.of(size + 1))),
+                row -> row.complaint().id());
+        LOG.debug("Found {} complaints in the database", rows.size());
+
+        final var complaints = rows.stream().map(VersionedComplaint::complaint).toList();
+        final var hasNextPage = complaints.size() > size;
+        final var page = hasNextPage ? complaints.subList(0, size) : complaints;
+        final var nextCursor = hasNextPage ? page.getLast().id() : null;
+
+        final var versions = rows.stream()
+                .map(row -> new ComplaintVersion(row.complaint().id(), row.version()))
+                .toList();
+        return new VersionedComplaintPage(new ComplaintPageDto(page, nextCursor),
+                versionTag(filter, fields, cursor, size, versions));
+    }
 
-        return complaints.stream()
-                .map(complaintMapper::entityToRetrievalDto)
+    /**
+     * Reads a keyset page from the shards that can hold complaints matching the filter.
+     *
+     * @param read reads the page from the shard the thread is bound to, ordered by ID
+     * @param id the complaint ID of a row of the page
+     * @return the first {@code limit} rows of all the shards, ordered by ID
+     */
+    private <T> List<T> readPage(ComplaintFilter filter, int limit, Supplier<List<T>> read, ToLongFunction<T> id) {
+        if (filter.productId() != null) {
+            return shardRouter.onShard(shardRouter.shardOfProduct(filter.productId()), read);
+        }
+        final var pages = shardRouter.onEveryShard(read);
+        if (pages.size() == 1) {
+            return pages.getFirst();
+        }
+        return pages.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingLong(id))
+                .limit(limit)
                 .toList();
     }
 
+    private List<VersionedComplaint> findPage(ComplaintFilter filter, Set<ComplaintField> fields, long cursor,
+                                              Limit limit) {
+        return filter.isEmpty() && fields.containsAll(ComplaintField.ALL)
+                ? complaintRepository.findVersionedPageByIdGreaterThanOrderByIdAsc(cursor, limit)
+                : complaintRepository.findFilteredVersionedByIdGreaterThanOrderByIdAsc(filter, fields, cursor, limit);
+    }
+
+    private List<ComplaintVersion> findVersionPage(ComplaintFilter filter, long cursor, Limit limit) {
+        return filter.isEmpty()
+                ? complaintRepository.findVersionsByIdGreaterThanOrderByIdAsc(cursor, limit)
+                : complaintRepository.findFilteredVersionsByIdGreaterThanOrderByIdAsc(filter, cursor, limit);
+    }
+
     /**
-     * Finds a specific complaint by its ID.
+     * Computes a version tag of the page of complaints {@link #getComplaints(ComplaintFilter, Set, Long, int)} would
+     * return, from the IDs and versions of its rows only. The tag changes whenever a complaint on the page, or the
+     * first complaint after it, is created or changed.
+     * <p>
+     * It is read separately from the page, possibly from another replica, so it only serves to answer a conditional
+     * request; a page is always sent with the tag of the rows it was read from.
+     *
+     * @param filter the conditions the complaints must match
+     * @param fields the fields selected for the page
+     * @param cursor the ID of the last complaint seen by the client, or null to start from the beginning
+     * @param size the maximum number of complaints on the page
+     * @return the version tag of the page
+     */
+    public String getComplaintsVersionTag(ComplaintFilter filter, Set<ComplaintField> fields, Long cursor, int size) {
+        final var versions = readPage(filter, size + 1, () -> transactionTemplate.execute(status ->
+                findVersionPage(filter, cursor == null ? 0L : cursor, Limit.of(size + 1))), ComplaintVersion::id);
+        return versionTag(filter, fields, cursor, size, versions);
+    }
+
+    private static String versionTag(ComplaintFilter filter, Set<ComplaintField> fields, Long cursor, int size,
+                                     List<ComplaintVersion> versions) {
+        final var tag = new StringBuilder().append(filter).append('/').append(fields).append('/').append(cursor)
+                .append('/').append(size);
+        versions.forEach(version -> tag.append(';').append(version.id()).append(':').append(version.version()));
+        return DigestUtils.md5DigestAsHex(tag.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Finds a specific complaint by its ID, served from the {@link ComplaintCache} when possible.
      *
      * @param complaintId the ID of the complaint to retrieve
-     * @return the complaint if found, empty Optional otherwise
+     * @return the complaint with its version if found, empty Optional otherwise
      */
-    public Optional<ComplaintRetrievalDto> getComplaintById(long complaintId) {
+    public Optional<VersionedComplaint> getComplaintById(long complaintId) {
         LOG.info("Retrieving complaint with ID: {}", complaintId);
 
-        final var complaint = complaintRepository.findById(complaintId);
+        final var complaint = getTimer.record(() -> complaintCache.get(complaintId,
+                id -> onComplaintShard(id, () -> transactionTemplate.execute(status ->
+                        complaintRepository.findVersionedById(id)))));
 
         if (complaint.isPresent()) {
             LOG.debug("Found complaint with ID: {}", complaintId);
-            return complaint.map(complaintMapper::entityToRetrievalDto);
         } else {
             LOG.warn("Complaint with ID: {} not found", complaintId);
-            return Optional.empty();
         }
+        return complaint;
+    }
+
+    /**
+     * Finds the version of a complaint, from the {@link ComplaintCache} or else without loading the complaint.
+     *
+     * @param complaintId the ID of the complaint
+     * @return the version if the complaint exists, empty Optional otherwise
+     */
+    public Optional<Long> getComplaintVersion(long complaintId) {
+        return complaintCache.getIfPresent(complaintId)
+                .map(VersionedComplaint::version)
+                .or(() -> onComplaintShard(complaintId, () -> transactionTemplate.execute(status ->
+                        complaintRepository.findVersionById(complaintId))));
+    }
+
+    /**
+     * Runs a lookup on the shard of a complaint, an ID of a shard that does not exist is not found.
+     */
+    private <T> Optional<T> onComplaintShard(long complaintId, Supplier<Optional<T>> lookup) {
+        final var shard = ShardRouter.shardOfComplaint(complaintId);
+        return shardRouter.hasShard(shard) ? shardRouter.onShard(shard, lookup) : Optional.empty();
     }
 }
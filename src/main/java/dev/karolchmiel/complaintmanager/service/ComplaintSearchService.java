@@ -0,0 +1,218 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchHitDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchPageDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import dev.karolchmiel.complaintmanager.model.Complaint;
+import dev.karolchmiel.complaintmanager.model.ComplaintSearchHit;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintSearchRepository;
+import dev.karolchmiel.complaintmanager.util.ContentTokenizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ranked full-text search over complaint content, answered from the inverted index maintained by
+ * {@link ComplaintSearchRepository} instead of scanning the content column.
+ * <p>
+ * Complaints are ranked by the sum over the searched terms of the term's occurrences in the complaint times its
+ * inverse document frequency, so rare terms weigh more than terms found in most complaints. Searches run in
+ * read-only transactions, served by a replica when there are any.
+ * <p>
+ * With sharding, the document frequencies are summed over every shard so that scores are comparable across
+ * shards, every shard ranks its complaints up to the end of the requested page and the rankings are merged.
+ */
+@Service
+public class ComplaintSearchService implements SmartInitializingSingleton {
+    public static final int MAX_SEARCH_TERMS = 10;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ComplaintSearchService.class);
+
+    private final ComplaintSearchRepository searchRepository;
+    private final ComplaintRepository complaintRepository;
+    private final ComplaintMapper complaintMapper;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final int reindexChunkSize;
+    private final Timer searchTimer;
+    private final Timer reindexTimer;
+
+    public ComplaintSearchService(ComplaintSearchRepository searchRepository,
+                                  ComplaintRepository complaintRepository,
+                                  ComplaintMapper complaintMapper,
+                                  ShardRouter shardRouter,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${complaints.search.reindex-chunk-size:1000}") int reindexChunkSize) {
+        this.searchRepository = searchRepository;
+        this.complaintRepository = complaintRepository;
+        this.complaintMapper = complaintMapper;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.reindexChunkSize = reindexChunkSize;
+        this.searchTimer = ComplaintMetrics.operationTimer(meterRegistry, "search");
+        this.reindexTimer = ComplaintMetrics.operationTimer(meterRegistry, "reindex");
+    }
+
+    /**
+     * Searches complaints containing any of the terms of the query. Only the first {@value #MAX_SEARCH_TERMS}
+     * distinct terms are searched.
+     *
+     * @param query the words to search for
+     * @param page the zero-based number of the page
+     * @param size the maximum number of complaints on the page
+     * @return the page of matching complaints, most relevant first, together with the number of the next page
+     */
+    public ComplaintSearchPageDto search(String query, int page, int size) {
+        LOG.info("Searching complaints for '{}', page: {} with page size: {}", query, page, size);
+        final var terms = ContentTokenizer.termFrequencies(query).keySet().stream().limit(MAX_SEARCH_TERMS).toList();
+        return searchTimer.record(() -> shardRouter.shardCount() == 1
+                ? transactionTemplate.execute(status -> loadPage(terms, page, size))
+                : loadShardedPage(terms, page, size));
+    }
+
+    private ComplaintSearchPageDto loadPage(List<String> terms, int page, int size) {
+        final var documentFrequencies = searchRepository.findDocumentFrequencies(terms);
+        if (documentFrequencies.isEmpty()) {
+            return new ComplaintSearchPageDto(List.of(), null);
+        }
+
+        final var weights = weights(documentFrequencies, searchRepository.countComplaints());
+        final var hits = searchRepository.search(weights, (long) page * size, size + 1);
+        LOG.debug("Found {} matching complaints for terms {}", hits.size(), weights.keySet());
+        return toPage(hits, page, size, complaintRepository::findAllById);
+    }
+
+    private ComplaintSearchPageDto loadShardedPage(List<String> terms, int page, int size) {
+        final var shardStatistics = shardRouter.onEveryShard(() -> transactionTemplate.execute(status ->
+                new TermStatistics(searchRepository.findDocumentFrequencies(terms), searchRepository.countComplaints())));
+        final var documentFrequencies = new LinkedHashMap<String, Long>();
+        long complaints = 0;
+        for (final var statistics : shardStatistics) {
+            statistics.documentFrequencies().forEach((term, frequency) ->
+                    documentFrequencies.merge(term, frequency, Long::sum));
+            complaints += statistics.complaints();
+        }
+        if (documentFrequencies.isEmpty()) {
+            return new ComplaintSearchPageDto(List.of(), null);
+        }
+
+        final var weights = weights(documentFrequencies, complaints);
+        final var offset = (long) page * size;
+        final var limit = Math.toIntExact(offset + size + 1);
+        final var hits = shardRouter.onEveryShard(() -> transactionTemplate.execute(status ->
+                        searchRepository.search(weights, 0, limit))).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingDouble(ComplaintSearchHit::score).reversed()
+                        .thenComparingLong(ComplaintSearchHit::complaintId))
+                .skip(offset)
+                .limit(size + 1)
+                .toList();
+        LOG.debug("Found {} matching complaints for terms {} on {} shards", hits.size(), weights.keySet(),
+                shardRouter.shardCount());
+        return toPage(hits, page, size, this::findAllOnShards);
+    }
+
+    private static Map<String, Double> weights(Map<String, Long> documentFrequencies, double complaints) {
+        final var weights = new LinkedHashMap<String, Double>();
+        documentFrequencies.forEach((term, frequency) ->
+                weights.put(term, Math.log(1 + (complaints - frequency + 0.5) / (frequency + 0.5))));
+        return weights;
+    }
+
+    private ComplaintSearchPageDto toPage(List<ComplaintSearchHit> hits, int page, int size,
+                                          Function<List<Long>, List<Complaint>> loader) {
+        final var hasNextPage = hits.size() > size;
+        final var pageHits = hasNextPage ? hits.subList(0, size) : hits;
+        final Map<Long, Complaint> complaintsById = loader
+                .apply(pageHits.stream().map(ComplaintSearchHit::complaintId).toList()).stream()
+                .collect(Collectors.toMap(Complaint::getId, Function.identity()));
+        final var results = pageHits.stream()
+                .filter(hit -> complaintsById.containsKey(hit.complaintId()))
+                .map(hit -> new ComplaintSearchHitDto(
+                        complaintMapper.entityToRetrievalDto(complaintsById.get(hit.complaintId())), hit.score()))
+                .toList();
+        return new ComplaintSearchPageDto(results, hasNextPage ? page + 1 : null);
+    }
+
+    private List<Complaint> findAllOnShards(List<Long> complaintIds) {
+        return complaintIds.stream()
+                .collect(Collectors.groupingBy(ShardRouter::shardOfComplaint))
+                .entrySet().stream()
+                .flatMap(shard -> shardRouter.onShard(shard.getKey(), () -> transactionTemplate.execute(status ->
+                        complaintRepository.findAllById(shard.getValue()))).stream())
+                .toList();
+    }
+
+    /**
+     * Catches the index up once every bean is created, before the web server, the scheduled tasks and the startup
+     * import are started, so no request of this instance competes with the reindexing locks.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        catchUpIndex();
+    }
+
+    /**
+     * Brings the index up to date with the complaint table. Complaints whose content was written above the indexed
+     * content version, by writes that bypassed the application or before the index existed, are reindexed in
+     * chunks of {@code complaints.search.reindex-chunk-size}; count increments and country enrichment do not change
+     * the content version, so they never cause a reindex. An index that has never been built is rebuilt from every
+     * complaint. With sharding, the index of every shard is brought up to date in turn.
+     */
+    public void catchUpIndex() {
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.onShard(shard, () -> {
+                catchUpShardIndex();
+                return null;
+            });
+        }
+    }
+
+    private void catchUpShardIndex() {
+        reindexTimer.record(() -> {
+            final var targetVersion = searchRepository.findMaxContentVersion();
+            final var indexedVersion = searchRepository.findIndexedVersion();
+            if (indexedVersion.isPresent() && indexedVersion.get() >= targetVersion) {
+                LOG.info("Search index is up to date at version {}", indexedVersion.get());
+                return;
+            }
+            LOG.info(indexedVersion.isPresent()
+                            ? "Search index is stale, reindexing complaints written after version {}"
+                            : "Search index is missing, rebuilding it from all complaints",
+                    indexedVersion.orElse(0L));
+
+            long lastId = 0;
+            long reindexed = 0;
+            List<Long> ids;
+            do {
+                ids = searchRepository.reindexAfter(lastId, indexedVersion.orElse(0L), reindexChunkSize);
+                if (!ids.isEmpty()) {
+                    lastId = ids.getLast();
+                    reindexed += ids.size();
+                }
+            } while (ids.size() == reindexChunkSize);
+            searchRepository.saveIndexedVersion(targetVersion);
+            LOG.info("Reindexed {} complaints, search index is at version {}", reindexed, targetVersion);
+        });
+    }
+
+    private record TermStatistics(Map<String, Long> documentFrequencies, long complaints) {
+    }
+}
@@ -0,0 +1,94 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.api.dto.CountryStatsDto;
+import dev.karolchmiel.complaintmanager.api.dto.ProductStatsDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import dev.karolchmiel.complaintmanager.model.CountryStats;
+import dev.karolchmiel.complaintmanager.repository.ComplaintStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Serves complaint statistics from the summary tables maintained by {@link ComplaintStatsRepository}, so reading
+ * them never scans the complaints. Statistics are read in read-only transactions, served by a replica when there
+ * are any. With sharding, the statistics of a product are read from its shard and those of the countries are
+ * summed over every shard.
+ */
+@Service
+public class ComplaintStatsService {
+    private static final Logger LOG = LoggerFactory.getLogger(ComplaintStatsService.class);
+
+    private final ComplaintStatsRepository statsRepository;
+    private final ComplaintMapper complaintMapper;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer statsTimer;
+
+    public ComplaintStatsService(ComplaintStatsRepository statsRepository,
+                                 ComplaintMapper complaintMapper,
+                                 ShardRouter shardRouter,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.statsRepository = statsRepository;
+        this.complaintMapper = complaintMapper;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.statsTimer = ComplaintMetrics.operationTimer(meterRegistry, "stats");
+    }
+
+    /**
+     * Retrieves the statistics of a product with a single primary key lookup.
+     *
+     * @param productId the ID of the product
+     * @return the statistics if the product has been complained about, empty Optional otherwise
+     */
+    public Optional<ProductStatsDto> getProductStats(long productId) {
+        LOG.info("Retrieving statistics of product ID: {}", productId);
+        return statsTimer.record(() -> shardRouter.onShard(shardRouter.shardOfProduct(productId),
+                () -> transactionTemplate.execute(status -> statsRepository.findProductStats(productId)
+                        .map(complaintMapper::productStatsToDto))));
+    }
+
+    /**
+     * Retrieves the statistics of every complainant country. Complaints whose country is not resolved yet are
+     * not counted.
+     *
+     * @return the statistics of every country, most complaints first
+     */
+    public List<CountryStatsDto> getCountryStats() {
+        LOG.info("Retrieving statistics of complainant countries");
+        return statsTimer.record(() -> mergeCountryStats(shardRouter.onEveryShard(
+                () -> transactionTemplate.execute(status -> statsRepository.findCountryStats())))
+                .stream()
+                .map(complaintMapper::countryStatsToDto)
+                .toList());
+    }
+
+    private static List<CountryStats> mergeCountryStats(List<List<CountryStats>> statsByShard) {
+        if (statsByShard.size() == 1) {
+            return statsByShard.getFirst();
+        }
+        return statsByShard.stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(CountryStats::country, Function.identity(),
+                        (first, second) -> new CountryStats(first.country(),
+                                first.totalComplaints() + second.totalComplaints())))
+                .values().stream()
+                .sorted(Comparator.comparingLong(CountryStats::totalComplaints).reversed()
+                        .thenComparing(stats -> stats.country().name()))
+                .toList();
+    }
+}
@@ -3,95 +3,190 @@ package dev.karolchmiel.complaintmanager.service;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintUpdateDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintEvent;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
 import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
 import dev.karolchmiel.complaintmanager.model.Complaint;
 import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintSearchRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintStatsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 public class ComplaintWriteService {
     private static final Logger LOG = LoggerFactory.getLogger(ComplaintWriteService.class);
 
     private final ComplaintRepository complaintRepository;
+    private final ComplaintStatsRepository statsRepository;
+    private final ComplaintSearchRepository searchRepository;
     private final ComplaintMapper complaintMapper;
-    private final IpGeolocationService ipGeolocationService;
+    private final CountryEnrichmentService countryEnrichmentService;
+    private final Optional<ComplaintCountAggregator> countAggregator;
+    private final ComplaintCache complaintCache;
+    private final ShardRouter shardRouter;
+    private final ComplaintEventFeed eventFeed;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer createTimer;
+    private final Timer updateTimer;
+    private final Counter createdCounter;
+    private final Counter incrementedCounter;
+    private final Counter updatedCounter;
+    private final Counter updateNotFoundCounter;
 
     public ComplaintWriteService(ComplaintRepository complaintRepository,
+                                ComplaintStatsRepository statsRepository,
+                                ComplaintSearchRepository searchRepository,
                                 ComplaintMapper complaintMapper,
-                                IpGeolocationService ipGeolocationService) {
+                                CountryEnrichmentService countryEnrichmentService,
+                                Optional<ComplaintCountAggregator> countAggregator,
+                                ComplaintCache complaintCache,
+                                ShardRouter shardRouter,
+                                ComplaintEventFeed eventFeed,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
         this.complaintRepository = complaintRepository;
+        this.statsRepository = statsRepository;
+        this.searchRepository = searchRepository;
         this.complaintMapper = complaintMapper;
-        this.ipGeolocationService = ipGeolocationService;
+        this.countryEnrichmentService = countryEnrichmentService;
+        this.countAggregator = countAggregator;
+        this.complaintCache = complaintCache;
+        this.shardRouter = shardRouter;
+        this.eventFeed = eventFeed;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.createTimer = ComplaintMetrics.operationTimer(meterRegistry, "create");
+        this.updateTimer = ComplaintMetrics.operationTimer(meterRegistry, "update");
+        this.createdCounter = ComplaintMetrics.submissionCounter(meterRegistry, "created");
+        this.incrementedCounter = ComplaintMetrics.submissionCounter(meterRegistry, "incremented");
+        this.updatedCounter = ComplaintMetrics.updateCounter(meterRegistry, "updated");
+        this.updateNotFoundCounter = ComplaintMetrics.updateCounter(meterRegistry, "not_found");
     }
 
     /**
      * Adds a new complaint record or increments the count of an existing complaint
-     * based on the product ID and complainant combination. If a matching complaint
-     * is found, its count is increased. If no match is found, a new complaint
-     * is created and saved.
+     * based on the product ID and complainant combination. Both cases are handled by a single
+     * atomic upsert statement on the shard of the product, so concurrent duplicates are counted exactly. The product and country statistics
+     * and the search index are updated in the same transaction as the upsert. A new complaint is
+     * persisted without a country and queued for background country enrichment, so the returned
+     * complaint never waits for the IP geolocation API. Once committed, the change is published to the
+     * {@link ComplaintEventFeed}.
+     * <p>
+     * With {@code complaints.write-behind.enabled=true}, repeat submissions of a recently seen complaint are
+     * counted in memory by the {@link ComplaintCountAggregator} and written back in periodic batches; the returned
+     * count is then the in-memory running total, and the increment is published once it is flushed.
      *
      * @param dto the data transfer object containing details of the complaint
-     * @param remoteAddr the IP address of the complainant used to determine the complainant's country
+     * @param remoteAddr the IP address of the complainant used to determine the complainant's country later
      * @return a {@link ComplaintRetrievalDto} representing the persisted complaint
      */
-    @Transactional
     public ComplaintRetrievalDto addNewOrIncrementCount(ComplaintCreationDto dto, String remoteAddr) {
         LOG.info("Processing complaint for product ID: {} from complainant: {}", dto.productId(), dto.complainant());
 
-        final var existingComplaint = complaintRepository
-                .findByProductIdAndComplainant(dto.productId(), dto.complainant());
-
-        final var complaint = existingComplaint
-                .map(c -> {
-                    LOG.info("Found existing complaint with ID: {}, incrementing count", c.getId());
-                    return c.incrementCount();
-                })
-                .orElseGet(() -> {
-                    LOG.info("Creating new complaint for product ID: {} from complainant: {}",
-                            dto.productId(), dto.complainant());
-                    return createNewComplaint(dto, remoteAddr);
-                });
-
-        final var savedComplaint = complaintRepository.save(complaint);
-        LOG.info("Saved complaint with ID: {}", savedComplaint.getId());
-
-        return complaintMapper.entityToRetrievalDto(savedComplaint);
+        final var complaint = createTimer.record(() -> countAggregator
+                .map(aggregator -> aggregator.increment(dto.productId(), dto.complainant(),
+                        () -> persistNewOrIncrementCount(dto, remoteAddr)))
+                .orElseGet(() -> persistNewOrIncrementCount(dto, remoteAddr)));
+        (complaint.count() == 1 ? createdCounter : incrementedCounter).increment();
+        return complaint;
     }
 
     /**
-     * Updates the content of an existing complaint based on its ID.
+     * Updates the content of an existing complaint based on its ID, reindexing it for search in the same
+     * transaction on the shard encoded in the ID. The complaint is evicted from the {@link ComplaintCache} after
+     * the update commits, so following reads return the new content, and the new content is published to the
+     * {@link ComplaintEventFeed} with the version the update gave the row.
      *
      * @param complaintId the ID of the complaint to update
      * @param dto the data transfer object containing the updated content for the complaint
      * @return true if the complaint was successfully updated, false otherwise
      */
-    @Transactional
     public boolean updateComplaint(long complaintId, ComplaintUpdateDto dto) {
         LOG.info("Updating content for complaint ID: {}", complaintId);
-        final var rowsUpdated = complaintRepository.updateComplaintContent(complaintId, dto.content());
+        final var shard = ShardRouter.shardOfComplaint(complaintId);
+        final Long version = shardRouter.hasShard(shard) ? shardRouter.onShard(shard,
+                () -> transactionTemplate.execute(status -> updateContent(complaintId, dto))) : null;
 
-        if (rowsUpdated > 0) {
+        if (version != null) {
             LOG.info("Successfully updated complaint ID: {}", complaintId);
+            updatedCounter.increment();
+            eventFeed.publish(ComplaintEvent.Type.CONTENT_UPDATED, new VersionedComplaint(
+                    new ComplaintRetrievalDto(complaintId, null, dto.content(), null, null, null, null), version));
+            countAggregator.ifPresent(aggregator -> aggregator.contentUpdated(complaintId, dto.content()));
             return true;
         } else {
             LOG.warn("Failed to update complaint ID: {}, complaint not found", complaintId);
+            updateNotFoundCounter.increment();
             return false;
         }
     }
 
-    private Complaint createNewComplaint(ComplaintCreationDto dto, String remoteAddr) {
-        final var complaint = complaintMapper.creationDtoToEntity(dto);
-        complaint.setCreationDate(LocalDateTime.now());
-        complaint.setCount(1);
+    /**
+     * @return the version of the updated row, read under the row lock of the update, or null if there is no such
+     * complaint
+     */
+    private Long updateContent(long complaintId, ComplaintUpdateDto dto) {
+        final int rowsUpdated = updateTimer.record(
+                () -> complaintRepository.updateComplaintContent(complaintId, dto.content()));
+        if (rowsUpdated == 0) {
+            return null;
+        }
+        searchRepository.index(Map.of(complaintId, dto.content()));
+        complaintCache.evict(complaintId);
+        return complaintRepository.findVersionById(complaintId).orElseThrow();
+    }
+
+    private ComplaintRetrievalDto persistNewOrIncrementCount(ComplaintCreationDto dto, String remoteAddr) {
+        final var complaint = upsert(dto);
+        complaintCache.evict(complaint.getId());
+        if (complaint.getCount() == 1) {
+            LOG.info("Created new complaint with ID: {} for product ID: {} from complainant: {}",
+                    complaint.getId(), dto.productId(), dto.complainant());
+            countryEnrichmentService.submit(complaint.getId(), remoteAddr);
+        } else {
+            LOG.info("Incremented count of existing complaint with ID: {} to {}", complaint.getId(), complaint.getCount());
+        }
+
+        final var retrievalDto = complaintMapper.entityToRetrievalDto(complaint);
+        eventFeed.publish(complaint.getCount() == 1 ? ComplaintEvent.Type.CREATED : ComplaintEvent.Type.INCREMENTED,
+                new VersionedComplaint(retrievalDto, complaint.getVersion()));
+        return retrievalDto;
+    }
 
-        ipGeolocationService.getCountryFromIp(remoteAddr)
-                .ifPresent(complaint::setComplainantCountry);
+    private Complaint upsert(ComplaintCreationDto dto) {
+        return shardRouter.onShard(shardRouter.shardOfProduct(dto.productId()), () -> {
+            try {
+                return transactionTemplate.execute(status -> executeUpsert(dto));
+            } catch (DataIntegrityViolationException e) {
+                LOG.info("Concurrent submission created complaint for product ID: {} from complainant: {} first, " +
+                        "retrying as increment", dto.productId(), dto.complainant());
+                return transactionTemplate.execute(status -> executeUpsert(dto));
+            }
+        });
+    }
 
+    private Complaint executeUpsert(ComplaintCreationDto dto) {
+        final var complaint = complaintRepository.upsertIncrementingCount(
+                dto.productId(), dto.content(), dto.complainant(), LocalDateTime.now());
+        if (complaint.getCount() == 1) {
+            statsRepository.recordNewComplaints(List.of(complaint));
+            searchRepository.index(Map.of(complaint.getId(), complaint.getContent()));
+        } else {
+            statsRepository.recordIncrement(complaint);
+        }
         return complaint;
     }
 }
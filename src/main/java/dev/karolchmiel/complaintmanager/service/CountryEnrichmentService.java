@@ -0,0 +1,218 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the complainant country of newly created complaints in the background, so that creating a complaint
+ * never waits for the IP geolocation API. Pending complaints are held in a bounded queue and written back in
+ * JDBC batches. Enrichment is best effort: complaints that are dropped on overflow, whose lookup fails, or that
+ * are still queued when the application stops keep a null country.
+ */
+@Service
+public class CountryEnrichmentService {
+    private static final Logger LOG = LoggerFactory.getLogger(CountryEnrichmentService.class);
+
+    /**
+     * What to do with a submission when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the submitted complaint, keeping the ones already waiting. */
+        DROP_NEWEST,
+        /** Discard the longest-waiting complaint to make room for the submitted one. */
+        DROP_OLDEST
+    }
+
+    private final IpGeolocationService ipGeolocationService;
+    private final ComplaintRepository complaintRepository;
+    private final ComplaintCache complaintCache;
+    private final Optional<ComplaintCountAggregator> countAggregator;
+    private final ShardRouter shardRouter;
+    private final BlockingQueue<PendingEnrichment> queue;
+    private final int batchSize;
+    private final Semaphore batchPermits;
+    private final OverflowPolicy overflowPolicy;
+    private final Counter droppedCounter;
+    private final Counter resolvedCounter;
+    private final Counter unresolvedCounter;
+    private final Timer enrichmentDelay;
+
+    public CountryEnrichmentService(IpGeolocationService ipGeolocationService,
+                                    ComplaintRepository complaintRepository,
+                                    ComplaintCache complaintCache,
+                                    Optional<ComplaintCountAggregator> countAggregator,
+                                    ShardRouter shardRouter,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${geolocation.enrichment.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${geolocation.enrichment.batch-size:100}") int batchSize,
+                                    @Value("${geolocation.enrichment.max-concurrent-batches:4}") int maxConcurrentBatches,
+                                    @Value("${geolocation.enrichment.overflow-policy:DROP_NEWEST}") OverflowPolicy overflowPolicy) {
+        this.ipGeolocationService = ipGeolocationService;
+        this.complaintRepository = complaintRepository;
+        this.complaintCache = complaintCache;
+        this.countAggregator = countAggregator;
+        this.shardRouter = shardRouter;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.batchPermits = new Semaphore(maxConcurrentBatches);
+        this.overflowPolicy = overflowPolicy;
+
+        Gauge.builder("complaint.enrichment.queue.depth", queue, BlockingQueue::size)
+                .description("Complaints waiting for country enrichment")
+                .register(meterRegistry);
+        TimeGauge.builder("complaint.enrichment.lag", this, TimeUnit.NANOSECONDS,
+                        CountryEnrichmentService::oldestPendingAgeNanos)
+                .description("Time the oldest complaint in the queue has been waiting")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("complaint.enrichment.dropped")
+                .description("Complaints discarded because the enrichment queue was full")
+                .register(meterRegistry);
+        this.resolvedCounter = Counter.builder("complaint.enrichment.processed")
+                .tag("outcome", "resolved")
+                .register(meterRegistry);
+        this.unresolvedCounter = Counter.builder("complaint.enrichment.processed")
+                .tag("outcome", "unresolved")
+                .register(meterRegistry);
+        this.enrichmentDelay = Timer.builder("complaint.enrichment.delay")
+                .description("Time from submission until the complaint's enrichment was processed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a newly created complaint for country resolution. Never blocks; when the queue is full the
+     * configured {@link OverflowPolicy} decides which complaint is discarded.
+     *
+     * @param complaintId the ID of the complaint to enrich
+     * @param ipAddress the IP address of the complainant
+     */
+    public void submit(long complaintId, String ipAddress) {
+        final var pending = new PendingEnrichment(complaintId, ipAddress, System.nanoTime());
+        if (queue.offer(pending)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST -> drop(pending);
+            case DROP_OLDEST -> {
+                final var evicted = queue.poll();
+                if (evicted != null) {
+                    drop(evicted);
+                }
+                if (!queue.offer(pending)) {
+                    drop(pending);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drains the queue in batches of at most {@code geolocation.enrichment.batch-size} complaints,
+     * resolving each distinct IP address once per batch and writing the countries back in one JDBC batch.
+     * All lookups of a batch are started before waiting for any of them, so with {@code ipapi.batch.enabled=true}
+     * they are resolved with a single batch API call.
+     * <p>
+     * The scheduling thread only starts the lookups: a batch is written back by the thread that completes its last
+     * lookup, so a slow API never holds up the other scheduled tasks. At most
+     * {@code geolocation.enrichment.max-concurrent-batches} batches are in flight; further complaints wait in the
+     * queue for the next poll.
+     */
+    @Scheduled(fixedDelayString = "${geolocation.enrichment.poll-interval:200}")
+    public void processPending() {
+        while (!queue.isEmpty() && batchPermits.tryAcquire()) {
+            final var batch = new ArrayList<PendingEnrichment>(batchSize);
+            if (queue.drainTo(batch, batchSize) == 0) {
+                batchPermits.release();
+                return;
+            }
+            enrich(batch).whenComplete((stored, e) -> batchPermits.release());
+        }
+    }
+
+    private CompletableFuture<Void> enrich(List<PendingEnrichment> batch) {
+        final var countriesByIp = new HashMap<String, CompletableFuture<Optional<CountryCode>>>();
+        batch.forEach(pending -> countriesByIp.computeIfAbsent(pending.ipAddress(), this::lookUpCountry));
+        return CompletableFuture.allOf(countriesByIp.values().toArray(CompletableFuture[]::new))
+                .thenRun(() -> store(batch, countriesByIp));
+    }
+
+    private void store(List<PendingEnrichment> batch,
+                       Map<String, CompletableFuture<Optional<CountryCode>>> countriesByIp) {
+        final var countriesByComplaintId = new HashMap<Long, CountryCode>();
+        for (final var pending : batch) {
+            countriesByIp.get(pending.ipAddress()).resultNow()
+                    .ifPresentOrElse(
+                            country -> countriesByComplaintId.put(pending.complaintId(), country),
+                            unresolvedCounter::increment);
+        }
+
+        try {
+            var updated = 0;
+            for (final var shard : shardRouter.byComplaintShard(countriesByComplaintId).entrySet()) {
+                updated += shardRouter.onShard(shard.getKey(),
+                        () -> complaintRepository.updateComplainantCountries(shard.getValue()));
+                countAggregator.ifPresent(aggregator -> shard.getValue().forEach(aggregator::countryRecorded));
+            }
+            complaintCache.evictAll(countriesByComplaintId.keySet());
+            resolvedCounter.increment(countriesByComplaintId.size());
+            LOG.info("Enriched {} of {} complaints with complainant country", updated, batch.size());
+        } catch (Exception e) {
+            LOG.error("Failed to store complainant country for {} complaints", countriesByComplaintId.size(), e);
+        }
+
+        final var now = System.nanoTime();
+        batch.forEach(pending -> enrichmentDelay.record(now - pending.submittedAt(), TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Starts the lookup of an IP address. A failed lookup resolves to no country, so that it only leaves the
+     * complaints of that address unresolved instead of losing the whole batch.
+     */
+    private CompletableFuture<Optional<CountryCode>> lookUpCountry(String ipAddress) {
+        try {
+            return ipGeolocationService.getCountryFromIpAsync(ipAddress).handle((country, e) -> {
+                if (e != null) {
+                    LOG.warn("Failed to resolve country of IP: {}", ipAddress, e);
+                }
+                return country == null ? Optional.<CountryCode>empty() : country;
+            });
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to resolve country of IP: {}", ipAddress, e);
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+    }
+
+    private void drop(PendingEnrichment pending) {
+        droppedCounter.increment();
+        LOG.warn("Enrichment queue full, complaint ID: {} will be left without complainant country",
+                pending.complaintId());
+    }
+
+    private double oldestPendingAgeNanos() {
+        final var oldest = queue.peek();
+        return oldest == null ? 0 : System.nanoTime() - oldest.submittedAt();
+    }
+
+    private record PendingEnrichment(long complaintId, String ipAddress, long submittedAt) {
+    }
+}
@@ -0,0 +1,64 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes RFC 4180 CSV with a header line. Fields containing a comma, a quote or a line break are quoted.
+ */
+class CsvExportWriter implements ComplaintExportWriter {
+    private static final String HEADER = "id,productId,content,creationDate,complainant,complainantCountry,count";
+    private static final String LINE_BREAK = "\r\n";
+
+    private final Writer writer;
+
+    CsvExportWriter(OutputStream output) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.write(LINE_BREAK);
+    }
+
+    @Override
+    public void writeRow(ResultSet row) throws IOException, SQLException {
+        writer.write(Long.toString(row.getLong(1)));
+        writer.write(',');
+        writer.write(Long.toString(row.getLong(2)));
+        writer.write(',');
+        writeField(row.getString(3));
+        writer.write(',');
+        writer.write(row.getObject(4, LocalDateTime.class).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        writer.write(',');
+        writeField(row.getString(5));
+        writer.write(',');
+        writeField(row.getString(6));
+        writer.write(',');
+        writer.write(Integer.toString(row.getInt(7)));
+        writer.write(LINE_BREAK);
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+}
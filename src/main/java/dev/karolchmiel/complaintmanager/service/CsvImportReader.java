@@ -0,0 +1,145 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.dto.ImportedComplaint;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV with a header line, as written by {@link CsvExportWriter}. Columns are matched by name:
+ * {@code productId}, {@code content} and {@code complainant} are required, {@code complainantCountry} is optional
+ * and other columns are ignored. Lines may end with CRLF or LF, and quoted fields may span lines. A leading
+ * byte order mark is skipped.
+ */
+class CsvImportReader implements ComplaintImportReader {
+    private static final int END_OF_INPUT = -1;
+    private static final int BYTE_ORDER_MARK = '\uFEFF';
+
+    private final BufferedReader reader;
+    private final int productIdColumn;
+    private final int contentColumn;
+    private final int complainantColumn;
+    private final int complainantCountryColumn;
+    private long lineNumber = 1;
+    private int next;
+
+    CsvImportReader(InputStream input) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.next = reader.read();
+        if (next == BYTE_ORDER_MARK) {
+            next = reader.read();
+        }
+        final var header = readRecord();
+        if (header == null) {
+            throw new MalformedImportException(1, "Missing header line");
+        }
+        this.productIdColumn = requiredColumn(header, "productId");
+        this.contentColumn = requiredColumn(header, "content");
+        this.complainantColumn = requiredColumn(header, "complainant");
+        this.complainantCountryColumn = header.indexOf("complainantCountry");
+    }
+
+    @Override
+    public ImportedComplaint next() throws IOException {
+        List<String> record;
+        long recordLine;
+        do {
+            recordLine = lineNumber;
+            record = readRecord();
+            if (record == null) {
+                return null;
+            }
+        } while (record.size() == 1 && record.getFirst().isEmpty());
+
+        return new ImportedComplaint(
+                parseProductId(field(record, productIdColumn), recordLine),
+                emptyToNull(field(record, contentColumn)),
+                emptyToNull(field(record, complainantColumn)),
+                complainantCountryColumn < 0 ? null : emptyToNull(field(record, complainantCountryColumn)));
+    }
+
+    /**
+     * @return the fields of the next record, or null at the end of the input
+     */
+    private List<String> readRecord() throws IOException {
+        if (next == END_OF_INPUT) {
+            return null;
+        }
+        final var fields = new ArrayList<String>();
+        final var field = new StringBuilder();
+        final var recordLine = lineNumber;
+        var quoted = false;
+        while (true) {
+            final var c = next;
+            if (c == END_OF_INPUT) {
+                if (quoted) {
+                    throw new MalformedImportException(recordLine, "Unterminated quoted field");
+                }
+                break;
+            }
+            next = reader.read();
+            if (quoted) {
+                if (c == '"' && next == '"') {
+                    field.append('"');
+                    next = reader.read();
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                lineNumber++;
+                break;
+            } else if (c != '\r' || next != '\n') {
+                field.append((char) c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int requiredColumn(List<String> header, String name) throws MalformedImportException {
+        final var column = header.indexOf(name);
+        if (column < 0) {
+            throw new MalformedImportException(1, "Missing column " + name);
+        }
+        return column;
+    }
+
+    private static String field(List<String> record, int column) {
+        return column < record.size() ? record.get(column) : "";
+    }
+
+    private static Long parseProductId(String value, long lineNumber) throws MalformedImportException {
+        if (value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new MalformedImportException(lineNumber, "Product ID is not a number: " + value);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,25 @@
+package dev.karolchmiel.complaintmanager.service;
+
+/**
+ * Thrown when a request carries an idempotency key that cannot be answered from the {@link IdempotencyStore}.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    public enum Reason {
+        /** The key was already used for a different request. */
+        KEY_REUSED,
+        /** The first request with the key has not finished within the wait timeout. */
+        IN_PROGRESS
+    }
+
+    private final Reason reason;
+
+    public IdempotencyConflictException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,159 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.service.IdempotencyConflictException.Reason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Responses to complaint submissions by their {@code Idempotency-Key}, so a retried submission is answered with
+ * the first response instead of being counted again. At most {@code complaints.idempotency.maximum-size} keys
+ * are kept, each for {@code complaints.idempotency.ttl} after its response was stored.
+ * <p>
+ * A key is claimed together with the submission it was first used for before that submission runs, so a
+ * duplicate arriving while the first one is in flight waits for its response, up to
+ * {@code complaints.idempotency.wait-timeout}, instead of running in parallel. Claimed keys are held outside the
+ * size-bounded cache until their submission completes, so eviction cannot let a duplicate through. Only successful
+ * responses are kept: when the first submission fails its key is released and the next retry runs afresh.
+ * <p>
+ * Metrics are published as the {@code cache.*} meters tagged {@code cache=idempotency-keys}, plus the
+ * {@code complaint.idempotency} counter tagged with the {@code outcome}.
+ */
+@Component
+public class IdempotencyStore {
+    private static final Logger LOG = LoggerFactory.getLogger(IdempotencyStore.class);
+    private static final String CACHE_NAME = "idempotency-keys";
+
+    private final Cache<String, StoredSubmission> submissions;
+    private final ConcurrentMap<String, StoredSubmission> inFlight = new ConcurrentHashMap<>();
+    private final Duration waitTimeout;
+    private final Counter executedCounter;
+    private final Counter replayedCounter;
+    private final Counter conflictCounter;
+
+    public IdempotencyStore(MeterRegistry meterRegistry,
+                            @Value("${complaints.idempotency.maximum-size:100000}") long maximumSize,
+                            @Value("${complaints.idempotency.ttl:1h}") Duration ttl,
+                            @Value("${complaints.idempotency.wait-timeout:10s}") Duration waitTimeout) {
+        this.submissions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.waitTimeout = waitTimeout;
+        CaffeineCacheMetrics.monitor(meterRegistry, submissions, CACHE_NAME);
+        this.executedCounter = outcomeCounter(meterRegistry, "executed");
+        this.replayedCounter = outcomeCounter(meterRegistry, "replayed");
+        this.conflictCounter = outcomeCounter(meterRegistry, "conflict");
+    }
+
+    /**
+     * Runs the submission if its key is new, or returns the response of the first submission with the key.
+     *
+     * @param key the idempotency key sent by the client
+     * @param dto the submitted complaint
+     * @param submission submits the complaint
+     * @return the response, and whether it is a replay of an earlier submission
+     * @throws IdempotencyConflictException if the key was used for a different complaint, or its first submission
+     * is still running after the wait timeout
+     */
+    public IdempotentResponse submit(String key, ComplaintCreationDto dto,
+                                     Supplier<ComplaintRetrievalDto> submission) {
+        final var completed = submissions.getIfPresent(key);
+        if (completed != null) {
+            return replay(key, dto, completed);
+        }
+        final var pending = new StoredSubmission(dto, new CompletableFuture<>());
+        final var running = inFlight.putIfAbsent(key, pending);
+        if (running != null) {
+            return replay(key, dto, running);
+        }
+        // the first submission may have stored its response and released the key since the cache was checked
+        final var completedMeanwhile = submissions.asMap().get(key);
+        if (completedMeanwhile != null) {
+            completedMeanwhile.response.whenComplete((response, e) -> pending.response.complete(response));
+            inFlight.remove(key, pending);
+            return replay(key, dto, completedMeanwhile);
+        }
+        return new IdempotentResponse(execute(key, pending, submission), false);
+    }
+
+    private IdempotentResponse replay(String key, ComplaintCreationDto dto, StoredSubmission stored) {
+        if (!stored.dto.equals(dto)) {
+            conflictCounter.increment();
+            throw new IdempotencyConflictException(Reason.KEY_REUSED,
+                    "Idempotency key " + key + " was already used for a different complaint");
+        }
+        LOG.debug("Replaying response for idempotency key {}", key);
+        final var response = await(key, stored);
+        replayedCounter.increment();
+        return new IdempotentResponse(response, true);
+    }
+
+    private ComplaintRetrievalDto execute(String key, StoredSubmission pending,
+                                          Supplier<ComplaintRetrievalDto> submission) {
+        try {
+            final var response = submission.get();
+            submissions.put(key, pending);
+            inFlight.remove(key, pending);
+            pending.response.complete(response);
+            executedCounter.increment();
+            return response;
+        } catch (Throwable e) {
+            inFlight.remove(key, pending);
+            pending.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private ComplaintRetrievalDto await(String key, StoredSubmission stored) {
+        try {
+            return stored.response.get(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            conflictCounter.increment();
+            throw new IdempotencyConflictException(Reason.IN_PROGRESS,
+                    "Request with idempotency key " + key + " is still in progress");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException(Reason.IN_PROGRESS,
+                    "Interrupted waiting for request with idempotency key " + key);
+        }
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("complaint.idempotency")
+                .description("Submissions with an idempotency key by whether they ran, were replayed or conflicted")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param complaint the response to the submission
+     * @param replayed whether the response was stored by an earlier submission with the same key
+     */
+    public record IdempotentResponse(ComplaintRetrievalDto complaint, boolean replayed) {
+    }
+
+    private record StoredSubmission(ComplaintCreationDto dto, CompletableFuture<ComplaintRetrievalDto> response) {
+    }
+}
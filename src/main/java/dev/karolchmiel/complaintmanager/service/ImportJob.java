@@ -0,0 +1,64 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto.Status;
+import dev.karolchmiel.complaintmanager.dto.FileFormat;
+import dev.karolchmiel.complaintmanager.dto.SubmissionCounts;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of a running import, updated by the importing thread after every chunk and read by others.
+ */
+final class ImportJob {
+    private final UUID id = UUID.randomUUID();
+    private final String source;
+    private final FileFormat format;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startedNanos = System.nanoTime();
+    private volatile Progress progress = new Progress(0, 0, 0, System.nanoTime());
+    private volatile Status status = Status.RUNNING;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    ImportJob(String source, FileFormat format) {
+        this.source = source;
+        this.format = format;
+    }
+
+    UUID id() {
+        return id;
+    }
+
+    Status status() {
+        return status;
+    }
+
+    void chunkWritten(SubmissionCounts counts) {
+        final var current = progress;
+        progress = new Progress(current.created + counts.created(), current.incremented + counts.incremented(),
+                current.invalid + counts.invalid(), System.nanoTime());
+    }
+
+    void finished(Status status, String error) {
+        this.error = error;
+        this.finishedAt = LocalDateTime.now();
+        this.status = status;
+    }
+
+    ComplaintImportDto toDto() {
+        final var current = progress;
+        final var rows = current.rows();
+        final var seconds = (double) (current.updatedNanos - startedNanos) / TimeUnit.SECONDS.toNanos(1);
+        return new ComplaintImportDto(id, source, format.fileExtension(), status, startedAt, finishedAt, rows,
+                current.created, current.incremented, current.invalid, seconds > 0 ? rows / seconds : 0, error);
+    }
+
+    private record Progress(long created, long incremented, long invalid, long updatedNanos) {
+        long rows() {
+            return created + incremented + invalid;
+        }
+    }
+}
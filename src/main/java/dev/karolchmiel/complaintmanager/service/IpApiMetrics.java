@@ -0,0 +1,80 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.dto.IpApiResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the calls made to ip-api.com, shared by the single lookup in {@link IpGeolocationService} and the
+ * {@link IpGeolocationBatcher}:
+ * <ul>
+ *     <li>{@code ipapi.request} - latency of each HTTP request, tagged with the endpoint and the outcome,</li>
+ *     <li>{@code ipapi.lookups} - outcome of each IP address looked up, of which a batch request has many.</li>
+ * </ul>
+ */
+@Component
+final class IpApiMetrics {
+    enum Endpoint {SINGLE, BATCH}
+
+    enum Outcome {SUCCESS, PROXY, INVALID, ERROR, TIMEOUT}
+
+    private final Map<Endpoint, Map<Outcome, Timer>> requestTimers = new EnumMap<>(Endpoint.class);
+    private final Map<Outcome, Counter> lookupCounters = new EnumMap<>(Outcome.class);
+
+    IpApiMetrics(MeterRegistry meterRegistry) {
+        for (final var endpoint : Endpoint.values()) {
+            final var timers = new EnumMap<Outcome, Timer>(Outcome.class);
+            for (final var outcome : Outcome.values()) {
+                timers.put(outcome, Timer.builder("ipapi.request")
+                        .description("Latency of requests to the IP geolocation API")
+                        .tag("endpoint", tagValue(endpoint))
+                        .tag("outcome", tagValue(outcome))
+                        .register(meterRegistry));
+            }
+            requestTimers.put(endpoint, timers);
+        }
+        for (final var outcome : Outcome.values()) {
+            lookupCounters.put(outcome, Counter.builder("ipapi.lookups")
+                    .description("IP addresses looked up with the IP geolocation API")
+                    .tag("outcome", tagValue(outcome))
+                    .register(meterRegistry));
+        }
+    }
+
+    void recordRequest(Endpoint endpoint, Outcome outcome, long startedAt) {
+        requestTimers.get(endpoint).get(outcome).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    void recordLookups(Outcome outcome, int lookups) {
+        lookupCounters.get(outcome).increment(lookups);
+    }
+
+    static Outcome outcomeOf(IpApiResponse response) {
+        if (response == null || response.countryCode() == null) {
+            return Outcome.INVALID;
+        }
+        return response.proxy() ? Outcome.PROXY : Outcome.SUCCESS;
+    }
+
+    static Outcome outcomeOf(Exception exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) {
+                return Outcome.TIMEOUT;
+            }
+        }
+        return Outcome.ERROR;
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,193 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.dto.IpApiResponse;
+import dev.karolchmiel.complaintmanager.service.IpApiMetrics.Endpoint;
+import dev.karolchmiel.complaintmanager.service.IpApiMetrics.Outcome;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects IP geolocation lookups for a short window and resolves them with a single call to the ip-api.com
+ * batch endpoint, so a burst of lookups costs one request instead of one request per IP address.
+ * Enabled with {@code ipapi.batch.enabled=true}.
+ * <p>
+ * A batch is sent when {@code ipapi.batch.window} has passed since its first lookup or when it reaches
+ * {@code ipapi.batch.max-size} lookups, whichever comes first. Each caller's future is completed with the
+ * country of its own IP address, or with an empty {@code Optional} if the address was invalid, is a proxy,
+ * or the batch call failed.
+ */
+@Service
+@ConditionalOnProperty(name = "ipapi.batch.enabled", havingValue = "true")
+public class IpGeolocationBatcher {
+    private static final String URL_PATTERN = "%s?fields=countryCode,proxy";
+    private static final Logger LOG = LoggerFactory.getLogger(IpGeolocationBatcher.class);
+
+    private final RestTemplate restTemplate;
+    private final String batchUrl;
+    private final int maxBatchSize;
+    private final Duration window;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService sender;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer batchWaitTimer;
+    private final IpApiMetrics ipApiMetrics;
+    private final Object lock = new Object();
+    private List<PendingLookup> pending;
+    /** Number of the batch being collected; a window timer only flushes the batch it was started for. */
+    private long batchNumber;
+    private ScheduledFuture<?> windowTimer;
+
+    public IpGeolocationBatcher(RestTemplate restTemplate,
+                                MeterRegistry meterRegistry,
+                                IpApiMetrics ipApiMetrics,
+                                @Value("${ipapi.batch.url}") String batchUrl,
+                                @Value("${ipapi.batch.max-size:100}") int maxBatchSize,
+                                @Value("${ipapi.batch.window:50ms}") Duration window) {
+        this.restTemplate = restTemplate;
+        this.batchUrl = String.format(URL_PATTERN, batchUrl);
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("ipapi-batch-window").daemon().factory());
+        this.sender = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ipapi-batch-", 0).factory());
+        this.pending = new ArrayList<>(maxBatchSize);
+        this.batchSizeSummary = DistributionSummary.builder("ipapi.batch.size")
+                .description("Number of distinct IP addresses sent in one batch request")
+                .register(meterRegistry);
+        this.batchWaitTimer = Timer.builder("ipapi.batch.wait")
+                .description("Time a lookup waited for its batch to be sent")
+                .register(meterRegistry);
+        this.ipApiMetrics = ipApiMetrics;
+    }
+
+    /**
+     * Adds an IP address to the current batch.
+     *
+     * @param ipAddress the IP address
+     * @return a future completed with the country of the address once its batch has been resolved
+     */
+    public CompletableFuture<Optional<CountryCode>> lookup(String ipAddress) {
+        final var lookup = new PendingLookup(ipAddress, new CompletableFuture<>(), System.nanoTime());
+        List<PendingLookup> fullBatch = null;
+        synchronized (lock) {
+            pending.add(lookup);
+            if (pending.size() == 1) {
+                final var batch = batchNumber;
+                windowTimer = scheduler.schedule(() -> flushExpired(batch), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = takePending();
+            }
+        }
+        if (fullBatch != null) {
+            send(fullBatch);
+        }
+        return lookup.result();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        flush();
+        sender.close();
+    }
+
+    /**
+     * Sends the given batch when its window has passed, unless it was already sent on reaching the maximum size, so
+     * that a timer of an earlier batch never cuts the window of a later one short.
+     */
+    private void flushExpired(long batch) {
+        final List<PendingLookup> expired;
+        synchronized (lock) {
+            if (batch != batchNumber) {
+                return;
+            }
+            expired = takePending();
+        }
+        send(expired);
+    }
+
+    private void flush() {
+        final List<PendingLookup> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private List<PendingLookup> takePending() {
+        if (windowTimer != null) {
+            windowTimer.cancel(false);
+            windowTimer = null;
+        }
+        batchNumber++;
+        final var batch = pending;
+        pending = new ArrayList<>(maxBatchSize);
+        return batch;
+    }
+
+    private void send(List<PendingLookup> batch) {
+        final var sentAt = System.nanoTime();
+        batch.forEach(lookup -> batchWaitTimer.record(sentAt - lookup.enqueuedAt(), TimeUnit.NANOSECONDS));
+        sender.execute(() -> resolve(batch));
+    }
+
+    private void resolve(List<PendingLookup> batch) {
+        final var ipAddresses = batch.stream().map(PendingLookup::ipAddress).distinct().toList();
+        batchSizeSummary.record(ipAddresses.size());
+        final var startedAt = System.nanoTime();
+        try {
+            LOG.debug("Calling IP geolocation batch API for {} IP addresses", ipAddresses.size());
+            final var responses = restTemplate.postForObject(batchUrl, ipAddresses, IpApiResponse[].class);
+            ipApiMetrics.recordRequest(Endpoint.BATCH, Outcome.SUCCESS, startedAt);
+            final var countriesByIp = new HashMap<String, Optional<CountryCode>>();
+            for (int i = 0; i < ipAddresses.size(); i++) {
+                final var response = responses != null && i < responses.length ? responses[i] : null;
+                ipApiMetrics.recordLookups(IpApiMetrics.outcomeOf(response), 1);
+                countriesByIp.put(ipAddresses.get(i), toCountry(response, ipAddresses.get(i)));
+            }
+            batch.forEach(lookup -> lookup.result().complete(countriesByIp.get(lookup.ipAddress())));
+        } catch (Exception e) {
+            LOG.error("Error getting countries for {} IP addresses from batch API", ipAddresses.size(), e);
+            final var outcome = IpApiMetrics.outcomeOf(e);
+            ipApiMetrics.recordRequest(Endpoint.BATCH, outcome, startedAt);
+            ipApiMetrics.recordLookups(outcome, ipAddresses.size());
+            batch.forEach(lookup -> lookup.result().complete(Optional.empty()));
+        }
+    }
+
+    private static Optional<CountryCode> toCountry(IpApiResponse response, String ipAddress) {
+        if (IpGeolocationService.isValidResponse(response)) {
+            LOG.info("Successfully determined country {} from IP: {}", response.countryCode(), ipAddress);
+            return Optional.of(response.countryCode());
+        }
+        LOG.warn("Received invalid response from IP geolocation batch API for IP: {}", ipAddress);
+        return Optional.empty();
+    }
+
+    private record PendingLookup(String ipAddress, CompletableFuture<Optional<CountryCode>> result, long enqueuedAt) {
+    }
+}
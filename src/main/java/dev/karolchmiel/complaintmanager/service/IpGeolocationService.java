@@ -1,14 +1,26 @@
 package dev.karolchmiel.complaintmanager.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.neovisionaries.i18n.CountryCode;
 import dev.karolchmiel.complaintmanager.dto.IpApiResponse;
+import dev.karolchmiel.complaintmanager.service.IpApiMetrics.Endpoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 @Service
 public class IpGeolocationService {
@@ -17,10 +29,43 @@ public class IpGeolocationService {
 
     private final RestTemplate restTemplate;
     private final String ipApiUrl;
+    private final AsyncCache<String, Optional<CountryCode>> countryCache;
+    private final Optional<OfflineIpCountryResolver> offlineResolver;
+    private final boolean offlineHttpFallback;
+    private final Optional<IpGeolocationBatcher> batcher;
+    private final IpApiMetrics ipApiMetrics;
+    private final ExecutorService lookupExecutor;
+    private final Semaphore requestPermits;
 
-    public IpGeolocationService(RestTemplate restTemplate, @Value("${ipapi.url}") String ipApiUrl) {
+    public IpGeolocationService(RestTemplate restTemplate,
+                                @Value("${ipapi.url}") String ipApiUrl,
+                                MeterRegistry meterRegistry,
+                                IpApiMetrics ipApiMetrics,
+                                Optional<OfflineIpCountryResolver> offlineResolver,
+                                @Value("${geolocation.offline.http-fallback:true}") boolean offlineHttpFallback,
+                                Optional<IpGeolocationBatcher> batcher,
+                                @Value("${geolocation.cache.maximum-size:100000}") long cacheMaximumSize,
+                                @Value("${geolocation.cache.ttl:1h}") Duration cacheTtl,
+                                @Value("${geolocation.cache.negative-ttl:5m}") Duration cacheNegativeTtl,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                @Value("${ipapi.max-concurrent-requests:16}") int maxConcurrentRequests) {
         this.restTemplate = restTemplate;
         this.ipApiUrl = ipApiUrl;
+        this.offlineResolver = offlineResolver;
+        this.offlineHttpFallback = offlineHttpFallback;
+        this.batcher = batcher;
+        this.ipApiMetrics = ipApiMetrics;
+        this.lookupExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ipapi-", 0).factory())
+                : Executors.newFixedThreadPool(maxConcurrentRequests,
+                        Thread.ofPlatform().name("ipapi-", 0).daemon().factory());
+        this.requestPermits = new Semaphore(maxConcurrentRequests);
+        this.countryCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfter(new CountryExpiry(cacheTtl, cacheNegativeTtl))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, countryCache, "ipGeolocation");
     }
 
     /**
@@ -29,14 +74,80 @@ public class IpGeolocationService {
      *
      * @param ipAddress the IP address
      * @return an {@code Optional} containing the {@code CountryCode} if available, otherwise an empty {@code Optional}
+     * @see #getCountryFromIpAsync(String)
      */
     public Optional<CountryCode> getCountryFromIp(String ipAddress) {
+        return getCountryFromIpAsync(ipAddress).join();
+    }
+
+    /**
+     * Retrieves the country associated with a given IP address without waiting for the external API when
+     * batching is enabled, so that many lookups can be started before waiting for any of them. The future never
+     * completes exceptionally; invalid responses and failures yield an empty {@code Optional}.
+     * <p>
+     * With {@code geolocation.provider=offline} the address is looked up in the local {@link OfflineIpCountryResolver}
+     * table first; the API is only queried for addresses the table does not cover, unless
+     * {@code geolocation.offline.http-fallback} is disabled.
+     * <p>
+     * API results are cached per IP address: countries for {@code geolocation.cache.ttl}, empty results (proxies,
+     * invalid responses, failures) for the shorter {@code geolocation.cache.negative-ttl}. Concurrent lookups of
+     * an IP address that is not cached share a single API call. With {@code ipapi.batch.enabled=true} uncached
+     * addresses are resolved through the {@link IpGeolocationBatcher}. Otherwise each call is made on a lookup
+     * thread, at most {@code ipapi.max-concurrent-requests} at a time: its own virtual thread with
+     * {@code spring.threads.virtual.enabled=true}, else one of a pool of that many platform threads. A call is never
+     * made while the cache computes the entry, so a slow API neither serializes lookups nor blocks the cache.
+     *
+     * @param ipAddress the IP address
+     * @return a future of an {@code Optional} containing the {@code CountryCode} if available
+     */
+    public CompletableFuture<Optional<CountryCode>> getCountryFromIpAsync(String ipAddress) {
+        if (ipAddress == null) {
+            LOG.warn("Cannot determine country without an IP address");
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        if (offlineResolver.isPresent()) {
+            final var country = offlineResolver.get().getCountryFromIp(ipAddress);
+            if (country.isPresent() || !offlineHttpFallback) {
+                LOG.debug("Determined country {} from offline IP range table for IP: {}", country, ipAddress);
+                return CompletableFuture.completedFuture(country);
+            }
+            LOG.debug("IP: {} not covered by offline IP range table, falling back to IP geolocation API", ipAddress);
+        }
+        return countryCache.get(ipAddress, (ip, executor) -> batcher
+                .map(b -> b.lookup(ip))
+                .orElseGet(() -> CompletableFuture.supplyAsync(() -> fetchCountryFromIp(ip), lookupExecutor)));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lookupExecutor.close();
+    }
+
+    private Optional<CountryCode> fetchCountryFromIp(String ipAddress) {
+        try {
+            requestPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+        try {
+            return requestCountryFromIp(ipAddress);
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    private Optional<CountryCode> requestCountryFromIp(String ipAddress) {
+        final var startedAt = System.nanoTime();
         try {
             final var url = buildApiUrl(ipApiUrl, ipAddress);
             LOG.debug("Calling IP geolocation API with URL: {}", url);
 
             final var response = restTemplate.getForObject(url, IpApiResponse.class);
             LOG.debug("Received response from IP geolocation API: {} for IP: {}", response, ipAddress);
+            final var outcome = IpApiMetrics.outcomeOf(response);
+            ipApiMetrics.recordRequest(Endpoint.SINGLE, outcome, startedAt);
+            ipApiMetrics.recordLookups(outcome, 1);
 
             if (isValidResponse(response)) {
                 LOG.info("Successfully determined country {} from IP: {}", response.countryCode(), ipAddress);
@@ -46,6 +157,9 @@ public class IpGeolocationService {
             }
         } catch (Exception e) {
             LOG.error("Error getting country from IP: {}", ipAddress, e);
+            final var outcome = IpApiMetrics.outcomeOf(e);
+            ipApiMetrics.recordRequest(Endpoint.SINGLE, outcome, startedAt);
+            ipApiMetrics.recordLookups(outcome, 1);
         }
         return Optional.empty();
     }
@@ -54,7 +168,26 @@ public class IpGeolocationService {
         return String.format(URL_PATTERN, ipApiUrl, ipAddress);
     }
 
-    private static boolean isValidResponse(IpApiResponse response) {
+    static boolean isValidResponse(IpApiResponse response) {
         return response != null && response.countryCode() != null && !response.proxy();
     }
+
+    private record CountryExpiry(Duration ttl, Duration negativeTtl) implements Expiry<String, Optional<CountryCode>> {
+        @Override
+        public long expireAfterCreate(String ipAddress, Optional<CountryCode> country, long currentTime) {
+            return country.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String ipAddress, Optional<CountryCode> country, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(ipAddress, country, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String ipAddress, Optional<CountryCode> country, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
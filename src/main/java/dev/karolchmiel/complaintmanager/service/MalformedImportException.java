@@ -0,0 +1,14 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a row of an import file cannot be parsed at all, as opposed to a parsed complaint that fails
+ * validation.
+ */
+class MalformedImportException extends IOException {
+
+    MalformedImportException(long lineNumber, String message) {
+        super("Malformed complaint at line " + lineNumber + ": " + message);
+    }
+}
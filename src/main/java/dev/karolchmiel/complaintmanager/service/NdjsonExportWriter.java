@@ -0,0 +1,44 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes one JSON object per line, with the fields of the complaint API representation.
+ */
+class NdjsonExportWriter implements ComplaintExportWriter {
+    private final JsonGenerator generator;
+
+    NdjsonExportWriter(JsonFactory jsonFactory, OutputStream output) throws IOException {
+        this.generator = jsonFactory.createGenerator(output)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+    }
+
+    @Override
+    public void writeRow(ResultSet row) throws IOException, SQLException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", row.getLong(1));
+        generator.writeNumberField("productId", row.getLong(2));
+        generator.writeStringField("content", row.getString(3));
+        generator.writeStringField("creationDate",
+                row.getObject(4, LocalDateTime.class).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        generator.writeStringField("complainant", row.getString(5));
+        generator.writeStringField("complainantCountry", row.getString(6));
+        generator.writeNumberField("count", row.getInt(7));
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
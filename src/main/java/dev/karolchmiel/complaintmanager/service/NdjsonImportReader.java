@@ -0,0 +1,57 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dev.karolchmiel.complaintmanager.dto.ImportedComplaint;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads one JSON object per line, as written by {@link NdjsonExportWriter}. Properties other than those of
+ * {@link ImportedComplaint} are ignored and blank lines are skipped.
+ */
+class NdjsonImportReader implements ComplaintImportReader {
+    private final ObjectReader objectReader;
+    private final BufferedReader reader;
+    private long lineNumber;
+
+    NdjsonImportReader(ObjectMapper objectMapper, InputStream input) {
+        this.objectReader = objectMapper.readerFor(ImportedComplaint.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public ImportedComplaint next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+
+        final ImportedComplaint complaint;
+        try {
+            complaint = objectReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new MalformedImportException(lineNumber, e.getOriginalMessage());
+        }
+        if (complaint == null) {
+            throw new MalformedImportException(lineNumber, "Expected a JSON object");
+        }
+        return complaint;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
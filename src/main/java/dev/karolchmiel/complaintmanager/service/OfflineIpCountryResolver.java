@@ -0,0 +1,57 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.util.IpRangeTable;
+import dev.karolchmiel.complaintmanager.util.IpRangeTableCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Resolves countries from a local, memory-mapped IP range table instead of the IP geolocation API.
+ * Enabled with {@code geolocation.provider=offline}.
+ * <p>
+ * The table is read from {@code geolocation.offline.table}. If {@code geolocation.offline.csv} is set, the table
+ * is (re)compiled from that dataset at startup whenever it is missing or older than the CSV file.
+ */
+@Service
+@ConditionalOnProperty(name = "geolocation.provider", havingValue = "offline")
+public class OfflineIpCountryResolver {
+    private static final Logger LOG = LoggerFactory.getLogger(OfflineIpCountryResolver.class);
+
+    private final IpRangeTable table;
+
+    public OfflineIpCountryResolver(@Value("${geolocation.offline.table}") String tablePath,
+                                    @Value("${geolocation.offline.csv:}") String csvPath) throws IOException {
+        final var table = Path.of(tablePath);
+        if (!csvPath.isBlank() && isStale(table, Path.of(csvPath))) {
+            LOG.info("Compiling offline IP range table {} from {}", table, csvPath);
+            IpRangeTableCompiler.compile(Path.of(csvPath), table);
+        }
+        this.table = IpRangeTable.open(table);
+        LOG.info("Loaded offline IP range table {} with {} IPv4 and {} IPv6 ranges",
+                table, this.table.ipv4RangeCount(), this.table.ipv6RangeCount());
+    }
+
+    /**
+     * Looks up the country of the given IP address in the offline table.
+     *
+     * @param ipAddress the IP address
+     * @return the country of the range containing the address, or empty if the address is invalid or not covered
+     */
+    public Optional<CountryCode> getCountryFromIp(String ipAddress) {
+        return IpRangeTable.parseAddress(ipAddress).flatMap(table::lookup);
+    }
+
+    private static boolean isStale(Path table, Path csv) throws IOException {
+        return !Files.exists(table)
+                || Files.getLastModifiedTime(table).compareTo(Files.getLastModifiedTime(csv)) < 0;
+    }
+}
@@ -0,0 +1,39 @@
+package dev.karolchmiel.complaintmanager.util;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Splits complaint content into the terms of the search index.
+ */
+public class ContentTokenizer {
+    public static final int MIN_TERM_LENGTH = 2;
+    public static final int MAX_TERM_LENGTH = 40;
+
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private ContentTokenizer() {
+    }
+
+    /**
+     * Lower-cases the text and splits it on everything but letters and digits. Terms shorter than
+     * {@value #MIN_TERM_LENGTH} or longer than {@value #MAX_TERM_LENGTH} characters are dropped.
+     *
+     * @param text the text to split, may be null
+     * @return the number of occurrences of every term, in order of first occurrence
+     */
+    public static Map<String, Integer> termFrequencies(String text) {
+        final var frequencies = new LinkedHashMap<String, Integer>();
+        if (text == null) {
+            return frequencies;
+        }
+        for (final var term : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+                frequencies.merge(term, 1, Integer::sum);
+            }
+        }
+        return frequencies;
+    }
+}
@@ -6,6 +6,9 @@ import static io.micrometer.common.util.StringUtils.isNotBlank;
 
 public class HttpUtils {
     public static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
 
     private HttpUtils() {
     }
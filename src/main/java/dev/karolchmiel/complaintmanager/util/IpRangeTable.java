@@ -0,0 +1,193 @@
+package dev.karolchmiel.complaintmanager.util;
+
+import com.neovisionaries.i18n.CountryCode;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Read-only IP range to country table backed by a memory-mapped file written by {@link IpRangeTableCompiler}.
+ * <p>
+ * The file stores sorted, non-overlapping ranges as separate primitive arrays (range starts, range ends and
+ * country indexes) for IPv4 and IPv6, so a lookup is a binary search over the starts array followed by one
+ * range check, without allocating or copying the table onto the heap. Because the file is mapped, its pages
+ * live in the OS page cache and are shared by every process that maps the same file.
+ * <p>
+ * Layout (big-endian): header {@code magic, version, countryCount, v4Count, v6Count} as ints, the country
+ * dictionary as two ASCII bytes per country, then, each section aligned to 8 bytes, IPv4 starts (int),
+ * IPv4 ends (int), IPv4 country indexes (short), IPv6 starts (two longs), IPv6 ends (two longs) and IPv6
+ * country indexes (short). Unsigned order is used for all addresses.
+ */
+public final class IpRangeTable {
+    static final int MAGIC = 0x49504343; // "IPCC"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    private static final Pattern IPV6_LITERAL = Pattern.compile("[0-9a-fA-F:.]*:[0-9a-fA-F:.]*(%[\\w.-]+)?");
+
+    private final ByteBuffer buffer;
+    private final CountryCode[] countries;
+    private final int v4Count;
+    private final int v6Count;
+    private final int v4StartsOffset;
+    private final int v4EndsOffset;
+    private final int v4CountriesOffset;
+    private final int v6StartsOffset;
+    private final int v6EndsOffset;
+    private final int v6CountriesOffset;
+
+    private IpRangeTable(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an IP range table");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported IP range table version: " + buffer.getInt(4));
+        }
+        this.buffer = buffer;
+        final var countryCount = buffer.getInt(8);
+        this.v4Count = buffer.getInt(12);
+        this.v6Count = buffer.getInt(16);
+
+        this.countries = new CountryCode[countryCount];
+        for (int i = 0; i < countryCount; i++) {
+            final var offset = HEADER_BYTES + i * 2;
+            final var alpha2 = new String(new char[]{(char) buffer.get(offset), (char) buffer.get(offset + 1)});
+            countries[i] = CountryCode.getByAlpha2Code(alpha2);
+        }
+
+        this.v4StartsOffset = align(HEADER_BYTES + countryCount * 2);
+        this.v4EndsOffset = v4StartsOffset + v4Count * Integer.BYTES;
+        this.v4CountriesOffset = v4EndsOffset + v4Count * Integer.BYTES;
+        this.v6StartsOffset = align(v4CountriesOffset + v4Count * Short.BYTES);
+        this.v6EndsOffset = v6StartsOffset + v6Count * 2 * Long.BYTES;
+        this.v6CountriesOffset = v6EndsOffset + v6Count * 2 * Long.BYTES;
+        if ((long) v6CountriesOffset + (long) v6Count * Short.BYTES > buffer.capacity()) {
+            throw new IOException("Truncated IP range table");
+        }
+    }
+
+    /**
+     * Memory-maps an IP range table file. The mapping stays valid after this method returns.
+     *
+     * @param path the table file written by {@link IpRangeTableCompiler}
+     * @return the mapped table
+     * @throws IOException if the file cannot be read or is not a valid table
+     */
+    public static IpRangeTable open(Path path) throws IOException {
+        try (final var channel = FileChannel.open(path, READ)) {
+            return new IpRangeTable(channel.map(READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 address literal without ever falling back to a DNS lookup.
+     *
+     * @param value the textual address
+     * @return the address, or empty if the value is not an IP address literal
+     */
+    public static Optional<InetAddress> parseAddress(String value) {
+        if (value == null || !(IPV4_LITERAL.matcher(value).matches() || IPV6_LITERAL.matcher(value).matches())) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(InetAddress.getByName(value));
+        } catch (UnknownHostException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Finds the country of the range containing the given address. IPv4-mapped IPv6 addresses are
+     * looked up in the IPv4 ranges.
+     *
+     * @param address the address to look up
+     * @return the country of the containing range, or empty if no range contains the address
+     */
+    public Optional<CountryCode> lookup(InetAddress address) {
+        final var bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return Optional.ofNullable(lookupV4(toLong(bytes, 0, 4)));
+        }
+        return Optional.ofNullable(lookupV6(toLong(bytes, 0, 8), toLong(bytes, 8, 8)));
+    }
+
+    public int ipv4RangeCount() {
+        return v4Count;
+    }
+
+    public int ipv6RangeCount() {
+        return v6Count;
+    }
+
+    private CountryCode lookupV4(long address) {
+        final var ip = (int) address;
+        var low = 0;
+        var high = v4Count - 1;
+        var candidate = -1;
+        while (low <= high) {
+            final var mid = (low + high) >>> 1;
+            if (Integer.compareUnsigned(buffer.getInt(v4StartsOffset + mid * Integer.BYTES), ip) <= 0) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (candidate < 0 || Integer.compareUnsigned(ip, buffer.getInt(v4EndsOffset + candidate * Integer.BYTES)) > 0) {
+            return null;
+        }
+        return countries[buffer.getShort(v4CountriesOffset + candidate * Short.BYTES)];
+    }
+
+    private CountryCode lookupV6(long ipHigh, long ipLow) {
+        var low = 0;
+        var high = v6Count - 1;
+        var candidate = -1;
+        while (low <= high) {
+            final var mid = (low + high) >>> 1;
+            final var offset = v6StartsOffset + mid * 2 * Long.BYTES;
+            if (compareV6(buffer.getLong(offset), buffer.getLong(offset + Long.BYTES), ipHigh, ipLow) <= 0) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (candidate < 0) {
+            return null;
+        }
+        final var endOffset = v6EndsOffset + candidate * 2 * Long.BYTES;
+        if (compareV6(ipHigh, ipLow, buffer.getLong(endOffset), buffer.getLong(endOffset + Long.BYTES)) > 0) {
+            return null;
+        }
+        return countries[buffer.getShort(v6CountriesOffset + candidate * Short.BYTES)];
+    }
+
+    static int compareV6(long high1, long low1, long high2, long low2) {
+        final var byHigh = Long.compareUnsigned(high1, high2);
+        return byHigh != 0 ? byHigh : Long.compareUnsigned(low1, low2);
+    }
+
+    static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static long toLong(byte[] bytes, int from, int length) {
+        var value = 0L;
+        for (int i = from; i < from + length; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
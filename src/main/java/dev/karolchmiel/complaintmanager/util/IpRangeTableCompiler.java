@@ -0,0 +1,214 @@
+package dev.karolchmiel.complaintmanager.util;
+
+import com.neovisionaries.i18n.CountryCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.Inet4Address;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Compiles an IP range to country CSV dataset into the binary format read by {@link IpRangeTable}.
+ * <p>
+ * Each row must start with the first and last address of a range, given either as address literals
+ * ({@code "1.0.0.0","1.0.0.255",...} as in the legacy GeoLite country CSV) or as unsigned decimal numbers
+ * ({@code "16777216","16777471",...} as in the ip2location DB1 CSVs). The country is the first later column
+ * holding a two-letter ISO code. Header rows and rows without a known country (e.g. {@code "-"}) are skipped.
+ * Decimal values within {@code ::ffff:0:0/96} are treated as IPv4, as used by the ip2location IPv6 dataset.
+ */
+public final class IpRangeTableCompiler {
+    private static final Logger LOG = LoggerFactory.getLogger(IpRangeTableCompiler.class);
+
+    private static final BigInteger IPV4_MAX = BigInteger.valueOf(0xFFFF_FFFFL);
+    private static final BigInteger IPV4_MAPPED_START = BigInteger.valueOf(0xFFFF_0000_0000L);
+    private static final BigInteger IPV4_MAPPED_END = BigInteger.valueOf(0xFFFF_FFFF_FFFFL);
+    private static final BigInteger LONG_MASK = BigInteger.ONE.shiftLeft(Long.SIZE).subtract(BigInteger.ONE);
+
+    private IpRangeTableCompiler() {
+    }
+
+    /**
+     * Reads the CSV dataset and writes the compiled table. The table is written to a temporary file first
+     * and moved into place, so processes that have the previous table mapped are not affected.
+     *
+     * @param csv the CSV dataset
+     * @param table the table file to create or replace
+     * @throws IOException if the dataset cannot be read, contains overlapping ranges, or the table cannot be written
+     */
+    public static void compile(Path csv, Path table) throws IOException {
+        final var v4Ranges = new ArrayList<Range>();
+        final var v6Ranges = new ArrayList<Range>();
+        var skipped = 0;
+
+        try (final var lines = Files.lines(csv, UTF_8)) {
+            for (final var line : (Iterable<String>) lines::iterator) {
+                final var range = parseRow(splitCsvLine(line));
+                if (range.isEmpty()) {
+                    skipped++;
+                } else if (range.get().ipv4()) {
+                    v4Ranges.add(range.get());
+                } else {
+                    v6Ranges.add(range.get());
+                }
+            }
+        }
+
+        sortAndCheckOverlaps(v4Ranges);
+        sortAndCheckOverlaps(v6Ranges);
+        write(table, v4Ranges, v6Ranges);
+        LOG.info("Compiled {} IPv4 and {} IPv6 ranges from {} into {} ({} rows skipped)",
+                v4Ranges.size(), v6Ranges.size(), csv, table, skipped);
+    }
+
+    static List<String> splitCsvLine(String line) {
+        final var values = new ArrayList<String>();
+        final var value = new StringBuilder();
+        var quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final var c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    private static Optional<Range> parseRow(List<String> values) {
+        if (values.size() < 3) {
+            return Optional.empty();
+        }
+        final var start = parseBound(values.get(0));
+        final var end = parseBound(values.get(1));
+        final var country = values.stream()
+                .skip(2)
+                .filter(value -> value.length() == 2)
+                .map(CountryCode::getByAlpha2Code)
+                .filter(Objects::nonNull)
+                .findFirst();
+        if (start.isEmpty() || end.isEmpty() || country.isEmpty() || start.get().ipv4() != end.get().ipv4()
+                || start.get().value().compareTo(end.get().value()) > 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new Range(start.get().ipv4(), start.get().value(), end.get().value(), country.get()));
+    }
+
+    private static Optional<Bound> parseBound(String value) {
+        if (value.isEmpty()) {
+            return Optional.empty();
+        }
+        if (value.chars().allMatch(Character::isDigit)) {
+            final var number = new BigInteger(value);
+            if (number.compareTo(IPV4_MAX) <= 0) {
+                return Optional.of(new Bound(true, number));
+            }
+            if (number.compareTo(IPV4_MAPPED_START) >= 0 && number.compareTo(IPV4_MAPPED_END) <= 0) {
+                return Optional.of(new Bound(true, number.subtract(IPV4_MAPPED_START)));
+            }
+            return number.bitLength() <= 128 ? Optional.of(new Bound(false, number)) : Optional.empty();
+        }
+        return IpRangeTable.parseAddress(value)
+                .map(address -> new Bound(address instanceof Inet4Address, new BigInteger(1, address.getAddress())));
+    }
+
+    private static void sortAndCheckOverlaps(List<Range> ranges) throws IOException {
+        ranges.sort(Comparator.comparing(Range::start));
+        for (int i = 1; i < ranges.size(); i++) {
+            if (ranges.get(i).start().compareTo(ranges.get(i - 1).end()) <= 0) {
+                throw new IOException("Overlapping IP ranges starting at " + ranges.get(i - 1).start()
+                        + " and " + ranges.get(i).start());
+            }
+        }
+    }
+
+    private static void write(Path table, List<Range> v4Ranges, List<Range> v6Ranges) throws IOException {
+        final var countryIndexes = new LinkedHashMap<CountryCode, Short>();
+        v4Ranges.forEach(range -> countryIndexes.putIfAbsent(range.country(), (short) countryIndexes.size()));
+        v6Ranges.forEach(range -> countryIndexes.putIfAbsent(range.country(), (short) countryIndexes.size()));
+
+        final var absoluteTable = table.toAbsolutePath();
+        if (absoluteTable.getParent() != null) {
+            Files.createDirectories(absoluteTable.getParent());
+        }
+        final var temporary = Files.createTempFile(absoluteTable.getParent(), absoluteTable.getFileName().toString(), ".tmp");
+        try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(IpRangeTable.MAGIC);
+            out.writeInt(IpRangeTable.FORMAT_VERSION);
+            out.writeInt(countryIndexes.size());
+            out.writeInt(v4Ranges.size());
+            out.writeInt(v6Ranges.size());
+            for (final var country : countryIndexes.keySet()) {
+                out.writeBytes(country.getAlpha2());
+            }
+            pad(out);
+
+            for (final var range : v4Ranges) {
+                out.writeInt(range.start().intValue());
+            }
+            for (final var range : v4Ranges) {
+                out.writeInt(range.end().intValue());
+            }
+            writeCountryIndexes(out, v4Ranges, countryIndexes);
+            pad(out);
+
+            for (final var range : v6Ranges) {
+                writeV6(out, range.start());
+            }
+            for (final var range : v6Ranges) {
+                writeV6(out, range.end());
+            }
+            writeCountryIndexes(out, v6Ranges, countryIndexes);
+        }
+        Files.move(temporary, table, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    private static void writeCountryIndexes(DataOutputStream out, List<Range> ranges,
+                                            Map<CountryCode, Short> countryIndexes) throws IOException {
+        for (final var range : ranges) {
+            out.writeShort(countryIndexes.get(range.country()));
+        }
+    }
+
+    private static void writeV6(DataOutputStream out, BigInteger address) throws IOException {
+        out.writeLong(address.shiftRight(Long.SIZE).and(LONG_MASK).longValue());
+        out.writeLong(address.and(LONG_MASK).longValue());
+    }
+
+    private static void pad(DataOutputStream out) throws IOException {
+        while (out.size() != IpRangeTable.align(out.size())) {
+            out.writeByte(0);
+        }
+    }
+
+    private record Bound(boolean ipv4, BigInteger value) {
+    }
+
+    private record Range(boolean ipv4, BigInteger start, BigInteger end, CountryCode country) {
+    }
+}
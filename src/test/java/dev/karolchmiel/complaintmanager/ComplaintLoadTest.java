@@ -0,0 +1,99 @@
+package dev.karolchmiel.complaintmanager;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.load.KeyDistribution;
+import dev.karolchmiel.complaintmanager.load.LoadGenerator;
+import dev.karolchmiel.complaintmanager.load.LoadGenerator.Mix;
+import dev.karolchmiel.complaintmanager.stub.IpApiStubServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Reproduces production load locally: the application is started with its production configuration against an
+ * in-memory database and a local ip-api.com stub, and driven by a
+ * {@link LoadGenerator} with each {@link KeyDistribution} in turn, after a warmup. Throughput and the p50, p99 and
+ * p999 latencies of every endpoint are printed, and the run fails if any request is answered with an error.
+ * <p>
+ * Excluded from the default build, run with: {@code mvn -Pload-tests test -Dtest=ComplaintLoadTest}. The load is
+ * configured with system properties:
+ * <ul>
+ *     <li>{@code load.keys} - the key distribution to run ({@code repeats}, {@code hot_product}, {@code unique}),
+ *     all of them by default</li>
+ *     <li>{@code load.clients} - concurrent clients, 64 by default</li>
+ *     <li>{@code load.duration} and {@code load.warmup} - 30s and 5s by default</li>
+ *     <li>{@code load.mix} - endpoint weights, {@code create:70,update:10,read:20} by default</li>
+ *     <li>{@code load.ipapi.latency}, {@code load.ipapi.error-rate} and {@code load.ipapi.proxy-rate} - behavior of
+ *     the stub, 50ms, 0.01 and 0.05 by default</li>
+ * </ul>
+ */
+@Tag("load")
+class ComplaintLoadTest {
+    private static IpApiStubServer ipApiStub;
+    private static ConfigurableApplicationContext context;
+    private static HttpClient httpClient;
+
+    @BeforeAll
+    static void startApplication() throws IOException {
+        ipApiStub = new IpApiStubServer(ip -> CountryCode.PL);
+        ipApiStub.setLatency(DurationStyle.detectAndParse(System.getProperty("load.ipapi.latency", "50ms")));
+        ipApiStub.setErrorRate(Double.parseDouble(System.getProperty("load.ipapi.error-rate", "0.01")));
+        ipApiStub.setProxyRate(Double.parseDouble(System.getProperty("load.ipapi.proxy-rate", "0.05")));
+
+        //The production configuration, except for the per-client rate limits the few generator clients would exceed
+        context = new SpringApplicationBuilder(ComplaintManagerApplication.class)
+                .run("--spring.config.location=file:src/main/resources/application.properties",
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:complaint-load-test;DB_CLOSE_DELAY=-1",
+                        "--ipapi.url=" + ipApiStub.baseUrl() + "/json",
+                        "--ipapi.batch.url=" + ipApiStub.baseUrl() + "/batch",
+                        "--complaints.rate-limit.endpoints.create.requests-per-second=0",
+                        "--complaints.rate-limit.endpoints.read.requests-per-second=0",
+                        "--logging.level.root=WARN");
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    @AfterAll
+    static void stopApplication() {
+        httpClient.close();
+        context.close();
+        ipApiStub.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(KeyDistribution.class)
+    void shouldServeLoadWithoutErrors(KeyDistribution keys) throws Exception {
+        final var selectedKeys = System.getProperty("load.keys");
+        assumeTrue(selectedKeys == null || keys.name().equalsIgnoreCase(selectedKeys.replace('-', '_')),
+                "Only " + selectedKeys + " keys are selected");
+
+        final var baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        final var loadGenerator = new LoadGenerator(httpClient, baseUrl, keys,
+                Mix.parse(System.getProperty("load.mix", "create:70,update:10,read:20")),
+                Integer.getInteger("load.clients", 64));
+
+        loadGenerator.run(DurationStyle.detectAndParse(System.getProperty("load.warmup", "5s")));
+        final var report = loadGenerator.run(DurationStyle.detectAndParse(System.getProperty("load.duration", "30s")));
+        report.print(System.out);
+
+        assertThat(report.errors())
+                .as("Requests answered with an error under %s load", keys.name().toLowerCase(Locale.ROOT))
+                .isZero();
+    }
+}
@@ -1,23 +1,44 @@
 package dev.karolchmiel.complaintmanager;
 
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchItemResultDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchItemResultDto.Status;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchResultDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintPageDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchHitDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchPageDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintUpdateDto;
+import dev.karolchmiel.complaintmanager.api.dto.CountryStatsDto;
+import dev.karolchmiel.complaintmanager.api.dto.ProductStatsDto;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import dev.karolchmiel.complaintmanager.service.ComplaintSearchService;
 import dev.karolchmiel.complaintmanager.service.ComplaintTestData;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
 class ComplaintManagerIntegrationTest {
 
     @LocalServerPort
@@ -26,6 +47,15 @@ class ComplaintManagerIntegrationTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private ComplaintRepository complaintRepository;
+
+    @Autowired
+    private ComplaintSearchService complaintSearchService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private static final String BASE_URL = "http://localhost:";
     private static final String COMPLAINTS_ENDPOINT = "/complaints";
     private static final ComplaintTestData TEST_DATA = ComplaintTestData.defaultData();
@@ -46,18 +76,16 @@ class ComplaintManagerIntegrationTest {
         assertThat(createResponse.getBody().complainant()).isEqualTo(creationDto.complainant());
         assertThat(createResponse.getBody().count()).isEqualTo(1);
 
-        //Get all complaints
-        final var getAllResponse = restTemplate.exchange(
+        //Get first page of complaints
+        final var getPageResponse = restTemplate.getForEntity(
                 BASE_URL + port + COMPLAINTS_ENDPOINT,
-                HttpMethod.GET,
-                null,
-                new ParameterizedTypeReference<List<ComplaintRetrievalDto>>() {
-                });
+                ComplaintPageDto.class);
 
-        assertThat(getAllResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(getAllResponse.getBody()).isNotNull();
-        assertThat(getAllResponse.getBody()).hasSize(1);
-        assertThat(getAllResponse.getBody().getFirst().productId()).isEqualTo(creationDto.productId());
+        assertThat(getPageResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(getPageResponse.getBody()).isNotNull();
+        assertThat(getPageResponse.getBody().complaints()).hasSize(1);
+        assertThat(getPageResponse.getBody().complaints().getFirst().productId()).isEqualTo(creationDto.productId());
+        assertThat(getPageResponse.getBody().nextCursor()).isNull();
 
         //Submit duplicate complaint
         final var duplicateResponse = restTemplate.postForEntity(
@@ -72,8 +100,16 @@ class ComplaintManagerIntegrationTest {
         assertThat(duplicateResponse.getBody().complainant()).isEqualTo(creationDto.complainant());
         assertThat(duplicateResponse.getBody().count()).isEqualTo(2);
 
-        //Update complaint
+        //Get complaint, caching it
         final var complaintId = createResponse.getBody().id();
+        final var cachedResponse = restTemplate.getForEntity(
+                BASE_URL + port + COMPLAINTS_ENDPOINT + "/" + complaintId,
+                ComplaintRetrievalDto.class);
+        assertThat(cachedResponse.getBody())
+                .extracting(ComplaintRetrievalDto::content, ComplaintRetrievalDto::count)
+                .containsExactly(creationDto.content(), 2);
+
+        //Update complaint
         final var updateDto = new ComplaintUpdateDto("Updated content");
 
         final var updateResponse = restTemplate.exchange(
@@ -91,4 +127,360 @@ class ComplaintManagerIntegrationTest {
                 .extracting(ComplaintRetrievalDto::content)
                 .isEqualTo(updateDto.content());
     }
+
+    @Test
+    void shouldExposeLatencyHistogramsInPrometheusFormat() {
+        restTemplate.getForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT + "/0", ComplaintRetrievalDto.class);
+
+        final var response = restTemplate.getForEntity(BASE_URL + port + "/actuator/prometheus", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .contains("complaint_service_seconds_bucket{operation=\"get\"")
+                .contains("spring_data_repository_invocations_seconds_count{")
+                .contains("ipapi_lookups_total{outcome=\"success\"}");
+    }
+
+    @Test
+    void shouldAnswerConditionalReadsWithNotModified_untilComplaintChanges() {
+        final var creationDto = new ComplaintCreationDto(9101L, "Original", "etag-user-1");
+        final var created = restTemplate.postForEntity(
+                BASE_URL + port + COMPLAINTS_ENDPOINT, creationDto, ComplaintRetrievalDto.class).getBody();
+        assertThat(created).isNotNull();
+        final var complaintUrl = BASE_URL + port + COMPLAINTS_ENDPOINT + "/" + created.id();
+
+        try {
+            final var etag = restTemplate.getForEntity(complaintUrl, ComplaintRetrievalDto.class)
+                    .getHeaders().getETag();
+            assertThat(etag).isNotNull();
+            assertThat(conditionalGet(complaintUrl, etag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+            //Incrementing the count changes the version
+            restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT, creationDto, ComplaintRetrievalDto.class);
+            final var afterIncrement = conditionalGet(complaintUrl, etag);
+            assertThat(afterIncrement.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(afterIncrement.getBody()).contains("\"count\":2");
+            final var incrementedEtag = afterIncrement.getHeaders().getETag();
+            assertThat(incrementedEtag).isNotEqualTo(etag);
+
+            //Updating the content changes the version
+            restTemplate.exchange(complaintUrl, HttpMethod.PATCH,
+                    new HttpEntity<>(new ComplaintUpdateDto("Updated")), Void.class);
+            final var afterUpdate = conditionalGet(complaintUrl, incrementedEtag);
+            assertThat(afterUpdate.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(afterUpdate.getBody()).contains("\"content\":\"Updated\"");
+
+            //Pages are tagged by the versions of their complaints
+            final var pageUrl = BASE_URL + port + COMPLAINTS_ENDPOINT + "?cursor=" + (created.id() - 1) + "&size=1";
+            final var pageEtag = restTemplate.getForEntity(pageUrl, String.class).getHeaders().getETag();
+            assertThat(pageEtag).isNotNull();
+            assertThat(conditionalGet(pageUrl, pageEtag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+            restTemplate.exchange(complaintUrl, HttpMethod.PATCH,
+                    new HttpEntity<>(new ComplaintUpdateDto("Updated again")), Void.class);
+            assertThat(conditionalGet(pageUrl, pageEtag).getStatusCode()).isEqualTo(HttpStatus.OK);
+        } finally {
+            complaintRepository.deleteById(created.id());
+        }
+    }
+
+    @Test
+    void shouldCreateAndIncrementComplaintsInBatch() {
+        final var existingDto = new ComplaintCreationDto(9001L, "Existing", "batch-user-1");
+        final var newDto = new ComplaintCreationDto(9002L, "New", "batch-user-2");
+        final var existing = restTemplate.postForEntity(
+                BASE_URL + port + COMPLAINTS_ENDPOINT, existingDto, ComplaintRetrievalDto.class).getBody();
+        assertThat(existing).isNotNull();
+
+        try {
+            final var batchResponse = restTemplate.postForEntity(
+                    BASE_URL + port + COMPLAINTS_ENDPOINT + "/batch",
+                    List.of(newDto, existingDto, newDto, new ComplaintCreationDto(9003L, "", "batch-user-3")),
+                    ComplaintBatchResultDto.class);
+
+            assertThat(batchResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+            final var result = batchResponse.getBody();
+            assertThat(result).isNotNull();
+            assertThat(result.results()).extracting(ComplaintBatchItemResultDto::status).containsExactly(
+                    Status.CREATED, Status.INCREMENTED, Status.INCREMENTED, Status.INVALID);
+
+            final var created = complaintRepository.findById(result.results().getFirst().complaint().id());
+            assertThat(created).hasValueSatisfying(complaint -> {
+                assertThat(complaint.getProductId()).isEqualTo(newDto.productId());
+                assertThat(complaint.getCount()).isEqualTo(2);
+            });
+            assertThat(complaintRepository.findById(existing.id()))
+                    .hasValueSatisfying(complaint -> assertThat(complaint.getCount()).isEqualTo(2));
+
+            //A single submission after the batch takes an ID outside of the block allocated for the batch
+            final var afterBatch = restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(9004L, "After batch", "batch-user-4"), ComplaintRetrievalDto.class);
+            assertThat(afterBatch.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        } finally {
+            complaintRepository.findAll().stream()
+                    .filter(complaint -> complaint.getComplainant().startsWith("batch-user-"))
+                    .forEach(complaintRepository::delete);
+        }
+    }
+
+    @Test
+    void shouldCountRetriedSubmissionOnce_whenIdempotencyKeyIsRepeated() {
+        final var creationDto = new ComplaintCreationDto(9251L, "Retried", "idempotency-user-1");
+        final var headers = new HttpHeaders();
+        headers.set("Idempotency-Key", "integration-retry-1");
+        final var request = new HttpEntity<>(creationDto, headers);
+
+        final var first = restTemplate.postForEntity(
+                BASE_URL + port + COMPLAINTS_ENDPOINT, request, ComplaintRetrievalDto.class);
+        try {
+            final var retry = restTemplate.postForEntity(
+                    BASE_URL + port + COMPLAINTS_ENDPOINT, request, ComplaintRetrievalDto.class);
+
+            assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            assertThat(retry.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+            assertThat(retry.getBody()).isEqualTo(first.getBody());
+            assertThat(complaintRepository.findById(first.getBody().id()))
+                    .hasValueSatisfying(complaint -> assertThat(complaint.getCount()).isEqualTo(1));
+
+            final var reused = restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                    new HttpEntity<>(new ComplaintCreationDto(9251L, "Other", "idempotency-user-1"), headers),
+                    String.class);
+            assertThat(reused.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        } finally {
+            complaintRepository.findAll().stream()
+                    .filter(complaint -> complaint.getComplainant().startsWith("idempotency-user-"))
+                    .forEach(complaintRepository::delete);
+        }
+    }
+
+    @Test
+    void shouldMaintainProductAndCountryStats_onEveryWritePath() {
+        final var productId = 9201L;
+        final var first = new ComplaintCreationDto(productId, "First", "stats-user-1");
+        final var second = new ComplaintCreationDto(productId, "Second", "stats-user-2");
+        final var third = new ComplaintCreationDto(productId, "Third", "stats-user-3");
+        final var productStatsUrl = BASE_URL + port + COMPLAINTS_ENDPOINT + "/stats/products/" + productId;
+        assertThat(restTemplate.getForEntity(productStatsUrl, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        final var plBefore = countryTotal(CountryCode.PL);
+
+        try {
+            //Single submissions create and increment, the batch creates one complaint and increments another
+            final var created = restTemplate.postForEntity(
+                    BASE_URL + port + COMPLAINTS_ENDPOINT, first, ComplaintRetrievalDto.class).getBody();
+            assertThat(created).isNotNull();
+            restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT, first, ComplaintRetrievalDto.class);
+            restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT, second, ComplaintRetrievalDto.class);
+            restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT + "/batch",
+                    List.of(third, first, third), ComplaintBatchResultDto.class);
+
+            final var productStats = restTemplate.getForEntity(productStatsUrl, ProductStatsDto.class);
+            assertThat(productStats.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(productStats.getBody()).isEqualTo(new ProductStatsDto(productId, 6L, 3L));
+
+            //Setting the country adds the complaint's count to it
+            complaintRepository.updateComplainantCountries(Map.of(created.id(), CountryCode.PL));
+            assertThat(countryTotal(CountryCode.PL)).isEqualTo(plBefore + 3);
+
+            //Later increments count for both the product and the country
+            complaintRepository.incrementCounts(Map.of(created.id(), 2));
+            assertThat(restTemplate.getForObject(productStatsUrl, ProductStatsDto.class).totalComplaints())
+                    .isEqualTo(8L);
+            assertThat(countryTotal(CountryCode.PL)).isEqualTo(plBefore + 5);
+        } finally {
+            complaintRepository.findAll().stream()
+                    .filter(complaint -> complaint.getComplainant().startsWith("stats-user-"))
+                    .forEach(complaintRepository::delete);
+        }
+    }
+
+    @Test
+    void shouldListComplaintsMatchingCombinedFilters_acrossPages() {
+        final var productId = 9301L;
+        final var ids = new ArrayList<Long>();
+        try {
+            for (int i = 1; i <= 3; i++) {
+                final var complaint = restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                        new ComplaintCreationDto(productId, "Filtered " + i, "filter-user-" + i),
+                        ComplaintRetrievalDto.class).getBody();
+                assertThat(complaint).isNotNull();
+                ids.add(complaint.id());
+            }
+            restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(productId + 1, "Other product", "filter-user-1"),
+                    ComplaintRetrievalDto.class);
+            complaintRepository.updateComplainantCountries(
+                    Map.of(ids.get(0), CountryCode.PL, ids.get(2), CountryCode.PL));
+
+            final var filtered = BASE_URL + port + COMPLAINTS_ENDPOINT + "?size=1&productId=" + productId
+                    + "&complainantCountry=PL&createdFrom=2020-01-01T00:00:00&createdTo=2100-01-01T00:00:00";
+            final var firstPage = restTemplate.getForObject(filtered, ComplaintPageDto.class);
+            assertThat(firstPage.complaints()).extracting(ComplaintRetrievalDto::id).containsExactly(ids.get(0));
+            final var secondPage = restTemplate.getForObject(
+                    filtered + "&cursor=" + firstPage.nextCursor(), ComplaintPageDto.class);
+            assertThat(secondPage.complaints()).extracting(ComplaintRetrievalDto::id).containsExactly(ids.get(2));
+            assertThat(secondPage.nextCursor()).isNull();
+
+            final var beforeCreation = restTemplate.getForObject(BASE_URL + port + COMPLAINTS_ENDPOINT
+                    + "?productId=" + productId + "&createdTo=2020-01-01T00:00:00", ComplaintPageDto.class);
+            assertThat(beforeCreation.complaints()).isEmpty();
+
+            //Only the selected fields are read, the ID is always returned
+            final var selected = restTemplate.getForObject(filtered + "&fields=content,complainantCountry,count",
+                    ComplaintPageDto.class);
+            assertThat(selected.complaints()).containsExactly(
+                    new ComplaintRetrievalDto(ids.get(0), null, "Filtered 1", null, null, CountryCode.PL, 1));
+        } finally {
+            complaintRepository.findAll().stream()
+                    .filter(complaint -> complaint.getComplainant().startsWith("filter-user-"))
+                    .forEach(complaintRepository::delete);
+        }
+    }
+
+    @Test
+    void shouldSearchRankedContent_keepingIndexInSyncWithWrites() {
+        final var searchUrl = BASE_URL + port + COMPLAINTS_ENDPOINT + "/search?q=";
+        try {
+            final var twice = restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(9401L, "Flickerglass flickerglass cracked", "search-user-1"),
+                    ComplaintRetrievalDto.class).getBody();
+            final var once = restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(9402L, "Cracked flickerglass", "search-user-2"),
+                    ComplaintRetrievalDto.class).getBody();
+            restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT + "/batch",
+                    List.of(new ComplaintCreationDto(9403L, "Unrelated", "search-user-3")),
+                    ComplaintBatchResultDto.class);
+            assertThat(twice).isNotNull();
+            assertThat(once).isNotNull();
+
+            //More occurrences rank higher
+            final var ranked = restTemplate.getForObject(searchUrl + "FLICKERGLASS", ComplaintSearchPageDto.class);
+            assertThat(ranked.results()).extracting(hit -> hit.complaint().id())
+                    .containsExactly(twice.id(), once.id());
+
+            //Edited content is reindexed in the update transaction
+            restTemplate.exchange(BASE_URL + port + COMPLAINTS_ENDPOINT + "/" + once.id(), HttpMethod.PATCH,
+                    new HttpEntity<>(new ComplaintUpdateDto("Wobblecrank broke")), Void.class);
+            assertThat(restTemplate.getForObject(searchUrl + "flickerglass", ComplaintSearchPageDto.class).results())
+                    .extracting(hit -> hit.complaint().id()).containsExactly(twice.id());
+            assertThat(restTemplate.getForObject(searchUrl + "wobblecrank", ComplaintSearchPageDto.class).results())
+                    .extracting(hit -> hit.complaint().id()).containsExactly(once.id());
+
+            //Rows written around the application are indexed when the index catches up
+            jdbcTemplate.update("INSERT INTO COMPLAINT (PRODUCT_ID, CONTENT, CREATION_DATE, COMPLAINANT, COUNT) "
+                    + "VALUES (9404, 'Sprocketwhirl jammed', CURRENT_TIMESTAMP, 'search-user-4', 1)");
+            assertThat(restTemplate.getForObject(searchUrl + "sprocketwhirl", ComplaintSearchPageDto.class)
+                    .results()).isEmpty();
+            complaintSearchService.catchUpIndex();
+            assertThat(restTemplate.getForObject(searchUrl + "sprocketwhirl", ComplaintSearchPageDto.class)
+                    .results()).extracting(ComplaintSearchHitDto::complaint)
+                    .extracting(ComplaintRetrievalDto::complainant).containsExactly("search-user-4");
+
+            //Count increments change the version but not the content version, so catch-up skips them
+            final var versionsSql = "SELECT VERSION, CONTENT_VERSION FROM COMPLAINT WHERE ID = ?";
+            final var beforeIncrement = jdbcTemplate.queryForMap(versionsSql, twice.id());
+            restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(9401L, "Flickerglass flickerglass cracked", "search-user-1"),
+                    ComplaintRetrievalDto.class);
+            final var afterIncrement = jdbcTemplate.queryForMap(versionsSql, twice.id());
+            assertThat((Long) afterIncrement.get("VERSION")).isGreaterThan((Long) beforeIncrement.get("VERSION"));
+            assertThat(afterIncrement.get("CONTENT_VERSION")).isEqualTo(beforeIncrement.get("CONTENT_VERSION"));
+        } finally {
+            complaintRepository.findAll().stream()
+                    .filter(complaint -> complaint.getComplainant().startsWith("search-user-"))
+                    .forEach(complaintRepository::delete);
+        }
+    }
+
+    @Test
+    void shouldExportEveryComplaint_asNdjsonAndCsv() {
+        try {
+            final var created = restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(9501L, "Broken \"lid\", leaking\nbadly", "export-user-1"),
+                    ComplaintRetrievalDto.class).getBody();
+            assertThat(created).isNotNull();
+
+            final var ndjson = export("ndjson");
+            assertThat(ndjson.getHeaders().getContentType()).hasToString("application/x-ndjson;charset=UTF-8");
+            assertThat(ndjson.getBody().lines().filter(line -> line.contains("export-user-1")))
+                    .singleElement().asString()
+                    .startsWith("{\"id\":" + created.id() + ",\"productId\":9501,")
+                    .contains("\"content\":\"Broken \\\"lid\\\", leaking\\nbadly\"", "\"count\":1");
+
+            final var csv = export("csv");
+            assertThat(csv.getHeaders().getContentDisposition().getFilename()).isEqualTo("complaints.csv");
+            assertThat(csv.getBody())
+                    .startsWith("id,productId,content,creationDate,complainant,complainantCountry,count\r\n")
+                    .contains(created.id() + ",9501,\"Broken \"\"lid\"\", leaking\nbadly\",")
+                    .contains(",export-user-1,");
+        } finally {
+            complaintRepository.findAll().stream()
+                    .filter(complaint -> complaint.getComplainant().startsWith("export-user-"))
+                    .forEach(complaintRepository::delete);
+        }
+    }
+
+    @Test
+    void shouldImportFile_mergingDuplicatesWithExistingComplaints() {
+        try {
+            final var existing = restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(9601L, "Existing", "import-user-1"), ComplaintRetrievalDto.class)
+                    .getBody();
+            assertThat(existing).isNotNull();
+            final var ndjson = """
+                    {"productId":9601,"content":"Again","complainant":"import-user-1"}
+                    {"productId":9602,"content":"New","complainant":"import-user-2","complainantCountry":"DE"}
+                    {"productId":9602,"content":"New again","complainant":"import-user-2"}
+                    {"productId":9603,"content":"","complainant":"import-user-3"}
+                    """;
+            final var headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_NDJSON);
+
+            final var response = restTemplate.postForEntity(BASE_URL + port + COMPLAINTS_ENDPOINT + "/import",
+                    new HttpEntity<>(ndjson, headers), ComplaintImportDto.class);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).satisfies(result -> {
+                assertThat(result.status()).isEqualTo(ComplaintImportDto.Status.COMPLETED);
+                assertThat(result.created()).isOne();
+                assertThat(result.incremented()).isEqualTo(2);
+                assertThat(result.invalid()).isOne();
+            });
+            assertThat(restTemplate.getForObject(BASE_URL + port + COMPLAINTS_ENDPOINT + "/" + existing.id(),
+                    ComplaintRetrievalDto.class).count()).isEqualTo(2);
+            assertThat(complaintRepository.findAll()).filteredOn(c -> c.getComplainant().equals("import-user-2"))
+                    .singleElement().satisfies(complaint -> {
+                        assertThat(complaint.getCount()).isEqualTo(2);
+                        assertThat(complaint.getComplainantCountry()).isEqualTo(CountryCode.DE);
+                    });
+            assertThat(restTemplate.getForObject(BASE_URL + port + COMPLAINTS_ENDPOINT + "/imports",
+                    ComplaintImportDto[].class)).extracting(ComplaintImportDto::id).contains(response.getBody().id());
+        } finally {
+            complaintRepository.findAll().stream()
+                    .filter(complaint -> complaint.getComplainant().startsWith("import-user-"))
+                    .forEach(complaintRepository::delete);
+        }
+    }
+
+    private ResponseEntity<String> export(String format) {
+        final var headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "identity");
+        return restTemplate.exchange(BASE_URL + port + COMPLAINTS_ENDPOINT + "/export?format=" + format,
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private long countryTotal(CountryCode country) {
+        final var stats = restTemplate.getForObject(
+                BASE_URL + port + COMPLAINTS_ENDPOINT + "/stats/countries", CountryStatsDto[].class);
+        return Arrays.stream(stats)
+                .filter(countryStats -> countryStats.country() == country)
+                .mapToLong(CountryStatsDto::totalComplaints)
+                .sum();
+    }
+
+    private ResponseEntity<String> conditionalGet(String url, String etag) {
+        final var headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
 }
@@ -0,0 +1,135 @@
+package dev.karolchmiel.complaintmanager;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintPageDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import liquibase.integration.spring.SpringLiquibase;
+import org.h2.Driver;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.X_FORWARDED_FOR;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the application against three in-memory H2 databases, a primary and two replicas with the same schema.
+ * Nothing is replicated between them, so a complaint is found only in the databases it was written to, which
+ * shows where each read was served from.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:replica-routing-primary;DB_CLOSE_DELAY=-1",
+                "ipapi.url=http://localhost:1/json"
+        })
+class ReplicaRoutingIntegrationTest {
+    private static final List<String> REPLICAS = List.of("first", "second");
+    private static final String COMPLAINTS_ENDPOINT = "/complaints";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) throws Exception {
+        for (final var replica : REPLICAS) {
+            final var url = replicaUrl(replica);
+            final var liquibase = new SpringLiquibase();
+            liquibase.setDataSource(replicaDataSource(replica));
+            liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+            liquibase.setResourceLoader(new DefaultResourceLoader());
+            liquibase.afterPropertiesSet();
+
+            registry.add("complaints.datasource.replicas." + replica + ".url", () -> url);
+            registry.add("complaints.datasource.replicas." + replica + ".username", () -> "sa");
+            registry.add("complaints.datasource.replicas." + replica + ".password", () -> "password");
+        }
+    }
+
+    private static String replicaUrl(String replica) {
+        return "jdbc:h2:mem:replica-routing-" + replica + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static SimpleDriverDataSource replicaDataSource(String replica) {
+        return new SimpleDriverDataSource(new Driver(), replicaUrl(replica), "sa", "password");
+    }
+
+    @Test
+    void shouldServeListsFromReplicas() {
+        //given
+        final var productId = 9301L;
+        for (final var replica : REPLICAS) {
+            new JdbcTemplate(replicaDataSource(replica)).update("""
+                    INSERT INTO COMPLAINT (ID, PRODUCT_ID, CONTENT, CREATION_DATE, COMPLAINANT, COUNT, VERSION)
+                    VALUES (900001, ?, 'Written to the replicas only', CURRENT_TIMESTAMP, 'replica-reader', 1, 1)
+                    """, productId);
+        }
+
+        //when
+        final var firstRead = listProductComplaints(productId, "10.23.0.1");
+        final var secondRead = listProductComplaints(productId, "10.23.0.1");
+
+        //then
+        assertThat(firstRead).extracting(ComplaintRetrievalDto::complainant).containsExactly("replica-reader");
+        assertThat(secondRead).extracting(ComplaintRetrievalDto::complainant).containsExactly("replica-reader");
+        for (final var replica : REPLICAS) {
+            assertThat(meterRegistry.get("complaint.datasource.connections").tag("target", replica).counter().count())
+                    .isPositive();
+        }
+    }
+
+    @Test
+    void shouldServeWritingClientFromPrimary_untilReplicationLagHasPassed() {
+        //given
+        final var productId = 9302L;
+        final var creationDto = new ComplaintCreationDto(productId, "Broken on arrival", "primary-writer");
+        final var createResponse = restTemplate.exchange(baseUrl() + COMPLAINTS_ENDPOINT, HttpMethod.POST,
+                new HttpEntity<>(creationDto, clientHeaders("10.23.0.2")), ComplaintRetrievalDto.class);
+
+        //when
+        final var writerRead = listProductComplaints(productId, "10.23.0.2");
+        final var otherClientRead = listProductComplaints(productId, "10.23.0.3");
+
+        //then
+        assertThat(createResponse.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(writerRead).extracting(ComplaintRetrievalDto::complainant).containsExactly("primary-writer");
+        assertThat(otherClientRead).isEmpty();
+    }
+
+    private List<ComplaintRetrievalDto> listProductComplaints(long productId, String clientIp) {
+        final var response = restTemplate.exchange(baseUrl() + COMPLAINTS_ENDPOINT + "?productId=" + productId,
+                HttpMethod.GET, new HttpEntity<>(clientHeaders(clientIp)), ComplaintPageDto.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isNotNull();
+        return response.getBody().complaints();
+    }
+
+    private static HttpHeaders clientHeaders(String clientIp) {
+        final var headers = new HttpHeaders();
+        headers.set(X_FORWARDED_FOR, clientIp);
+        return headers;
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + port;
+    }
+}
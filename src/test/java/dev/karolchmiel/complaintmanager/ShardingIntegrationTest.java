@@ -0,0 +1,160 @@
+package dev.karolchmiel.complaintmanager;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintPageDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchHitDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchPageDto;
+import dev.karolchmiel.complaintmanager.api.dto.CountryStatsDto;
+import dev.karolchmiel.complaintmanager.api.dto.ProductStatsDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the application against three in-memory H2 databases as shards, each migrated by the application itself.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "complaints.sharding.enabled=true",
+                "complaints.sharding.shards[0].url=jdbc:h2:mem:sharding-0;DB_CLOSE_DELAY=-1",
+                "complaints.sharding.shards[0].username=sa",
+                "complaints.sharding.shards[1].url=jdbc:h2:mem:sharding-1;DB_CLOSE_DELAY=-1",
+                "complaints.sharding.shards[1].username=sa",
+                "complaints.sharding.shards[2].url=jdbc:h2:mem:sharding-2;DB_CLOSE_DELAY=-1",
+                "complaints.sharding.shards[2].username=sa",
+                "ipapi.url=http://localhost:1/json"
+        })
+class ShardingIntegrationTest {
+    private static final String COMPLAINTS_ENDPOINT = "/complaints";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Test
+    void shouldPlaceComplaintsOnShardOfProduct_andFindThemByIdAcrossShards() {
+        //given
+        final var created = new ArrayList<ComplaintRetrievalDto>();
+
+        //when
+        for (final var productId : LongStream.rangeClosed(9401, 9409).toArray()) {
+            created.add(restTemplate.postForEntity(baseUrl() + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(productId, "Sharded complaint", "shard-user"),
+                    ComplaintRetrievalDto.class).getBody());
+        }
+
+        //then
+        final var shards = new HashSet<Integer>();
+        for (final var complaint : created) {
+            final var shard = ShardRouter.shardOfComplaint(complaint.id());
+            assertThat(shard).isEqualTo(shardRouter.shardOfProduct(complaint.productId()));
+            shards.add(shard);
+            assertThat(restTemplate.getForObject(baseUrl() + COMPLAINTS_ENDPOINT + "/" + complaint.id(),
+                    ComplaintRetrievalDto.class)).isEqualTo(complaint);
+        }
+        assertThat(shards).containsExactlyInAnyOrder(0, 1, 2);
+        assertThat(restTemplate.getForEntity(baseUrl() + COMPLAINTS_ENDPOINT + "/" + ShardRouter.firstComplaintId(3),
+                String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void shouldListAndSearchComplaintsOfEveryShard_inOneOrder() {
+        //given
+        final var ids = new ArrayList<Long>();
+        for (final var productId : LongStream.rangeClosed(9411, 9417).toArray()) {
+            ids.add(restTemplate.postForEntity(baseUrl() + COMPLAINTS_ENDPOINT,
+                    new ComplaintCreationDto(productId, "Scattered gathered", "gather-user"),
+                    ComplaintRetrievalDto.class).getBody().id());
+        }
+
+        //when
+        final var listed = new ArrayList<Long>();
+        Long cursor = null;
+        do {
+            final var page = restTemplate.getForObject(baseUrl() + COMPLAINTS_ENDPOINT + "?size=2"
+                    + (cursor == null ? "" : "&cursor=" + cursor), ComplaintPageDto.class);
+            page.complaints().stream()
+                    .filter(complaint -> complaint.complainant().equals("gather-user"))
+                    .forEach(complaint -> listed.add(complaint.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        final var firstHits = restTemplate.getForObject(baseUrl() + COMPLAINTS_ENDPOINT
+                + "/search?q=scattered&size=4", ComplaintSearchPageDto.class);
+        final var secondHits = restTemplate.getForObject(baseUrl() + COMPLAINTS_ENDPOINT
+                + "/search?q=scattered&size=4&page=1", ComplaintSearchPageDto.class);
+
+        //then
+        assertThat(listed).containsExactlyElementsOf(ids.stream().sorted().toList());
+        assertThat(firstHits.nextPage()).isOne();
+        assertThat(secondHits.nextPage()).isNull();
+        assertThat(searchedIds(firstHits, secondHits)).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    void shouldAggregateStatisticsOfEveryShard() {
+        //given
+        final var ndjson = new StringBuilder();
+        for (final var productId : LongStream.rangeClosed(9421, 9426).toArray()) {
+            ndjson.append("""
+                    {"productId":%d,"content":"Imported","complainant":"stats-user","complainantCountry":"LU"}
+                    """.formatted(productId));
+        }
+        ndjson.append("""
+                {"productId":9421,"content":"Imported again","complainant":"stats-user"}
+                {"productId":9421,"content":"Imported","complainant":"other-stats-user","complainantCountry":"LU"}
+                """);
+        final var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+
+        //when
+        final var imported = restTemplate.postForEntity(baseUrl() + COMPLAINTS_ENDPOINT + "/import",
+                new HttpEntity<>(ndjson.toString(), headers), ComplaintImportDto.class);
+        final var productStats = restTemplate.getForObject(baseUrl() + COMPLAINTS_ENDPOINT + "/stats/products/9421",
+                ProductStatsDto.class);
+        final var countryStats = restTemplate.getForObject(baseUrl() + COMPLAINTS_ENDPOINT + "/stats/countries",
+                CountryStatsDto[].class);
+
+        //then
+        assertThat(imported.getBody().status()).isEqualTo(ComplaintImportDto.Status.COMPLETED);
+        assertThat(productStats.totalComplaints()).isEqualTo(3L);
+        assertThat(productStats.distinctComplainants()).isEqualTo(2L);
+        assertThat(countryStats).filteredOn(stats -> stats.country() == CountryCode.LU)
+                .singleElement()
+                .extracting(CountryStatsDto::totalComplaints)
+                .isEqualTo(8L);
+    }
+
+    private static List<Long> searchedIds(ComplaintSearchPageDto... pages) {
+        final var ids = new ArrayList<Long>();
+        for (final var page : pages) {
+            page.results().stream().map(ComplaintSearchHitDto::complaint).map(ComplaintRetrievalDto::id).forEach(ids::add);
+        }
+        return ids;
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + port;
+    }
+}
@@ -0,0 +1,154 @@
+package dev.karolchmiel.complaintmanager;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.stub.IpApiStubServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the platform thread and the virtual thread execution model while ip-api.com is slow: the same burst
+ * of complaint submissions from many clients is sent to the application started in each mode, and the time until
+ * the country enrichment of every complaint has been processed is measured. Excluded from the default build,
+ * run with: {@code mvn -Pload-tests test}
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+    private static final Duration IP_API_LATENCY = Duration.ofMillis(200);
+    private static final int TOMCAT_MAX_THREADS = 20;
+    private static final int CLIENTS = 200;
+    private static final int REQUESTS_PER_CLIENT = 10;
+    private static final int DISTINCT_IPS = 100;
+    private static final Duration ENRICHMENT_TIMEOUT = Duration.ofMinutes(2);
+
+    private static IpApiStubServer ipApiStub;
+
+    @BeforeAll
+    static void startIpApiStub() throws IOException {
+        ipApiStub = new IpApiStubServer(ip -> CountryCode.PL);
+        ipApiStub.setLatency(IP_API_LATENCY);
+    }
+
+    @AfterAll
+    static void stopIpApiStub() {
+        ipApiStub.close();
+    }
+
+    @Test
+    void shouldHandleMoreConcurrentLoad_withVirtualThreads() throws Exception {
+        final var platform = runLoad(false);
+        final var virtual = runLoad(true);
+
+        System.out.printf("%n%-9s %12s %12s %12s %14s%n", "threads", "requests/s", "p50 [ms]", "p99 [ms]",
+                "enriched [ms]");
+        for (final var result : List.of(platform, virtual)) {
+            System.out.printf("%-9s %12.0f %12d %12d %14d%n", result.virtualThreads ? "virtual" : "platform",
+                    result.requestsPerSecond(), result.latencyPercentileMillis(50),
+                    result.latencyPercentileMillis(99), result.enrichmentTime.toMillis());
+        }
+
+        assertThat(virtual.failures).isZero();
+        assertThat(virtual.enrichmentTime).isLessThan(platform.enrichmentTime);
+    }
+
+    private LoadResult runLoad(boolean virtualThreads) throws Exception {
+        try (final var context = new SpringApplicationBuilder(ComplaintManagerApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:load-test-" + virtualThreads + ";DB_CLOSE_DELAY=-1",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                        "--ipapi.url=" + ipApiStub.baseUrl() + "/json",
+                        "--geolocation.enrichment.poll-interval=10",
+                        "--logging.level.root=WARN");
+             final var httpClient = HttpClient.newBuilder()
+                     .executor(Executors.newVirtualThreadPerTaskExecutor())
+                     .build();
+             final var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            final var meterRegistry = context.getBean(MeterRegistry.class);
+            final var latencies = Collections.synchronizedList(new ArrayList<Long>());
+            final var failures = new AtomicInteger();
+
+            final var startedAt = System.nanoTime();
+            final var futures = new ArrayList<Future<?>>();
+            for (int client = 0; client < CLIENTS; client++) {
+                final var clientId = client;
+                futures.add(clients.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        final var requestStartedAt = System.nanoTime();
+                        final var status = submitComplaint(httpClient, baseUrl, clientId, i);
+                        latencies.add(System.nanoTime() - requestStartedAt);
+                        if (status != 201) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+            final var submissionTime = Duration.ofNanos(System.nanoTime() - startedAt);
+
+            final var deadline = System.nanoTime() + ENRICHMENT_TIMEOUT.toNanos();
+            while (countEnrichmentsProcessed(meterRegistry) < latencies.size() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(countEnrichmentsProcessed(meterRegistry)).isEqualTo(latencies.size());
+            final var enrichmentTime = Duration.ofNanos(System.nanoTime() - startedAt);
+
+            return new LoadResult(virtualThreads, List.copyOf(latencies), failures.get(), submissionTime,
+                    enrichmentTime);
+        }
+    }
+
+    private static int submitComplaint(HttpClient httpClient, String baseUrl, int clientId, int i) throws Exception {
+        final var body = """
+                {"productId": %d, "content": "Load test complaint", "complainant": "load-user-%d"}
+                """.formatted(i, clientId);
+        final var request = HttpRequest.newBuilder(URI.create(baseUrl + "/complaints"))
+                .header("Content-Type", "application/json")
+                .header("X-Forwarded-For", "83.1.1." + (clientId % DISTINCT_IPS))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static long countEnrichmentsProcessed(MeterRegistry meterRegistry) {
+        return (long) meterRegistry.get("complaint.enrichment.processed").counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private record LoadResult(boolean virtualThreads, List<Long> latencies, int failures, Duration submissionTime,
+                              Duration enrichmentTime) {
+        double requestsPerSecond() {
+            return latencies.size() / (submissionTime.toNanos() / 1e9);
+        }
+
+        long latencyPercentileMillis(int percentile) {
+            final var sorted = latencies.stream().sorted().toList();
+            final var index = Math.min(sorted.size() - 1, sorted.size() * percentile / 100);
+            return Duration.ofNanos(sorted.get(index)).toMillis();
+        }
+    }
+}
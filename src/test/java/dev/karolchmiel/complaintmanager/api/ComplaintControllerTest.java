@@ -1,32 +1,75 @@
 package dev.karolchmiel.complaintmanager.api;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchItemResultDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchItemResultDto.Status;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchResultDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintPageDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchHitDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintSearchPageDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintUpdateDto;
+import dev.karolchmiel.complaintmanager.api.dto.CountryStatsDto;
+import dev.karolchmiel.complaintmanager.api.dto.ProductStatsDto;
+import dev.karolchmiel.complaintmanager.dto.ComplaintField;
+import dev.karolchmiel.complaintmanager.dto.ComplaintFilter;
+import dev.karolchmiel.complaintmanager.dto.FileFormat;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaintPage;
+import dev.karolchmiel.complaintmanager.service.ComplaintBatchService;
+import dev.karolchmiel.complaintmanager.service.ComplaintEventFeed;
+import dev.karolchmiel.complaintmanager.service.ComplaintExportService;
+import dev.karolchmiel.complaintmanager.service.ComplaintImportService;
 import dev.karolchmiel.complaintmanager.service.ComplaintReadService;
+import dev.karolchmiel.complaintmanager.service.ComplaintSearchService;
+import dev.karolchmiel.complaintmanager.service.ComplaintStatsService;
 import dev.karolchmiel.complaintmanager.service.ComplaintTestData;
 import dev.karolchmiel.complaintmanager.service.ComplaintWriteService;
+import dev.karolchmiel.complaintmanager.service.IdempotencyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.IDEMPOTENCY_KEY;
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.IDEMPOTENT_REPLAYED;
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.LAST_EVENT_ID;
 import static dev.karolchmiel.complaintmanager.util.HttpUtils.X_FORWARDED_FOR;
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.when;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -35,24 +78,41 @@ class ComplaintControllerTest {
     private static final String COMPLAINTS_ENDPOINT = "/complaints";
     private static final String COMPLAINT_ID_ENDPOINT = "/complaints/{id}";
     private static final String CLIENT_IP = "192.168.1.1";
+    private static final String PAGE_TAG = "5d41402abc4b2a76b9719d911017c592";
     private static final ComplaintTestData TEST_DATA = ComplaintTestData.defaultData();
 
     @Mock
     private ComplaintReadService complaintReadService;
     @Mock
     private ComplaintWriteService complaintWriteService;
+    @Mock
+    private ComplaintBatchService complaintBatchService;
+    @Mock
+    private ComplaintStatsService complaintStatsService;
+    @Mock
+    private ComplaintSearchService complaintSearchService;
+    @Mock
+    private ComplaintExportService complaintExportService;
+    @Mock
+    private ComplaintImportService complaintImportService;
+    @Mock
+    private ComplaintEventFeed complaintEventFeed;
 
     private MockMvc mockMvc;
     private ObjectMapper objectMapper;
 
     @BeforeEach
     void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
         mockMvc = MockMvcBuilders
-                .standaloneSetup(new ComplaintController(complaintReadService, complaintWriteService))
+                .standaloneSetup(new ComplaintController(
+                        complaintReadService, complaintWriteService, complaintBatchService, complaintStatsService,
+                        complaintSearchService, complaintExportService, complaintImportService, complaintEventFeed,
+                        new IdempotencyStore(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1), Duration.ofSeconds(1)),
+                        objectMapper))
                 .setControllerAdvice(new GlobalExceptionHandler())
                 .build();
-        objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
     }
 
     @Nested
@@ -61,11 +121,13 @@ class ComplaintControllerTest {
         void shouldReturnComplaint_whenComplaintExists() throws Exception {
             //given
             final var expectedDto = TEST_DATA.buildDto();
-            when(complaintReadService.getComplaintById(TEST_DATA.id())).thenReturn(Optional.of(expectedDto));
+            when(complaintReadService.getComplaintById(TEST_DATA.id()))
+                    .thenReturn(Optional.of(TEST_DATA.buildVersionedDto()));
 
             //when
             final var result = mockMvc.perform(get(COMPLAINT_ID_ENDPOINT, TEST_DATA.id()))
                     .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"" + TEST_DATA.version() + "\""))
                     .andReturn();
 
             //then
@@ -85,33 +147,160 @@ class ComplaintControllerTest {
             mockMvc.perform(get(COMPLAINT_ID_ENDPOINT, TEST_DATA.id()))
                     .andExpect(status().isNotFound());
         }
+
+        @Test
+        void shouldReturnNotModifiedWithoutLoadingComplaint_whenETagMatches() throws Exception {
+            //given
+            when(complaintReadService.getComplaintVersion(TEST_DATA.id())).thenReturn(Optional.of(TEST_DATA.version()));
+
+            //when/then
+            mockMvc.perform(get(COMPLAINT_ID_ENDPOINT, TEST_DATA.id())
+                            .header(HttpHeaders.IF_NONE_MATCH, "\"" + TEST_DATA.version() + "\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+            verify(complaintReadService, never()).getComplaintById(anyLong());
+        }
+
+        @Test
+        void shouldReturnComplaint_whenETagIsOutdated() throws Exception {
+            //given
+            when(complaintReadService.getComplaintVersion(TEST_DATA.id())).thenReturn(Optional.of(TEST_DATA.version()));
+            when(complaintReadService.getComplaintById(TEST_DATA.id()))
+                    .thenReturn(Optional.of(TEST_DATA.buildVersionedDto()));
+
+            //when/then
+            mockMvc.perform(get(COMPLAINT_ID_ENDPOINT, TEST_DATA.id())
+                            .header(HttpHeaders.IF_NONE_MATCH, "\"" + (TEST_DATA.version() - 1) + "\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"" + TEST_DATA.version() + "\""));
+        }
     }
 
     @Nested
     class GetComplaintsTests {
         @Test
-        void shouldReturnAllComplaints() throws Exception {
+        void shouldReturnFirstPage_whenNoCursorIsGiven() throws Exception {
             //given
-            final var expectedDto = TEST_DATA.buildDto();
-            when(complaintReadService.getAllComplaints()).thenReturn(List.of(expectedDto));
+            final var expectedPage = new ComplaintPageDto(List.of(TEST_DATA.buildDto()), TEST_DATA.id());
+            when(complaintReadService.getComplaints(
+                    ComplaintFilter.NONE, ComplaintField.ALL, null, Integer.parseInt(ComplaintApi.DEFAULT_PAGE_SIZE)))
+                    .thenReturn(new VersionedComplaintPage(expectedPage, PAGE_TAG));
+
+            //when
+            final var actualPage = performGetAndDeserializePage(get(COMPLAINTS_ENDPOINT));
+
+            //then
+            assertThat(actualPage).isEqualTo(expectedPage);
+            verify(complaintReadService, never()).getComplaintsVersionTag(any(), any(), any(), anyInt());
+        }
+
+        @Test
+        void shouldReturnPageWithETag_andNotModifiedWithoutLoadingPage_whenETagMatches() throws Exception {
+            //given
+            final var size = Integer.parseInt(ComplaintApi.DEFAULT_PAGE_SIZE);
+            when(complaintReadService.getComplaintsVersionTag(ComplaintFilter.NONE, ComplaintField.ALL, null, size))
+                    .thenReturn(PAGE_TAG);
+            when(complaintReadService.getComplaints(ComplaintFilter.NONE, ComplaintField.ALL, null, size))
+                    .thenReturn(new VersionedComplaintPage(new ComplaintPageDto(emptyList(), null), PAGE_TAG));
+
+            //when/then
+            mockMvc.perform(get(COMPLAINTS_ENDPOINT))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"" + PAGE_TAG + "\""));
+            mockMvc.perform(get(COMPLAINTS_ENDPOINT).header(HttpHeaders.IF_NONE_MATCH, "\"" + PAGE_TAG + "\""))
+                    .andExpect(status().isNotModified());
+            verify(complaintReadService, times(1)).getComplaints(any(), any(), any(), anyInt());
+            verify(complaintReadService, times(1)).getComplaintsVersionTag(any(), any(), any(), anyInt());
+        }
+
+        @Test
+        void shouldSendPageWithTagOfItsOwnRows_whenVersionTagWasReadFromNewerRows() throws Exception {
+            //given
+            final var size = Integer.parseInt(ComplaintApi.DEFAULT_PAGE_SIZE);
+            when(complaintReadService.getComplaintsVersionTag(ComplaintFilter.NONE, ComplaintField.ALL, null, size))
+                    .thenReturn("newer" + PAGE_TAG);
+            when(complaintReadService.getComplaints(ComplaintFilter.NONE, ComplaintField.ALL, null, size))
+                    .thenReturn(new VersionedComplaintPage(new ComplaintPageDto(emptyList(), null), PAGE_TAG));
+
+            //when/then
+            mockMvc.perform(get(COMPLAINTS_ENDPOINT).header(HttpHeaders.IF_NONE_MATCH, "\"outdated\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().stringValues(HttpHeaders.ETAG, "\"" + PAGE_TAG + "\""));
+        }
+
+        @Test
+        void shouldPassCursorAndSize_whenGiven() throws Exception {
+            //given
+            final var expectedPage = new ComplaintPageDto(emptyList(), null);
+            when(complaintReadService.getComplaints(ComplaintFilter.NONE, ComplaintField.ALL, TEST_DATA.id(), 10))
+                    .thenReturn(new VersionedComplaintPage(expectedPage, PAGE_TAG));
+
+            //when
+            final var actualPage = performGetAndDeserializePage(get(COMPLAINTS_ENDPOINT)
+                    .param("cursor", String.valueOf(TEST_DATA.id()))
+                    .param("size", "10"));
+
+            //then
+            assertThat(actualPage).isEqualTo(expectedPage);
+        }
+
+        @Test
+        void shouldPassCombinedFilters_whenGiven() throws Exception {
+            //given
+            final var filter = new ComplaintFilter(TEST_DATA.productId(), CountryCode.PL,
+                    LocalDateTime.of(2023, 5, 1, 0, 0), LocalDateTime.of(2023, 6, 1, 0, 0));
+            final var expectedPage = new ComplaintPageDto(List.of(TEST_DATA.buildDto()), null);
+            when(complaintReadService.getComplaints(filter, ComplaintField.ALL, null, 10)).thenReturn(new VersionedComplaintPage(expectedPage, PAGE_TAG));
 
             //when
-            final var actualDtos = performGetAndDeserializeList(COMPLAINTS_ENDPOINT);
+            final var actualPage = performGetAndDeserializePage(get(COMPLAINTS_ENDPOINT)
+                    .param("size", "10")
+                    .param("productId", String.valueOf(TEST_DATA.productId()))
+                    .param("complainantCountry", "PL")
+                    .param("createdFrom", "2023-05-01T00:00:00")
+                    .param("createdTo", "2023-06-01T00:00:00"));
 
             //then
-            assertThat(actualDtos).containsOnly(expectedDto);
+            assertThat(actualPage).isEqualTo(expectedPage);
         }
 
         @Test
-        void shouldReturnEmptyList_whenNoComplaintsExist() throws Exception {
+        void shouldPassSelectedFields_whenGiven() throws Exception {
             //given
-            when(complaintReadService.getAllComplaints()).thenReturn(emptyList());
+            final var fields = EnumSet.of(ComplaintField.CONTENT, ComplaintField.COUNT);
+            final var expectedPage = new ComplaintPageDto(List.of(new ComplaintRetrievalDto(TEST_DATA.id(), null,
+                    TEST_DATA.content(), null, null, null, TEST_DATA.count())), null);
+            when(complaintReadService.getComplaints(ComplaintFilter.NONE, fields, null, 10)).thenReturn(new VersionedComplaintPage(expectedPage, PAGE_TAG));
 
             //when
-            final var actualDtos = performGetAndDeserializeList(COMPLAINTS_ENDPOINT);
+            final var actualPage = performGetAndDeserializePage(get(COMPLAINTS_ENDPOINT)
+                    .param("size", "10")
+                    .param("fields", "id, content,count"));
 
             //then
-            assertThat(actualDtos).isEmpty();
+            assertThat(actualPage).isEqualTo(expectedPage);
+        }
+
+        @Test
+        void shouldReturnBadRequest_whenFieldIsUnknown() throws Exception {
+            mockMvc.perform(get(COMPLAINTS_ENDPOINT).param("fields", "content,version"))
+                    .andExpect(status().isBadRequest());
+            verifyNoInteractions(complaintReadService);
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"complainantCountry=XX", "createdFrom=yesterday", "productId=abc"})
+        void shouldReturnBadRequest_whenFilterIsMalformed(String filter) throws Exception {
+            mockMvc.perform(get(COMPLAINTS_ENDPOINT + "?" + filter))
+                    .andExpect(status().isBadRequest());
+            verifyNoInteractions(complaintReadService);
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {0, ComplaintApi.MAX_PAGE_SIZE + 1})
+        void shouldReturnBadRequest_whenPageSizeIsOutOfRange(int size) throws Exception {
+            mockMvc.perform(get(COMPLAINTS_ENDPOINT).param("size", String.valueOf(size)))
+                    .andExpect(status().isBadRequest());
         }
     }
 
@@ -174,6 +363,104 @@ class ComplaintControllerTest {
                     .andExpect(jsonPath("$.content").value("Content is required"))
                     .andExpect(jsonPath("$.complainant").value("Complainant name is required"));
         }
+
+        @Test
+        void shouldReplayFirstResponse_whenIdempotencyKeyIsRepeated() throws Exception {
+            //given
+            final var creationDto = TEST_DATA.buildCreationDto();
+            final var expectedDto = TEST_DATA.buildDto();
+            when(complaintWriteService.addNewOrIncrementCount(creationDto, CLIENT_IP)).thenReturn(expectedDto);
+
+            //when
+            mockMvc.perform(postRequestWithClientIp(COMPLAINTS_ENDPOINT, creationDto).header(IDEMPOTENCY_KEY, "key-1"))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().doesNotExist(IDEMPOTENT_REPLAYED));
+            final var result = mockMvc.perform(postRequestWithClientIp(COMPLAINTS_ENDPOINT, creationDto)
+                            .header(IDEMPOTENCY_KEY, "key-1"))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string(IDEMPOTENT_REPLAYED, "true"))
+                    .andReturn();
+
+            //then
+            final var actualDto = objectMapper.readValue(
+                    result.getResponse().getContentAsString(),
+                    ComplaintRetrievalDto.class);
+
+            assertThat(actualDto).isEqualTo(expectedDto);
+            verify(complaintWriteService, times(1)).addNewOrIncrementCount(creationDto, CLIENT_IP);
+        }
+
+        @Test
+        void shouldReturnUnprocessableEntity_whenIdempotencyKeyIsReusedForDifferentComplaint() throws Exception {
+            //given
+            final var creationDto = TEST_DATA.buildCreationDto();
+            final var otherDto = new ComplaintCreationDto(creationDto.productId(), "Other content",
+                    creationDto.complainant());
+            when(complaintWriteService.addNewOrIncrementCount(creationDto, CLIENT_IP)).thenReturn(TEST_DATA.buildDto());
+            mockMvc.perform(postRequestWithClientIp(COMPLAINTS_ENDPOINT, creationDto).header(IDEMPOTENCY_KEY, "key-2"))
+                    .andExpect(status().isCreated());
+
+            //when/then
+            mockMvc.perform(postRequestWithClientIp(COMPLAINTS_ENDPOINT, otherDto).header(IDEMPOTENCY_KEY, "key-2"))
+                    .andExpect(status().isUnprocessableEntity())
+                    .andExpect(jsonPath("$.error").exists());
+            verify(complaintWriteService, never()).addNewOrIncrementCount(otherDto, CLIENT_IP);
+        }
+    }
+
+    @Nested
+    class CreateComplaintsInBatchTests {
+        private static final String BATCH_ENDPOINT = "/complaints/batch";
+
+        private final ComplaintCreationDto otherDto = new ComplaintCreationDto(456L, "Other content", "user-456");
+        private final ComplaintBatchResultDto batchResult = new ComplaintBatchResultDto(1, 0, 0, List.of(
+                new ComplaintBatchItemResultDto(0, Status.CREATED, TEST_DATA.buildDto(), null)));
+
+        @Test
+        void shouldPassJsonArrayToBatchService() throws Exception {
+            //given
+            final var dtos = List.of(TEST_DATA.buildCreationDto(), otherDto);
+            when(complaintBatchService.addBatch(dtos, CLIENT_IP)).thenReturn(batchResult);
+
+            //when
+            final var result = mockMvc.perform(postRequestWithClientIp(BATCH_ENDPOINT, dtos))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            //then
+            assertThat(objectMapper.readValue(result.getResponse().getContentAsString(), ComplaintBatchResultDto.class))
+                    .isEqualTo(batchResult);
+        }
+
+        @Test
+        void shouldPassNdjsonLinesToBatchService() throws Exception {
+            //given
+            final var ndjson = objectMapper.writeValueAsString(TEST_DATA.buildCreationDto()) + "\n"
+                    + objectMapper.writeValueAsString(otherDto) + "\n";
+            when(complaintBatchService.addBatch(List.of(TEST_DATA.buildCreationDto(), otherDto), CLIENT_IP))
+                    .thenReturn(batchResult);
+
+            //when/then
+            mockMvc.perform(post(BATCH_ENDPOINT)
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content(ndjson)
+                            .header(X_FORWARDED_FOR, CLIENT_IP))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.created").value(1));
+        }
+
+        @Test
+        void shouldReturnBadRequest_whenNdjsonLineIsMalformed() throws Exception {
+            //given
+            final var ndjson = objectMapper.writeValueAsString(TEST_DATA.buildCreationDto()) + "\n{\"productId\":\n";
+
+            //when/then
+            mockMvc.perform(post(BATCH_ENDPOINT)
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content(ndjson))
+                    .andExpect(status().isBadRequest());
+            verifyNoInteractions(complaintBatchService);
+        }
     }
 
     @Nested
@@ -205,14 +492,238 @@ class ComplaintControllerTest {
         }
     }
 
-    private List<ComplaintRetrievalDto> performGetAndDeserializeList(String url) throws Exception {
-        final var result = mockMvc.perform(get(url))
+    @Nested
+    class SearchComplaintsTests {
+        @Test
+        void shouldReturnRankedMatches() throws Exception {
+            //given
+            when(complaintSearchService.search("battery refund", 0, 20)).thenReturn(new ComplaintSearchPageDto(
+                    List.of(new ComplaintSearchHitDto(TEST_DATA.buildDto(), 2.5)), 1));
+
+            //when/then
+            mockMvc.perform(get("/complaints/search").param("q", "battery refund"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.results[0].complaint.id").value(TEST_DATA.id()))
+                    .andExpect(jsonPath("$.results[0].score").value(2.5))
+                    .andExpect(jsonPath("$.nextPage").value(1));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"q=", "q=battery&page=-1", "q=battery&size=0", "q=battery&size=101", "page=1"})
+        void shouldReturnBadRequest_whenQueryOrPageIsInvalid(String parameters) throws Exception {
+            mockMvc.perform(get("/complaints/search?" + parameters))
+                    .andExpect(status().isBadRequest());
+            verifyNoInteractions(complaintSearchService);
+        }
+    }
+
+    @Nested
+    class ExportComplaintsTests {
+        @Test
+        void shouldExportNdjsonAsAttachment_byDefault() throws Exception {
+            //given
+            when(complaintExportService.export(eq(FileFormat.NDJSON), any())).thenAnswer(invocation -> {
+                invocation.<OutputStream>getArgument(1).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+                return 1L;
+            });
+
+            //when/then
+            mockMvc.perform(get("/complaints/export"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                    .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"complaints.ndjson\""))
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                    .andExpect(content().string("{\"id\":1}\n"));
+        }
+
+        @Test
+        void shouldCompressExport_whenClientAcceptsGzip() throws Exception {
+            //given
+            when(complaintExportService.export(eq(FileFormat.CSV), any())).thenAnswer(invocation -> {
+                invocation.<OutputStream>getArgument(1).write("id\r\n1\r\n".getBytes(StandardCharsets.UTF_8));
+                return 1L;
+            });
+
+            //when
+            final var result = mockMvc.perform(get("/complaints/export")
+                            .param("format", "CSV")
+                            .header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"complaints.csv\""))
+                    .andReturn();
+
+            //then
+            final var body = new GZIPInputStream(new ByteArrayInputStream(
+                    result.getResponse().getContentAsByteArray())).readAllBytes();
+            assertThat(new String(body, StandardCharsets.UTF_8)).isEqualTo("id\r\n1\r\n");
+        }
+
+        @Test
+        void shouldReturnBadRequest_whenFormatIsUnknown() throws Exception {
+            mockMvc.perform(get("/complaints/export").param("format", "xml"))
+                    .andExpect(status().isBadRequest());
+            verifyNoInteractions(complaintExportService);
+        }
+    }
+
+    @Nested
+    class ImportComplaintsTests {
+        @Test
+        void shouldImportUploadedCsv_decompressingGzip() throws Exception {
+            //given
+            final var csv = "productId,content,complainant\n1,Broken,user-1\n";
+            final var gzipped = new ByteArrayOutputStream();
+            try (final var output = new GZIPOutputStream(gzipped)) {
+                output.write(csv.getBytes(StandardCharsets.UTF_8));
+            }
+            final var uploaded = new ByteArrayOutputStream();
+            when(complaintImportService.importComplaints(eq(FileFormat.CSV), any(), eq("upload from " + CLIENT_IP)))
+                    .thenAnswer(invocation -> {
+                        invocation.<InputStream>getArgument(1).transferTo(uploaded);
+                        return importResult(ComplaintImportDto.Status.COMPLETED);
+                    });
+
+            //when/then
+            mockMvc.perform(post("/complaints/import")
+                            .contentType("text/csv")
+                            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                            .header(X_FORWARDED_FOR, CLIENT_IP)
+                            .content(gzipped.toByteArray()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("COMPLETED"))
+                    .andExpect(jsonPath("$.created").value(1));
+            assertThat(uploaded.toString(StandardCharsets.UTF_8)).isEqualTo(csv);
+        }
+
+        @Test
+        void shouldReturnBadRequest_whenImportIsRejected() throws Exception {
+            //given
+            when(complaintImportService.importComplaints(eq(FileFormat.NDJSON), any(), any()))
+                    .thenReturn(importResult(ComplaintImportDto.Status.REJECTED));
+
+            //when/then
+            mockMvc.perform(post("/complaints/import")
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content("not json"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.status").value("REJECTED"));
+        }
+
+        @Test
+        void shouldReturnUnsupportedMediaType_forOtherFormats() throws Exception {
+            mockMvc.perform(post("/complaints/import")
+                            .contentType(MediaType.APPLICATION_XML)
+                            .content("<complaints/>"))
+                    .andExpect(status().isUnsupportedMediaType());
+            verifyNoInteractions(complaintImportService);
+        }
+
+        @Test
+        void shouldReturnImportProgress_andNotFoundForUnknownImport() throws Exception {
+            //given
+            final var running = importResult(ComplaintImportDto.Status.RUNNING);
+            when(complaintImportService.getImports()).thenReturn(List.of(running));
+            when(complaintImportService.getImport(running.id())).thenReturn(Optional.of(running));
+
+            //when/then
+            mockMvc.perform(get("/complaints/imports"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(running.id().toString()))
+                    .andExpect(jsonPath("$[0].rowsPerSecond").value(500.0));
+            mockMvc.perform(get("/complaints/imports/{id}", running.id()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("RUNNING"));
+            mockMvc.perform(get("/complaints/imports/{id}", UUID.randomUUID()))
+                    .andExpect(status().isNotFound());
+        }
+
+        private static ComplaintImportDto importResult(ComplaintImportDto.Status status) {
+            return new ComplaintImportDto(UUID.randomUUID(), "upload from " + CLIENT_IP, "csv", status,
+                    LocalDateTime.now(), null, 1, 1, 0, 0, 500.0, null);
+        }
+    }
+
+    @Nested
+    class StatsTests {
+        @Test
+        void shouldReturnProductStats_whenProductHasComplaints() throws Exception {
+            //given
+            when(complaintStatsService.getProductStats(TEST_DATA.productId()))
+                    .thenReturn(Optional.of(new ProductStatsDto(TEST_DATA.productId(), 7L, 3L)));
+
+            //when/then
+            mockMvc.perform(get("/complaints/stats/products/{productId}", TEST_DATA.productId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.productId").value(TEST_DATA.productId()))
+                    .andExpect(jsonPath("$.totalComplaints").value(7))
+                    .andExpect(jsonPath("$.distinctComplainants").value(3));
+        }
+
+        @Test
+        void shouldReturnNotFound_whenProductHasNoComplaints() throws Exception {
+            //given
+            when(complaintStatsService.getProductStats(anyLong())).thenReturn(Optional.empty());
+
+            //when/then
+            mockMvc.perform(get("/complaints/stats/products/{productId}", TEST_DATA.productId()))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        void shouldReturnCountryStats() throws Exception {
+            //given
+            when(complaintStatsService.getCountryStats()).thenReturn(List.of(
+                    new CountryStatsDto(CountryCode.PL, 5L), new CountryStatsDto(CountryCode.US, 2L)));
+
+            //when/then
+            mockMvc.perform(get("/complaints/stats/countries"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].country").value("PL"))
+                    .andExpect(jsonPath("$[0].totalComplaints").value(5))
+                    .andExpect(jsonPath("$[1].country").value("US"));
+            verifyNoInteractions(complaintReadService);
+        }
+    }
+
+    @Nested
+    class StreamEventsTests {
+        @Test
+        void shouldStreamEventsOfSubscription_resumingFromLastEventId() throws Exception {
+            //given
+            final var closedFeed = new ComplaintEventFeed(objectMapper, new SimpleMeterRegistry(), 10, 10,
+                    Duration.ofMinutes(1), true, 200);
+            closedFeed.close();
+            when(complaintEventFeed.subscribe("42")).thenReturn(closedFeed.subscribe("42"));
+
+            //when/then
+            mockMvc.perform(get("/complaints/events").header(LAST_EVENT_ID, "42"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType("text/event-stream;charset=UTF-8"))
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                    .andExpect(content().string(containsString("event: reset\ndata: {}\n\n")));
+        }
+
+        @Test
+        void shouldReturnServiceUnavailable_whenSubscriberLimitReached() throws Exception {
+            //given
+            when(complaintEventFeed.subscribe(null)).thenReturn(Optional.empty());
+
+            //when/then
+            mockMvc.perform(get("/complaints/events"))
+                    .andExpect(status().isServiceUnavailable());
+        }
+    }
+
+    private ComplaintPageDto performGetAndDeserializePage(MockHttpServletRequestBuilder request) throws Exception {
+        final var result = mockMvc.perform(request)
                 .andExpect(status().isOk())
                 .andReturn();
 
-        return objectMapper.readValue(result.getResponse().getContentAsString(),
-                new TypeReference<>() {
-                });
+        return objectMapper.readValue(result.getResponse().getContentAsString(), ComplaintPageDto.class);
     }
 
     private ComplaintRetrievalDto performPostAndDeserialize(String url, Object content) throws Exception {
@@ -0,0 +1,89 @@
+package dev.karolchmiel.complaintmanager.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+    private static final Duration MAX_WAIT = Duration.ofMillis(50);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(meterRegistry, 1, MAX_WAIT);
+
+    @Test
+    void shouldPassRequest_whenPermitAvailable() throws Exception {
+        //given
+        final var response = new MockHttpServletResponse();
+        final var chain = new MockFilterChain();
+
+        //when
+        filter.doFilter(new MockHttpServletRequest("GET", "/complaints"), response, chain);
+
+        //then
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(meterRegistry.get("complaint.bulkhead.active").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldRejectWithServiceUnavailable_whenNoPermitWithinMaxWait() throws Exception {
+        //given
+        final var inFlight = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final FilterChain blockingChain = (request, response) -> {
+            inFlight.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        final var response = new MockHttpServletResponse();
+        final var chain = new MockFilterChain();
+
+        try (final var executor = Executors.newSingleThreadExecutor()) {
+            final var first = executor.submit(() -> {
+                filter.doFilter(new MockHttpServletRequest("POST", "/complaints"), new MockHttpServletResponse(),
+                        blockingChain);
+                return null;
+            });
+            assertThat(inFlight.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //when
+            filter.doFilter(new MockHttpServletRequest("GET", "/complaints/1"), response, chain);
+
+            //then
+            assertThat(meterRegistry.get("complaint.bulkhead.active").gauge().value()).isOne();
+            release.countDown();
+            first.get();
+        }
+        assertThat(chain.getRequest()).isNull();
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(meterRegistry.get("complaint.bulkhead.rejected").counter().count()).isOne();
+    }
+
+    @Test
+    void shouldNotLimitRequestsOutsideComplaintEndpoints() throws Exception {
+        //given
+        final var request = new MockHttpServletRequest("GET", "/actuator/health");
+
+        //when
+        final var bypassed = filter.shouldNotFilter(request);
+
+        //then
+        assertThat(bypassed).isTrue();
+    }
+}
@@ -0,0 +1,162 @@
+package dev.karolchmiel.complaintmanager.api;
+
+import dev.karolchmiel.complaintmanager.config.RateLimitProperties;
+import dev.karolchmiel.complaintmanager.config.RateLimitProperties.Endpoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static dev.karolchmiel.complaintmanager.util.HttpUtils.X_FORWARDED_FOR;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+    private static final String CLIENT_IP = "192.168.1.1";
+    private static final String OTHER_CLIENT_IP = "192.168.1.2";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldRejectClientWithTooManyRequests_onceBurstIsUsedUp() throws Exception {
+        //given
+        final var filter = createFilter(Map.of("create", new Endpoint("POST", "/complaints", 1, 2, 0)));
+
+        //when
+        final var first = perform(filter, "POST", "/complaints", CLIENT_IP);
+        final var second = perform(filter, "POST", "/complaints", CLIENT_IP);
+        final var third = perform(filter, "POST", "/complaints", CLIENT_IP);
+        final var otherClient = perform(filter, "POST", "/complaints", OTHER_CLIENT_IP);
+
+        //then
+        assertThat(first.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(second.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(third.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(third.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(otherClient.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(meterRegistry.get("complaint.requests.rejected")
+                .tag("endpoint", "create").tag("reason", "rate_limited").counter().count()).isOne();
+        assertThat(meterRegistry.get("complaint.ratelimit.clients").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRefundTokensOfAdmittingEndpoints_whenLaterEndpointRejects() throws Exception {
+        //given
+        final var endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("all", new Endpoint(null, "/complaints/**", 1, 2, 0));
+        endpoints.put("create", new Endpoint("POST", "/complaints", 1, 1, 0));
+        final var filter = createFilter(endpoints);
+
+        //when
+        final var created = perform(filter, "POST", "/complaints", CLIENT_IP);
+        final var rejected = perform(filter, "POST", "/complaints", CLIENT_IP);
+        final var read = perform(filter, "GET", "/complaints/1", CLIENT_IP);
+        final var readAgain = perform(filter, "GET", "/complaints/1", CLIENT_IP);
+
+        //then
+        assertThat(created.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(read.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(readAgain.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void shouldNotLimitRequestsMatchingNoEndpoint() throws Exception {
+        //given
+        final var filter = createFilter(Map.of("create", new Endpoint("POST", "/complaints", 1, 1, 0)));
+
+        //when
+        perform(filter, "POST", "/complaints", CLIENT_IP);
+        final var otherMethod = perform(filter, "GET", "/complaints", CLIENT_IP);
+        final var otherPath = perform(filter, "POST", "/complaints/batch", CLIENT_IP);
+
+        //then
+        assertThat(otherMethod.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(otherPath.getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void shouldRefillBucketAtConfiguredRate() {
+        //given
+        final var limiter = new EndpointLimiter("create", new Endpoint(null, "/complaints", 10, 1, 0),
+                100, Duration.ofMinutes(10));
+        final var now = System.nanoTime();
+        limiter.tryAcquireToken(CLIENT_IP, now);
+
+        //when
+        final var tooEarly = limiter.tryAcquireToken(CLIENT_IP, now + TimeUnit.MILLISECONDS.toNanos(40));
+        final var refilled = limiter.tryAcquireToken(CLIENT_IP, now + TimeUnit.MILLISECONDS.toNanos(100));
+
+        //then
+        assertThat(tooEarly).isEqualTo(TimeUnit.MILLISECONDS.toNanos(60));
+        assertThat(refilled).isZero();
+    }
+
+    @Test
+    void shouldShedRequestsBeyondConcurrencyLimit_withoutQueueing() throws Exception {
+        //given
+        final var filter = createFilter(Map.of("all", new Endpoint(null, "/complaints/**", 0, 1, 1)));
+        final var inFlight = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final FilterChain blockingChain = (request, response) -> {
+            inFlight.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        final MockHttpServletResponse shed;
+
+        try (final var executor = Executors.newSingleThreadExecutor()) {
+            final var first = executor.submit(() -> {
+                filter.doFilter(request("POST", "/complaints/batch", CLIENT_IP), new MockHttpServletResponse(),
+                        blockingChain);
+                return null;
+            });
+            assertThat(inFlight.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //when
+            shed = perform(filter, "GET", "/complaints", OTHER_CLIENT_IP);
+
+            release.countDown();
+            first.get();
+        }
+        final var afterRelease = perform(filter, "GET", "/complaints/1", OTHER_CLIENT_IP);
+
+        //then
+        assertThat(shed.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(shed.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(afterRelease.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(meterRegistry.get("complaint.requests.rejected")
+                .tag("endpoint", "all").tag("reason", "overloaded").counter().count()).isOne();
+        assertThat(meterRegistry.get("complaint.ratelimit.active").gauge().value()).isZero();
+    }
+
+    private RateLimitFilter createFilter(Map<String, Endpoint> endpoints) {
+        return new RateLimitFilter(new RateLimitProperties(100, Duration.ofMinutes(10), endpoints), meterRegistry);
+    }
+
+    private static MockHttpServletResponse perform(RateLimitFilter filter, String method, String path, String ip)
+            throws Exception {
+        final var response = new MockHttpServletResponse();
+        filter.doFilter(request(method, path, ip), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String ip) {
+        final var request = new MockHttpServletRequest(method, path);
+        request.addHeader(X_FORWARDED_FOR, ip);
+        return request;
+    }
+}
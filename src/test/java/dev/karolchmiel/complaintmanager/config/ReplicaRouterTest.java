@@ -0,0 +1,126 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRouterTest {
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection firstConnection = mock(Connection.class);
+    private final Connection secondConnection = mock(Connection.class);
+
+    @Mock
+    private DataSource primary;
+    @Mock
+    private DataSource firstReplica;
+    @Mock
+    private DataSource secondReplica;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReplicaRouter replicaRouter;
+
+    @BeforeEach
+    void setUp() {
+        final var replicas = new LinkedHashMap<String, DataSource>();
+        replicas.put("first", firstReplica);
+        replicas.put("second", secondReplica);
+        replicaRouter = new ReplicaRouter(primary, replicas, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRouter.setPrimaryRequired(false);
+    }
+
+    @Test
+    void shouldRouteRoundRobinOverReplicas() throws SQLException {
+        //given
+        when(firstReplica.getConnection()).thenReturn(firstConnection);
+        when(secondReplica.getConnection()).thenReturn(secondConnection);
+        final var dataSource = replicaRouter.readOnlyDataSource();
+
+        //when
+        final var connections = new Connection[] {dataSource.getConnection(), dataSource.getConnection(),
+                dataSource.getConnection()};
+
+        //then
+        assertThat(connections).containsExactly(firstConnection, secondConnection, firstConnection);
+        assertThat(connectionCount("first")).isEqualTo(2);
+        assertThat(connectionCount("second")).isOne();
+        assertThat(connectionCount("primary")).isZero();
+    }
+
+    @Test
+    void shouldRouteAroundFailedReplica_untilHealthCheckFindsItValid() throws SQLException {
+        //given
+        when(firstReplica.getConnection())
+                .thenThrow(new SQLTransientConnectionException("Connection is not available"))
+                .thenReturn(firstConnection);
+        when(firstConnection.isValid(anyInt())).thenReturn(true);
+        when(secondReplica.getConnection()).thenReturn(secondConnection);
+        final var dataSource = replicaRouter.readOnlyDataSource();
+
+        //when
+        final var failedOver = dataSource.getConnection();
+        final var whileUnhealthy = dataSource.getConnection();
+        final var healthyWhileDown = meterRegistry.get("complaint.datasource.replica.healthy")
+                .tag("replica", "first").gauge().value();
+        replicaRouter.checkHealth();
+        dataSource.getConnection();
+        final var recovered = dataSource.getConnection();
+
+        //then
+        assertThat(failedOver).isSameAs(secondConnection);
+        assertThat(whileUnhealthy).isSameAs(secondConnection);
+        assertThat(healthyWhileDown).isZero();
+        assertThat(recovered).isSameAs(firstConnection);
+    }
+
+    @Test
+    void shouldFallBackToPrimary_whenNoReplicaIsHealthy() throws SQLException {
+        //given
+        when(firstReplica.getConnection()).thenThrow(new SQLTransientConnectionException("Connection refused"));
+        when(secondReplica.getConnection()).thenThrow(new SQLTransientConnectionException("Connection refused"));
+        when(primary.getConnection()).thenReturn(primaryConnection);
+
+        //when
+        final var connection = replicaRouter.readOnlyDataSource().getConnection();
+
+        //then
+        assertThat(connection).isSameAs(primaryConnection);
+        assertThat(connectionCount("primary")).isOne();
+    }
+
+    @Test
+    void shouldRouteToPrimary_whenPrimaryIsRequired() throws SQLException {
+        //given
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        ReplicaRouter.setPrimaryRequired(true);
+
+        //when
+        final var connection = replicaRouter.readOnlyDataSource().getConnection();
+
+        //then
+        assertThat(connection).isSameAs(primaryConnection);
+        assertThat(connectionCount("first") + connectionCount("second")).isZero();
+    }
+
+    private double connectionCount(String target) {
+        return meterRegistry.get("complaint.datasource.connections").tag("target", target).counter().count();
+    }
+}
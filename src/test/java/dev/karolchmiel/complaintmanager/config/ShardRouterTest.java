@@ -0,0 +1,94 @@
+package dev.karolchmiel.complaintmanager.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardRouterTest {
+    private final ShardRouter shardRouter = new ShardRouter(3);
+
+    @AfterEach
+    void tearDown() {
+        shardRouter.close();
+    }
+
+    @Test
+    void shouldSpreadSequentialProductsOverEveryShard() {
+        //when
+        final var productsByShard = LongStream.rangeClosed(1, 300)
+                .mapToObj(shardRouter::shardOfProduct)
+                .collect(Collectors.groupingBy(shard -> shard, Collectors.counting()));
+
+        //then
+        assertThat(productsByShard).containsOnlyKeys(0, 1, 2);
+        assertThat(productsByShard.values()).allSatisfy(products -> assertThat(products).isBetween(70L, 130L));
+    }
+
+    @Test
+    void shouldEncodeShardInComplaintIds() {
+        //when
+        final var firstId = ShardRouter.firstComplaintId(2);
+
+        //then
+        assertThat(ShardRouter.shardOfComplaint(firstId + 41)).isEqualTo(2);
+        assertThat(ShardRouter.shardOfComplaint(41)).isZero();
+        assertThat(shardRouter.hasShard(ShardRouter.shardOfComplaint(ShardRouter.firstComplaintId(3)))).isFalse();
+    }
+
+    @Test
+    void shouldSplitValuesByShardOfComplaint() {
+        //given
+        final var second = ShardRouter.firstComplaintId(2);
+
+        //when
+        final var byShard = shardRouter.byComplaintShard(Map.of(1L, "a", second + 1, "b", 2L, "c"));
+
+        //then
+        assertThat(byShard).containsExactly(
+                Map.entry(0, Map.of(1L, "a", 2L, "c")),
+                Map.entry(2, Map.of(second + 1, "b")));
+    }
+
+    @Test
+    void shouldBindWorkToShard_andRestorePreviousShard() {
+        //when
+        final var nested = shardRouter.onShard(1, () -> shardRouter.onShard(2, ShardRouter::currentShard)
+                + ShardRouter.currentShard() * 10);
+
+        //then
+        assertThat(nested).isEqualTo(12);
+        assertThat(ShardRouter.currentShard()).isZero();
+    }
+
+    @Test
+    void shouldRunWorkOnEveryShard_inShardOrder() {
+        //when
+        final var shards = shardRouter.onEveryShard(ShardRouter::currentShard);
+
+        //then
+        assertThat(shards).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void shouldRethrowFailureOfAnyShard() {
+        //when/then
+        assertThatThrownBy(() -> shardRouter.onEveryShard(() -> {
+            if (ShardRouter.currentShard() == 1) {
+                throw new IllegalStateException("Shard 1 is down");
+            }
+            return true;
+        })).isInstanceOf(IllegalStateException.class).hasMessage("Shard 1 is down");
+    }
+
+    @Test
+    void shouldRejectUnknownShard() {
+        //when/then
+        assertThatThrownBy(() -> shardRouter.onShard(3, () -> true)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
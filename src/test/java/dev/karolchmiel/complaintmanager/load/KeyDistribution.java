@@ -0,0 +1,63 @@
+package dev.karolchmiel.complaintmanager.load;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How the product IDs and complainants of submitted complaints are drawn. Complaints with the same product ID and
+ * complainant increment the count of an existing complaint, so the distribution decides the share of updates in
+ * the write path and how much they contend for the same rows.
+ */
+public enum KeyDistribution {
+    /**
+     * Nine in ten submissions repeat one of a small set of complaints, the rest are new.
+     */
+    REPEATS {
+        @Override
+        ComplaintKey next(ThreadLocalRandom random, long sequence) {
+            if (random.nextInt(10) == 0) {
+                return new ComplaintKey(random.nextLong(PRODUCTS), complainant("new-" + sequence));
+            }
+            final var repeated = random.nextInt(REPEATED_COMPLAINTS);
+            return new ComplaintKey(repeated % PRODUCTS, complainant("repeat-" + repeated));
+        }
+    },
+    /**
+     * New complaints, four in five of them about one of a handful of hot products, whose statistics rows are
+     * updated by most writes.
+     */
+    HOT_PRODUCT {
+        @Override
+        ComplaintKey next(ThreadLocalRandom random, long sequence) {
+            final var productId = random.nextInt(5) == 0 ? random.nextLong(PRODUCTS) : random.nextLong(HOT_PRODUCTS);
+            return new ComplaintKey(productId, complainant("user-" + sequence));
+        }
+    },
+    /**
+     * Every submission is a new complaint about a product drawn uniformly.
+     */
+    UNIQUE {
+        @Override
+        ComplaintKey next(ThreadLocalRandom random, long sequence) {
+            return new ComplaintKey(random.nextLong(PRODUCTS), complainant("user-" + sequence));
+        }
+    };
+
+    private static final long PRODUCTS = 10_000;
+    private static final long HOT_PRODUCTS = 10;
+    private static final int REPEATED_COMPLAINTS = 1_000;
+
+    /**
+     * @param random the random number generator of the calling thread
+     * @param sequence a number unique to the submission
+     * @return the key of the next complaint to submit
+     */
+    abstract ComplaintKey next(ThreadLocalRandom random, long sequence);
+
+    String complainant(String suffix) {
+        return "load-" + name().toLowerCase(Locale.ROOT) + "-" + suffix;
+    }
+
+    record ComplaintKey(long productId, String complainant) {
+    }
+}
@@ -0,0 +1,231 @@
+package dev.karolchmiel.complaintmanager.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.karolchmiel.complaintmanager.load.KeyDistribution.ComplaintKey;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for a running application: each client sends its next request as soon as the previous
+ * one is answered, choosing between submitting, updating and reading a complaint by the configured {@link Mix}.
+ * Updates and reads target complaints submitted earlier in the run. Every client uses its own IP address, so
+ * enrichment lookups spread over many addresses as in production.
+ * <p>
+ * Latencies are measured from sending a request until its response has been read and recorded per endpoint in a
+ * {@link LatencyHistogram}; requests that fail or are answered with an error status are counted as errors.
+ */
+public class LoadGenerator {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int TRACKED_COMPLAINTS = 100_000;
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final KeyDistribution keys;
+    private final Mix mix;
+    private final int clients;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLongArray complaintIds = new AtomicLongArray(TRACKED_COMPLAINTS);
+    private final AtomicLong submittedComplaints = new AtomicLong();
+
+    /**
+     * @param httpClient the client to send the requests with
+     * @param baseUrl the URL of the application, without a trailing slash
+     * @param keys how the keys of submitted complaints are drawn
+     * @param mix the share of each endpoint in the requests
+     * @param clients the number of concurrent clients
+     */
+    public LoadGenerator(HttpClient httpClient, String baseUrl, KeyDistribution keys, Mix mix, int clients) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.keys = keys;
+        this.mix = mix;
+        this.clients = clients;
+    }
+
+    /**
+     * Sends requests from every client until the duration has passed.
+     *
+     * @param duration how long to generate load
+     * @return the requests, errors and latencies per endpoint
+     */
+    public LoadReport run(Duration duration) throws InterruptedException, ExecutionException {
+        final var report = new LoadReport(keys);
+        final var deadline = System.nanoTime() + duration.toNanos();
+        final var startedAt = System.nanoTime();
+        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var futures = new ArrayList<Future<?>>(clients);
+            for (int client = 0; client < clients; client++) {
+                final var clientIp = "83.1." + client / 256 + "." + client % 256;
+                futures.add(executor.submit(() -> {
+                    while (System.nanoTime() - deadline < 0) {
+                        send(clientIp, report);
+                    }
+                    return null;
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        }
+        report.elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+        return report;
+    }
+
+    private void send(String clientIp, LoadReport report) throws InterruptedException {
+        final var random = ThreadLocalRandom.current();
+        final var complaintId = randomComplaintId(random);
+        final var endpoint = complaintId == 0 ? Endpoint.CREATE : mix.choose(random);
+        final var request = switch (endpoint) {
+            case CREATE -> create(keys.next(random, sequence.incrementAndGet()));
+            case UPDATE -> HttpRequest.newBuilder(URI.create(baseUrl + "/complaints/" + complaintId))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(
+                            "{\"content\": \"Updated load test complaint " + random.nextInt() + "\"}"));
+            case READ -> HttpRequest.newBuilder(URI.create(baseUrl + "/complaints/" + complaintId)).GET();
+        };
+
+        final var stats = report.stats.get(endpoint);
+        final var startedAt = System.nanoTime();
+        try {
+            final var response = httpClient.send(request.header("X-Forwarded-For", clientIp).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            stats.latencies.record(System.nanoTime() - startedAt);
+            if (response.statusCode() >= 400) {
+                stats.errors.increment();
+            } else if (response.statusCode() == 201) {
+                final var id = OBJECT_MAPPER.readTree(response.body()).get("id").asLong();
+                complaintIds.set((int) (submittedComplaints.getAndIncrement() % TRACKED_COMPLAINTS), id);
+            }
+        } catch (IOException e) {
+            stats.latencies.record(System.nanoTime() - startedAt);
+            stats.errors.increment();
+        }
+    }
+
+    private HttpRequest.Builder create(ComplaintKey key) {
+        final var body = """
+                {"productId": %d, "content": "Load test complaint", "complainant": "%s"}
+                """.formatted(key.productId(), key.complainant());
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/complaints"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    /**
+     * @return the ID of a complaint submitted earlier in the run, or 0 if there is none yet
+     */
+    private long randomComplaintId(ThreadLocalRandom random) {
+        final var submitted = submittedComplaints.get();
+        return submitted == 0 ? 0 : complaintIds.get((int) random.nextLong(Math.min(submitted, TRACKED_COMPLAINTS)));
+    }
+
+    public enum Endpoint {
+        CREATE("POST /complaints"),
+        UPDATE("PATCH /complaints/{id}"),
+        READ("GET /complaints/{id}");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Relative weights of the endpoints, e.g. {@code create:70,update:10,read:20}.
+     */
+    public record Mix(int create, int update, int read) {
+        public Mix {
+            if (create < 1 || update < 0 || read < 0) {
+                throw new IllegalArgumentException("The load mix needs a positive create weight and no negative "
+                        + "weights, got create:" + create + ",update:" + update + ",read:" + read);
+            }
+        }
+
+        public static Mix parse(String mix) {
+            final var weights = new EnumMap<Endpoint, Integer>(Endpoint.class);
+            for (final var entry : mix.split(",")) {
+                final var parts = entry.split(":");
+                weights.put(Endpoint.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)),
+                        Integer.parseInt(parts[1].trim()));
+            }
+            return new Mix(weights.getOrDefault(Endpoint.CREATE, 0), weights.getOrDefault(Endpoint.UPDATE, 0),
+                    weights.getOrDefault(Endpoint.READ, 0));
+        }
+
+        Endpoint choose(ThreadLocalRandom random) {
+            final var value = random.nextInt(create + update + read);
+            return value < create ? Endpoint.CREATE : value < create + update ? Endpoint.UPDATE : Endpoint.READ;
+        }
+    }
+
+    /**
+     * Outcome of a run of the load generator.
+     */
+    public static class LoadReport {
+        private final KeyDistribution keys;
+        private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        private Duration elapsed = Duration.ZERO;
+
+        LoadReport(KeyDistribution keys) {
+            this.keys = keys;
+            for (final var endpoint : Endpoint.values()) {
+                stats.put(endpoint, new EndpointStats());
+            }
+        }
+
+        public long errors() {
+            return stats.values().stream().mapToLong(endpointStats -> endpointStats.errors.sum()).sum();
+        }
+
+        public long requests(Endpoint endpoint) {
+            return stats.get(endpoint).latencies.count();
+        }
+
+        /**
+         * @return the given latency percentile of the endpoint, in microseconds
+         */
+        public long percentileMicros(Endpoint endpoint, double percentile) {
+            return stats.get(endpoint).latencies.percentileMicros(percentile);
+        }
+
+        /**
+         * Prints throughput, errors and the latency distribution of each endpoint as a table.
+         */
+        public void print(PrintStream out) {
+            final var seconds = elapsed.toNanos() / 1e9;
+            out.printf("%nKeys: %s, %.1f s%n", keys, seconds);
+            out.printf("%-22s %10s %8s %10s %10s %10s %10s %10s%n", "endpoint", "requests", "errors", "req/s",
+                    "p50 [ms]", "p99 [ms]", "p999 [ms]", "max [ms]");
+            stats.forEach((endpoint, endpointStats) -> {
+                final var latencies = endpointStats.latencies;
+                out.printf("%-22s %10d %8d %10.0f %10.2f %10.2f %10.2f %10.2f%n", endpoint.label,
+                        latencies.count(), endpointStats.errors.sum(), latencies.count() / seconds,
+                        latencies.percentileMicros(50) / 1e3, latencies.percentileMicros(99) / 1e3,
+                        latencies.percentileMicros(99.9) / 1e3, latencies.maxMicros() / 1e3);
+            });
+        }
+    }
+
+    private static class EndpointStats {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,70 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import dev.karolchmiel.complaintmanager.dto.ComplaintKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class ComplaintBatchOperationsTest {
+    private static final long PRODUCT_ID = 9501L;
+    private static final long OTHER_PRODUCT_ID = 9502L;
+
+    @Autowired
+    private ComplaintRepository complaintRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> createdIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        complaintRepository.deleteAllById(createdIds);
+    }
+
+    @Test
+    void lockIdsByKey_shouldReturnOnlyExactKeys_inIdOrder() {
+        //given
+        final var second = create(OTHER_PRODUCT_ID, "lock-user-1");
+        final var first = create(PRODUCT_ID, "lock-user-1");
+        create(PRODUCT_ID, "lock-user-2");
+        create(OTHER_PRODUCT_ID, "lock-user-2");
+
+        //when
+        final var idsByKey = complaintRepository.lockIdsByKey(List.of(
+                new ComplaintKey(PRODUCT_ID, "lock-user-1"),
+                new ComplaintKey(OTHER_PRODUCT_ID, "lock-user-1"),
+                new ComplaintKey(PRODUCT_ID, "lock-user-3")));
+
+        //then
+        assertThat(idsByKey).containsExactly(
+                Map.entry(new ComplaintKey(OTHER_PRODUCT_ID, "lock-user-1"), second),
+                Map.entry(new ComplaintKey(PRODUCT_ID, "lock-user-1"), first));
+    }
+
+    @Test
+    void lockIdsByKey_shouldLookUpKeysOnUniqueIndex() {
+        //when
+        final var plan = jdbcTemplate.queryForObject("EXPLAIN " + ComplaintBatchOperationsImpl.lockByKeySql(2),
+                String.class, PRODUCT_ID, "lock-user-1", OTHER_PRODUCT_ID, "lock-user-2");
+
+        //then
+        assertThat(plan).contains("PUBLIC.UNIQUENESS_CONSTRAINT").doesNotContainIgnoringCase("tableScan");
+    }
+
+    private long create(long productId, String complainant) {
+        final var id = complaintRepository.upsertIncrementingCount(productId, "Locked complaint", complainant,
+                LocalDateTime.now()).getId();
+        createdIds.add(id);
+        return id;
+    }
+}
@@ -0,0 +1,99 @@
+package dev.karolchmiel.complaintmanager.repository;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.dto.ComplaintFilter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks with H2 {@code EXPLAIN} that every list filter is answered from an index in page order, rather than by
+ * scanning the complaint table or sorting the rows after the cursor.
+ */
+@SpringBootTest
+class ComplaintFilterQueriesPlanTest {
+    private static final LocalDateTime FROM = LocalDateTime.of(2023, 5, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2023, 6, 1, 0, 0);
+    /**
+     * Printed by H2 when the rows are read in {@code ORDER BY} order, so no sort step runs.
+     */
+    private static final String INDEX_SORTED = "/* index sorted */";
+    /**
+     * The primary key lookup of the page, bounded below and above by subqueries over the creation date index.
+     */
+    private static final Pattern PRIMARY_KEY_BOUNDED_BY_DATE_INDEX = Pattern.compile(
+            "/\\* PUBLIC\\.PRIMARY_KEY\\w*: ID > .*?AND ID [<>]= \\(SELECT.*?IDX_COMPLAINT_CREATION_DATE.*?"
+                    + "AND ID [<>]= \\(SELECT.*?IDX_COMPLAINT_CREATION_DATE", Pattern.DOTALL);
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    static Stream<Arguments> filters() {
+        return Stream.of(
+                Arguments.of(new ComplaintFilter(1001L, null, null, null), "IDX_COMPLAINT_PRODUCT_ID"),
+                Arguments.of(new ComplaintFilter(null, CountryCode.PL, null, null), "IDX_COMPLAINT_COUNTRY"),
+                Arguments.of(new ComplaintFilter(null, null, FROM, null), "IDX_COMPLAINT_CREATION_DATE"),
+                Arguments.of(new ComplaintFilter(null, null, null, TO), "IDX_COMPLAINT_CREATION_DATE"),
+                Arguments.of(new ComplaintFilter(null, null, FROM, TO), "IDX_COMPLAINT_CREATION_DATE"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("filters")
+    void filteredPage_shouldReadOnlyIndexedRows(ComplaintFilter filter, String index) {
+        //when
+        final var plan = explain(filter, "*");
+        final var versionPlan = explain(filter, "ID, VERSION");
+
+        //then
+        assertThat(plan).containsPattern("PUBLIC\\." + index + "\\w*:").contains(INDEX_SORTED)
+                .doesNotContainIgnoringCase("tableScan");
+        assertThat(versionPlan).containsPattern("PUBLIC\\." + index + "\\w*:").contains(INDEX_SORTED)
+                .doesNotContainIgnoringCase("tableScan");
+    }
+
+    @ParameterizedTest
+    @MethodSource("dateRanges")
+    void dateRange_shouldWalkPrimaryKeyOnlyBetweenIdsOfRange(ComplaintFilter filter) {
+        //when
+        final var plan = explain(filter, "*");
+
+        //then
+        assertThat(plan).containsPattern(PRIMARY_KEY_BOUNDED_BY_DATE_INDEX);
+    }
+
+    static Stream<ComplaintFilter> dateRanges() {
+        return Stream.of(new ComplaintFilter(null, null, FROM, null), new ComplaintFilter(null, null, null, TO),
+                new ComplaintFilter(null, null, FROM, TO));
+    }
+
+    @ParameterizedTest
+    @MethodSource("filters")
+    void combinedFilters_shouldStillUseAnIndex(ComplaintFilter filter) {
+        //given
+        final var combined = new ComplaintFilter(
+                filter.productId() == null ? 1001L : filter.productId(),
+                filter.complainantCountry() == null ? CountryCode.PL : filter.complainantCountry(),
+                filter.createdFrom(), filter.createdTo());
+
+        //when
+        final var plan = explain(combined, "*");
+
+        //then
+        assertThat(plan).containsPattern("PUBLIC\\.IDX_COMPLAINT_\\w+:").contains(INDEX_SORTED)
+                .doesNotContainIgnoringCase("tableScan");
+    }
+
+    private String explain(ComplaintFilter filter, String columns) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + ComplaintFilterQueriesImpl.filteredPageSql(filter, columns),
+                ComplaintFilterQueriesImpl.parameters(filter, 0L), String.class);
+    }
+}
@@ -0,0 +1,330 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchItemResultDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintBatchItemResultDto.Status;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintEvent;
+import dev.karolchmiel.complaintmanager.dto.ComplaintKey;
+import dev.karolchmiel.complaintmanager.dto.ImportedComplaint;
+import dev.karolchmiel.complaintmanager.dto.SubmissionCounts;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import dev.karolchmiel.complaintmanager.model.Complaint;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintSearchRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintStatsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ComplaintBatchServiceTest {
+    private static final String PARTNER_IP = "63.1.1.42";
+    private static final ComplaintTestData TEST_DATA = ComplaintTestData.defaultData();
+    private static final ComplaintCreationDto NEW_COMPLAINT = TEST_DATA.buildCreationDto();
+    private static final ComplaintCreationDto EXISTING_COMPLAINT =
+            new ComplaintCreationDto(456L, "Existing content", "user-456");
+    private static final long EXISTING_ID = 7L;
+    private static final ComplaintKey EXISTING_KEY =
+            new ComplaintKey(EXISTING_COMPLAINT.productId(), EXISTING_COMPLAINT.complainant());
+
+    private static ValidatorFactory validatorFactory;
+    private static Validator validator;
+
+    @Mock
+    private ComplaintRepository complaintRepository;
+    @Mock
+    private CountryEnrichmentService countryEnrichmentService;
+    @Mock
+    private ComplaintCountAggregator countAggregator;
+    @Mock
+    private ComplaintCache complaintCache;
+    @Mock
+    private ComplaintEventFeed eventFeed;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ComplaintStatsRepository statsRepository;
+    @Mock
+    private ComplaintSearchRepository searchRepository;
+
+    private final ComplaintMapper complaintMapper = Mappers.getMapper(ComplaintMapper.class);
+    private final AtomicLong sequence = new AtomicLong(100);
+    private final Map<Long, Complaint> savedById = new HashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private int existingCount;
+
+    @BeforeAll
+    static void createValidator() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @AfterAll
+    static void closeValidator() {
+        validatorFactory.close();
+    }
+
+    /**
+     * Reads back the saved complaints with their ID as version, and the existing one with its incremented count.
+     */
+    @BeforeEach
+    void mockReadBack() {
+        lenient().when(complaintRepository.findVersionedByIdIn(any())).thenAnswer(invocation -> {
+            final Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .map(id -> id == EXISTING_ID ? existingComplaint(existingCount)
+                            : new VersionedComplaint(complaintMapper.entityToRetrievalDto(savedById.get(id)), id))
+                    .toList();
+        });
+    }
+
+    @Test
+    void shouldMergeDuplicates_createNewAndIncrementExistingComplaintsInBatches() {
+        //given
+        final var service = createService(1000, Optional.empty());
+        mockExistingComplaint(5);
+        mockSaveAssigningIds();
+
+        //when
+        final var result = service.addBatch(
+                List.of(NEW_COMPLAINT, EXISTING_COMPLAINT, NEW_COMPLAINT, EXISTING_COMPLAINT), PARTNER_IP);
+
+        //then
+        verify(complaintRepository).lockIdsByKey(List.of(
+                new ComplaintKey(NEW_COMPLAINT.productId(), NEW_COMPLAINT.complainant()), EXISTING_KEY));
+        verify(complaintRepository).incrementCounts(Map.of(EXISTING_ID, 2));
+        final var saved = captureSaved();
+        assertThat(saved).singleElement().satisfies(complaint -> {
+            assertThat(complaint.getProductId()).isEqualTo(NEW_COMPLAINT.productId());
+            assertThat(complaint.getCount()).isEqualTo(2);
+            assertThat(complaint.getCreationDate()).isNotNull();
+        });
+        verify(statsRepository).recordNewComplaints(saved);
+        verify(searchRepository).index(Map.of(saved.getFirst().getId(), NEW_COMPLAINT.content()));
+        verify(countryEnrichmentService).submit(saved.getFirst().getId(), PARTNER_IP);
+        verifyNoMoreInteractions(countryEnrichmentService);
+
+        assertThat(result.created()).isOne();
+        assertThat(result.incremented()).isEqualTo(3);
+        assertThat(result.invalid()).isZero();
+        assertThat(meterRegistry.get("complaint.submissions").tag("outcome", "incremented").counter().count())
+                .isEqualTo(3);
+        assertThat(meterRegistry.get("complaint.service").tag("operation", "batch").timer().count()).isOne();
+        assertThat(result.results()).extracting(ComplaintBatchItemResultDto::index).containsExactly(0, 1, 2, 3);
+        assertThat(result.results()).extracting(ComplaintBatchItemResultDto::status)
+                .containsExactly(Status.CREATED, Status.INCREMENTED, Status.INCREMENTED, Status.INCREMENTED);
+        assertThat(result.results()).extracting(item -> item.complaint().count()).containsExactly(2, 5, 2, 5);
+        verify(complaintRepository).findVersionedByIdIn(Set.of(EXISTING_ID, saved.getFirst().getId()));
+        verify(eventFeed).publish(ComplaintEvent.Type.CREATED, new VersionedComplaint(
+                complaintMapper.entityToRetrievalDto(saved.getFirst()), saved.getFirst().getId()));
+        verify(eventFeed).publish(ComplaintEvent.Type.INCREMENTED, existingComplaint(5));
+    }
+
+    @Test
+    void shouldReportInvalidItems_andPersistOnlyValidOnes() {
+        //given
+        final var service = createService(1000, Optional.empty());
+        mockSaveAssigningIds();
+        final var items = Arrays.asList(new ComplaintCreationDto(null, "", "user-1"), null, NEW_COMPLAINT);
+
+        //when
+        final var result = service.addBatch(items, PARTNER_IP);
+
+        //then
+        assertThat(result.invalid()).isEqualTo(2);
+        assertThat(result.created()).isOne();
+        assertThat(result.results().get(0).errors()).containsOnly(
+                Map.entry("productId", "Product ID is required"),
+                Map.entry("content", "Content is required"));
+        assertThat(result.results().get(0).complaint()).isNull();
+        assertThat(result.results().get(1).errors()).containsOnlyKeys("complaint");
+        assertThat(result.results().get(2).status()).isEqualTo(Status.CREATED);
+        assertThat(captureSaved()).hasSize(1);
+    }
+
+    @Test
+    void shouldWriteEachChunkOfDistinctComplaintsInOwnTransaction() {
+        //given
+        final var service = createService(1, Optional.empty());
+        mockSaveAssigningIds();
+
+        //when
+        service.addBatch(List.of(NEW_COMPLAINT, EXISTING_COMPLAINT, NEW_COMPLAINT), PARTNER_IP);
+
+        //then
+        verify(complaintRepository, times(2)).lockIdsByKey(any());
+        verify(complaintRepository, times(2)).saveAllAndFlush(any());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void shouldPublishComplaintsOfCommittedShard_whenWriteOnLaterShardFails() {
+        //given
+        try (final var shardRouter = new ShardRouter(2)) {
+            final var service = createService(1000, Optional.empty(), shardRouter);
+            final var committed = productOnShard(shardRouter, 0);
+            final var failing = productOnShard(shardRouter, 1);
+            mockSaveAssigningIds();
+            doThrow(new IllegalStateException("Shard unavailable")).when(complaintRepository).saveAllAndFlush(
+                    argThat((List<Complaint> complaints) -> complaints.getFirst().getProductId() == failing));
+
+            //when
+            final var batch = List.of(new ComplaintCreationDto(failing, "Content", "user-1"),
+                    new ComplaintCreationDto(committed, "Content", "user-1"));
+            assertThatThrownBy(() -> service.addBatch(batch, PARTNER_IP)).isInstanceOf(IllegalStateException.class);
+
+            //then
+            assertThat(savedById.values()).singleElement().extracting(Complaint::getProductId).isEqualTo(committed);
+            verify(eventFeed).publish(eq(ComplaintEvent.Type.CREATED),
+                    argThat(written -> written.complaint().productId() == committed));
+            verifyNoMoreInteractions(eventFeed);
+            verify(countryEnrichmentService).submit(savedById.keySet().iterator().next(), PARTNER_IP);
+        }
+    }
+
+    @Test
+    void shouldRetryChunkAsIncrement_whenConcurrentSubmissionCreatedComplaintFirst() {
+        //given
+        final var service = createService(1000, Optional.empty());
+        when(complaintRepository.lockIdsByKey(any()))
+                .thenReturn(Map.of())
+                .thenReturn(Map.of(EXISTING_KEY, EXISTING_ID));
+        existingCount = 2;
+        when(complaintRepository.saveAllAndFlush(any()))
+                .thenThrow(new DataIntegrityViolationException("UNIQUENESS_CONSTRAINT"))
+                .thenReturn(List.of());
+
+        //when
+        final var result = service.addBatch(List.of(EXISTING_COMPLAINT), PARTNER_IP);
+
+        //then
+        verify(transactionManager).rollback(any());
+        verify(complaintRepository).incrementCounts(Map.of(EXISTING_ID, 1));
+        assertThat(result.results()).singleElement().satisfies(item -> {
+            assertThat(item.status()).isEqualTo(Status.INCREMENTED);
+            assertThat(item.complaint().count()).isEqualTo(2);
+        });
+        verifyNoInteractions(countryEnrichmentService);
+    }
+
+    @Test
+    void shouldReportIncrementsToWriteBehindAggregator() {
+        //given
+        final var service = createService(1000, Optional.of(countAggregator));
+        mockExistingComplaint(5);
+        when(complaintRepository.saveAllAndFlush(any())).thenReturn(List.of());
+
+        //when
+        service.addBatch(List.of(EXISTING_COMPLAINT, EXISTING_COMPLAINT), PARTNER_IP);
+
+        //then
+        verify(countAggregator).incrementedInDatabase(EXISTING_ID, 2);
+    }
+
+    @Test
+    void importComplaints_shouldMergeDuplicates_keepCountryFromFile_andSkipGeolocation() {
+        //given
+        final var service = createService(1000, Optional.empty());
+        mockExistingComplaint(4);
+        mockSaveAssigningIds();
+        final var imported = new ImportedComplaint(NEW_COMPLAINT.productId(), NEW_COMPLAINT.content(),
+                NEW_COMPLAINT.complainant(), "pl");
+        final var existing = new ImportedComplaint(EXISTING_COMPLAINT.productId(), EXISTING_COMPLAINT.content(),
+                EXISTING_COMPLAINT.complainant(), null);
+
+        //when
+        final var result = service.importComplaints(List.of(imported, existing, imported,
+                new ImportedComplaint(1L, "Content", "user-1", "XX"),
+                new ImportedComplaint(null, "Content", "user-1", null)));
+
+        //then
+        assertThat(result).isEqualTo(new SubmissionCounts(1, 2, 2));
+        assertThat(captureSaved()).singleElement().satisfies(complaint -> {
+            assertThat(complaint.getComplainantCountry()).isEqualTo(CountryCode.PL);
+            assertThat(complaint.getCount()).isEqualTo(2);
+        });
+        verify(complaintRepository).incrementCounts(Map.of(EXISTING_ID, 1));
+        verifyNoInteractions(countryEnrichmentService);
+        assertThat(meterRegistry.get("complaint.submissions").tag("outcome", "invalid").counter().count())
+                .isEqualTo(2);
+    }
+
+    private ComplaintBatchService createService(int chunkSize, Optional<ComplaintCountAggregator> aggregator) {
+        return createService(chunkSize, aggregator, new ShardRouter(1));
+    }
+
+    private ComplaintBatchService createService(int chunkSize, Optional<ComplaintCountAggregator> aggregator,
+                                                ShardRouter shardRouter) {
+        return new ComplaintBatchService(complaintRepository, statsRepository, searchRepository, complaintMapper,
+                countryEnrichmentService, aggregator, complaintCache, shardRouter, eventFeed, validator,
+                transactionManager, meterRegistry, chunkSize);
+    }
+
+    private static long productOnShard(ShardRouter shardRouter, int shard) {
+        return LongStream.iterate(1, productId -> productId + 1)
+                .filter(productId -> shardRouter.shardOfProduct(productId) == shard)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * Makes the existing complaint found by its key, and read back with the given count after its increment.
+     */
+    private void mockExistingComplaint(int incrementedCount) {
+        when(complaintRepository.lockIdsByKey(any())).thenReturn(Map.of(EXISTING_KEY, EXISTING_ID));
+        existingCount = incrementedCount;
+    }
+
+    private static VersionedComplaint existingComplaint(int count) {
+        return new VersionedComplaint(EXISTING_ID, EXISTING_COMPLAINT.productId(), EXISTING_COMPLAINT.content(),
+                TEST_DATA.creationDate(), EXISTING_COMPLAINT.complainant(), null, count, 1L);
+    }
+
+    private void mockSaveAssigningIds() {
+        when(complaintRepository.saveAllAndFlush(any())).thenAnswer(invocation -> {
+            final List<Complaint> complaints = invocation.getArgument(0);
+            complaints.forEach(complaint -> {
+                complaint.setId(sequence.incrementAndGet());
+                savedById.put(complaint.getId(), complaint);
+            });
+            return complaints;
+        });
+    }
+
+    private List<Complaint> captureSaved() {
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<List<Complaint>> captor = ArgumentCaptor.forClass(List.class);
+        verify(complaintRepository, atLeastOnce()).saveAllAndFlush(captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).toList();
+    }
+}
@@ -0,0 +1,142 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.config.ReplicaProperties;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ComplaintCacheTest {
+    private static final ComplaintTestData TEST_DATA = ComplaintTestData.defaultData();
+    private static final long COMPLAINT_ID = TEST_DATA.id();
+    static final ReplicaProperties NO_REPLICAS = new ReplicaProperties(Map.of(), Duration.ofSeconds(5), 100);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ComplaintCache complaintCache = new ComplaintCache(meterRegistry, 100, Duration.ofMinutes(10),
+            NO_REPLICAS);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void shouldLoadComplaintOnce_andReportHitRatio() {
+        //when
+        complaintCache.get(COMPLAINT_ID, this::load);
+        final var result = complaintCache.get(COMPLAINT_ID, this::load);
+
+        //then
+        assertThat(result).hasValue(TEST_DATA.buildVersionedDto());
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("complaint.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+        assertThat(meterRegistry.get("cache.size").tag("cache", "complaints").gauge().value()).isOne();
+    }
+
+    @Test
+    void shouldNotCacheMissingComplaint() {
+        //when
+        complaintCache.get(COMPLAINT_ID, id -> Optional.empty());
+        final var result = complaintCache.get(COMPLAINT_ID, this::load);
+
+        //then
+        assertThat(result).hasValue(TEST_DATA.buildVersionedDto());
+    }
+
+    @Test
+    void shouldReloadComplaint_afterEviction() {
+        //given
+        complaintCache.get(COMPLAINT_ID, this::load);
+
+        //when
+        complaintCache.evict(COMPLAINT_ID);
+        complaintCache.get(COMPLAINT_ID, this::load);
+
+        //then
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldEvictAgainAfterTransactionCompletes_discardingStateLoadedBeforeCommit() {
+        //given
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            complaintCache.evictAll(List.of(COMPLAINT_ID));
+            complaintCache.get(COMPLAINT_ID, this::load);
+
+            //when
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        complaintCache.get(COMPLAINT_ID, this::load);
+
+        //then
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldEvictAgainAfterReplicationLag_whenReadingFromReplicas() throws Exception {
+        //given
+        final var replicas = new ReplicaProperties(
+                Map.of("replica", new ReplicaProperties.Replica("jdbc:h2:mem:replica", "sa", "", 1,
+                        Duration.ofSeconds(1))),
+                Duration.ofMillis(100), 100);
+        final var replicatedCache = new ComplaintCache(meterRegistry, 100, Duration.ofMinutes(10), replicas);
+
+        //when
+        replicatedCache.evict(COMPLAINT_ID);
+        replicatedCache.get(COMPLAINT_ID, this::load);
+        final var cachedBeforeLag = replicatedCache.getIfPresent(COMPLAINT_ID);
+        Thread.sleep(500);
+
+        //then
+        assertThat(cachedBeforeLag).isPresent();
+        assertThat(replicatedCache.getIfPresent(COMPLAINT_ID)).isEmpty();
+    }
+
+    @Test
+    void shouldDiscardConcurrentLoad_whenEvictedWhileLoading() throws Exception {
+        //given
+        final var loading = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        try (final var executor = Executors.newFixedThreadPool(2)) {
+            final var reader = executor.submit(() -> complaintCache.get(COMPLAINT_ID, id -> {
+                loading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return load(id);
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //when
+            final var writer = executor.submit(() -> complaintCache.evict(COMPLAINT_ID));
+            Thread.sleep(50);
+            release.countDown();
+            reader.get();
+            writer.get();
+        }
+        complaintCache.get(COMPLAINT_ID, this::load);
+
+        //then
+        assertThat(loads).hasValue(2);
+    }
+
+    private Optional<VersionedComplaint> load(long complaintId) {
+        loads.incrementAndGet();
+        return Optional.of(TEST_DATA.buildVersionedDto());
+    }
+}
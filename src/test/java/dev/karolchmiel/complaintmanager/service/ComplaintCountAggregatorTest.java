@@ -0,0 +1,351 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintEvent;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ComplaintCountAggregatorTest {
+    private static final Duration NEVER = Duration.ofHours(1);
+
+    @Mock
+    private ComplaintRepository complaintRepository;
+    @Mock
+    private ComplaintCache complaintCache;
+    @Mock
+    private ComplaintEventFeed eventFeed;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeComplaintTable complaintTable = new FakeComplaintTable();
+    private ComplaintCountAggregator aggregator;
+
+    @AfterEach
+    void tearDown() {
+        aggregator.shutdown();
+    }
+
+    @Test
+    void shouldPersistFirstSubmissionAndBufferRepeats_reportingRunningTotal() {
+        //given
+        aggregator = createAggregator(100, 100, NEVER);
+
+        //when
+        final var first = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        final var second = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        final var third = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //then
+        assertThat(first.count()).isOne();
+        assertThat(second.count()).isEqualTo(2);
+        assertThat(third.count()).isEqualTo(3);
+        assertThat(third.id()).isEqualTo(first.id());
+        assertThat(complaintTable.persistCalls()).isOne();
+        verify(complaintRepository, never()).incrementCounts(anyMap());
+        assertThat(meterRegistry.get("complaint.write-behind.pending").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("complaint.write-behind.buffered").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldWriteBufferedIncrementsAsDeltasInOneBatch_whenFlushed() {
+        //given
+        aggregator = createAggregator(100, 100, NEVER);
+        final var first = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        final var second = aggregator.increment(2L, "user-2", complaintTable.persist(2L, "user-2"));
+        aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        final var firstTotal = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        final var secondTotal = aggregator.increment(2L, "user-2", complaintTable.persist(2L, "user-2"));
+        final var firstFlushed = new VersionedComplaint(firstTotal, 11L);
+        final var secondFlushed = new VersionedComplaint(secondTotal, 12L);
+        when(complaintRepository.findVersionedByIdIn(Set.of(first.id(), second.id())))
+                .thenReturn(List.of(firstFlushed, secondFlushed));
+
+        //when
+        aggregator.flush();
+        aggregator.flush();
+
+        //then
+        final var inOrder = inOrder(transactionManager, complaintRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(complaintRepository).incrementCounts(Map.of(first.id(), 2, second.id(), 1));
+        inOrder.verify(complaintRepository).findVersionedByIdIn(Set.of(first.id(), second.id()));
+        inOrder.verify(transactionManager).commit(any());
+        verify(complaintRepository, times(1)).incrementCounts(anyMap());
+        verify(eventFeed).publish(ComplaintEvent.Type.INCREMENTED, firstFlushed);
+        verify(eventFeed).publish(ComplaintEvent.Type.INCREMENTED, secondFlushed);
+        verifyNoMoreInteractions(eventFeed);
+        assertThat(meterRegistry.get("complaint.write-behind.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldKeepIncrementsBuffered_whenFlushFails() {
+        //given
+        aggregator = createAggregator(100, 100, NEVER);
+        final var complaint = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        when(complaintRepository.incrementCounts(anyMap()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(1);
+
+        //when
+        aggregator.flush();
+        aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        aggregator.flush();
+
+        //then
+        verify(complaintRepository, times(1)).incrementCounts(Map.of(complaint.id(), 1));
+        verify(complaintRepository, times(1)).incrementCounts(Map.of(complaint.id(), 2));
+        assertThat(meterRegistry.get("complaint.write-behind.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldFlushInBackground_whenMaxPendingIncrementsReached() {
+        //given
+        aggregator = createAggregator(3, 100, NEVER);
+        final var complaint = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        }
+
+        //then
+        verify(complaintRepository, timeout(5_000)).incrementCounts(Map.of(complaint.id(), 3));
+    }
+
+    @Test
+    void shouldFlushBufferedIncrements_onShutdown() {
+        //given
+        aggregator = createAggregator(100, 100, NEVER);
+        final var complaint = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //when
+        aggregator.shutdown();
+
+        //then
+        verify(complaintRepository).incrementCounts(Map.of(complaint.id(), 1));
+    }
+
+    @Test
+    void shouldStopTrackingIdleComplaints_andPersistTheirNextSubmission() {
+        //given
+        aggregator = createAggregator(100, 100, Duration.ZERO);
+        applyFlushesToComplaintTable();
+        aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+        aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //when
+        aggregator.flush();
+        final var afterRetirement = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //then
+        assertThat(complaintTable.persistCalls()).isEqualTo(2);
+        assertThat(afterRetirement.count()).isEqualTo(3);
+        assertThat(meterRegistry.get("complaint.write-behind.tracked").gauge().value()).isOne();
+    }
+
+    @Test
+    void shouldPersistSubmissionsOfUntrackedComplaints_whenTrackingLimitReached() {
+        //given
+        aggregator = createAggregator(100, 1, NEVER);
+        aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //when
+        aggregator.increment(2L, "user-2", complaintTable.persist(2L, "user-2"));
+        final var second = aggregator.increment(2L, "user-2", complaintTable.persist(2L, "user-2"));
+
+        //then
+        assertThat(complaintTable.persistCalls()).isEqualTo(3);
+        assertThat(second.count()).isEqualTo(2);
+    }
+
+    @Test
+    void contentUpdated_shouldChangeContentReportedForTrackedComplaint() {
+        //given
+        aggregator = createAggregator(100, 100, NEVER);
+        final var complaint = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //when
+        aggregator.contentUpdated(complaint.id(), "Updated content");
+        final var repeated = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //then
+        assertThat(repeated.content()).isEqualTo("Updated content");
+    }
+
+    @Test
+    void countryRecorded_shouldSetCountryReportedForTrackedComplaint() {
+        //given
+        aggregator = createAggregator(100, 100, NEVER);
+        final var complaint = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //when
+        aggregator.countryRecorded(complaint.id(), CountryCode.PL);
+        final var repeated = aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1"));
+
+        //then
+        assertThat(complaint.complainantCountry()).isNull();
+        assertThat(repeated.complainantCountry()).isEqualTo(CountryCode.PL);
+    }
+
+    @Test
+    void shouldKeepCountingOtherComplaints_whileFirstSubmissionIsPersisted() throws Exception {
+        //given
+        aggregator = createAggregator(10_000, 1_000, NEVER);
+        final var persisting = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var slowFirst = executor.submit(() -> aggregator.increment(1L, "user-1", () -> {
+                persisting.countDown();
+                await(release);
+                return complaintTable.persist(1L, "user-1").get();
+            }));
+            assertThat(persisting.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //when
+            final var others = executor.submit(() -> {
+                for (long productId = 2; productId < 200; productId++) {
+                    aggregator.increment(productId, "user-2", complaintTable.persist(productId, "user-2"));
+                    aggregator.increment(productId, "user-2", complaintTable.persist(productId, "user-2"));
+                }
+                return aggregator.increment(2L, "user-2", complaintTable.persist(2L, "user-2"));
+            });
+            final var waiting = executor.submit(() ->
+                    aggregator.increment(1L, "user-1", complaintTable.persist(1L, "user-1")));
+
+            //then
+            assertThat(others.get(5, TimeUnit.SECONDS).count()).isEqualTo(3);
+            assertThat(waiting.isDone()).isFalse();
+            release.countDown();
+            assertThat(slowFirst.get(5, TimeUnit.SECONDS).count()).isOne();
+            assertThat(waiting.get(5, TimeUnit.SECONDS).count()).isEqualTo(2);
+            assertThat(complaintTable.persistCalls()).isEqualTo(199);
+        }
+    }
+
+    @Test
+    void shouldCountEverySubmissionExactly_whenSubmittedAndFlushedConcurrently() throws Exception {
+        //given
+        aggregator = createAggregator(500, 100, Duration.ofMillis(1));
+        applyFlushesToComplaintTable();
+        final var threads = 8;
+        final var submissionsPerThread = 2_000;
+        final var start = new CountDownLatch(1);
+        final var futures = new ArrayList<Future<?>>();
+
+        //when
+        try (final var executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                final var complainant = "user-" + (t % 4);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < submissionsPerThread; i++) {
+                        aggregator.increment(1L, complainant, complaintTable.persist(1L, complainant));
+                        if (i % 500 == 0) {
+                            aggregator.flush();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final var future : futures) {
+                future.get();
+            }
+        }
+        aggregator.flush();
+
+        //then
+        assertThat(complaintTable.totalCount()).isEqualTo(threads * submissionsPerThread);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void applyFlushesToComplaintTable() {
+        when(complaintRepository.incrementCounts(anyMap())).thenAnswer(invocation -> {
+            final Map<Long, Integer> deltas = invocation.getArgument(0);
+            deltas.forEach(complaintTable::add);
+            return deltas.size();
+        });
+    }
+
+    private ComplaintCountAggregator createAggregator(long maxPendingIncrements, int maxTrackedComplaints,
+                                                      Duration idleTimeout) {
+        return new ComplaintCountAggregator(complaintRepository, complaintCache, new ShardRouter(1), eventFeed,
+                transactionManager, meterRegistry, NEVER,
+                maxPendingIncrements, maxTrackedComplaints, idleTimeout);
+    }
+
+    /**
+     * Stands in for the upsert of the write service: one row per (product ID, complainant) key.
+     */
+    private static final class FakeComplaintTable {
+        private final Map<String, Long> idsByKey = new ConcurrentHashMap<>();
+        private final Map<Long, Integer> countsById = new ConcurrentHashMap<>();
+        private int persistCalls;
+
+        Supplier<ComplaintRetrievalDto> persist(long productId, String complainant) {
+            return () -> {
+                synchronized (this) {
+                    persistCalls++;
+                    final var id = idsByKey.computeIfAbsent(productId + "/" + complainant,
+                            key -> (long) idsByKey.size() + 1);
+                    final int count = countsById.merge(id, 1, Integer::sum);
+                    return new ComplaintRetrievalDto(id, productId, "Content", LocalDateTime.now(),
+                            complainant, null, count);
+                }
+            };
+        }
+
+        void add(long id, int delta) {
+            countsById.merge(id, delta, Integer::sum);
+        }
+
+        synchronized int persistCalls() {
+            return persistCalls;
+        }
+
+        long totalCount() {
+            return countsById.values().stream().mapToLong(Integer::longValue).sum();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import dev.karolchmiel.complaintmanager.dto.ComplaintEvent;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ComplaintEventFeedTest {
+    private static final ComplaintTestData TEST_DATA = ComplaintTestData.defaultData();
+    private static final Pattern EVENT_ID = Pattern.compile("^id: (\\d+)$", Pattern.MULTILINE);
+    private static final Pattern EVENT_DATA = Pattern.compile("^data: (.+)$", Pattern.MULTILINE);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ComplaintEventFeed eventFeed;
+
+    @AfterEach
+    void tearDown() {
+        eventFeed.close();
+    }
+
+    @Test
+    void shouldStreamEventsPublishedAfterSubscribing_withConsecutiveIds() throws Exception {
+        //given
+        eventFeed = createFeed(100, 10, Duration.ofMinutes(1));
+        final var subscription = eventFeed.subscribe(null).orElseThrow();
+        eventFeed.publish(ComplaintEvent.Type.CREATED, TEST_DATA.buildVersionedDto());
+        eventFeed.publish(ComplaintEvent.Type.INCREMENTED, TEST_DATA.buildVersionedDto());
+
+        //when
+        final var stream = streamUntilSecondFlush(subscription);
+
+        //then
+        final var json = objectMapper.writeValueAsString(TEST_DATA.buildVersionedDto());
+        assertThat(stream).startsWith(": subscribed\n\n")
+                .contains("event: created\ndata: " + json + "\n\n")
+                .contains("event: incremented\ndata: " + json + "\n\n");
+        final var ids = eventIds(stream);
+        assertThat(ids).hasSize(2);
+        assertThat(ids.get(1)).isEqualTo(ids.get(0) + 1);
+        assertThat(meterRegistry.get("complaint.events.published").tag("type", "created").counter().count())
+                .isOne();
+    }
+
+    @Test
+    void shouldCarryRowVersion_thatOrdersChangesPublishedOutOfCommitOrder() {
+        //given
+        eventFeed = createFeed(100, 10, Duration.ofMinutes(1));
+        final var subscription = eventFeed.subscribe(null).orElseThrow();
+        final var committedFirst = withCountAndVersion(2, 43L);
+        final var committedSecond = withCountAndVersion(3, 44L);
+        eventFeed.publish(ComplaintEvent.Type.INCREMENTED, committedSecond);
+        eventFeed.publish(ComplaintEvent.Type.INCREMENTED, committedFirst);
+
+        //when
+        final var stream = streamUntilSecondFlush(subscription);
+
+        //then
+        final var received = EVENT_DATA.matcher(stream).results()
+                .map(result -> readComplaint(result.group(1)))
+                .toList();
+        assertThat(received).containsExactly(committedSecond, committedFirst);
+        final var latestById = new HashMap<Long, VersionedComplaint>();
+        received.forEach(complaint -> latestById.merge(complaint.complaint().id(), complaint,
+                (kept, next) -> next.version() > kept.version() ? next : kept));
+        assertThat(latestById).containsExactly(Map.entry(TEST_DATA.id(), committedSecond));
+    }
+
+    @Test
+    void shouldResumeAfterLastEventId() {
+        //given
+        eventFeed = createFeed(100, 10, Duration.ofMinutes(1));
+        final var first = eventFeed.subscribe(null).orElseThrow();
+        eventFeed.publish(ComplaintEvent.Type.CREATED, TEST_DATA.buildVersionedDto());
+        eventFeed.publish(ComplaintEvent.Type.INCREMENTED, TEST_DATA.buildVersionedDto());
+        eventFeed.publish(ComplaintEvent.Type.CONTENT_UPDATED, TEST_DATA.buildVersionedDto());
+        final var ids = eventIds(streamUntilSecondFlush(first));
+
+        //when
+        final var resumed = streamUntilSecondFlush(eventFeed.subscribe(String.valueOf(ids.get(0))).orElseThrow());
+
+        //then
+        assertThat(resumed).doesNotContain("event: created").contains("event: incremented", "event: content-updated");
+        assertThat(eventIds(resumed)).containsExactly(ids.get(1), ids.get(2));
+    }
+
+    @Test
+    void shouldSendReset_whenLastEventIdIsNotBuffered() {
+        //given
+        eventFeed = createFeed(100, 10, Duration.ofMinutes(1));
+        eventFeed.publish(ComplaintEvent.Type.CREATED, TEST_DATA.buildVersionedDto());
+        final var subscription = eventFeed.subscribe("42").orElseThrow();
+        eventFeed.publish(ComplaintEvent.Type.INCREMENTED, TEST_DATA.buildVersionedDto());
+
+        //when
+        final var stream = streamUntilSecondFlush(subscription);
+
+        //then
+        final var ids = eventIds(stream);
+        assertThat(stream).startsWith("id: " + ids.get(0) + "\nevent: reset\ndata: {}\n\n")
+                .doesNotContain("event: created")
+                .contains("event: incremented");
+        assertThat(ids).containsExactly(ids.get(0), ids.get(0) + 1);
+    }
+
+    @Test
+    void shouldDropSubscriber_thatFellFurtherBehindThanBuffer() {
+        //given
+        eventFeed = createFeed(2, 10, Duration.ofMinutes(1));
+        final var subscription = eventFeed.subscribe(null).orElseThrow();
+        eventFeed.publish(ComplaintEvent.Type.CREATED, TEST_DATA.buildVersionedDto());
+        eventFeed.publish(ComplaintEvent.Type.INCREMENTED, TEST_DATA.buildVersionedDto());
+        eventFeed.publish(ComplaintEvent.Type.INCREMENTED, TEST_DATA.buildVersionedDto());
+        final var output = new ByteArrayOutputStream();
+
+        //when
+        subscription.streamTo(output);
+
+        //then
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(": subscribed\n\n");
+        assertThat(meterRegistry.get("complaint.events.dropped").counter().count()).isOne();
+    }
+
+    @Test
+    void shouldWriteHeartbeat_whileNoEventsArePublished() {
+        //given
+        eventFeed = createFeed(100, 10, Duration.ofMillis(10));
+        final var subscription = eventFeed.subscribe(null).orElseThrow();
+
+        //when
+        final var stream = streamUntilSecondFlush(subscription);
+
+        //then
+        assertThat(stream).isEqualTo(": subscribed\n\n: heartbeat\n\n");
+    }
+
+    @Test
+    void shouldWakeWaitingSubscriber_whenEventIsPublished() throws Exception {
+        //given
+        eventFeed = createFeed(100, 10, Duration.ofMinutes(1));
+        final var subscription = eventFeed.subscribe(null).orElseThrow();
+        final var output = new DisconnectingOutputStream(2);
+        final var subscriber = Thread.ofVirtual().start(() -> subscription.streamTo(output));
+
+        //when
+        eventFeed.publish(ComplaintEvent.Type.CREATED, TEST_DATA.buildVersionedDto());
+
+        //then
+        subscriber.join(Duration.ofSeconds(5));
+        assertThat(subscriber.isAlive()).isFalse();
+        assertThat(output.toString(StandardCharsets.UTF_8)).contains("event: created");
+    }
+
+    @Test
+    void shouldEndStreams_whenClosed() {
+        //given
+        eventFeed = createFeed(100, 10, Duration.ofMinutes(1));
+        final var subscription = eventFeed.subscribe(null).orElseThrow();
+        eventFeed.close();
+        final var output = new ByteArrayOutputStream();
+
+        //when
+        subscription.streamTo(output);
+
+        //then
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(": subscribed\n\n");
+        assertThat(meterRegistry.get("complaint.events.dropped").counter().count()).isZero();
+    }
+
+    @Test
+    void shouldRejectSubscribers_overMaxSubscribers_untilOneCloses() {
+        //given
+        eventFeed = createFeed(100, 1, Duration.ofMinutes(1));
+        final var first = eventFeed.subscribe(null);
+
+        //when
+        final var rejected = eventFeed.subscribe(null);
+        first.orElseThrow().close();
+        first.orElseThrow().close();
+        final var afterClose = eventFeed.subscribe(null);
+
+        //then
+        assertThat(first).isPresent();
+        assertThat(rejected).isEmpty();
+        assertThat(afterClose).isPresent();
+        assertThat(meterRegistry.get("complaint.events.subscribers").gauge().value()).isOne();
+    }
+
+    @Test
+    void shouldCapSubscribersAtHalfOfRequestThreads_whenVirtualThreadsAreDisabled() {
+        //given
+        eventFeed = new ComplaintEventFeed(objectMapper, meterRegistry, 100, 1000, Duration.ofMinutes(1), false, 4);
+
+        //when
+        final var subscriptions = Stream.generate(() -> eventFeed.subscribe(null)).limit(3).toList();
+
+        //then
+        assertThat(subscriptions).extracting(Optional::isPresent).containsExactly(true, true, false);
+    }
+
+    private ComplaintEventFeed createFeed(int bufferSize, int maxSubscribers, Duration heartbeatInterval) {
+        return new ComplaintEventFeed(objectMapper, meterRegistry, bufferSize, maxSubscribers, heartbeatInterval,
+                true, 200);
+    }
+
+    /**
+     * Streams the events that are already published, ending the stream like a disconnecting client once the
+     * preamble and the first batch of events have been flushed.
+     */
+    private static String streamUntilSecondFlush(ComplaintEventFeed.Subscription subscription) {
+        final var output = new DisconnectingOutputStream(2);
+        subscription.streamTo(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static VersionedComplaint withCountAndVersion(int count, long version) {
+        return new ComplaintTestData(TEST_DATA.id(), TEST_DATA.productId(), TEST_DATA.content(),
+                TEST_DATA.complainant(), TEST_DATA.creationDate(), TEST_DATA.countryCode(), count, version)
+                .buildVersionedDto();
+    }
+
+    private VersionedComplaint readComplaint(String json) {
+        try {
+            return objectMapper.readValue(json, VersionedComplaint.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Long> eventIds(String stream) {
+        return EVENT_ID.matcher(stream).results().map(result -> Long.parseLong(result.group(1))).toList();
+    }
+
+    private static final class DisconnectingOutputStream extends ByteArrayOutputStream {
+        private final int flushesBeforeDisconnect;
+        private int flushes;
+
+        DisconnectingOutputStream(int flushesBeforeDisconnect) {
+            this.flushesBeforeDisconnect = flushesBeforeDisconnect;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (++flushes >= flushesBeforeDisconnect) {
+                throw new IOException("Client disconnected");
+            }
+        }
+    }
+}
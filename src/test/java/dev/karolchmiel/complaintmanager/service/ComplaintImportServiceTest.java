@@ -0,0 +1,148 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintImportDto.Status;
+import dev.karolchmiel.complaintmanager.dto.FileFormat;
+import dev.karolchmiel.complaintmanager.dto.ImportedComplaint;
+import dev.karolchmiel.complaintmanager.dto.SubmissionCounts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ComplaintImportServiceTest {
+    private static final int CHUNK_SIZE = 2;
+
+    @Mock
+    private ComplaintBatchService complaintBatchService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<ImportedComplaint>> chunks = new ArrayList<>();
+    private ComplaintImportService complaintImportService;
+
+    @BeforeEach
+    void setUp() {
+        complaintImportService = new ComplaintImportService(complaintBatchService, new ObjectMapper(), meterRegistry,
+                CHUNK_SIZE, Duration.ofSeconds(10));
+    }
+
+    @Test
+    void shouldImportNdjsonInChunks_andSumUpOutcomes() {
+        //given
+        mockBatchServiceCreatingEveryRow();
+        final var input = """
+                {"productId":1,"content":"Broken","complainant":"user-1","complainantCountry":"PL"}
+
+                {"productId":2,"content":"Late","complainant":"user-2","extra":true}
+                {"productId":3,"content":"Dented","complainant":"user-3"}
+                """;
+
+        //when
+        final var result = importFile(FileFormat.NDJSON, input);
+
+        //then
+        assertThat(chunks).extracting(List::size).containsExactly(2, 1);
+        assertThat(chunks.getFirst()).containsExactly(
+                new ImportedComplaint(1L, "Broken", "user-1", "PL"),
+                new ImportedComplaint(2L, "Late", "user-2", null));
+        assertThat(result.status()).isEqualTo(Status.COMPLETED);
+        assertThat(result.rowsProcessed()).isEqualTo(3);
+        assertThat(result.created()).isEqualTo(3);
+        assertThat(result.finishedAt()).isNotNull();
+        assertThat(meterRegistry.get("complaint.service").tag("operation", "import").timer().count()).isOne();
+    }
+
+    @Test
+    void shouldImportCsvByColumnName_withQuotedFieldsSpanningLines() {
+        //given
+        mockBatchServiceCreatingEveryRow();
+        final var input = "\uFEFFid,complainant,productId,content\r\n"
+                + "1,user-1,10,\"Lid \"\"snaps\"\", then\r\nleaks\"\r\n"
+                + "\r\n"
+                + "2,user-2,20,\n";
+
+        //when
+        final var result = importFile(FileFormat.CSV, input);
+
+        //then
+        assertThat(result.status()).isEqualTo(Status.COMPLETED);
+        assertThat(chunks).singleElement().satisfies(chunk -> assertThat(chunk).containsExactly(
+                new ImportedComplaint(10L, "Lid \"snaps\", then\r\nleaks", "user-1", null),
+                new ImportedComplaint(20L, null, "user-2", null)));
+    }
+
+    @Test
+    void shouldRejectImport_atFirstMalformedRow_keepingEarlierChunks() {
+        //given
+        mockBatchServiceCreatingEveryRow();
+        final var input = """
+                productId,content,complainant
+                1,Broken,user-1
+                2,Late,user-2
+                three,Dented,user-3
+                """;
+
+        //when
+        final var result = importFile(FileFormat.CSV, input);
+
+        //then
+        assertThat(result.status()).isEqualTo(Status.REJECTED);
+        assertThat(result.error()).isEqualTo("Malformed complaint at line 4: Product ID is not a number: three");
+        assertThat(result.rowsProcessed()).isEqualTo(2);
+        assertThat(chunks).hasSize(1);
+    }
+
+    @Test
+    void shouldRejectCsv_withoutRequiredColumn() {
+        //when
+        final var result = importFile(FileFormat.CSV, "productId,content\n1,Broken\n");
+
+        //then
+        assertThat(result.status()).isEqualTo(Status.REJECTED);
+        assertThat(result.error()).endsWith("Missing column complainant");
+        verifyNoInteractions(complaintBatchService);
+    }
+
+    @Test
+    void shouldMarkImportFailed_whenWritingFails_andKeepTrackingIt() {
+        //given
+        when(complaintBatchService.importComplaints(any())).thenThrow(new QueryTimeoutException("Timed out"));
+
+        //when
+        final var result = importFile(FileFormat.NDJSON, "{\"productId\":1,\"content\":\"a\",\"complainant\":\"b\"}");
+
+        //then
+        assertThat(result.status()).isEqualTo(Status.FAILED);
+        assertThat(result.error()).isEqualTo("Timed out");
+        assertThat(complaintImportService.getImports()).singleElement().isEqualTo(result);
+        assertThat(complaintImportService.getImport(result.id())).hasValue(result);
+    }
+
+    private ComplaintImportDto importFile(FileFormat format, String content) {
+        return complaintImportService.importComplaints(format,
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), "test");
+    }
+
+    private void mockBatchServiceCreatingEveryRow() {
+        when(complaintBatchService.importComplaints(any())).thenAnswer(invocation -> {
+            final List<ImportedComplaint> chunk = invocation.getArgument(0);
+            chunks.add(List.copyOf(chunk));
+            return new SubmissionCounts(chunk.size(), 0, 0);
+        });
+    }
+}
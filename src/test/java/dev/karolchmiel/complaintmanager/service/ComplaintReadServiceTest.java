@@ -1,68 +1,238 @@
 package dev.karolchmiel.complaintmanager.service;
 
-import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintField;
+import dev.karolchmiel.complaintmanager.dto.ComplaintFilter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintVersion;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
 import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mapstruct.factory.Mappers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
+import java.time.Duration;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class ComplaintReadServiceTest {
     private static final long COMPLAINT_ID = 1035L;
+    private static final int PAGE_SIZE = 3;
     private static final ComplaintTestData TEST_DATA = ComplaintTestData.defaultData();
 
     @Mock
     private ComplaintRepository complaintRepository;
-    private final ComplaintMapper complaintMapper = Mappers.getMapper(ComplaintMapper.class);
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     private ComplaintReadService complaintReadService;
 
     @BeforeEach
     void setUp() {
-        complaintReadService = new ComplaintReadService(complaintRepository, complaintMapper);
+        complaintReadService = new ComplaintReadService(complaintRepository,
+                new ComplaintCache(meterRegistry, 100, Duration.ofMinutes(10), ComplaintCacheTest.NO_REPLICAS),
+                new ShardRouter(1), transactionManager, meterRegistry);
     }
 
     @Nested
     class GetComplaintByIdTests {
         @Test
         void shouldReturnComplaint_whenComplaintExists() {
-            when(complaintRepository.findById(COMPLAINT_ID))
-                    .thenReturn(Optional.of(TEST_DATA.buildEntity()));
+            when(complaintRepository.findVersionedById(COMPLAINT_ID))
+                    .thenReturn(Optional.of(TEST_DATA.buildVersionedDto()));
 
             final var result = complaintReadService.getComplaintById(COMPLAINT_ID);
 
-            assertThat(result).hasValue(TEST_DATA.buildDto());
+            assertThat(result).hasValue(TEST_DATA.buildVersionedDto());
+            verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
         }
 
         @Test
         void shouldReturnEmpty_whenComplaintNotFound() {
-            when(complaintRepository.findById(COMPLAINT_ID)).thenReturn(Optional.empty());
+            when(complaintRepository.findVersionedById(COMPLAINT_ID)).thenReturn(Optional.empty());
 
             final var result = complaintReadService.getComplaintById(COMPLAINT_ID);
 
             assertThat(result).isEmpty();
         }
+
+        @Test
+        void shouldServeRepeatedReadsFromCache() {
+            when(complaintRepository.findVersionedById(COMPLAINT_ID))
+                    .thenReturn(Optional.of(TEST_DATA.buildVersionedDto()));
+
+            complaintReadService.getComplaintById(COMPLAINT_ID);
+            final var result = complaintReadService.getComplaintById(COMPLAINT_ID);
+
+            assertThat(result).hasValue(TEST_DATA.buildVersionedDto());
+            verify(complaintRepository, times(1)).findVersionedById(COMPLAINT_ID);
+        }
     }
 
     @Nested
-    class GetAllComplaintsTests {
+    class GetComplaintVersionTests {
         @Test
-        void shouldReturnAllComplaints() {
-            when(complaintRepository.findAll())
-                    .thenReturn(List.of(TEST_DATA.buildEntity()));
+        void shouldTakeVersionFromCache_whenComplaintCached() {
+            when(complaintRepository.findVersionedById(COMPLAINT_ID))
+                    .thenReturn(Optional.of(TEST_DATA.buildVersionedDto()));
+            complaintReadService.getComplaintById(COMPLAINT_ID);
 
-            final var result = complaintReadService.getAllComplaints();
+            final var result = complaintReadService.getComplaintVersion(COMPLAINT_ID);
 
-            assertThat(result).hasSize(1).containsOnly(TEST_DATA.buildDto());
+            assertThat(result).hasValue(TEST_DATA.version());
+            verify(complaintRepository, never()).findVersionById(anyLong());
         }
+
+        @Test
+        void shouldQueryOnlyVersion_whenComplaintNotCached() {
+            when(complaintRepository.findVersionById(COMPLAINT_ID)).thenReturn(Optional.of(TEST_DATA.version()));
+
+            final var result = complaintReadService.getComplaintVersion(COMPLAINT_ID);
+
+            assertThat(result).hasValue(TEST_DATA.version());
+            verify(complaintRepository, never()).findVersionedById(anyLong());
+        }
+    }
+
+    @Nested
+    class GetComplaintsTests {
+        @Test
+        void shouldStartFromBeginning_whenCursorIsNull() {
+            when(complaintRepository.findVersionedPageByIdGreaterThanOrderByIdAsc(0L, Limit.of(PAGE_SIZE + 1)))
+                    .thenReturn(List.of(TEST_DATA.buildVersionedDto()));
+
+            final var result = complaintReadService.getComplaints(ComplaintFilter.NONE, ComplaintField.ALL, null,
+                    PAGE_SIZE).page();
+
+            assertThat(result.complaints()).containsOnly(TEST_DATA.buildDto());
+            assertThat(result.nextCursor()).isNull();
+            verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+        }
+
+        @Test
+        void shouldReturnNextCursor_whenMoreComplaintsExist() {
+            final var complaints = LongStream.rangeClosed(COMPLAINT_ID + 1, COMPLAINT_ID + PAGE_SIZE + 1)
+                    .mapToObj(ComplaintReadServiceTest::dtoWithId)
+                    .toList();
+            when(complaintRepository.findVersionedPageByIdGreaterThanOrderByIdAsc(COMPLAINT_ID,
+                    Limit.of(PAGE_SIZE + 1))).thenReturn(complaints);
+
+            final var result = complaintReadService.getComplaints(ComplaintFilter.NONE, ComplaintField.ALL,
+                    COMPLAINT_ID, PAGE_SIZE).page();
+
+            assertThat(result.complaints())
+                    .extracting(ComplaintRetrievalDto::id)
+                    .containsExactly(COMPLAINT_ID + 1, COMPLAINT_ID + 2, COMPLAINT_ID + 3);
+            assertThat(result.nextCursor()).isEqualTo(COMPLAINT_ID + PAGE_SIZE);
+        }
+
+        @Test
+        void versionTag_shouldChange_whenVersionOfComplaintOnPageChanges() {
+            when(complaintRepository.findVersionsByIdGreaterThanOrderByIdAsc(0L, Limit.of(PAGE_SIZE + 1)))
+                    .thenReturn(List.of(new ComplaintVersion(1L, 10L), new ComplaintVersion(2L, 11L)))
+                    .thenReturn(List.of(new ComplaintVersion(1L, 10L), new ComplaintVersion(2L, 11L)))
+                    .thenReturn(List.of(new ComplaintVersion(1L, 10L), new ComplaintVersion(2L, 12L)));
+
+            final var first = versionTag(ComplaintFilter.NONE, ComplaintField.ALL);
+            final var unchanged = versionTag(ComplaintFilter.NONE, ComplaintField.ALL);
+            final var changed = versionTag(ComplaintFilter.NONE, ComplaintField.ALL);
+
+            assertThat(unchanged).isEqualTo(first);
+            assertThat(changed).isNotEqualTo(first);
+            verify(complaintRepository, never()).findVersionedPageByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        }
+
+        @Test
+        void shouldTagPageWithVersionsOfItsOwnRows_sameAsVersionTagOfThoseRows() {
+            final var complaints = LongStream.rangeClosed(COMPLAINT_ID + 1, COMPLAINT_ID + PAGE_SIZE + 1)
+                    .mapToObj(ComplaintReadServiceTest::dtoWithId)
+                    .toList();
+            when(complaintRepository.findVersionedPageByIdGreaterThanOrderByIdAsc(0L, Limit.of(PAGE_SIZE + 1)))
+                    .thenReturn(complaints);
+            when(complaintRepository.findVersionsByIdGreaterThanOrderByIdAsc(0L, Limit.of(PAGE_SIZE + 1)))
+                    .thenReturn(complaints.stream()
+                            .map(complaint -> new ComplaintVersion(complaint.complaint().id(), complaint.version()))
+                            .toList())
+                    .thenReturn(List.of(new ComplaintVersion(COMPLAINT_ID + 1, TEST_DATA.version() + 1)));
+
+            final var page = complaintReadService.getComplaints(ComplaintFilter.NONE, ComplaintField.ALL, null,
+                    PAGE_SIZE);
+
+            assertThat(page.versionTag()).isEqualTo(versionTag(ComplaintFilter.NONE, ComplaintField.ALL));
+            assertThat(page.versionTag()).isNotEqualTo(versionTag(ComplaintFilter.NONE, ComplaintField.ALL));
+        }
+
+        @Test
+        void shouldQueryFilteredPage_whenFilterIsGiven() {
+            final var filter = new ComplaintFilter(null, CountryCode.PL, null, null);
+            when(complaintRepository.findFilteredVersionedByIdGreaterThanOrderByIdAsc(
+                    filter, ComplaintField.ALL, 0L, Limit.of(PAGE_SIZE + 1)))
+                    .thenReturn(List.of(TEST_DATA.buildVersionedDto()));
+
+            final var result = complaintReadService.getComplaints(filter, ComplaintField.ALL, null, PAGE_SIZE).page();
+
+            assertThat(result.complaints()).containsOnly(TEST_DATA.buildDto());
+            verify(complaintRepository, never()).findVersionedPageByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        }
+
+        @Test
+        void shouldQueryOnlySelectedFields_whenFieldsAreGiven() {
+            final var fields = EnumSet.of(ComplaintField.CONTENT);
+            final var partial = new ComplaintRetrievalDto(COMPLAINT_ID, null, TEST_DATA.content(), null, null, null,
+                    null);
+            when(complaintRepository.findFilteredVersionedByIdGreaterThanOrderByIdAsc(
+                    ComplaintFilter.NONE, fields, 0L, Limit.of(PAGE_SIZE + 1)))
+                    .thenReturn(List.of(new VersionedComplaint(partial, TEST_DATA.version())));
+
+            final var result = complaintReadService.getComplaints(ComplaintFilter.NONE, fields, null, PAGE_SIZE)
+                    .page();
+
+            assertThat(result.complaints()).containsOnly(partial);
+            verify(complaintRepository, never()).findVersionedPageByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        }
+
+        @Test
+        void versionTag_shouldDifferBetweenFilters_forSameRows() {
+            final var versions = List.of(new ComplaintVersion(1L, 10L));
+            final var filter = new ComplaintFilter(TEST_DATA.productId(), null, null, null);
+            when(complaintRepository.findVersionsByIdGreaterThanOrderByIdAsc(0L, Limit.of(PAGE_SIZE + 1)))
+                    .thenReturn(versions);
+            when(complaintRepository.findFilteredVersionsByIdGreaterThanOrderByIdAsc(
+                    filter, 0L, Limit.of(PAGE_SIZE + 1))).thenReturn(versions);
+
+            final var unfiltered = versionTag(ComplaintFilter.NONE, ComplaintField.ALL);
+            final var filtered = versionTag(filter, ComplaintField.ALL);
+            final var selected = versionTag(ComplaintFilter.NONE, EnumSet.of(ComplaintField.COUNT));
+
+            assertThat(filtered).isNotEqualTo(unfiltered);
+            assertThat(selected).isNotEqualTo(unfiltered);
+        }
+
+        private String versionTag(ComplaintFilter filter, Set<ComplaintField> fields) {
+            return complaintReadService.getComplaintsVersionTag(filter, fields, null, PAGE_SIZE);
+        }
+    }
+
+    private static VersionedComplaint dtoWithId(long id) {
+        final var complaint = TEST_DATA.buildDto();
+        return new VersionedComplaint(new ComplaintRetrievalDto(id, complaint.productId(), complaint.content(),
+                complaint.creationDate(), complaint.complainant(), complaint.complainantCountry(), complaint.count()),
+                TEST_DATA.version());
     }
 }
@@ -0,0 +1,155 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import dev.karolchmiel.complaintmanager.model.ComplaintSearchHit;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintSearchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ComplaintSearchServiceTest {
+    private static final ComplaintTestData TEST_DATA = ComplaintTestData.defaultData();
+    private static final int CHUNK_SIZE = 2;
+
+    @Mock
+    private ComplaintSearchRepository searchRepository;
+    @Mock
+    private ComplaintRepository complaintRepository;
+    private final ComplaintMapper complaintMapper = Mappers.getMapper(ComplaintMapper.class);
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ComplaintSearchService complaintSearchService;
+
+    @BeforeEach
+    void setUp() {
+        complaintSearchService = new ComplaintSearchService(
+                searchRepository, complaintRepository, complaintMapper, new ShardRouter(1), transactionManager, meterRegistry,
+                CHUNK_SIZE);
+    }
+
+    @Nested
+    class SearchTests {
+        @Test
+        void shouldWeighRareTermsHigher_andLoadOnlyComplaintsOfThePage() {
+            //given
+            when(searchRepository.findDocumentFrequencies(List.of("battery", "refund", "unknown")))
+                    .thenReturn(Map.of("battery", 10L, "refund", 900L));
+            when(searchRepository.countComplaints()).thenReturn(1000L);
+            @SuppressWarnings("unchecked")
+            final ArgumentCaptor<Map<String, Double>> weights = ArgumentCaptor.forClass(Map.class);
+            when(searchRepository.search(weights.capture(), eq(0L), eq(2)))
+                    .thenReturn(List.of(new ComplaintSearchHit(TEST_DATA.id(), 4.5)));
+            when(complaintRepository.findAllById(List.of(TEST_DATA.id()))).thenReturn(List.of(TEST_DATA.buildEntity()));
+
+            //when
+            final var result = complaintSearchService.search("Battery refund unknown", 0, 1);
+
+            //then
+            assertThat(weights.getValue().get("battery")).isGreaterThan(weights.getValue().get("refund"));
+            assertThat(weights.getValue().get("refund")).isPositive();
+            assertThat(result.results()).singleElement().satisfies(hit -> {
+                assertThat(hit.complaint()).isEqualTo(TEST_DATA.buildDto());
+                assertThat(hit.score()).isEqualTo(4.5);
+            });
+            assertThat(result.nextPage()).isNull();
+            assertThat(meterRegistry.get("complaint.service").tag("operation", "search").timer().count()).isOne();
+        }
+
+        @Test
+        void shouldReturnNextPage_whenMoreMatchesExist() {
+            //given
+            when(searchRepository.findDocumentFrequencies(List.of("battery"))).thenReturn(Map.of("battery", 2L));
+            when(searchRepository.countComplaints()).thenReturn(5L);
+            when(searchRepository.search(anyMap(), eq(3L), eq(4))).thenReturn(List.of(
+                    new ComplaintSearchHit(1L, 3), new ComplaintSearchHit(2L, 2),
+                    new ComplaintSearchHit(3L, 1), new ComplaintSearchHit(4L, 1)));
+
+            //when
+            final var result = complaintSearchService.search("battery", 1, 3);
+
+            //then
+            verify(complaintRepository).findAllById(List.of(1L, 2L, 3L));
+            assertThat(result.nextPage()).isEqualTo(2);
+        }
+
+        @Test
+        void shouldNotRank_whenNoTermIsIndexed() {
+            //given
+            when(searchRepository.findDocumentFrequencies(List.of("battery"))).thenReturn(Map.of());
+
+            //when
+            final var result = complaintSearchService.search("battery !", 0, 10);
+
+            //then
+            assertThat(result.results()).isEmpty();
+            assertThat(result.nextPage()).isNull();
+            verify(searchRepository, never()).search(anyMap(), anyLong(), anyInt());
+        }
+    }
+
+    @Nested
+    class CatchUpIndexTests {
+        @Test
+        void shouldRebuildFromAllComplaintsInChunks_whenIndexIsMissing() {
+            //given
+            when(searchRepository.findMaxContentVersion()).thenReturn(30L);
+            when(searchRepository.findIndexedVersion()).thenReturn(Optional.empty());
+            when(searchRepository.reindexAfter(0L, 0L, CHUNK_SIZE)).thenReturn(List.of(1L, 2L));
+            when(searchRepository.reindexAfter(2L, 0L, CHUNK_SIZE)).thenReturn(List.of(5L));
+
+            //when
+            complaintSearchService.catchUpIndex();
+
+            //then
+            verify(searchRepository, times(2)).reindexAfter(anyLong(), anyLong(), anyInt());
+            verify(searchRepository).saveIndexedVersion(30L);
+        }
+
+        @Test
+        void shouldReindexOnlyComplaintsWrittenAfterIndexedVersion_whenIndexIsStale() {
+            //given
+            when(searchRepository.findMaxContentVersion()).thenReturn(30L);
+            when(searchRepository.findIndexedVersion()).thenReturn(Optional.of(20L));
+            when(searchRepository.reindexAfter(0L, 20L, CHUNK_SIZE)).thenReturn(List.of());
+
+            //when
+            complaintSearchService.catchUpIndex();
+
+            //then
+            verify(searchRepository).saveIndexedVersion(30L);
+        }
+
+        @Test
+        void shouldNotReindex_whenIndexIsUpToDate() {
+            //given
+            when(searchRepository.findMaxContentVersion()).thenReturn(30L);
+            when(searchRepository.findIndexedVersion()).thenReturn(Optional.of(30L));
+
+            //when
+            complaintSearchService.catchUpIndex();
+
+            //then
+            verify(searchRepository, never()).reindexAfter(anyLong(), anyLong(), anyInt());
+            verify(searchRepository, never()).saveIndexedVersion(anyLong());
+        }
+    }
+}
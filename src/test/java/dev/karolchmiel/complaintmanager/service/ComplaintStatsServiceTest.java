@@ -0,0 +1,82 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.api.dto.CountryStatsDto;
+import dev.karolchmiel.complaintmanager.api.dto.ProductStatsDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
+import dev.karolchmiel.complaintmanager.model.CountryStats;
+import dev.karolchmiel.complaintmanager.model.ProductStats;
+import dev.karolchmiel.complaintmanager.repository.ComplaintStatsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ComplaintStatsServiceTest {
+    private static final long PRODUCT_ID = 1001L;
+
+    @Mock
+    private ComplaintStatsRepository statsRepository;
+    private final ComplaintMapper complaintMapper = Mappers.getMapper(ComplaintMapper.class);
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ComplaintStatsService complaintStatsService;
+
+    @BeforeEach
+    void setUp() {
+        complaintStatsService = new ComplaintStatsService(statsRepository, complaintMapper, new ShardRouter(1),
+                transactionManager, meterRegistry);
+    }
+
+    @Test
+    void shouldReturnProductStats_whenProductHasComplaints() {
+        //given
+        when(statsRepository.findProductStats(PRODUCT_ID)).thenReturn(Optional.of(new ProductStats(PRODUCT_ID, 7, 3)));
+
+        //when
+        final var result = complaintStatsService.getProductStats(PRODUCT_ID);
+
+        //then
+        assertThat(result).hasValue(new ProductStatsDto(PRODUCT_ID, 7L, 3L));
+        assertThat(meterRegistry.get("complaint.service").tag("operation", "stats").timer().count()).isOne();
+    }
+
+    @Test
+    void shouldReturnEmpty_whenProductHasNoComplaints() {
+        //given
+        when(statsRepository.findProductStats(PRODUCT_ID)).thenReturn(Optional.empty());
+
+        //when
+        final var result = complaintStatsService.getProductStats(PRODUCT_ID);
+
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void shouldReturnCountryStatsInRepositoryOrder() {
+        //given
+        when(statsRepository.findCountryStats()).thenReturn(List.of(
+                new CountryStats(CountryCode.PL, 5), new CountryStats(CountryCode.US, 2)));
+
+        //when
+        final var result = complaintStatsService.getCountryStats();
+
+        //then
+        assertThat(result).containsExactly(
+                new CountryStatsDto(CountryCode.PL, 5L), new CountryStatsDto(CountryCode.US, 2L));
+    }
+}
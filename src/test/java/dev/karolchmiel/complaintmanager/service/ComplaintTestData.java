@@ -3,12 +3,13 @@ package dev.karolchmiel.complaintmanager.service;
 import com.neovisionaries.i18n.CountryCode;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
 import dev.karolchmiel.complaintmanager.model.Complaint;
 
 import java.time.LocalDateTime;
 
 public record ComplaintTestData(long id, long productId, String content, String complainant,
-                               LocalDateTime creationDate, CountryCode countryCode, int count) {
+                               LocalDateTime creationDate, CountryCode countryCode, int count, long version) {
     
     public static ComplaintTestData defaultData() {
         return new ComplaintTestData(
@@ -18,7 +19,8 @@ public record ComplaintTestData(long id, long productId, String content, String
                 "user-123",
                 LocalDateTime.now(),
                 CountryCode.US,
-                1
+                1,
+                42L
         );
     }
 
@@ -31,6 +33,13 @@ public record ComplaintTestData(long id, long productId, String content, String
         complaint.setComplainant(complainant);
         complaint.setComplainantCountry(countryCode);
         complaint.setCount(count);
+        complaint.setVersion(version);
+        return complaint;
+    }
+
+    public Complaint buildEntityWithoutCountry() {
+        final var complaint = buildEntity();
+        complaint.setComplainantCountry(null);
         return complaint;
     }
 
@@ -40,6 +49,10 @@ public record ComplaintTestData(long id, long productId, String content, String
         );
     }
     
+    public VersionedComplaint buildVersionedDto() {
+        return new VersionedComplaint(buildDto(), version);
+    }
+
     public ComplaintCreationDto buildCreationDto() {
         return new ComplaintCreationDto(
                 productId, content, complainant
@@ -0,0 +1,78 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class ComplaintWriteServiceConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int SUBMISSIONS_PER_THREAD = 50;
+    private static final ComplaintCreationDto DUPLICATE =
+            new ComplaintCreationDto(9001L, "Battery drains overnight", "concurrent-user");
+
+    @Autowired
+    private ComplaintWriteService complaintWriteService;
+    @Autowired
+    private ComplaintRepository complaintRepository;
+    @MockitoBean
+    private IpGeolocationService ipGeolocationService;
+
+    @BeforeEach
+    void setUp() {
+        when(ipGeolocationService.getCountryFromIpAsync(anyString())).thenReturn(completedFuture(Optional.empty()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        complaintRepository.findByProductIdAndComplainant(DUPLICATE.productId(), DUPLICATE.complainant())
+                .ifPresent(complaintRepository::delete);
+    }
+
+    @Test
+    void shouldCountEveryDuplicate_whenSameComplaintIsSubmittedConcurrently() throws Exception {
+        //given
+        final var start = new CountDownLatch(1);
+        final Callable<Void> submitter = () -> {
+            start.await();
+            for (int i = 0; i < SUBMISSIONS_PER_THREAD; i++) {
+                complaintWriteService.addNewOrIncrementCount(DUPLICATE, "10.0.0.1");
+            }
+            return null;
+        };
+
+        //when
+        try (final var executor = Executors.newFixedThreadPool(THREADS)) {
+            final var results = new ArrayList<Future<Void>>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(submitter));
+            }
+            start.countDown();
+            for (final var result : results) {
+                result.get();
+            }
+        }
+
+        //then
+        final var complaint = complaintRepository.findByProductIdAndComplainant(DUPLICATE.productId(), DUPLICATE.complainant());
+        assertThat(complaint).hasValueSatisfying(c ->
+                assertThat(c.getCount()).isEqualTo(THREADS * SUBMISSIONS_PER_THREAD));
+    }
+}
@@ -1,11 +1,17 @@
 package dev.karolchmiel.complaintmanager.service;
 
-import com.neovisionaries.i18n.CountryCode;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
 import dev.karolchmiel.complaintmanager.api.dto.ComplaintUpdateDto;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.dto.ComplaintEvent;
+import dev.karolchmiel.complaintmanager.dto.VersionedComplaint;
 import dev.karolchmiel.complaintmanager.mapper.ComplaintMapper;
 import dev.karolchmiel.complaintmanager.model.Complaint;
 import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintSearchRepository;
+import dev.karolchmiel.complaintmanager.repository.ComplaintStatsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,8 +20,14 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.mapstruct.factory.Mappers;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static java.time.LocalDateTime.now;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -29,29 +41,37 @@ class ComplaintWriteServiceTest {
     @Mock
     private ComplaintRepository complaintRepository;
     @Mock
-    private IpGeolocationService ipGeolocationService;
+    private CountryEnrichmentService countryEnrichmentService;
+    @Mock
+    private ComplaintCountAggregator countAggregator;
+    @Mock
+    private ComplaintCache complaintCache;
+    @Mock
+    private ComplaintStatsRepository statsRepository;
+    @Mock
+    private ComplaintSearchRepository searchRepository;
+    @Mock
+    private ComplaintEventFeed eventFeed;
+    @Mock
+    private PlatformTransactionManager transactionManager;
     @Captor
-    private ArgumentCaptor<Complaint> complaintCaptor;
+    private ArgumentCaptor<LocalDateTime> creationDateCaptor;
 
     private final ComplaintMapper complaintMapper = Mappers.getMapper(ComplaintMapper.class);
-    private final Complaint existingComplaint = TEST_DATA.buildEntity();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     private ComplaintWriteService complaintWriteService;
 
     @BeforeEach
     void setUp() {
-        complaintWriteService = new ComplaintWriteService(complaintRepository, complaintMapper, ipGeolocationService);
-
-        lenient().when(complaintRepository.save(any(Complaint.class))).thenAnswer(invocation -> {
-            final Complaint savedComplaint = invocation.getArgument(0);
-            savedComplaint.setId(TEST_DATA.id());
-            return savedComplaint;
-        });
+        complaintWriteService = new ComplaintWriteService(
+                complaintRepository, statsRepository, searchRepository, complaintMapper, countryEnrichmentService, Optional.empty(),
+                complaintCache, new ShardRouter(1), eventFeed, transactionManager, meterRegistry);
     }
 
     @Test
-    void shouldCreateNewComplaint_whenComplaintDoesNotExist() {
+    void shouldCreateNewComplaintAndQueueEnrichment_whenComplaintDoesNotExist() {
         //given
-        when(ipGeolocationService.getCountryFromIp(COMPLAINANT_IP)).thenReturn(Optional.of(CountryCode.US));
+        mockUpsertReturning(TEST_DATA.buildEntityWithoutCountry());
         final var dto = TEST_DATA.buildCreationDto();
 
         //when
@@ -60,50 +80,175 @@ class ComplaintWriteServiceTest {
         final var end = now();
 
         //then
-        final var savedComplaint = verifySavedComplaint();
-        assertComplaintMatchesTestData(savedComplaint);
-        assertThat(savedComplaint.getComplainantCountry()).isEqualTo(CountryCode.US);
-        assertThat(savedComplaint.getCount()).isOne();
-        assertThat(savedComplaint.getCreationDate()).isBetween(start, end);
-        assertThat(returnedComplaint).usingRecursiveComparison().isEqualTo(savedComplaint);
+        assertThat(verifyUpsertCreationDate()).isBetween(start, end);
+        verify(countryEnrichmentService).submit(TEST_DATA.id(), COMPLAINANT_IP);
+        assertThat(returnedComplaint).usingRecursiveComparison()
+                .ignoringFields("complainantCountry")
+                .isEqualTo(TEST_DATA.buildDto());
+        assertThat(returnedComplaint.complainantCountry()).isNull();
+        assertThat(returnedComplaint.count()).isOne();
+        assertThat(meterRegistry.get("complaint.submissions").tag("outcome", "created").counter().count()).isOne();
+        assertThat(meterRegistry.get("complaint.service").tag("operation", "create").timer().count()).isOne();
+        verify(eventFeed).publish(ComplaintEvent.Type.CREATED,
+                new VersionedComplaint(returnedComplaint, TEST_DATA.version()));
     }
 
     @Test
-    void shouldCreateComplaintWithoutCountry_whenGeolocationReturnsEmpty() {
+    void shouldIncrementCount_whenDuplicateComplaintIsAdded() {
         //given
-        when(ipGeolocationService.getCountryFromIp(COMPLAINANT_IP)).thenReturn(Optional.empty());
-        final var dto = TEST_DATA.buildCreationDto();
+        final var incremented = TEST_DATA.buildEntity();
+        incremented.setCount(2);
+        mockUpsertReturning(incremented);
+        final var duplicate = new ComplaintCreationDto(TEST_DATA.productId(), "Different content", TEST_DATA.complainant());
 
         //when
-        final var start = now();
-        final var returnedComplaint = complaintWriteService.addNewOrIncrementCount(dto, COMPLAINANT_IP);
-        final var end = now();
+        final var returnedComplaint = complaintWriteService.addNewOrIncrementCount(duplicate, COMPLAINANT_IP);
 
         //then
-        final var savedComplaint = verifySavedComplaint();
-        assertComplaintMatchesTestData(savedComplaint);
-        assertThat(savedComplaint.getComplainantCountry()).isNull();
-        assertThat(savedComplaint.getCount()).isOne();
-        assertThat(savedComplaint.getCreationDate()).isBetween(start, end);
-        assertThat(returnedComplaint).usingRecursiveComparison().isEqualTo(savedComplaint);
+        verifyNoInteractions(countryEnrichmentService);
+        assertThat(returnedComplaint).usingRecursiveComparison()
+                .ignoringFields("count")
+                .isEqualTo(TEST_DATA.buildDto());
+        assertThat(returnedComplaint.count()).isEqualTo(2);
+        assertThat(meterRegistry.get("complaint.submissions").tag("outcome", "incremented").counter().count())
+                .isOne();
+        verify(eventFeed).publish(ComplaintEvent.Type.INCREMENTED,
+                new VersionedComplaint(returnedComplaint, TEST_DATA.version()));
     }
 
     @Test
-    void shouldIncrementCount_whenDuplicateComplaintIsAdded() {
+    void shouldRetryAsIncrement_whenConcurrentSubmissionCreatedComplaintFirst() {
         //given
-        when(complaintRepository.findByProductIdAndComplainant(TEST_DATA.productId(), TEST_DATA.complainant()))
-            .thenReturn(Optional.of(existingComplaint));
-        final var duplicate = new ComplaintCreationDto(TEST_DATA.productId(), "Different content", TEST_DATA.complainant());
+        final var incremented = TEST_DATA.buildEntity();
+        incremented.setCount(2);
+        when(complaintRepository.upsertIncrementingCount(
+                eq(TEST_DATA.productId()), eq(TEST_DATA.content()), eq(TEST_DATA.complainant()), any()))
+                .thenThrow(new DataIntegrityViolationException("UNIQUENESS_CONSTRAINT"))
+                .thenReturn(incremented);
 
         //when
-        complaintWriteService.addNewOrIncrementCount(duplicate, COMPLAINANT_IP);
+        final var returnedComplaint = complaintWriteService.addNewOrIncrementCount(
+                TEST_DATA.buildCreationDto(), COMPLAINANT_IP);
 
         //then
-        final var savedComplaint = verifySavedComplaint();
-        assertThat(savedComplaint).usingRecursiveComparison()
-                .ignoringFields("count")
-                .isEqualTo(existingComplaint);
-        assertThat(savedComplaint.getCount()).isEqualTo(2);
+        verify(complaintRepository, times(2)).upsertIncrementingCount(anyLong(), any(), any(), any());
+        verify(transactionManager).rollback(any());
+        verify(statsRepository).recordIncrement(incremented);
+        verifyNoInteractions(countryEnrichmentService);
+        assertThat(returnedComplaint.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRecordStatsInUpsertTransaction_asNewComplaintOrIncrement() {
+        //given
+        final var created = TEST_DATA.buildEntityWithoutCountry();
+        final var incremented = TEST_DATA.buildEntity();
+        incremented.setCount(2);
+        when(complaintRepository.upsertIncrementingCount(
+                eq(TEST_DATA.productId()), any(), eq(TEST_DATA.complainant()), any()))
+                .thenReturn(created, incremented);
+
+        //when
+        complaintWriteService.addNewOrIncrementCount(TEST_DATA.buildCreationDto(), COMPLAINANT_IP);
+        complaintWriteService.addNewOrIncrementCount(TEST_DATA.buildCreationDto(), COMPLAINANT_IP);
+
+        //then
+        final var inOrder = inOrder(transactionManager, statsRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(statsRepository).recordNewComplaints(List.of(created));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(statsRepository).recordIncrement(incremented);
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void shouldIndexContentOfNewComplaintsOnly() {
+        //given
+        final var incremented = TEST_DATA.buildEntity();
+        incremented.setCount(2);
+        when(complaintRepository.upsertIncrementingCount(
+                eq(TEST_DATA.productId()), any(), eq(TEST_DATA.complainant()), any()))
+                .thenReturn(TEST_DATA.buildEntityWithoutCountry(), incremented);
+
+        //when
+        complaintWriteService.addNewOrIncrementCount(TEST_DATA.buildCreationDto(), COMPLAINANT_IP);
+        complaintWriteService.addNewOrIncrementCount(TEST_DATA.buildCreationDto(), COMPLAINANT_IP);
+
+        //then
+        verify(searchRepository).index(Map.of(TEST_DATA.id(), TEST_DATA.content()));
+        verifyNoMoreInteractions(searchRepository);
+    }
+
+    @Test
+    void shouldCountThroughAggregator_usingUpsertOnlyForUntrackedComplaints() {
+        //given
+        final var service = new ComplaintWriteService(
+                complaintRepository, statsRepository, searchRepository, complaintMapper, countryEnrichmentService,
+                Optional.of(countAggregator), complaintCache, new ShardRouter(1), eventFeed, transactionManager, meterRegistry);
+        mockUpsertReturning(TEST_DATA.buildEntityWithoutCountry());
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<Supplier<ComplaintRetrievalDto>> persistCaptor = ArgumentCaptor.forClass(Supplier.class);
+        when(countAggregator.increment(eq(TEST_DATA.productId()), eq(TEST_DATA.complainant()), persistCaptor.capture()))
+                .thenAnswer(invocation -> persistCaptor.getValue().get());
+
+        //when
+        final var returnedComplaint = service.addNewOrIncrementCount(TEST_DATA.buildCreationDto(), COMPLAINANT_IP);
+
+        //then
+        verify(countryEnrichmentService).submit(TEST_DATA.id(), COMPLAINANT_IP);
+        assertThat(returnedComplaint.count()).isOne();
+    }
+
+    @Test
+    void shouldEvictComplaintFromCache_whenCountIncremented() {
+        //given
+        final var existing = TEST_DATA.buildEntity();
+        existing.setCount(2);
+        mockUpsertReturning(existing);
+
+        //when
+        complaintWriteService.addNewOrIncrementCount(TEST_DATA.buildCreationDto(), COMPLAINANT_IP);
+
+        //then
+        verify(complaintCache).evict(TEST_DATA.id());
+    }
+
+    @Test
+    void updateComplaint_shouldEvictComplaintFromCache_onlyWhenUpdated() {
+        //given
+        when(complaintRepository.updateComplaintContent(anyLong(), any())).thenReturn(1, 0);
+        when(complaintRepository.findVersionById(TEST_DATA.id())).thenReturn(Optional.of(TEST_DATA.version()));
+
+        //when
+        complaintWriteService.updateComplaint(TEST_DATA.id(), new ComplaintUpdateDto("New content"));
+        complaintWriteService.updateComplaint(TEST_DATA.id() + 1, new ComplaintUpdateDto("New content"));
+
+        //then
+        verify(complaintCache).evict(TEST_DATA.id());
+        verifyNoMoreInteractions(complaintCache);
+        verify(searchRepository).index(Map.of(TEST_DATA.id(), "New content"));
+        verifyNoMoreInteractions(searchRepository);
+        verify(eventFeed).publish(ComplaintEvent.Type.CONTENT_UPDATED, new VersionedComplaint(
+                new ComplaintRetrievalDto(TEST_DATA.id(), null, "New content", null, null, null, null),
+                TEST_DATA.version()));
+        verifyNoMoreInteractions(eventFeed);
+    }
+
+    @Test
+    void updateComplaint_shouldUpdateContentReportedByAggregator() {
+        //given
+        final var service = new ComplaintWriteService(
+                complaintRepository, statsRepository, searchRepository, complaintMapper, countryEnrichmentService,
+                Optional.of(countAggregator), complaintCache, new ShardRouter(1), eventFeed, transactionManager, meterRegistry);
+        when(complaintRepository.updateComplaintContent(TEST_DATA.id(), "New content")).thenReturn(1);
+        when(complaintRepository.findVersionById(TEST_DATA.id())).thenReturn(Optional.of(TEST_DATA.version()));
+
+        //when
+        service.updateComplaint(TEST_DATA.id(), new ComplaintUpdateDto("New content"));
+
+        //then
+        verify(countAggregator).contentUpdated(TEST_DATA.id(), "New content");
     }
 
     @ParameterizedTest
@@ -115,22 +260,27 @@ class ComplaintWriteServiceTest {
         //given
         final var newComplaintContent = "New content";
         when(complaintRepository.updateComplaintContent(TEST_DATA.id(), newComplaintContent)).thenReturn(updatedRecords);
+        lenient().when(complaintRepository.findVersionById(TEST_DATA.id())).thenReturn(Optional.of(TEST_DATA.version()));
 
         //when
         final var updated = complaintWriteService.updateComplaint(TEST_DATA.id(), new ComplaintUpdateDto(newComplaintContent));
 
         //then
         assertThat(updated).isEqualTo(updateSuccessful);
+        assertThat(meterRegistry.get("complaint.updates").tag("outcome", updateSuccessful ? "updated" : "not_found")
+                .counter().count()).isOne();
     }
 
-    private Complaint verifySavedComplaint() {
-        verify(complaintRepository).save(complaintCaptor.capture());
-        return complaintCaptor.getValue();
+    private void mockUpsertReturning(Complaint complaint) {
+        when(complaintRepository.upsertIncrementingCount(
+                eq(TEST_DATA.productId()), any(), eq(TEST_DATA.complainant()), any()))
+                .thenReturn(complaint);
     }
 
-    private void assertComplaintMatchesTestData(Complaint complaint) {
-        assertThat(complaint.getProductId()).isEqualTo(TEST_DATA.productId());
-        assertThat(complaint.getComplainant()).isEqualTo(TEST_DATA.complainant());
-        assertThat(complaint.getContent()).isEqualTo(TEST_DATA.content());
+    private LocalDateTime verifyUpsertCreationDate() {
+        verify(complaintRepository).upsertIncrementingCount(
+                eq(TEST_DATA.productId()), eq(TEST_DATA.content()), eq(TEST_DATA.complainant()),
+                creationDateCaptor.capture());
+        return creationDateCaptor.getValue();
     }
 }
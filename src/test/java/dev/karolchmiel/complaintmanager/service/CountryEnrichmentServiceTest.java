@@ -0,0 +1,231 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.config.ShardRouter;
+import dev.karolchmiel.complaintmanager.repository.ComplaintRepository;
+import dev.karolchmiel.complaintmanager.service.CountryEnrichmentService.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CountryEnrichmentServiceTest {
+    private static final String POLISH_IP = "83.1.1.1";
+    private static final String FRENCH_IP = "90.1.1.1";
+    private static final String PROXY_IP = "10.9.9.9";
+
+    @Mock
+    private IpGeolocationService ipGeolocationService;
+    @Mock
+    private ComplaintRepository complaintRepository;
+    @Mock
+    private ComplaintCache complaintCache;
+    @Mock
+    private ComplaintCountAggregator countAggregator;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldStoreResolvedCountriesInOneBatch_resolvingEachIpOnce() {
+        //given
+        final var service = createService(10, 2, OverflowPolicy.DROP_NEWEST);
+        when(ipGeolocationService.getCountryFromIpAsync(POLISH_IP))
+                .thenReturn(completedFuture(Optional.of(CountryCode.PL)));
+        when(ipGeolocationService.getCountryFromIpAsync(FRENCH_IP))
+                .thenReturn(completedFuture(Optional.of(CountryCode.FR)));
+        service.submit(1L, POLISH_IP);
+        service.submit(2L, POLISH_IP);
+        service.submit(3L, FRENCH_IP);
+
+        //when
+        service.processPending();
+
+        //then
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<Map<Long, CountryCode>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(complaintRepository, times(2)).updateComplainantCountries(captor.capture());
+        assertThat(captor.getAllValues()).containsExactly(
+                Map.of(1L, CountryCode.PL, 2L, CountryCode.PL),
+                Map.of(3L, CountryCode.FR));
+        verify(ipGeolocationService, times(1)).getCountryFromIpAsync(POLISH_IP);
+        assertThat(meterRegistry.get("complaint.enrichment.queue.depth").gauge().value()).isZero();
+        assertThat(meterRegistry.get("complaint.enrichment.processed").tag("outcome", "resolved").counter().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    void shouldSkipComplaint_whenCountryCannotBeResolved() {
+        //given
+        final var service = createService(10, 10, OverflowPolicy.DROP_NEWEST);
+        when(ipGeolocationService.getCountryFromIpAsync(POLISH_IP))
+                .thenReturn(completedFuture(Optional.of(CountryCode.PL)));
+        when(ipGeolocationService.getCountryFromIpAsync(PROXY_IP))
+                .thenReturn(completedFuture(Optional.empty()));
+        service.submit(1L, POLISH_IP);
+        service.submit(2L, PROXY_IP);
+
+        //when
+        service.processPending();
+
+        //then
+        verify(complaintRepository).updateComplainantCountries(Map.of(1L, CountryCode.PL));
+        assertThat(meterRegistry.get("complaint.enrichment.processed").tag("outcome", "unresolved").counter().count())
+                .isOne();
+    }
+
+    @Test
+    void shouldCountFailedLookupsAsUnresolved_andStoreRestOfBatch() {
+        //given
+        final var service = createService(10, 10, OverflowPolicy.DROP_NEWEST);
+        when(ipGeolocationService.getCountryFromIpAsync(POLISH_IP))
+                .thenReturn(completedFuture(Optional.of(CountryCode.PL)));
+        when(ipGeolocationService.getCountryFromIpAsync(FRENCH_IP))
+                .thenReturn(failedFuture(new IllegalStateException("ip-api.com unavailable")));
+        when(ipGeolocationService.getCountryFromIpAsync(PROXY_IP)).thenReturn(completedFuture(Optional.empty()));
+        service.submit(1L, POLISH_IP);
+        service.submit(2L, FRENCH_IP);
+        service.submit(3L, PROXY_IP);
+
+        //when
+        service.processPending();
+
+        //then
+        verify(complaintRepository).updateComplainantCountries(Map.of(1L, CountryCode.PL));
+        assertThat(meterRegistry.get("complaint.enrichment.processed").tag("outcome", "unresolved").counter().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("complaint.enrichment.processed").tag("outcome", "resolved").counter().count())
+                .isOne();
+    }
+
+    @Test
+    void shouldStoreCountriesWhenLookupsComplete_withoutWaitingForThemOnSchedulingThread() {
+        //given
+        final var service = createService(10, 10, OverflowPolicy.DROP_NEWEST);
+        final var lookup = new CompletableFuture<Optional<CountryCode>>();
+        when(ipGeolocationService.getCountryFromIpAsync(POLISH_IP)).thenReturn(lookup);
+        service.submit(1L, POLISH_IP);
+
+        //when
+        service.processPending();
+
+        //then
+        verifyNoInteractions(complaintRepository);
+        lookup.complete(Optional.of(CountryCode.PL));
+        verify(complaintRepository).updateComplainantCountries(Map.of(1L, CountryCode.PL));
+    }
+
+    @Test
+    void shouldLeaveComplaintsQueued_whileMaxConcurrentBatchesAreInFlight() {
+        //given
+        final var service = createService(10, 1, OverflowPolicy.DROP_NEWEST);
+        final var lookups = new ArrayList<CompletableFuture<Optional<CountryCode>>>();
+        when(ipGeolocationService.getCountryFromIpAsync(POLISH_IP)).thenAnswer(invocation -> {
+            final var lookup = new CompletableFuture<Optional<CountryCode>>();
+            lookups.add(lookup);
+            return lookup;
+        });
+        for (long id = 1; id <= 5; id++) {
+            service.submit(id, POLISH_IP);
+        }
+
+        //when
+        service.processPending();
+        final var startedBeforeCompletion = lookups.size();
+        lookups.getFirst().complete(Optional.of(CountryCode.PL));
+        service.processPending();
+
+        //then
+        assertThat(startedBeforeCompletion).isEqualTo(4);
+        assertThat(lookups).hasSize(5);
+        assertThat(meterRegistry.get("complaint.enrichment.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldReportStoredCountriesToWriteBehindAggregator() {
+        //given
+        final var service = createService(10, 10, OverflowPolicy.DROP_NEWEST, Optional.of(countAggregator));
+        when(ipGeolocationService.getCountryFromIpAsync(POLISH_IP))
+                .thenReturn(completedFuture(Optional.of(CountryCode.PL)));
+        service.submit(1L, POLISH_IP);
+
+        //when
+        service.processPending();
+
+        //then
+        verify(countAggregator).countryRecorded(1L, CountryCode.PL);
+    }
+
+    @Test
+    void shouldDropSubmittedComplaint_whenQueueIsFullAndPolicyIsDropNewest() {
+        //given
+        final var service = createService(2, 10, OverflowPolicy.DROP_NEWEST);
+        when(ipGeolocationService.getCountryFromIpAsync(POLISH_IP))
+                .thenReturn(completedFuture(Optional.of(CountryCode.PL)));
+
+        //when
+        service.submit(1L, POLISH_IP);
+        service.submit(2L, POLISH_IP);
+        service.submit(3L, POLISH_IP);
+        service.processPending();
+
+        //then
+        verify(complaintRepository).updateComplainantCountries(Map.of(1L, CountryCode.PL, 2L, CountryCode.PL));
+        assertThat(meterRegistry.get("complaint.enrichment.dropped").counter().count()).isOne();
+    }
+
+    @Test
+    void shouldDropOldestComplaint_whenQueueIsFullAndPolicyIsDropOldest() {
+        //given
+        final var service = createService(2, 10, OverflowPolicy.DROP_OLDEST);
+        when(ipGeolocationService.getCountryFromIpAsync(POLISH_IP))
+                .thenReturn(completedFuture(Optional.of(CountryCode.PL)));
+
+        //when
+        service.submit(1L, POLISH_IP);
+        service.submit(2L, POLISH_IP);
+        service.submit(3L, POLISH_IP);
+        service.processPending();
+
+        //then
+        verify(complaintRepository).updateComplainantCountries(Map.of(2L, CountryCode.PL, 3L, CountryCode.PL));
+        assertThat(meterRegistry.get("complaint.enrichment.dropped").counter().count()).isOne();
+    }
+
+    @Test
+    void shouldReportQueueDepthAndLag_whileComplaintsAreWaiting() throws InterruptedException {
+        //given
+        final var service = createService(10, 10, OverflowPolicy.DROP_NEWEST);
+
+        //when
+        service.submit(1L, POLISH_IP);
+        service.submit(2L, FRENCH_IP);
+        Thread.sleep(5);
+
+        //then
+        assertThat(meterRegistry.get("complaint.enrichment.queue.depth").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("complaint.enrichment.lag").timeGauge().value()).isPositive();
+    }
+
+    private CountryEnrichmentService createService(int queueCapacity, int batchSize, OverflowPolicy overflowPolicy) {
+        return createService(queueCapacity, batchSize, overflowPolicy, Optional.empty());
+    }
+
+    private CountryEnrichmentService createService(int queueCapacity, int batchSize, OverflowPolicy overflowPolicy,
+                                                   Optional<ComplaintCountAggregator> aggregator) {
+        return new CountryEnrichmentService(ipGeolocationService, complaintRepository, complaintCache, aggregator,
+                new ShardRouter(1), meterRegistry, queueCapacity, batchSize, 4, overflowPolicy);
+    }
+}
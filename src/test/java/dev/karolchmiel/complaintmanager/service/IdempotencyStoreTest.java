@@ -0,0 +1,187 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintCreationDto;
+import dev.karolchmiel.complaintmanager.api.dto.ComplaintRetrievalDto;
+import dev.karolchmiel.complaintmanager.service.IdempotencyConflictException.Reason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyStoreTest {
+    private static final ComplaintTestData TEST_DATA = ComplaintTestData.defaultData();
+    private static final String KEY = "3f0c2a5e-retry";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final IdempotencyStore idempotencyStore = new IdempotencyStore(meterRegistry, 100,
+            Duration.ofMinutes(10), Duration.ofSeconds(5));
+    private final AtomicInteger submissions = new AtomicInteger();
+
+    @Test
+    void shouldReplayFirstResponse_withoutSubmittingAgain() {
+        //given
+        final var dto = TEST_DATA.buildCreationDto();
+
+        //when
+        final var first = idempotencyStore.submit(KEY, dto, this::submit);
+        final var retry = idempotencyStore.submit(KEY, dto, this::submit);
+
+        //then
+        assertThat(first.replayed()).isFalse();
+        assertThat(retry.replayed()).isTrue();
+        assertThat(retry.complaint()).isEqualTo(first.complaint());
+        assertThat(submissions).hasValue(1);
+        assertThat(meterRegistry.get("complaint.idempotency").tag("outcome", "replayed").counter().count()).isOne();
+    }
+
+    @Test
+    void shouldMakeConcurrentDuplicateWait_forFirstSubmission() throws Exception {
+        //given
+        final var dto = TEST_DATA.buildCreationDto();
+        final var inFlight = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        try (final var executor = Executors.newSingleThreadExecutor()) {
+            final var first = executor.submit(() -> idempotencyStore.submit(KEY, dto, () -> {
+                inFlight.countDown();
+                await(release);
+                return submit();
+            }));
+            assertThat(inFlight.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //when
+            try (final var duplicateExecutor = Executors.newSingleThreadExecutor()) {
+                final var duplicate = duplicateExecutor.submit(() -> idempotencyStore.submit(KEY, dto, this::submit));
+                release.countDown();
+
+                //then
+                assertThat(duplicate.get(5, TimeUnit.SECONDS).replayed()).isTrue();
+                assertThat(duplicate.get().complaint()).isEqualTo(first.get().complaint());
+            }
+        }
+        assertThat(submissions).hasValue(1);
+    }
+
+    @Test
+    void shouldReleaseKey_whenSubmissionFails() {
+        //given
+        final var dto = TEST_DATA.buildCreationDto();
+        assertThatThrownBy(() -> idempotencyStore.submit(KEY, dto, () -> {
+            throw new IllegalStateException("Database unavailable");
+        })).isInstanceOf(IllegalStateException.class);
+
+        //when
+        final var retry = idempotencyStore.submit(KEY, dto, this::submit);
+
+        //then
+        assertThat(retry.replayed()).isFalse();
+        assertThat(submissions).hasValue(1);
+    }
+
+    @Test
+    void shouldKeepInFlightKey_whenCacheIsFullOfOtherKeys() throws Exception {
+        //given
+        final var store = new IdempotencyStore(meterRegistry, 1, Duration.ofMinutes(10), Duration.ofMillis(50));
+        final var dto = TEST_DATA.buildCreationDto();
+        final var inFlight = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        try (final var executor = Executors.newSingleThreadExecutor()) {
+            final var first = executor.submit(() -> store.submit(KEY, dto, () -> {
+                inFlight.countDown();
+                await(release);
+                return submit();
+            }));
+            assertThat(inFlight.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 10; i++) {
+                store.submit(KEY + i, dto, this::submit);
+            }
+
+            //when/then
+            assertThatThrownBy(() -> store.submit(KEY, dto, this::submit))
+                    .isInstanceOfSatisfying(IdempotencyConflictException.class,
+                            e -> assertThat(e.getReason()).isEqualTo(Reason.IN_PROGRESS));
+
+            release.countDown();
+            assertThat(first.get().replayed()).isFalse();
+        }
+        assertThat(submissions).hasValue(11);
+    }
+
+    @Test
+    void shouldReleaseKey_whenSubmissionThrowsError() {
+        //given
+        final var dto = TEST_DATA.buildCreationDto();
+        assertThatThrownBy(() -> idempotencyStore.submit(KEY, dto, () -> {
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+
+        //when
+        final var retry = idempotencyStore.submit(KEY, dto, this::submit);
+
+        //then
+        assertThat(retry.replayed()).isFalse();
+        assertThat(submissions).hasValue(1);
+    }
+
+    @Test
+    void shouldRejectKeyReusedForDifferentComplaint() {
+        //given
+        final var dto = TEST_DATA.buildCreationDto();
+        final var otherDto = new ComplaintCreationDto(dto.productId(), "Other content", dto.complainant());
+        idempotencyStore.submit(KEY, dto, this::submit);
+
+        //when/then
+        assertThatThrownBy(() -> idempotencyStore.submit(KEY, otherDto, this::submit))
+                .isInstanceOfSatisfying(IdempotencyConflictException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(Reason.KEY_REUSED));
+        assertThat(submissions).hasValue(1);
+    }
+
+    @Test
+    void shouldRejectDuplicate_whenFirstSubmissionOutlastsWaitTimeout() throws Exception {
+        //given
+        final var store = new IdempotencyStore(meterRegistry, 100, Duration.ofMinutes(10), Duration.ofMillis(50));
+        final var dto = TEST_DATA.buildCreationDto();
+        final var inFlight = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        try (final var executor = Executors.newSingleThreadExecutor()) {
+            final var first = executor.submit(() -> store.submit(KEY, dto, () -> {
+                inFlight.countDown();
+                await(release);
+                return submit();
+            }));
+            assertThat(inFlight.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //when/then
+            assertThatThrownBy(() -> store.submit(KEY, dto, this::submit))
+                    .isInstanceOfSatisfying(IdempotencyConflictException.class,
+                            e -> assertThat(e.getReason()).isEqualTo(Reason.IN_PROGRESS));
+
+            release.countDown();
+            first.get();
+        }
+        assertThat(submissions).hasValue(1);
+    }
+
+    private ComplaintRetrievalDto submit() {
+        submissions.incrementAndGet();
+        return TEST_DATA.buildDto();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package dev.karolchmiel.complaintmanager.service;
+
+import com.neovisionaries.i18n.CountryCode;
+import dev.karolchmiel.complaintmanager.stub.IpApiStubServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IpGeolocationBatcherTest {
+    private static final Map<String, CountryCode> COUNTRIES = Map.of(
+            "83.1.1.1", CountryCode.PL,
+            "90.1.1.1", CountryCode.FR,
+            "5.1.1.1", CountryCode.DE,
+            "24.1.1.1", CountryCode.US);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private IpApiStubServer stubServer;
+    private IpGeolocationBatcher batcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stubServer = new IpApiStubServer(COUNTRIES::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        stubServer.close();
+    }
+
+    @Test
+    void shouldResolveLookupsWithinWindowInSingleBatchRequest() {
+        //given
+        batcher = createBatcher(100, Duration.ofMillis(100));
+
+        //when
+        final var polish = batcher.lookup("83.1.1.1");
+        final var french = batcher.lookup("90.1.1.1");
+        final var polishAgain = batcher.lookup("83.1.1.1");
+        final var unknown = batcher.lookup("10.0.0.1");
+
+        //then
+        assertThat(await(polish)).hasValue(CountryCode.PL);
+        assertThat(await(french)).hasValue(CountryCode.FR);
+        assertThat(await(polishAgain)).hasValue(CountryCode.PL);
+        assertThat(await(unknown)).isEmpty();
+        assertThat(stubServer.batchRequests()).containsExactly(List.of("83.1.1.1", "90.1.1.1", "10.0.0.1"));
+        assertThat(meterRegistry.get("ipapi.batch.size").summary().max()).isEqualTo(3);
+        assertThat(meterRegistry.get("ipapi.batch.wait").timer().count()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldSendBatchImmediately_whenMaxSizeIsReached() {
+        //given
+        batcher = createBatcher(2, Duration.ofMinutes(1));
+
+        //when
+        final var polish = batcher.lookup("83.1.1.1");
+        final var french = batcher.lookup("90.1.1.1");
+
+        //then
+        assertThat(await(polish)).hasValue(CountryCode.PL);
+        assertThat(await(french)).hasValue(CountryCode.FR);
+        assertThat(stubServer.batchRequests()).containsExactly(List.of("83.1.1.1", "90.1.1.1"));
+    }
+
+    @Test
+    void shouldKeepFullWindowForNextBatch_whenBatchWasSentOnReachingMaxSize() throws InterruptedException {
+        //given
+        final var window = Duration.ofMillis(300);
+        batcher = createBatcher(2, window);
+        final var polish = batcher.lookup("83.1.1.1");
+        final var french = batcher.lookup("90.1.1.1");
+        Thread.sleep(window.toMillis() / 2);
+
+        //when
+        final var startedAt = System.nanoTime();
+        final var german = batcher.lookup("5.1.1.1");
+
+        //then
+        assertThat(await(german)).hasValue(CountryCode.DE);
+        assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isGreaterThanOrEqualTo(window);
+        assertThat(await(polish)).hasValue(CountryCode.PL);
+        assertThat(await(french)).hasValue(CountryCode.FR);
+        assertThat(stubServer.batchRequests()).hasSize(2);
+    }
+
+    @Test
+    void shouldSplitLookupsIntoConsecutiveBatches() {
+        //given
+        batcher = createBatcher(2, Duration.ofMillis(50));
+
+        //when
+        final var lookups = COUNTRIES.keySet().stream().map(batcher::lookup).toList();
+        final var last = batcher.lookup("83.1.1.1");
+
+        //then
+        lookups.forEach(lookup -> assertThat(await(lookup)).isPresent());
+        assertThat(await(last)).hasValue(CountryCode.PL);
+        assertThat(stubServer.batchRequests()).hasSize(3);
+    }
+
+    @Test
+    void shouldCompleteAllLookupsWithEmpty_whenBatchRequestFails() {
+        //given
+        batcher = createBatcher(100, Duration.ofMillis(10));
+        stubServer.failWith(500);
+
+        //when
+        final var polish = batcher.lookup("83.1.1.1");
+        final var french = batcher.lookup("90.1.1.1");
+
+        //then
+        assertThat(await(polish)).isEmpty();
+        assertThat(await(french)).isEmpty();
+    }
+
+    private IpGeolocationBatcher createBatcher(int maxBatchSize, Duration window) {
+        return new IpGeolocationBatcher(new RestTemplate(), meterRegistry, new IpApiMetrics(meterRegistry),
+                stubServer.baseUrl() + "/batch", maxBatchSize, window);
+    }
+
+    private static Optional<CountryCode> await(CompletableFuture<Optional<CountryCode>> lookup) {
+        return lookup.orTimeout(5, TimeUnit.SECONDS).join();
+    }
+}
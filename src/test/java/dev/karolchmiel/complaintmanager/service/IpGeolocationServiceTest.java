@@ -2,6 +2,8 @@ package dev.karolchmiel.complaintmanager.service;
 
 import com.neovisionaries.i18n.CountryCode;
 import dev.karolchmiel.complaintmanager.dto.IpApiResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -10,10 +12,24 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class IpGeolocationServiceTest {
@@ -22,13 +38,18 @@ class IpGeolocationServiceTest {
     private static final String TEST_API_URL = "http://ip-api.com/json";
     private static final String EXPECTED_REQUEST_URL = IpGeolocationService.buildApiUrl(TEST_API_URL, TEST_IP);
 
+    private static final Duration CACHE_TTL = Duration.ofHours(1);
+    private static final Duration CACHE_NEGATIVE_TTL = Duration.ofMinutes(5);
+
     @Mock
     private RestTemplate restTemplate;
+    private SimpleMeterRegistry meterRegistry;
     private IpGeolocationService ipGeolocationService;
 
     @BeforeEach
     void setUp() {
-        ipGeolocationService = new IpGeolocationService(restTemplate, TEST_API_URL);
+        meterRegistry = new SimpleMeterRegistry();
+        ipGeolocationService = createService(Optional.empty(), true);
     }
 
     @Nested
@@ -70,6 +91,254 @@ class IpGeolocationServiceTest {
         }
     }
 
+    @Nested
+    class MetricsScenarios {
+        @Test
+        void shouldRecordSuccessfulRequest() {
+            mockIpApiResponse(CountryCode.PL, false);
+            assertCountryCode(CountryCode.PL);
+            assertOutcomeRecorded("success");
+        }
+
+        @Test
+        void shouldRecordProxyOutcome() {
+            mockIpApiResponse(CountryCode.DE, true);
+            assertEmptyResponse();
+            assertOutcomeRecorded("proxy");
+        }
+
+        @Test
+        void shouldRecordInvalidOutcome() {
+            mockIpApiResponse(null, false);
+            assertEmptyResponse();
+            assertOutcomeRecorded("invalid");
+        }
+
+        @Test
+        void shouldRecordTimeoutOutcome_whenRequestTimesOut() {
+            when(restTemplate.getForObject(EXPECTED_REQUEST_URL, IpApiResponse.class)).thenThrow(
+                    new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out")));
+            assertEmptyResponse();
+            assertOutcomeRecorded("timeout");
+        }
+
+        @Test
+        void shouldRecordErrorOutcome_whenRequestFails() {
+            when(restTemplate.getForObject(EXPECTED_REQUEST_URL, IpApiResponse.class))
+                    .thenThrow(new RuntimeException("API Error"));
+            assertEmptyResponse();
+            assertOutcomeRecorded("error");
+        }
+
+        private void assertOutcomeRecorded(String outcome) {
+            assertThat(meterRegistry.get("ipapi.request").tags("endpoint", "single", "outcome", outcome)
+                    .timer().count()).isOne();
+            assertThat(meterRegistry.get("ipapi.lookups").tag("outcome", outcome).counter().count()).isOne();
+        }
+    }
+
+    @Nested
+    class CachingScenarios {
+        @Test
+        void shouldCallApiOnce_whenSameIpIsLookedUpRepeatedly() {
+            mockIpApiResponse(CountryCode.PL, false);
+
+            assertCountryCode(CountryCode.PL);
+            assertCountryCode(CountryCode.PL);
+
+            verify(restTemplate, times(1)).getForObject(EXPECTED_REQUEST_URL, IpApiResponse.class);
+            assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isOne();
+            assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isOne();
+        }
+
+        @Test
+        void shouldCacheNegativeResult_whenProxyDetected() {
+            mockIpApiResponse(CountryCode.DE, true);
+
+            assertEmptyResponse();
+            assertEmptyResponse();
+
+            verify(restTemplate, times(1)).getForObject(EXPECTED_REQUEST_URL, IpApiResponse.class);
+        }
+
+        @Test
+        void shouldShareSingleApiCall_whenSameIpIsLookedUpConcurrently() throws Exception {
+            final var lookups = 8;
+            final var allStarted = new CountDownLatch(lookups);
+            when(restTemplate.getForObject(EXPECTED_REQUEST_URL, IpApiResponse.class)).thenAnswer(invocation -> {
+                allStarted.await(1, TimeUnit.SECONDS);
+                return new IpApiResponse(CountryCode.FR, false);
+            });
+
+            try (final var executor = Executors.newFixedThreadPool(lookups)) {
+                final var results = new ArrayList<Future<Optional<CountryCode>>>();
+                for (int i = 0; i < lookups; i++) {
+                    results.add(executor.submit(() -> {
+                        allStarted.countDown();
+                        return ipGeolocationService.getCountryFromIp(TEST_IP);
+                    }));
+                }
+                for (final var result : results) {
+                    assertThat(result.get()).hasValue(CountryCode.FR);
+                }
+            }
+
+            verify(restTemplate, times(1)).getForObject(EXPECTED_REQUEST_URL, IpApiResponse.class);
+        }
+
+        @Test
+        void shouldReturnBeforeApiAnswers_whenVirtualThreadsAreDisabled() {
+            final var answer = new CountDownLatch(1);
+            when(restTemplate.getForObject(EXPECTED_REQUEST_URL, IpApiResponse.class)).thenAnswer(invocation -> {
+                answer.await(5, TimeUnit.SECONDS);
+                return new IpApiResponse(CountryCode.PL, false);
+            });
+
+            final var lookup = ipGeolocationService.getCountryFromIpAsync(TEST_IP);
+
+            assertThat(lookup).isNotDone();
+            answer.countDown();
+            assertThat(lookup.join()).hasValue(CountryCode.PL);
+        }
+
+        @Test
+        void shouldReturnEmptyWithoutCallingApi_whenIpIsNull() {
+            assertThat(ipGeolocationService.getCountryFromIp(null)).isEmpty();
+            verifyNoInteractions(restTemplate);
+        }
+    }
+
+    @Nested
+    class OfflineScenarios {
+        @Mock
+        private OfflineIpCountryResolver offlineResolver;
+
+        @Test
+        void shouldUseOfflineTableWithoutCallingApi_whenAddressIsCovered() {
+            ipGeolocationService = createService(Optional.of(offlineResolver), true);
+            when(offlineResolver.getCountryFromIp(TEST_IP)).thenReturn(Optional.of(CountryCode.GB));
+
+            assertCountryCode(CountryCode.GB);
+            verifyNoInteractions(restTemplate);
+        }
+
+        @Test
+        void shouldFallBackToApi_whenAddressIsNotCovered() {
+            ipGeolocationService = createService(Optional.of(offlineResolver), true);
+            when(offlineResolver.getCountryFromIp(TEST_IP)).thenReturn(Optional.empty());
+            mockIpApiResponse(CountryCode.PL, false);
+
+            assertCountryCode(CountryCode.PL);
+        }
+
+        @Test
+        void shouldReturnEmpty_whenAddressIsNotCoveredAndFallbackIsDisabled() {
+            ipGeolocationService = createService(Optional.of(offlineResolver), false);
+            when(offlineResolver.getCountryFromIp(TEST_IP)).thenReturn(Optional.empty());
+
+            assertEmptyResponse();
+            verifyNoInteractions(restTemplate);
+        }
+    }
+
+    @Nested
+    class VirtualThreadScenarios {
+        private static final String OTHER_IP = "83.1.1.1";
+
+        @AfterEach
+        void shutdown() {
+            ipGeolocationService.shutdown();
+        }
+
+        @Test
+        void shouldRunLookupsOfDifferentIpsConcurrently() {
+            ipGeolocationService = createVirtualThreadService(16);
+            final var bothInFlight = new CountDownLatch(2);
+            when(restTemplate.getForObject(anyString(), eq(IpApiResponse.class))).thenAnswer(invocation -> {
+                bothInFlight.countDown();
+                return bothInFlight.await(5, TimeUnit.SECONDS) ? new IpApiResponse(CountryCode.PL, false) : null;
+            });
+
+            final var first = ipGeolocationService.getCountryFromIpAsync(TEST_IP);
+            final var second = ipGeolocationService.getCountryFromIpAsync(OTHER_IP);
+
+            assertThat(first.join()).hasValue(CountryCode.PL);
+            assertThat(second.join()).hasValue(CountryCode.PL);
+        }
+
+        @Test
+        void shouldLimitConcurrentRequests() {
+            ipGeolocationService = createVirtualThreadService(1);
+            final var inFlight = new AtomicInteger();
+            final var maxInFlight = new AtomicInteger();
+            when(restTemplate.getForObject(anyString(), eq(IpApiResponse.class))).thenAnswer(invocation -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(50);
+                inFlight.decrementAndGet();
+                return new IpApiResponse(CountryCode.PL, false);
+            });
+
+            final var first = ipGeolocationService.getCountryFromIpAsync(TEST_IP);
+            final var second = ipGeolocationService.getCountryFromIpAsync(OTHER_IP);
+
+            assertThat(first.join()).hasValue(CountryCode.PL);
+            assertThat(second.join()).hasValue(CountryCode.PL);
+            assertThat(maxInFlight).hasValue(1);
+        }
+    }
+
+    @Nested
+    class BatchScenarios {
+        @Mock
+        private IpGeolocationBatcher batcher;
+
+        @Test
+        void shouldResolveThroughBatcherAndCacheResult_whenBatchingIsEnabled() {
+            ipGeolocationService = createService(Optional.empty(), true, Optional.of(batcher));
+            when(batcher.lookup(TEST_IP)).thenReturn(CompletableFuture.completedFuture(Optional.of(CountryCode.IT)));
+
+            assertCountryCode(CountryCode.IT);
+            assertCountryCode(CountryCode.IT);
+
+            verify(batcher, times(1)).lookup(TEST_IP);
+            verifyNoInteractions(restTemplate);
+        }
+
+        @Test
+        void shouldShareBatchedLookup_whenSameIpIsRequestedWhileInFlight() {
+            ipGeolocationService = createService(Optional.empty(), true, Optional.of(batcher));
+            final var inFlight = new CompletableFuture<Optional<CountryCode>>();
+            when(batcher.lookup(TEST_IP)).thenReturn(inFlight);
+
+            final var first = ipGeolocationService.getCountryFromIpAsync(TEST_IP);
+            final var second = ipGeolocationService.getCountryFromIpAsync(TEST_IP);
+            inFlight.complete(Optional.of(CountryCode.ES));
+
+            assertThat(first.join()).hasValue(CountryCode.ES);
+            assertThat(second.join()).hasValue(CountryCode.ES);
+            verify(batcher, times(1)).lookup(TEST_IP);
+        }
+    }
+
+    private IpGeolocationService createVirtualThreadService(int maxConcurrentRequests) {
+        return new IpGeolocationService(restTemplate, TEST_API_URL, meterRegistry,
+                new IpApiMetrics(meterRegistry), Optional.empty(),
+                true, Optional.empty(), 100, CACHE_TTL, CACHE_NEGATIVE_TTL, true, maxConcurrentRequests);
+    }
+
+    private IpGeolocationService createService(Optional<OfflineIpCountryResolver> offlineResolver,
+                                               boolean offlineHttpFallback) {
+        return createService(offlineResolver, offlineHttpFallback, Optional.empty());
+    }
+
+    private IpGeolocationService createService(Optional<OfflineIpCountryResolver> offlineResolver,
+                                               boolean offlineHttpFallback,
+                                               Optional<IpGeolocationBatcher> batcher) {
+        return new IpGeolocationService(restTemplate, TEST_API_URL, meterRegistry,
+                new IpApiMetrics(meterRegistry), offlineResolver,
+                offlineHttpFallback, batcher, 100, CACHE_TTL, CACHE_NEGATIVE_TTL, false, 16);
+    }
+
     private void mockIpApiResponse(CountryCode country, boolean isProxy) {
         when(restTemplate.getForObject(EXPECTED_REQUEST_URL, IpApiResponse.class))
                 .thenReturn(new IpApiResponse(country, isProxy));
@@ -0,0 +1,133 @@
+package dev.karolchmiel.complaintmanager.stub;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.i18n.CountryCode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Local stand-in for ip-api.com serving the single lookup ({@code GET /json/{ip}}) and batch
+ * ({@code POST /batch}) endpoints. Countries are taken from the configured resolver; IP addresses it
+ * maps to null are reported as failed lookups. Latency, a share of failing requests and a share of addresses
+ * flagged as proxies can be configured to mimic the real API under load.
+ */
+public class IpApiStubServer implements AutoCloseable {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final Function<String, CountryCode> countryResolver;
+    private final AtomicInteger singleRequests = new AtomicInteger();
+    private final List<List<String>> batchRequests = new CopyOnWriteArrayList<>();
+    private volatile int failingStatus;
+    private volatile Duration latency = Duration.ZERO;
+    private volatile double errorRate;
+    private volatile double proxyRate;
+
+    public IpApiStubServer(Function<String, CountryCode> countryResolver) throws IOException {
+        this.countryResolver = countryResolver;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/json/", this::handleSingle);
+        server.createContext("/batch", this::handleBatch);
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int singleRequestCount() {
+        return singleRequests.get();
+    }
+
+    /**
+     * @return the IP addresses of each batch request received, in arrival order
+     */
+    public List<List<String>> batchRequests() {
+        return batchRequests;
+    }
+
+    /**
+     * Makes every following request fail with the given HTTP status, or succeed again when 0.
+     */
+    public void failWith(int status) {
+        this.failingStatus = status;
+    }
+
+    /**
+     * Delays every following response by the given time, to simulate a slow API.
+     */
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Makes the given share of the following requests fail with 500 Internal Server Error, chosen at random.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Flags the given share of the following successful lookups as proxies, chosen at random.
+     */
+    public void setProxyRate(double proxyRate) {
+        this.proxyRate = proxyRate;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleSingle(HttpExchange exchange) throws IOException {
+        singleRequests.incrementAndGet();
+        final var ip = exchange.getRequestURI().getPath().substring("/json/".length());
+        respond(exchange, lookup(ip));
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        final var ips = OBJECT_MAPPER.readValue(exchange.getRequestBody(), new TypeReference<List<String>>() {
+        });
+        batchRequests.add(ips);
+        respond(exchange, ips.stream().map(this::lookup).toList());
+    }
+
+    private Map<String, Object> lookup(String ip) {
+        final var country = countryResolver.apply(ip);
+        return country == null
+                ? Map.of("status", "fail", "query", ip)
+                : Map.of("status", "success", "countryCode", country.getAlpha2(),
+                "proxy", ThreadLocalRandom.current().nextDouble() < proxyRate, "query", ip);
+    }
+
+    private void respond(HttpExchange exchange, Object body) throws IOException {
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final var status = failingStatus == 0 && ThreadLocalRandom.current().nextDouble() < errorRate
+                ? 500 : failingStatus;
+        final var bytes = status == 0 ? OBJECT_MAPPER.writeValueAsBytes(body) : "error".getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status == 0 ? 200 : status, bytes.length);
+        try (final var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
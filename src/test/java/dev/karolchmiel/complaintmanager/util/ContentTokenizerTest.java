@@ -0,0 +1,39 @@
+package dev.karolchmiel.complaintmanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentTokenizerTest {
+    @Test
+    void shouldCountLowerCasedTerms_splitOnPunctuation() {
+        //when
+        final var terms = ContentTokenizer.termFrequencies("Battery died! The battery-pack (v2) needs a REFUND.");
+
+        //then
+        assertThat(terms).containsExactly(
+                Map.entry("battery", 2),
+                Map.entry("died", 1),
+                Map.entry("the", 1),
+                Map.entry("pack", 1),
+                Map.entry("v2", 1),
+                Map.entry("needs", 1),
+                Map.entry("refund", 1));
+    }
+
+    @Test
+    void shouldKeepNonLatinLetters_andDropTooShortOrTooLongTerms() {
+        //when
+        final var terms = ContentTokenizer.termFrequencies("Ładowarka x " + "a".repeat(41) + " zepsuta");
+
+        //then
+        assertThat(terms).containsOnlyKeys("ładowarka", "zepsuta");
+    }
+
+    @Test
+    void shouldReturnNoTerms_forNullText() {
+        assertThat(ContentTokenizer.termFrequencies(null)).isEmpty();
+    }
+}
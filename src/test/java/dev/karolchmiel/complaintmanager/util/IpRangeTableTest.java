@@ -0,0 +1,126 @@
+package dev.karolchmiel.complaintmanager.util;
+
+import com.neovisionaries.i18n.CountryCode;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IpRangeTableTest {
+    private static final String IP2LOCATION_CSV = """
+            "0","16777215","-","-"
+            "16777216","16777471","AU","Australia"
+            "16777472","16778239","CN","China"
+            "1358954496","1358954751","PL","Poland"
+            "4294967040","4294967295","US","United States of America"
+            "281470698652416","281470698652671","JP","Japan"
+            "42540766411282592856903984951653826560","42540766490510755371168322545197776895","DE","Germany"
+            "58568784045719197223097215437582106624","58569108564272855649823998593602682879","FR","France"
+            """;
+    private static final String GEOLITE_LEGACY_CSV = """
+            "start_ip","end_ip","start_num","end_num","country","name"
+            "1.0.0.0","1.0.0.255","16777216","16777471","AU","Australia"
+            "81.0.0.0","81.0.0.255","1358954496","1358954751","KR","Korea, Republic of"
+            "2001:4860::","2001:4860:ffff:ffff:ffff:ffff:ffff:ffff","","","US","United States"
+            """;
+
+    @TempDir
+    private Path directory;
+
+    @Nested
+    class Ip2LocationLayout {
+        @ParameterizedTest(name = "{0} -> {1}")
+        @CsvSource(textBlock = """
+                1.0.0.0,          AU
+                1.0.0.255,        AU
+                1.0.1.0,          CN
+                81.0.0.128,       PL
+                255.255.255.255,  US
+                ::ffff:81.0.0.1,  PL
+                2001:db8::1,      DE
+                2c0f:ffff::1,     FR
+                """)
+        void shouldFindCountry_whenAddressIsInRange(String address, CountryCode expected) throws IOException {
+            final var table = compile(IP2LOCATION_CSV);
+
+            assertThat(lookup(table, address)).isEqualTo(expected);
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"0.0.0.1", "1.0.4.0", "81.0.1.0", "2001:db9::1", "::1"})
+        void shouldReturnEmpty_whenAddressIsNotCovered(String address) throws IOException {
+            final var table = compile(IP2LOCATION_CSV);
+
+            assertThat(lookup(table, address)).isNull();
+        }
+
+        @Test
+        void shouldMapDecimalIpv4MappedRangesToIpv4() throws IOException {
+            final var table = compile(IP2LOCATION_CSV);
+
+            assertThat(lookup(table, "1.2.3.4")).isEqualTo(CountryCode.JP);
+            assertThat(table.ipv4RangeCount()).isEqualTo(5);
+            assertThat(table.ipv6RangeCount()).isEqualTo(2);
+        }
+    }
+
+    @Nested
+    class GeoLiteLegacyLayout {
+        @ParameterizedTest(name = "{0} -> {1}")
+        @CsvSource(textBlock = """
+                1.0.0.7,          AU
+                81.0.0.1,         KR
+                2001:4860::8888,  US
+                """)
+        void shouldFindCountry_whenAddressIsInRange(String address, CountryCode expected) throws IOException {
+            final var table = compile(GEOLITE_LEGACY_CSV);
+
+            assertThat(lookup(table, address)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void shouldRejectOverlappingRanges() throws IOException {
+        final var csv = Files.writeString(directory.resolve("overlap.csv"), """
+                "1.0.0.0","1.0.0.255","AU"
+                "1.0.0.128","1.0.1.255","CN"
+                """);
+
+        assertThatThrownBy(() -> IpRangeTableCompiler.compile(csv, directory.resolve("table.bin")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Overlapping");
+    }
+
+    @Test
+    void shouldRejectFileThatIsNotATable() throws IOException {
+        final var file = Files.writeString(directory.resolve("garbage.bin"), "definitely not a range table");
+
+        assertThatThrownBy(() -> IpRangeTable.open(file)).isInstanceOf(IOException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"localhost", "example.com", "1.2.3", "", "unknown"})
+    void shouldNotParseHostNamesOrInvalidLiterals(String value) {
+        assertThat(IpRangeTable.parseAddress(value)).isEmpty();
+    }
+
+    private IpRangeTable compile(String csvContent) throws IOException {
+        final var csv = Files.writeString(directory.resolve("ranges.csv"), csvContent);
+        final var tablePath = directory.resolve("ranges.bin");
+        IpRangeTableCompiler.compile(csv, tablePath);
+        return IpRangeTable.open(tablePath);
+    }
+
+    private static CountryCode lookup(IpRangeTable table, String address) {
+        return IpRangeTable.parseAddress(address).flatMap(table::lookup).orElse(null);
+    }
+}